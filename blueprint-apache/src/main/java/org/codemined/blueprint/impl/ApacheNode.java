@@ -110,6 +110,14 @@ public class ApacheNode implements ConfigNode<ApacheNode> {
     return list;
   }
 
+  /**
+   * Reads all array values at once, rather than looking the array up again for every element.
+   */
+  @Override
+  public String[] getArrayValues() {
+    return config.getStringArray(configKey);
+  }
+
   @Override
   public boolean containsKey(String key) {
     String prefix = Strings.join(".", configKey, key);
@@ -73,6 +73,7 @@ public class ApacheNodeTest {
     ApacheNode t = loadTree();
     assertEquals(t.getChildNode("backupHours").getArrayNodes().size(), 3);
     assertEquals(t.getChildNode("activeBackupDays").getArrayNodes().size(), 7);
+    assertEquals(t.getChildNode("backupHours").getArrayValues(), new String[] { "3", "8", "18" });
   }
 
 }
@@ -0,0 +1,662 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint.apt;
+
+import org.codemined.blueprint.ConversionRules;
+import org.codemined.blueprint.Default;
+import org.codemined.blueprint.FromFile;
+import org.codemined.blueprint.Key;
+import org.codemined.blueprint.Lazy;
+import org.codemined.blueprint.Precompiled;
+import org.codemined.blueprint.PrecompiledBlueprint;
+import org.codemined.blueprint.UseType;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Generates implementations of blueprint interfaces annotated with {@link Precompiled}.
+ * <p>
+ *   For each annotated interface, and for each interface reachable from its methods which
+ *   is compiled along with it, a subclass of {@link PrecompiledBlueprint} is generated:
+ *   simple values are converted by calling the same static factory method or constructor
+ *   the runtime deserializer would pick, everything else is handed over to the runtime.
+ *   Methods that don't follow blueprint conventions are reported as compilation errors.
+ *   Generated factories are listed in a service file written in the last round.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+@SupportedAnnotationTypes("org.codemined.blueprint.Precompiled")
+public class BlueprintProcessor extends AbstractProcessor {
+
+  /** Class providing the helpers which create generic types in generated plans. */
+  private static final String PLAN_TYPES = PrecompiledBlueprint.class.getName();
+
+  private static final String SERVICE_FILE = "META-INF/services/" + PrecompiledBlueprint.Factory.class.getName();
+
+  private Elements elements;
+
+  private Types types;
+
+  private Messager messager;
+
+  private Filer filer;
+
+  /** Qualified names of interfaces already handled. */
+  private final Set<String> processed = new HashSet<String>();
+
+  /** Binary names of generated factories. */
+  private final SortedSet<String> factories = new TreeSet<String>();
+
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    this.elements = processingEnv.getElementUtils();
+    this.types = processingEnv.getTypeUtils();
+    this.messager = processingEnv.getMessager();
+    this.filer = processingEnv.getFiler();
+  }
+
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    final Set<? extends Element> roots = roundEnv.getRootElements();
+    for (Element e : roundEnv.getElementsAnnotatedWith(Precompiled.class)) {
+      if (e.getKind() != ElementKind.INTERFACE) {
+        messager.printMessage(Diagnostic.Kind.ERROR, "@Precompiled may only be applied to interfaces", e);
+        continue;
+      }
+      precompile((TypeElement) e, roots);
+    }
+
+    if (roundEnv.processingOver() && ! factories.isEmpty()) {
+      writeServiceFile();
+    }
+    return true;
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private void precompile(TypeElement iface, Set<? extends Element> roots) {
+    if (! processed.add(iface.getQualifiedName().toString())) {
+      return;
+    }
+    if (! iface.getTypeParameters().isEmpty()) {
+      messager.printMessage(Diagnostic.Kind.WARNING,
+              "generic interfaces are not precompiled and will be bound at runtime", iface);
+      return;
+    }
+    for (Element e = iface; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      if (e.getModifiers().contains(Modifier.PRIVATE)) {
+        messager.printMessage(Diagnostic.Kind.WARNING,
+                "private interfaces are not precompiled and will be bound at runtime", iface);
+        return;
+      }
+    }
+
+    final List<Slot> slots = new ArrayList<Slot>();
+    boolean valid = true;
+    for (ExecutableElement method : blueprintMethods(iface)) {
+      Slot slot = bind(iface, method, slots.size());
+      if (slot == null) {
+        valid = false;
+      } else {
+        slots.add(slot);
+      }
+    }
+    if (! valid) {
+      return;
+    }
+
+    final String packageName = elements.getPackageOf(iface).getQualifiedName().toString();
+    final List<String> simpleNames = new ArrayList<String>();
+    for (Element e = iface; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      simpleNames.add(0, e.getSimpleName().toString());
+    }
+    final String className = PrecompiledBlueprint.generatedClassName(packageName, simpleNames);
+    try {
+      new ImplementationWriter(iface, className, slots).write(filer);
+    } catch (IOException e) {
+      messager.printMessage(Diagnostic.Kind.ERROR, "cannot write " + className + ": " + e.getMessage(), iface);
+      return;
+    }
+    factories.add(className + "$Factory");
+
+    /* interfaces returned by this one are precompiled as well, if compiled alongside */
+    for (Slot slot : slots) {
+      for (TypeElement nested : slot.interfaces) {
+        if (roots.contains(outermost(nested))) {
+          precompile(nested, roots);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Gets the methods an implementation must provide, in declaration order.
+   * Static and private methods, and those overriding public methods of Object are left out,
+   * and signatures inherited from several super-interfaces are listed once.
+   */
+  private List<ExecutableElement> blueprintMethods(TypeElement iface) {
+    final DeclaredType ifaceType = (DeclaredType) iface.asType();
+    final Map<String, ExecutableElement> bySignature = new LinkedHashMap<String, ExecutableElement>();
+    for (Element member : elements.getAllMembers(iface)) {
+      if (member.getKind() != ElementKind.METHOD ||
+              member.getEnclosingElement().getKind() != ElementKind.INTERFACE ||
+              member.getModifiers().contains(Modifier.STATIC) ||
+              member.getModifiers().contains(Modifier.PRIVATE)) {
+        continue;
+      }
+      final ExecutableElement method = (ExecutableElement) member;
+      final String signature = signature(method);
+      if (isObjectMethod(signature)) {
+        continue;
+      }
+      final ExecutableElement previous = bySignature.get(signature);
+      if (previous == null || types.isSubtype(
+              returnType(ifaceType, method), returnType(ifaceType, previous))) {
+        bySignature.put(signature, method);
+      }
+    }
+    return new ArrayList<ExecutableElement>(bySignature.values());
+  }
+
+
+  /**
+   * Checks a method against blueprint conventions and decides how its value is obtained.
+   *
+   * @return slot description, or null if the method is erroneous.
+   */
+  private Slot bind(TypeElement iface, ExecutableElement method, int index) {
+    final ExecutableType type = (ExecutableType) types.asMemberOf((DeclaredType) iface.asType(), method);
+    final TypeMirror returnType = type.getReturnType();
+    final List<? extends TypeMirror> parameters = type.getParameterTypes();
+    final Element where = method.getEnclosingElement().equals(iface) ? method : iface;
+    final String prefix = where == method ? "" : "method " + method.getSimpleName() + ": ";
+    final Slot slot = new Slot(index, method, type);
+
+    if (returnType.getKind() == TypeKind.VOID) {
+      return error(where, prefix + "return type cannot be `void'");
+    }
+    if (returnType.getKind() == TypeKind.ARRAY &&
+            ((ArrayType) returnType).getComponentType().getKind() == TypeKind.ARRAY) {
+      return error(where, prefix + "multi-dimensional arrays are not supported");
+    }
+    if (parameters.size() > 1) {
+      return error(where, prefix + "too many arguments; blueprint methods may only take" +
+              " up to one optional Class argument, or a var-arg list of Class arguments");
+    }
+    if (parameters.size() == 1) {
+      TypeMirror p = types.erasure(parameters.get(0));
+      boolean classArg = isClass(p) ||
+              (method.isVarArgs() && p.getKind() == TypeKind.ARRAY && isClass(((ArrayType) p).getComponentType()));
+      if (! classArg) {
+        return error(where, prefix + "type hint argument must be a Class or a var-arg list of Class");
+      }
+    }
+
+    final Key key = method.getAnnotation(Key.class);
+    slot.annotatedKey = key == null ? null : key.value();
+    final Default defaultValue = method.getAnnotation(Default.class);
+    slot.defaultValue = defaultValue == null ? null : defaultValue.value();
+    final FromFile fromFile = method.getAnnotation(FromFile.class);
+    slot.fileCheckInterval = fromFile == null ? 0 : fromFile.checkInterval();
+    slot.genericReturnType = typeExpression(returnType, false);
+    slot.lazy = method.getAnnotation(Lazy.class) != null;
+    final TypeMirror hint = useTypeValue(method);
+    slot.staticHint = hint == null ? null : boxedErasure(hint);
+    slot.returnClass = boxedErasure(returnType);
+    collectInterfaces(returnType, slot.interfaces);
+    if (hint != null) {
+      collectInterfaces(hint, slot.interfaces);
+    }
+
+    /* file values are checked for changes when read, so they are never converted */
+    if (fromFile != null) {
+      if (! parameters.isEmpty()) {
+        return error(where, prefix + "methods annotated with @FromFile cannot take type hints");
+      }
+      if (! isType(returnType, "java.nio.ByteBuffer") && ! isType(returnType, "java.util.List") &&
+              ! isType(returnType, "java.util.Collection") && ! isType(returnType, "org.codemined.util.StringSet")) {
+        return error(where, prefix + "files can only be read as ByteBuffer, List<String>," +
+                " Collection<String> or StringSet");
+      }
+      slot.kind = Slot.Kind.FILE;
+      return slot;
+    }
+
+    /* runtime type hints may change the type, so leave everything to the runtime */
+    if (! parameters.isEmpty()) {
+      slot.kind = Slot.Kind.HINTED;
+      return slot;
+    }
+
+    final boolean isMap = isSubtype(returnType, "java.util.Map");
+    final boolean isCollection = isSubtype(returnType, "java.util.Collection");
+    if ((isMap || isCollection) && hint == null && elementTypeArgument(returnType, isMap) == null) {
+      return error(where, prefix + (isMap ? "Maps" : "Collections") + " require a non-null type hint");
+    }
+
+    /* optionals are filled in or left empty at runtime */
+    if (isType(returnType, "java.util.Optional")) {
+      if (hint == null && elementTypeArgument(returnType, false) == null) {
+        return error(where, prefix + "Optionals require a non-null type hint");
+      }
+      slot.kind = Slot.Kind.DESERIALIZED;
+      return slot;
+    }
+    if (isType(returnType, "java.util.OptionalInt") || isType(returnType, "java.util.OptionalLong") ||
+            isType(returnType, "java.util.OptionalDouble")) {
+      slot.kind = Slot.Kind.DESERIALIZED;
+      return slot;
+    }
+
+    /* a static hint on a simple type names the type to deserialize to,
+    except on interval maps, where it names the value type */
+    final boolean isIntervalMap = isSubtype(returnType, "org.codemined.util.LongIntervalMap");
+    TypeMirror target = returnType;
+    if (hint != null && ! isMap && ! isCollection && ! isIntervalMap) {
+      if (! types.isSubtype(types.erasure(boxed(hint)), types.erasure(boxed(returnType)))) {
+        return error(where, prefix + "Type hint " + hint + ", is not assignment-compatible with the" +
+                " method's return type, " + returnType);
+      }
+      target = hint;
+    }
+    target = boxed(target);
+
+    if (target.getKind() == TypeKind.DECLARED && ! isMap && ! isCollection &&
+            ! isClass(types.erasure(target))) {
+      final TypeElement targetElement = (TypeElement) types.asElement(target);
+      if (targetElement.getKind() != ElementKind.INTERFACE) {
+        if (! isAccessible(targetElement, iface)) {
+          slot.kind = Slot.Kind.DESERIALIZED;
+          return slot;
+        }
+        /* types without a conversion of their own may still have a converter
+        registered at runtime, so leave them to the deserializer */
+        slot.kind = findConverter(targetElement, iface, slot) ? Slot.Kind.CONVERTED : Slot.Kind.DESERIALIZED;
+        if (slot.kind == Slot.Kind.CONVERTED && returnType.getKind().isPrimitive()) {
+          usePrimitiveField(returnType.getKind(), slot);
+        }
+        return slot;
+      }
+    }
+
+    slot.kind = Slot.Kind.DESERIALIZED;
+    return slot;
+  }
+
+
+  /**
+   * Finds the static factory method or constructor that the runtime deserializer
+   * would use for a type, following the same {@link ConversionRules}.
+   */
+  private boolean findConverter(TypeElement type, TypeElement iface, Slot slot) {
+    final String typeName = type.getQualifiedName().toString();
+    slot.convertedClass = typeName;
+
+    /* Strings need no conversion */
+    if (typeName.equals("java.lang.String")) {
+      slot.conversion = null;
+      return true;
+    }
+
+    final ConversionRules.StandIn standIn = ConversionRules.standIn(typeName);
+    if (standIn != null) {
+      slot.conversion = standIn.owner + "." + standIn.method + "(s)";
+      slot.conversionName = standIn.description;
+      return true;
+    }
+
+    final TypeMirror erasedType = types.erasure(type.asType());
+    for (String name : ConversionRules.FACTORY_METHODS) {
+      /* enums without a factory method of their own are left to the runtime constant lookup */
+      if (type.getKind() == ElementKind.ENUM && name.equals(ConversionRules.ENUM_LOOKUP_METHOD)) {
+        return false;
+      }
+      for (Element member : elements.getAllMembers(type)) {
+        if (member.getKind() == ElementKind.METHOD &&
+                member.getSimpleName().contentEquals(name) &&
+                member.getModifiers().contains(Modifier.PUBLIC) &&
+                member.getModifiers().contains(Modifier.STATIC) &&
+                takesString((ExecutableElement) member) &&
+                types.isSubtype(types.erasure(((ExecutableElement) member).getReturnType()), erasedType) &&
+                isAccessible((TypeElement) member.getEnclosingElement(), iface)) {
+          TypeElement owner = (TypeElement) member.getEnclosingElement();
+          slot.conversion = owner.getQualifiedName() + "." + name + "(s)";
+          slot.conversionName = "method " + name + "(String)";
+          return true;
+        }
+      }
+    }
+
+    if (! type.getModifiers().contains(Modifier.ABSTRACT)) {
+      for (Element member : type.getEnclosedElements()) {
+        if (member.getKind() == ElementKind.CONSTRUCTOR &&
+                member.getModifiers().contains(Modifier.PUBLIC) &&
+                takesString((ExecutableElement) member)) {
+          slot.conversion = "new " + typeName + "(s)";
+          slot.conversionName = "constructor(String)";
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * Keeps the value of a primitive return type in a field of that type, where its
+   * conversion returns it without boxing.
+   */
+  private static void usePrimitiveField(TypeKind kind, Slot slot) {
+    switch (kind) {
+      case INT: slot.primitive = "int"; break;
+      case LONG: slot.primitive = "long"; break;
+      case DOUBLE: slot.primitive = "double"; break;
+      case BOOLEAN: slot.primitive = "boolean"; break;
+      default: return;
+    }
+  }
+
+
+  private void writeServiceFile() {
+    final SortedSet<String> lines = new TreeSet<String>(factories);
+    try {
+      FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+      try (Reader r = existing.openReader(true); BufferedReader in = new BufferedReader(r)) {
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+          if (! line.trim().isEmpty()) {
+            lines.add(line.trim());
+          }
+        }
+      }
+    } catch (IOException e) {
+      // no service file from a previous compilation
+    }
+
+    try {
+      FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+      try (Writer w = file.openWriter()) {
+        for (String line : lines) {
+          w.write(line);
+          w.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      messager.printMessage(Diagnostic.Kind.ERROR, "cannot write " + SERVICE_FILE + ": " + e.getMessage());
+    }
+  }
+
+
+  private Slot error(Element where, String message) {
+    messager.printMessage(Diagnostic.Kind.ERROR, message, where);
+    return null;
+  }
+
+
+  private TypeMirror returnType(DeclaredType ifaceType, ExecutableElement method) {
+    return ((ExecutableType) types.asMemberOf(ifaceType, method)).getReturnType();
+  }
+
+
+  private String signature(ExecutableElement method) {
+    StringBuilder sb = new StringBuilder(method.getSimpleName()).append('(');
+    for (Element p : method.getParameters()) {
+      sb.append(types.erasure(p.asType())).append(',');
+    }
+    return sb.append(')').toString();
+  }
+
+
+  private boolean isObjectMethod(String signature) {
+    TypeElement object = elements.getTypeElement("java.lang.Object");
+    for (Element member : object.getEnclosedElements()) {
+      if (member.getKind() == ElementKind.METHOD &&
+              member.getModifiers().contains(Modifier.PUBLIC) &&
+              signature((ExecutableElement) member).equals(signature)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  private TypeMirror useTypeValue(ExecutableElement method) {
+    for (AnnotationMirror am : method.getAnnotationMirrors()) {
+      TypeElement annotation = (TypeElement) am.getAnnotationType().asElement();
+      if (annotation.getQualifiedName().contentEquals(UseType.class.getName())) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e :
+                am.getElementValues().entrySet()) {
+          if (e.getKey().getSimpleName().contentEquals("value")) {
+            return (TypeMirror) e.getValue().getValue();
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+
+  /** Adds the blueprint interfaces a type refers to, directly or as an array element. */
+  private void collectInterfaces(TypeMirror type, List<TypeElement> interfaces) {
+    while (type.getKind() == TypeKind.ARRAY) {
+      type = ((ArrayType) type).getComponentType();
+    }
+    if (type.getKind() != TypeKind.DECLARED) {
+      return;
+    }
+    TypeElement element = (TypeElement) types.asElement(type);
+    if (element.getKind() == ElementKind.INTERFACE &&
+            ! isSubtype(type, "java.util.Map") &&
+            ! isSubtype(type, "java.util.Collection")) {
+      interfaces.add(element);
+    }
+    /* element types of generic maps and collections are deserialized as well */
+    for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+      final TypeMirror bound = argument.getKind() == TypeKind.WILDCARD ?
+              ((WildcardType) argument).getExtendsBound() : argument;
+      if (bound != null) {
+        collectInterfaces(bound, interfaces);
+      }
+    }
+  }
+
+
+  /**
+   * Gets the element type of a map, collection or optional from its type arguments, as
+   * read by the runtime deserializer: the last of two type arguments of maps, the only
+   * type argument of collections and optionals.
+   *
+   * @return the element type, or null if it is not given as a concrete type.
+   */
+  private TypeMirror elementTypeArgument(TypeMirror type, boolean isMap) {
+    final List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+    if (arguments.size() != (isMap ? 2 : 1)) {
+      return null;
+    }
+    TypeMirror argument = arguments.get(arguments.size() - 1);
+    if (argument.getKind() == TypeKind.WILDCARD) {
+      argument = ((WildcardType) argument).getExtendsBound();
+      if (argument == null || types.erasure(argument).toString().equals("java.lang.Object")) {
+        return null;
+      }
+    }
+    TypeMirror component = argument;
+    while (component.getKind() == TypeKind.ARRAY) {
+      component = ((ArrayType) component).getComponentType();
+    }
+    return component.getKind() == TypeKind.DECLARED || component.getKind().isPrimitive() ? argument : null;
+  }
+
+
+  /**
+   * Gets the source of an expression creating the runtime representation of a type, as
+   * would be returned by {@link java.lang.reflect.Method#getGenericReturnType()}.  Type
+   * variables are erased at the top level and turned into unbounded wildcards within type
+   * arguments, where the runtime deserializer treats both alike.
+   *
+   * @param argument whether the type is a type argument or an array component of one.
+   */
+  private String typeExpression(TypeMirror type, boolean argument) {
+    switch (type.getKind()) {
+      case DECLARED:
+        final List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+        if (arguments.isEmpty()) {
+          break;
+        }
+        final StringBuilder sb = new StringBuilder(PLAN_TYPES + ".parameterizedType(")
+                .append(types.erasure(type)).append(".class");
+        for (TypeMirror a : arguments) {
+          sb.append(", ").append(typeExpression(a, true));
+        }
+        return sb.append(')').toString();
+
+      case ARRAY:
+        final String component = typeExpression(((ArrayType) type).getComponentType(), argument);
+        if (component.endsWith(".class")) {
+          break;
+        }
+        return PLAN_TYPES + ".genericArrayType(" + component + ")";
+
+      case WILDCARD:
+        final TypeMirror bound = ((WildcardType) type).getExtendsBound();
+        return PLAN_TYPES + ".wildcardType(" +
+                (bound == null ? "java.lang.Object.class" : typeExpression(bound, true)) + ")";
+
+      case TYPEVAR:
+        if (argument) {
+          return PLAN_TYPES + ".wildcardType(java.lang.Object.class)";
+        }
+        break;
+
+      default:
+        break;
+    }
+    return types.erasure(type) + ".class";
+  }
+
+
+  private boolean takesString(ExecutableElement method) {
+    return method.getParameters().size() == 1 &&
+            types.erasure(method.getParameters().get(0).asType()).toString().equals("java.lang.String");
+  }
+
+
+  private boolean isClass(TypeMirror type) {
+    return types.erasure(type).toString().equals("java.lang.Class");
+  }
+
+
+  private boolean isType(TypeMirror type, String typeName) {
+    TypeElement e = elements.getTypeElement(typeName);
+    return type.getKind() == TypeKind.DECLARED &&
+            types.isSameType(types.erasure(type), types.erasure(e.asType()));
+  }
+
+
+  private boolean isSubtype(TypeMirror type, String superType) {
+    TypeElement e = elements.getTypeElement(superType);
+    return type.getKind() == TypeKind.DECLARED &&
+            types.isSubtype(types.erasure(type), types.erasure(e.asType()));
+  }
+
+
+  private TypeMirror boxed(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return types.boxedClass((PrimitiveType) type).asType();
+    }
+    return type;
+  }
+
+
+  /** Gets the source form of a type's boxed erasure, suitable for a class literal. */
+  private String boxedErasure(TypeMirror type) {
+    return types.erasure(boxed(type)).toString();
+  }
+
+
+  /** Tells whether a type can be referred to from the package of the generated class. */
+  private boolean isAccessible(TypeElement type, TypeElement from) {
+    final PackageElement pkg = elements.getPackageOf(from);
+    for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      if (e.getModifiers().contains(Modifier.PRIVATE)) {
+        return false;
+      }
+      if (! e.getModifiers().contains(Modifier.PUBLIC) && ! elements.getPackageOf(e).equals(pkg)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  private static Element outermost(Element e) {
+    while (e.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+      e = e.getEnclosingElement();
+    }
+    return e;
+  }
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint.apt;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Writes the source of a generated blueprint implementation.
+ * <p>
+ *   All type names are written fully qualified, so that names declared by or inherited
+ *   into the blueprint interface cannot shadow them.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+class ImplementationWriter {
+
+  private static final String BASE = "org.codemined.blueprint.PrecompiledBlueprint";
+
+  private final TypeElement iface;
+
+  private final String ifaceName;
+
+  private final String qualifiedName;
+
+  private final String simpleName;
+
+  private final String packageName;
+
+  private final List<Slot> slots;
+
+  private PrintWriter out;
+
+
+  ImplementationWriter(TypeElement iface, String qualifiedName, List<Slot> slots) {
+    this.iface = iface;
+    this.ifaceName = iface.getQualifiedName().toString();
+    this.qualifiedName = qualifiedName;
+    int dot = qualifiedName.lastIndexOf('.');
+    this.packageName = dot < 0 ? "" : qualifiedName.substring(0, dot);
+    this.simpleName = qualifiedName.substring(dot + 1);
+    this.slots = slots;
+  }
+
+
+  void write(Filer filer) throws IOException {
+    try (PrintWriter pw = new PrintWriter(filer.createSourceFile(qualifiedName, iface).openWriter())) {
+      this.out = pw;
+      writeClass();
+    } finally {
+      this.out = null;
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private void writeClass() {
+    if (! packageName.isEmpty()) {
+      out.println("package " + packageName + ";");
+      out.println();
+    }
+    out.println("@javax.annotation.processing.Generated(\"" + BlueprintProcessor.class.getName() + "\")");
+    out.println("@java.lang.SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+    out.println("public final class " + simpleName + " extends " + BASE);
+    out.println("        implements " + ifaceName + " {");
+    out.println();
+
+    out.println("  private static final " + BASE + ".Plan PLAN = new " + BASE + ".Plan(");
+    out.println("          " + ifaceName + ".class,");
+    out.print("          new java.lang.String[] {");
+    for (int i = 0; i < slots.size(); i++) {
+      out.print((i > 0 ? ", " : " ") + literal(slots.get(i).method.getSimpleName().toString()));
+    }
+    out.println(" },");
+    out.print("          new java.lang.String[] {");
+    for (int i = 0; i < slots.size(); i++) {
+      out.print((i > 0 ? ", " : " ") + literal(slots.get(i).annotatedKey));
+    }
+    out.println(" },");
+    /* generic return types are only needed to plan values deserialized without hints */
+    out.print("          new java.lang.reflect.Type[] {");
+    for (int i = 0; i < slots.size(); i++) {
+      Slot slot = slots.get(i);
+      out.print((i > 0 ? ", " : " ") + (slot.kind == Slot.Kind.DESERIALIZED ? slot.genericReturnType : "null"));
+    }
+    out.println(" },");
+    out.print("          new java.lang.String[] {");
+    for (int i = 0; i < slots.size(); i++) {
+      out.print((i > 0 ? ", " : " ") + literal(slots.get(i).defaultValue));
+    }
+    out.println(" },");
+    out.print("          new long[] {");
+    for (int i = 0; i < slots.size(); i++) {
+      out.print((i > 0 ? ", " : " ") + slots.get(i).fileCheckInterval + "L");
+    }
+    out.println(" });");
+    out.println();
+
+    for (Slot slot : slots) {
+      if (slot.primitive != null) {
+        out.println("  private " + slot.primitive + " v" + slot.index + ";");
+        out.println("  private volatile boolean s" + slot.index + ";");
+      } else if (slot.kind != Slot.Kind.HINTED) {
+        out.println("  private volatile java.lang.Object v" + slot.index + ";");
+      }
+    }
+    out.println();
+
+    out.println("  private " + simpleName + "(" + BASE + ".Scope scope) {");
+    out.println("    super(PLAN, scope);");
+    out.println("  }");
+
+    for (Slot slot : slots) {
+      out.println();
+      writeMethod(slot);
+    }
+
+    out.println();
+    out.println("  public static final class Factory implements " + BASE + ".Factory<" + ifaceName + "> {");
+    out.println("    @java.lang.Override");
+    out.println("    public java.lang.Class<" + ifaceName + "> type() {");
+    out.println("      return " + ifaceName + ".class;");
+    out.println("    }");
+    out.println();
+    out.println("    @java.lang.Override");
+    out.println("    public " + ifaceName + " create(" + BASE + ".Scope scope) {");
+    out.println("      return new " + simpleName + "(scope);");
+    out.println("    }");
+    out.println("  }");
+    out.println();
+    out.println("}");
+  }
+
+
+  private void writeMethod(Slot slot) {
+    final int i = slot.index;
+    final TypeMirror returnType = slot.type.getReturnType();
+    final String cast = "(" + (returnType.getKind().isPrimitive() ? slot.returnClass : returnType.toString()) + ") ";
+    final String hint = slot.staticHint == null ? "null" : slot.staticHint + ".class";
+    final String lazy = slot.lazy ? ", true" : "";
+
+    out.println("  @java.lang.Override");
+    out.print("  public ");
+    writeTypeParameters(slot);
+    out.print(returnType + " " + slot.method.getSimpleName() + "(");
+    writeParameters(slot);
+    out.println(") {");
+
+    switch (slot.kind) {
+      case HINTED:
+        out.print("    return " + cast + "invoke(" + i + ", " + slot.returnClass + ".class, " + hint + lazy +
+                ", new java.lang.Object[] {");
+        for (VariableElement p : slot.method.getParameters()) {
+          out.print(" " + p.getSimpleName());
+        }
+        out.println(" });");
+        break;
+
+      case CONVERTED:
+        if (slot.primitive != null) {
+          writePrimitiveMethodBody(slot);
+          break;
+        }
+        out.println("    java.lang.Object v = v" + i + ";");
+        out.println("    if (v == null) {");
+        /* converters registered at runtime take precedence */
+        out.println("      java.lang.String s = value(" + i + ");");
+        out.println("      org.codemined.blueprint.Converter<?> c = converter(" + slot.convertedClass + ".class);");
+        out.println("      if (c != null) {");
+        out.println("        v = convert(" + i + ", c, " + slot.convertedClass + ".class, s);");
+        if (slot.conversion == null) {
+          out.println("      } else {");
+          out.println("        v = s;");
+        } else {
+          out.println("      } else {");
+          out.println("        try {");
+          out.println("          v = " + slot.conversion + ";");
+          out.println("        } catch (java.lang.Exception e) {");
+          out.println("          throw conversionFailed(" + i + ", " + slot.convertedClass + ".class, " +
+                  literal(slot.conversionName) + ", s, e);");
+          out.println("        }");
+        }
+        out.println("      }");
+        out.println("      v = canonical(v);");
+        out.println("      v" + i + " = v;");
+        out.println("    }");
+        out.println("    return " + cast + "v;");
+        break;
+
+      case FILE:
+        out.println("    java.lang.Object v = v" + i + ";");
+        out.println("    if (v == null) {");
+        out.println("      v = fileValue(" + i + ", " + slot.returnClass + ".class, " + hint + ");");
+        out.println("      v" + i + " = v;");
+        out.println("    }");
+        out.println("    return " + cast + "contents(v);");
+        break;
+
+      case DESERIALIZED:
+        out.println("    java.lang.Object v = v" + i + ";");
+        out.println("    if (v == null) {");
+        out.println("      v = deserialize(" + i + ", " + slot.returnClass + ".class, " + hint + lazy + ");");
+        out.println("      v" + i + " = v;");
+        out.println("    }");
+        out.println("    return " + cast + "v;");
+        break;
+    }
+    out.println("  }");
+  }
+
+
+  /**
+   * Writes the body of a method returning a primitive.  The value is kept in a field of the
+   * primitive type, written before the volatile flag telling that it is set.
+   */
+  private void writePrimitiveMethodBody(Slot slot) {
+    final int i = slot.index;
+    out.println("    if (s" + i + ") {");
+    out.println("      return v" + i + ";");
+    out.println("    }");
+    out.println("    java.lang.String s = value(" + i + ");");
+    out.println("    org.codemined.blueprint.Converter<?> c = converter(" + slot.convertedClass + ".class);");
+    out.println("    " + slot.primitive + " v;");
+    out.println("    if (c != null) {");
+    out.println("      v = (" + slot.convertedClass + ") convert(" + i + ", c, " + slot.convertedClass + ".class, s);");
+    out.println("    } else {");
+    out.println("      try {");
+    out.println("        v = " + slot.conversion + ";");
+    out.println("      } catch (java.lang.Exception e) {");
+    out.println("        throw conversionFailed(" + i + ", " + slot.convertedClass + ".class, " +
+            literal(slot.conversionName) + ", s, e);");
+    out.println("      }");
+    out.println("    }");
+    out.println("    v" + i + " = v;");
+    out.println("    s" + i + " = true;");
+    out.println("    return v;");
+  }
+
+
+  private void writeTypeParameters(Slot slot) {
+    final List<? extends TypeParameterElement> typeParameters = slot.method.getTypeParameters();
+    if (typeParameters.isEmpty()) {
+      return;
+    }
+    out.print("<");
+    for (int i = 0; i < typeParameters.size(); i++) {
+      TypeParameterElement tp = typeParameters.get(i);
+      out.print((i > 0 ? ", " : "") + tp.getSimpleName());
+      List<? extends TypeMirror> bounds = tp.getBounds();
+      if (bounds.size() == 1 && bounds.get(0).toString().equals("java.lang.Object")) {
+        continue;
+      }
+      for (int j = 0; j < bounds.size(); j++) {
+        out.print((j > 0 ? " & " : " extends ") + bounds.get(j));
+      }
+    }
+    out.print("> ");
+  }
+
+
+  private void writeParameters(Slot slot) {
+    final List<? extends VariableElement> parameters = slot.method.getParameters();
+    final List<? extends TypeMirror> types = slot.type.getParameterTypes();
+    for (int i = 0; i < parameters.size(); i++) {
+      String type = types.get(i).toString();
+      if (slot.method.isVarArgs() && i == parameters.size() - 1 && types.get(i).getKind() == TypeKind.ARRAY) {
+        type = type.substring(0, type.length() - 2) + "...";
+      }
+      out.print((i > 0 ? ", " : "") + type + " " + parameters.get(i).getSimpleName());
+    }
+  }
+
+
+  private static String literal(String s) {
+    if (s == null) {
+      return "null";
+    }
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20 || c > 0x7e) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+}
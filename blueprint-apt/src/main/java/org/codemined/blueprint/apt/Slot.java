@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint.apt;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ExecutableType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes how the value of a single blueprint method is obtained by generated code.
+ *
+ * @author Zoran Rilak
+ */
+class Slot {
+
+  enum Kind {
+    /** Value is converted from a string by a factory method or constructor. */
+    CONVERTED,
+    /** Value is deserialized at runtime. */
+    DESERIALIZED,
+    /** Method takes runtime type hints. */
+    HINTED,
+    /** Value is read from a file, and checked for changes at most once per check interval. */
+    FILE
+  }
+
+  final int index;
+
+  final ExecutableElement method;
+
+  /** Method type as a member of the interface being implemented. */
+  final ExecutableType type;
+
+  Kind kind;
+
+  /** Configuration key given by the method's {@code Key} annotation, or null. */
+  String annotatedKey;
+
+  /** Value of the method's {@code Default} annotation, or null. */
+  String defaultValue;
+
+  /** The method's {@code FromFile.checkInterval()}, or 0 if it is not read from a file. */
+  long fileCheckInterval;
+
+  /** Expression creating the method's generic return type at runtime. */
+  String genericReturnType;
+
+  /** True if the method is annotated with {@code Lazy}. */
+  boolean lazy;
+
+  /** Boxed erasure of the return type. */
+  String returnClass;
+
+  /** Boxed erasure of the {@code UseType} annotation value, or null. */
+  String staticHint;
+
+  /** Type to convert to, for converted slots. */
+  String convertedClass;
+
+  /** Conversion expression of the string {@code s}, or null if no conversion is needed. */
+  String conversion;
+
+  /** Description of the conversion used in error messages. */
+  String conversionName;
+
+  /**
+   * Primitive return type of converted slots whose value is parsed and kept without
+   * boxing, or null.
+   */
+  String primitive;
+
+  /** Blueprint interfaces referred to by the method. */
+  final List<TypeElement> interfaces = new ArrayList<TypeElement>();
+
+
+  Slot(int index, ExecutableElement method, ExecutableType type) {
+    this.index = index;
+    this.method = method;
+    this.type = type;
+  }
+
+}
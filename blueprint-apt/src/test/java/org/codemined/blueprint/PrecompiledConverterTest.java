@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.blueprint.apt.PrecompiledInterface;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that generated implementations honor converters registered on the builder.
+ *
+ * @author Zoran Rilak
+ */
+@Test
+public class PrecompiledConverterTest {
+
+  @Test
+  public void userConvertersOverrideGeneratedConversions() {
+    TestTree t = new TestTree();
+    t.put("timeout", "ff");
+    PrecompiledInterface cfg = Blueprint.of(PrecompiledInterface.class)
+            .from(t)
+            .withConverter(Integer.class, new Converter<Integer>() {
+              @Override
+              public Integer convert(String value) {
+                return Integer.valueOf(value, 16);
+              }
+            })
+            .withConverter(String.class, new Converter<String>() {
+              @Override
+              public String convert(String value) {
+                return value.toUpperCase();
+              }
+            })
+            .build();
+    assertTrue(cfg instanceof PrecompiledBlueprint);
+    assertEquals(cfg.timeout(), 255);
+    assertEquals(cfg.serviceName(), "DUMMYSERVICE");
+    assertEquals(cfg.tempDir(), new File("/tmp/blueprint"));
+  }
+
+  @Test
+  public void reportsUserConverterFailures() {
+    PrecompiledInterface cfg = Blueprint.of(PrecompiledInterface.class)
+            .from(new TestTree())
+            .withConverter(File.class, new Converter<File>() {
+              @Override
+              public File convert(String value) {
+                throw new IllegalArgumentException(value);
+              }
+            })
+            .build();
+    try {
+      cfg.tempDir();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("config path '/tempDir'"), e.getMessage());
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint.apt;
+
+import org.testng.annotations.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that interfaces violating blueprint conventions fail to compile.
+ *
+ * @author Zoran Rilak
+ */
+@Test
+public class BlueprintProcessorTest {
+
+  @Test
+  public void validInterfaceCompiles()
+          throws IOException {
+    List<String> errors = compile(
+            "@Precompiled interface Cfg {",
+            "  String name();",
+            "  @Key(\"port-number\") int port();",
+            "  <T> T value(Class<T> hint);",
+            "  Nested nested();",
+            "  interface Nested { long size(); }",
+            "}");
+    assertEquals(errors, Collections.emptyList());
+  }
+
+  @Test
+  public void voidReturnType()
+          throws IOException {
+    assertError(compile("@Precompiled interface Cfg { void name(); }"), "void");
+  }
+
+  @Test
+  public void multiDimensionalArray()
+          throws IOException {
+    assertError(compile("@Precompiled interface Cfg { int[][] matrix(); }"), "multi-dimensional");
+  }
+
+  @Test
+  public void badArguments()
+          throws IOException {
+    assertError(compile("@Precompiled interface Cfg { String name(String s); }"), "type hint argument");
+    assertError(compile("@Precompiled interface Cfg { String name(Class<?> a, Class<?> b); }"), "too many arguments");
+  }
+
+  @Test
+  public void collectionWithoutHint()
+          throws IOException {
+    assertError(compile("@Precompiled interface Cfg { java.util.List<?> names(); }"),
+            "Collections require a non-null type hint");
+    assertError(compile("@Precompiled interface Cfg { java.util.Map<String, ?> names(); }"),
+            "Maps require a non-null type hint");
+    assertError(compile("@Precompiled interface Cfg { <T> java.util.List<T> names(); }"),
+            "Collections require a non-null type hint");
+    assertError(compile("@Precompiled interface Cfg { java.util.Optional<?> name(); }"),
+            "Optionals require a non-null type hint");
+  }
+
+  @Test
+  public void elementTypesFromTypeArguments()
+          throws IOException {
+    assertEquals(compile(
+            "@Precompiled interface Cfg {",
+            "  java.util.List<String> names();",
+            "  java.util.Map<String, java.util.List<Nested>> nested();",
+            "  java.util.Optional<Nested> optional();",
+            "  @Default(\"80\") int port();",
+            "  interface Nested { long size(); }",
+            "}"), Collections.emptyList());
+  }
+
+  @Test
+  public void noDeserializationMethodIsLeftToRuntimeConverters()
+          throws IOException {
+    assertEquals(compile("@Precompiled interface Cfg { Object value(); }"), Collections.emptyList());
+  }
+
+  @Test
+  public void fileValues()
+          throws IOException {
+    assertEquals(compile("@Precompiled interface Cfg { @FromFile java.util.List<String> hosts(); }"),
+            Collections.emptyList());
+    assertError(compile("@Precompiled interface Cfg { @FromFile Integer port(); }"), "files can only be read");
+    assertError(compile("@Precompiled interface Cfg { @FromFile java.util.List<String> hosts(Class<?> c); }"),
+            "cannot take type hints");
+  }
+
+  @Test
+  public void errorsInNestedInterfaces()
+          throws IOException {
+    assertError(compile("@Precompiled interface Cfg { Nested nested(); interface Nested { void x(); } }"), "void");
+  }
+
+  @Test
+  public void notAnInterface()
+          throws IOException {
+    assertError(compile("@Precompiled class Cfg { }"), "only be applied to interfaces");
+  }
+
+  /* Privates ------------------------------------------------------- */
+
+  private static void assertError(List<String> errors, String expected) {
+    for (String error : errors) {
+      if (error.contains(expected)) {
+        return;
+      }
+    }
+    fail("expected an error containing '" + expected + "', got " + errors);
+  }
+
+  private static List<String> compile(String... lines)
+          throws IOException {
+    final StringBuilder source = new StringBuilder("package test;\n")
+            .append("import org.codemined.blueprint.*;\n");
+    for (String line : lines) {
+      source.append(line).append('\n');
+    }
+    final JavaFileObject file = new SimpleJavaFileObject(
+            URI.create("string:///test/Cfg.java"), JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return source;
+      }
+    };
+
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    final File output = Files.createTempDirectory("blueprint-apt").toFile();
+    try (StandardJavaFileManager fm = compiler.getStandardFileManager(diagnostics, null, null)) {
+      fm.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(output));
+      fm.setLocation(StandardLocation.SOURCE_OUTPUT, Arrays.asList(output));
+      List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-proc:only");
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fm, diagnostics, options, null, Arrays.asList(file));
+      task.setProcessors(Arrays.asList(new BlueprintProcessor()));
+      task.call();
+    }
+
+    final List<String> errors = new ArrayList<String>();
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+      if (d.getKind() == Diagnostic.Kind.ERROR) {
+        errors.add(d.getMessage(null));
+      }
+    }
+    return errors;
+  }
+
+}
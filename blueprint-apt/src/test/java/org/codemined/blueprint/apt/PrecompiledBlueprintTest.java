@@ -0,0 +1,208 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint.apt;
+
+import org.codemined.blueprint.A;
+import org.codemined.blueprint.A1;
+import org.codemined.blueprint.A2;
+import org.codemined.blueprint.Blueprint;
+import org.codemined.blueprint.BlueprintException;
+import org.codemined.blueprint.PrecompiledBlueprint;
+import org.codemined.blueprint.TestInterface;
+import org.codemined.blueprint.TestTree;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class PrecompiledBlueprintTest {
+
+  private PrecompiledInterface cfg;
+
+  @BeforeMethod
+  public void setUp() {
+    cfg = Blueprint.create(PrecompiledInterface.class, new TestTree());
+  }
+
+  @Test
+  public void usesGeneratedClasses() {
+    assertEquals(cfg.getClass().getName(), "org.codemined.blueprint.apt.PrecompiledInterface_Blueprint");
+    assertTrue(cfg instanceof PrecompiledBlueprint);
+    assertEquals(cfg.db().getClass().getName(), "org.codemined.blueprint.apt.PrecompiledInterface__DB_Blueprint");
+    assertTrue(cfg.db().production() instanceof PrecompiledBlueprint);
+    assertTrue(cfg.protocols().get("dns") instanceof PrecompiledBlueprint);
+  }
+
+  @Test
+  public void simpleTypes()
+          throws Exception {
+    assertEquals(cfg.serviceName(), "DummyService");
+    assertEquals(cfg.isActive(), true);
+    assertEquals(cfg.timeout(), 15);
+    assertEquals(cfg.tempDir(), new File("/tmp/blueprint"));
+    assertEquals(cfg.deployUrl(), new URL("http://www.codemined.org/blueprint"));
+    assertEquals(cfg.stateAsEnum(), TestInterface._State.TRUE);
+    assertEquals(cfg.key1(), true);
+    assertEquals(cfg.keyTwo(), true);
+  }
+
+  @Test
+  public void keepsPrimitivesUnboxed()
+          throws Exception {
+    assertEquals(cfg.timeout(), 15);
+    assertEquals(cfg.timeout(), 15);
+    assertEquals(cfg.getClass().getDeclaredField("v2").getType(), int.class);
+    assertEquals(cfg.getClass().getDeclaredField("v1").getType(), boolean.class);
+    TestTree t = new TestTree();
+    t.put("timeout", "soon");
+    try {
+      Blueprint.create(PrecompiledInterface.class, t).timeout();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("using method valueOf(String)"), e.getMessage());
+    }
+  }
+
+  @Test
+  public void convertsLikeTheRuntime() {
+    assertEquals(cfg.boxedTimeout(), Integer.valueOf(15));
+    assertEquals(cfg.servicePattern().pattern(), "DummyService");
+    TestTree t = new TestTree();
+    t.put("serviceName", "(");
+    try {
+      Blueprint.create(PrecompiledInterface.class, t).servicePattern();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("using method compile(String)"), e.getMessage());
+    }
+  }
+
+  @Test
+  public void collectionsAndMaps() {
+    assertEquals(cfg.backupHours(), Arrays.asList(3, 8, 18));
+    assertEquals(cfg.backupHours(String.class), Arrays.asList("3", "8", "18"));
+    assertEquals(cfg.activeBackupDays(), new boolean[] { true, false, false, true, false, true, true });
+    assertEquals(cfg.activeBackupDays(Boolean.class).get(0), Boolean.TRUE);
+    Map<String, String> http = new HashMap<String, String>();
+    http.put("host", "localhost");
+    http.put("port", "65536");
+    http.put("ssl", "true");
+    assertEquals(cfg.http(), http);
+    assertEquals(cfg.http(String.class).size(), 3);
+    assertEquals(cfg.protocols().get("ftp").port(), 21);
+  }
+
+  @Test
+  public void lazyViews() {
+    Map<String, PrecompiledInterface._Protocol> protocols = cfg.lazyProtocols();
+    assertEquals(protocols.getClass().getEnclosingClass().getSimpleName(), "LazyViews");
+    assertEquals(protocols.keySet(), cfg.protocols().keySet());
+    assertEquals(protocols.get("ftp").port(), 21);
+    assertEquals(cfg.lazyBackupHours(Integer.class), Arrays.asList(3, 8, 18));
+    assertEquals(cfg.lazyBackupHours(Integer.class).getClass().getEnclosingClass().getSimpleName(), "LazyViews");
+  }
+
+  @Test
+  public void elementTypesFromTypeArguments() {
+    assertEquals(cfg.protocolsByName().get("dns").port(), 53);
+    assertTrue(cfg.protocolsByName().get("dns") instanceof PrecompiledBlueprint);
+    assertEquals(cfg.backupHourList(), Arrays.asList(3, 8, 18));
+  }
+
+  @Test
+  public void defaultsAndOptionals() {
+    assertEquals(cfg.adminPort(), 8080);
+    assertEquals(cfg.motd(), "Welcome");
+    assertEquals(cfg.banner(), Optional.empty());
+    assertSame(cfg.banner(), cfg.banner());
+    assertEquals(cfg.optionalTimeout(), OptionalInt.of(15));
+  }
+
+  @Test
+  public void fileValues()
+          throws IOException {
+    final Path hosts = Files.createTempFile("blueprint", "hosts");
+    try {
+      Files.write(hosts, "localhost\n".getBytes(StandardCharsets.UTF_8));
+      final TestTree t = new TestTree();
+      t.put("hostsFile", hosts.toString());
+      final PrecompiledInterface cfg = Blueprint.create(PrecompiledInterface.class, t);
+      assertEquals(cfg.hostsFile(), Arrays.asList("localhost"));
+      assertSame(cfg.hostsFile(), cfg.hostsFile());
+
+      Files.write(hosts, "localhost\nexample.com\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals(cfg.hostsFile(), Arrays.asList("localhost", "example.com"));
+    } finally {
+      Files.delete(hosts);
+    }
+  }
+
+  @Test
+  public void nestedInterfaces() {
+    assertEquals(cfg.db().impl(), java.util.Random.class);
+    assertEquals(cfg.db().development().name(), "devel");
+    assertEquals(cfg.db().production().isTemporary(), false);
+  }
+
+  @Test
+  public void typeHints() {
+    assertEquals(cfg.state(String.class), "TRUE");
+    assertEquals(cfg.state(Boolean.class), Boolean.TRUE);
+    assertEquals(cfg.state(TestInterface._State.class), TestInterface._State.TRUE);
+    assertEquals(cfg.typeHintDemo1().getClass(), A.class);
+    assertEquals(cfg.typeHintDemo1(A1.class).toString(), "1:A1:A");
+    assertEquals(cfg.typeHintDemo2().getClass(), A1.class);
+    assertEquals(cfg.typeHintDemo2(A2.class).toString(), "2:A2:A1:A");
+    assertEquals(cfg.typeHintDemo3().toString(), "2:A1:A");
+  }
+
+  @Test
+  public void cachesValues() {
+    assertSame(cfg.db(), cfg.db());
+    assertSame(cfg.backupHours(), cfg.backupHours());
+    assertSame(cfg.state(Boolean.class), cfg.state(Boolean.class));
+  }
+
+  @Test
+  public void objectMethods() {
+    assertEquals(cfg.toString(), "[" + PrecompiledInterface.class.getName() + " blueprint]");
+    assertEquals(cfg, cfg);
+    assertNotEquals(cfg, Blueprint.create(PrecompiledInterface.class, new TestTree()));
+  }
+
+  @Test(expectedExceptions = BlueprintException.class)
+  public void missingKey() {
+    Blueprint.create(PrecompiledInterface.class, new TestTree().put("x", null)).serviceName();
+  }
+
+}
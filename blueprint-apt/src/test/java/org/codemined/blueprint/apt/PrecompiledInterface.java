@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint.apt;
+
+import org.codemined.blueprint.A;
+import org.codemined.blueprint.A1;
+import org.codemined.blueprint.Default;
+import org.codemined.blueprint.FromFile;
+import org.codemined.blueprint.Key;
+import org.codemined.blueprint.Lazy;
+import org.codemined.blueprint.Precompiled;
+import org.codemined.blueprint.TestInterface;
+import org.codemined.blueprint.UseType;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.regex.Pattern;
+
+/**
+ * Mirrors {@link TestInterface}, with the implementation generated at compile time.
+ *
+ * @author Zoran Rilak
+ */
+@Precompiled
+public interface PrecompiledInterface {
+
+  String serviceName();
+
+  boolean isActive();
+
+  int timeout();
+
+  @Key("timeout")
+  Integer boxedTimeout();
+
+  @Key("serviceName")
+  Pattern servicePattern();
+
+  File tempDir();
+
+  URL deployUrl();
+
+  <T> List<T> backupHours(Class<T> elementType);
+
+  @UseType(Integer.class)
+  List<Integer> backupHours();
+
+  <T> ArrayList<T> activeBackupDays(Class<T> elementType);
+
+  boolean[] activeBackupDays();
+
+  <V> Map<String, V> http(Class<V> valueType);
+
+  @UseType(String.class)
+  Map<String, String> http();
+
+  _DB db();
+
+  interface _DB {
+
+    <T> Class<T> impl();
+
+    <T> T impl(Class<?> typeHint);
+
+    _Database development();
+
+    _Database production();
+
+    interface _Database {
+
+      String name();
+
+      boolean isTemporary();
+    }
+  }
+
+  @UseType(_Protocol.class)
+  Map<String, _Protocol> protocols();
+
+  @Lazy
+  @Key("protocols")
+  @UseType(_Protocol.class)
+  Map<String, _Protocol> lazyProtocols();
+
+  @Lazy
+  @Key("backupHours")
+  <T> List<T> lazyBackupHours(Class<T> elementType);
+
+  @FromFile(checkInterval = 0)
+  List<String> hostsFile();
+
+  @Key("protocols")
+  Map<String, _Protocol> protocolsByName();
+
+  @Key("backupHours")
+  List<Integer> backupHourList();
+
+  @Default("8080")
+  int adminPort();
+
+  @Default("Welcome")
+  String motd();
+
+  Optional<String> banner();
+
+  @Key("timeout")
+  OptionalInt optionalTimeout();
+
+  interface _Protocol {
+
+    String name();
+
+    int port();
+  }
+
+  <T> T state(Class<T> typeHint);
+
+  @Key("state")
+  TestInterface._State stateAsEnum();
+
+  A typeHintDemo1(Class<? extends A>... typeHint);
+
+  @UseType(A1.class)
+  A typeHintDemo2(Class<? extends A>... typeHint);
+
+  @Key("typeHintDemo2")
+  @UseType(A1.class)
+  A typeHintDemo3();
+
+  boolean key1();
+
+  @Key("key2")
+  boolean keyTwo();
+
+  String toString();
+
+}
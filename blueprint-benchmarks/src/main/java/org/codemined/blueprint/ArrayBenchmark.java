@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Array;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialization of an int array.
+ * <ul>
+ *   <li>{@code boxed}: the way arrays of primitives used to be built, converting each
+ *       element to an Integer and storing it through {@link Array#set};</li>
+ *   <li>{@code nodes}: the array builder reading a node per element;</li>
+ *   <li>{@code values}: the array builder reading all values from the node at once.</li>
+ * </ul>
+ *
+ * @author Zoran Rilak
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArrayBenchmark {
+
+  @Param({ "100", "10000" })
+  private int size;
+
+  private TestNode nodes;
+
+  private TestNode values;
+
+  private Deserializer deserializer;
+
+  private Converter<Integer> converter;
+
+  private Path<String> path;
+
+
+  @Setup
+  public void setUp() {
+    final String[] elements = new String[size];
+    for (int i = 0; i < size; i++) {
+      elements[i] = Integer.toString(i * 31);
+    }
+    nodes = new TestNode();
+    nodes.setList((Object[]) elements);
+    values = new TestNode() {
+      @Override
+      public String[] getArrayValues() {
+        return elements.clone();
+      }
+    };
+    deserializer = new Deserializer(getClass().getClassLoader(), KeyResolver.IDENTITY);
+    converter = Converters.forType(Integer.class);
+    path = new Path<String>("table");
+  }
+
+
+  @Benchmark
+  public Object boxed()
+          throws Exception {
+    List<TestNode> elements = nodes.getArrayNodes();
+    Object array = Array.newInstance(int.class, elements.size());
+    for (int i = 0; i < elements.size(); i++) {
+      Array.set(array, i, converter.convert(elements.get(i).getValue()));
+    }
+    return array;
+  }
+
+  @Benchmark
+  public Object nodes() {
+    return deserializer.deserialize(int[].class, null, "table", nodes, path);
+  }
+
+  @Benchmark
+  public Object values() {
+    return deserializer.deserialize(int[].class, null, "table", values, path);
+  }
+
+}
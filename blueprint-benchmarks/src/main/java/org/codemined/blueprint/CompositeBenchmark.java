@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up a key set only by the last of several layers, and taking the key set,
+ * on a {@link CompositeTree}, on the same tree routed, and on its merged tree, by number of layers.  Each layer
+ * has 50 keys of its own.
+ *
+ * @author Zoran Rilak
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompositeBenchmark {
+
+  @Param({ "1", "4", "12" })
+  private int layers;
+
+  private CompositeTree<?> composite;
+
+  private CompositeTree<?> routed;
+
+  private FrozenTree merged;
+
+  private String key;
+
+
+  @Setup
+  public void setUp() {
+    composite = new CompositeTree<>();
+    for (int l = 0; l < layers; l++) {
+      final TestNode layer = new TestNode();
+      for (int i = 0; i < 50; i++) {
+        layer.put("layer" + l + "-key" + i, "value" + i);
+      }
+      composite.add(layer);
+    }
+    merged = composite.merge();
+    routed = new CompositeTree<>();
+    for (Object layer : composite.getArrayNodes()) {
+      routed.add((ConfigNode<?>) layer);
+    }
+    routed.route();
+    key = "layer" + (layers - 1) + "-key7";
+  }
+
+
+  @Benchmark
+  public String compositeLookup() {
+    return composite.getChildNode(key).getValue();
+  }
+
+  @Benchmark
+  public String routedLookup() {
+    return routed.getChildNode(key).getValue();
+  }
+
+  @Benchmark
+  public String mergedLookup() {
+    return merged.getChildNode(key).getValue();
+  }
+
+  @Benchmark
+  public int compositeKeySet() {
+    return composite.keySet().size();
+  }
+
+  @Benchmark
+  public int mergedKeySet() {
+    return merged.keySet().size();
+  }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of cached values under contention, at 1, 8, 64 and 256 threads.
+ * <ul>
+ *   <li>{@code synchronizedMap}: the stub cache as it used to be, a synchronized HashMap;</li>
+ *   <li>{@code concurrentMap}: the lock-free map now kept by stubs in each type-hinted method's
+ *       slot, keyed by the hint class without allocating;</li>
+ *   <li>{@code stub}: a type-hinted read through a Proxy, going all the way through the stub;</li>
+ *   <li>{@code slot}: a read of a method without arguments through a Proxy, served from
+ *       the stub's slot array.</li>
+ * </ul>
+ *
+ * @author Zoran Rilak
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+  private TestInterface cfg;
+
+  private BlueprintMethod hinted;
+
+  private Object[] args;
+
+  private Map<MethodInvocation, Object> synchronizedCache;
+
+  private Map<Object, Object> concurrentCache;
+
+
+  @Setup
+  public void setUp()
+          throws NoSuchMethodException {
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    cfg = Blueprint.create(TestInterface.class, new TestTree());
+    System.clearProperty(Stub.USE_PROXIES_PROPERTY);
+
+    hinted = MethodTable.forInterface(TestInterface.class)
+            .get(TestInterface.class.getMethod("state", Class.class));
+    args = new Object[] { String.class };
+    Object value = cfg.state(String.class);
+
+    synchronizedCache = Collections.synchronizedMap(new HashMap<MethodInvocation, Object>());
+    synchronizedCache.put(new MethodInvocation(hinted, args), value);
+    concurrentCache = new ConcurrentHashMap<Object, Object>();
+    concurrentCache.put(MethodInvocation.hintOf(args), value);
+  }
+
+
+  @Benchmark @Threads(1)
+  public Object synchronizedMap_001() {
+    return synchronizedCache.get(new MethodInvocation(hinted, args));
+  }
+
+  @Benchmark @Threads(8)
+  public Object synchronizedMap_008() {
+    return synchronizedCache.get(new MethodInvocation(hinted, args));
+  }
+
+  @Benchmark @Threads(64)
+  public Object synchronizedMap_064() {
+    return synchronizedCache.get(new MethodInvocation(hinted, args));
+  }
+
+  @Benchmark @Threads(256)
+  public Object synchronizedMap_256() {
+    return synchronizedCache.get(new MethodInvocation(hinted, args));
+  }
+
+
+  @Benchmark @Threads(1)
+  public Object concurrentMap_001() {
+    return concurrentCache.get(MethodInvocation.hintOf(args));
+  }
+
+  @Benchmark @Threads(8)
+  public Object concurrentMap_008() {
+    return concurrentCache.get(MethodInvocation.hintOf(args));
+  }
+
+  @Benchmark @Threads(64)
+  public Object concurrentMap_064() {
+    return concurrentCache.get(MethodInvocation.hintOf(args));
+  }
+
+  @Benchmark @Threads(256)
+  public Object concurrentMap_256() {
+    return concurrentCache.get(MethodInvocation.hintOf(args));
+  }
+
+
+  @Benchmark @Threads(1)
+  public Object stub_001() {
+    return cfg.state(String.class);
+  }
+
+  @Benchmark @Threads(8)
+  public Object stub_008() {
+    return cfg.state(String.class);
+  }
+
+  @Benchmark @Threads(64)
+  public Object stub_064() {
+    return cfg.state(String.class);
+  }
+
+  @Benchmark @Threads(256)
+  public Object stub_256() {
+    return cfg.state(String.class);
+  }
+
+
+  @Benchmark @Threads(1)
+  public int slot_001() {
+    return cfg.timeout();
+  }
+
+  @Benchmark @Threads(8)
+  public int slot_008() {
+    return cfg.timeout();
+  }
+
+  @Benchmark @Threads(64)
+  public int slot_064() {
+    return cfg.timeout();
+  }
+
+  @Benchmark @Threads(256)
+  public int slot_256() {
+    return cfg.timeout();
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.ref.Reference;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Heap retained by the values of a synthetic configuration, read with and without
+ * {@link Blueprint.Builder#canonicalize()}.  The configuration describes a fleet of hosts,
+ * five keys each, whose values repeat a few regions, zones, tiers, ports and endpoints;
+ * every value is a distinct string, as parsers that copy or interpolate values produce
+ * them.  Run with
+ * <pre>
+ *   java -cp blueprint-benchmarks/target/benchmarks.jar org.codemined.blueprint.FootprintReport [keys]
+ * </pre>
+ * The number of keys defaults to one million.
+ *
+ * @author Zoran Rilak
+ */
+public class FootprintReport {
+
+  public interface Fleet {
+    @UseType(Host.class)
+    Map<String, Host> hosts();
+  }
+
+  public interface Host {
+    String region();
+    String zone();
+    String tier();
+    Integer port();
+    URI endpoint();
+  }
+
+  /** Returns a copy of every value, as if it was parsed anew on every read. */
+  private static class CopyingNode extends TestNode {
+    @Override
+    public String getValue() {
+      final String value = super.getValue();
+      return value == null ? null : new String(value);
+    }
+
+    @Override
+    public TestNode put(String key, String value) {
+      final CopyingNode node = new CopyingNode();
+      node.setValue(value);
+      subTrees.put(key, node);
+      return node;
+    }
+  }
+
+
+  public static void main(String[] args) throws InterruptedException {
+    final int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    final TestNode tree = tree(keys / 5);
+
+    final long plain = retainedBy(Blueprint.of(Fleet.class).from(tree));
+    final long canonical = retainedBy(Blueprint.of(Fleet.class).from(tree).canonicalize());
+
+    System.out.printf("keys:            %,d%n", keys);
+    System.out.printf("plain:           %,d bytes%n", plain);
+    System.out.printf("canonicalized:   %,d bytes%n", canonical);
+    System.out.printf("saved:           %,d bytes (%.1f%%)%n", plain - canonical, 100.0 * (plain - canonical) / plain);
+    System.out.printf("canonical values: %,d%n", Interner.SHARED.size());
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * Builds a blueprint, reads every value, and measures the heap the blueprint retains.
+   */
+  private static long retainedBy(Blueprint.Builder<Fleet> builder) throws InterruptedException {
+    final long before = usedHeap();
+    final Fleet fleet = builder.build();
+    for (Host host : fleet.hosts().values()) {
+      host.region();
+      host.zone();
+      host.tier();
+      host.port();
+      host.endpoint();
+    }
+    final long after = usedHeap();
+    /* keep the blueprint reachable until measured */
+    Reference.reachabilityFence(fleet);
+    return after - before;
+  }
+
+
+  private static long usedHeap() throws InterruptedException {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+
+  private static TestNode tree(int hosts) {
+    final TestNode t = new CopyingNode();
+    final TestNode fleet = t.put("hosts", null);
+    for (int i = 0; i < hosts; i++) {
+      final TestNode host = fleet.put("host-" + i, null);
+      host.put("region", "eu-west-" + (i % 8));
+      host.put("zone", "eu-west-" + (i % 8) + (char) ('a' + i % 3));
+      host.put("tier", i % 10 == 0 ? "canary" : "production");
+      host.put("port", Integer.toString(8000 + i % 20));
+      host.put("endpoint", "https://api-" + (i % 50) + ".example.org/v1");
+    }
+    return t;
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to the first value of a map of nested blueprints, deserialized eagerly and
+ * as a lazy view, by entry count.
+ *
+ * @author Zoran Rilak
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LazyBenchmark {
+
+  public interface Route {
+    String target();
+    int weight();
+  }
+
+  @Param({ "1000", "10000", "100000" })
+  private int size;
+
+  private TestNode node;
+
+  private Path<String> path;
+
+  private Deserializer deserializer;
+
+
+  @Setup
+  public void setUp() {
+    node = new TestNode();
+    for (int i = 0; i < size; i++) {
+      TestNode route = node.put("r" + i, null);
+      route.put("target", "https://example.org/routes/" + i);
+      route.put("weight", Integer.toString(i % 100));
+    }
+    path = new Path<String>("routes");
+    deserializer = new Deserializer(getClass().getClassLoader(), KeyResolver.IDENTITY);
+  }
+
+
+  @Benchmark
+  public int eager() {
+    final Map<String, Route> routes = deserializer.deserialize(Map.class, Route.class, "routes", node, path);
+    return routes.get("r7").weight();
+  }
+
+  @Benchmark
+  public int lazy() {
+    final Map<String, Route> routes = deserializer.deserialize(Map.class, Route.class, "routes", node, path, true);
+    return routes.get("r7").weight();
+  }
+
+}
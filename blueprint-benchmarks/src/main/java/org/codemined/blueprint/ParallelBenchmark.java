@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential and parallel deserialization of a list of URIs, by element count.
+ * Run on a machine with several cores; the parallel variant uses the common pool
+ * with a threshold of 1000 elements.
+ *
+ * @author Zoran Rilak
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelBenchmark {
+
+  @Param({ "1000", "10000", "100000" })
+  private int size;
+
+  private TestNode node;
+
+  private Path<String> path;
+
+  private Deserializer sequential;
+
+  private Deserializer parallel;
+
+
+  @Setup
+  public void setUp() {
+    final Object[] elements = new Object[size];
+    for (int i = 0; i < size; i++) {
+      elements[i] = "https://example.org/routes/" + i + "?shard=" + (i % 64);
+    }
+    node = new TestNode();
+    node.setList(elements);
+    path = new Path<String>("routes");
+
+    final ClassLoader cl = getClass().getClassLoader();
+    sequential = new Deserializer(cl, KeyResolver.IDENTITY);
+    parallel = new Deserializer(cl, KeyResolver.IDENTITY, new Deserializer.Settings(
+            Collections.<Class<?>, Converter<?>>emptyMap(), ForkJoinPool.commonPool(), 1000, false, null));
+  }
+
+
+  @Benchmark
+  public List<?> sequential() {
+    return sequential.deserialize(List.class, URI.class, "routes", node, path);
+  }
+
+  @Benchmark
+  public List<?> parallel() {
+    return parallel.deserialize(List.class, URI.class, "routes", node, path);
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up a key by its full path, key by key and through the path index of a
+ * {@link FrozenTree}, by depth of the key.  Each level has 16 keys.
+ *
+ * @author Zoran Rilak
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathLookupBenchmark {
+
+  @Param({ "2", "4" })
+  private int depth;
+
+  private FrozenTree walked;
+
+  private FrozenTree indexed;
+
+  private Path<String> path;
+
+
+  @Setup
+  public void setUp() {
+    final TestNode root = new TestNode();
+    fill(root, depth);
+    walked = FrozenTree.freeze(root);
+    indexed = walked.indexed();
+    path = new Path<String>();
+    for (int i = 0; i < depth; i++) {
+      path = path.to("key-" + (7 + i));
+    }
+  }
+
+
+  @Benchmark
+  public String walk() {
+    return walked.getByPath(path).getValue();
+  }
+
+  @Benchmark
+  public String index() {
+    return indexed.getByPath(path).getValue();
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static void fill(TestNode node, int depth) {
+    for (int i = 0; i < 16; i++) {
+      final TestNode child = node.put("key-" + i, "value-" + i);
+      if (depth > 1) {
+        fill(child, depth - 1);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.PatternSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Finding the route rule matching a request path, by looping over compiled patterns
+ * and with a {@link PatternSet}, by rule count.  The path matches none of the rules.
+ *
+ * @author Zoran Rilak
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatternSetBenchmark {
+
+  @Param({ "10", "100" })
+  private int rules;
+
+  private Pattern[] patterns;
+
+  private PatternSet patternSet;
+
+  private final String path = "/service/orders/2024/10/items?page=3";
+
+
+  @Setup
+  public void setUp() {
+    final String[] regexes = new String[rules];
+    for (int i = 0; i < rules; i++) {
+      regexes[i] = "/service/route" + i + "/v\\d+/.*";
+    }
+    patterns = new Pattern[rules];
+    for (int i = 0; i < rules; i++) {
+      patterns[i] = Pattern.compile(regexes[i]);
+    }
+    patternSet = PatternSet.compile(regexes);
+  }
+
+
+  @Benchmark
+  public int loop() {
+    for (int i = 0; i < patterns.length; i++) {
+      if (patterns[i].matcher(path).matches()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Benchmark
+  public int patternSet() {
+    return patternSet.match(path);
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Parsers;
+import org.codemined.util.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and reading of primitive values.
+ * <ul>
+ *   <li>{@code reflective}: conversion as the deserializer used to do it, probing the type
+ *       for static factory methods on every value and calling Integer.valueOf(String)
+ *       through reflection;</li>
+ *   <li>{@code handle}: Integer.valueOf(String) called through a resolved method handle,
+ *       as for other types with a static factory method;</li>
+ *   <li>{@code parser}: the primitive parser now used for ints;</li>
+ *   <li>{@code deserializer}: conversion of a node through the deserializer;</li>
+ *   <li>{@code proxyRead}, {@code generatedRead}, {@code snapshotRead}: reads of a cached
+ *       int through a Proxy, which unboxes it, and through a generated class and a
+ *       snapshot, which keep it in an int field.</li>
+ * </ul>
+ *
+ * @author Zoran Rilak
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrimitiveBenchmark {
+
+  private String value;
+
+  private ConfigNode<?> node;
+
+  private Path<String> path;
+
+  private Deserializer deserializer;
+
+  private Converter<Object> handle;
+
+  private TestInterface proxied;
+
+  private TestInterface generated;
+
+  private TestInterface snapshot;
+
+
+  @Setup
+  public void setUp()
+          throws Exception {
+    TestTree tree = new TestTree();
+    value = "1500";
+    node = tree.getChildNode("timeout");
+    path = new Path<String>("timeout");
+    deserializer = new Deserializer(getClass().getClassLoader(), KeyResolver.IDENTITY);
+    handle = new Converters.HandleConverter(MethodHandles.publicLookup().findStatic(Integer.class, "valueOf",
+            MethodType.methodType(Integer.class, String.class)), "method valueOf(String)");
+
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    proxied = Blueprint.create(TestInterface.class, tree);
+    System.clearProperty(Stub.USE_PROXIES_PROPERTY);
+    generated = Blueprint.create(TestInterface.class, tree);
+    snapshot = Blueprint.snapshot(generated);
+    proxied.timeout();
+    generated.timeout();
+  }
+
+
+  @Benchmark
+  public Object reflective()
+          throws Exception {
+    for (String name : ConversionRules.FACTORY_METHODS) {
+      try {
+        Method m = Integer.class.getMethod(name, String.class);
+        return m.invoke(null, value);
+      } catch (NoSuchMethodException e) {
+        // try the next one
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  @Benchmark
+  public Object handle()
+          throws Exception {
+    return handle.convert(value);
+  }
+
+  @Benchmark
+  public int parser() {
+    return Parsers.parseInt(value);
+  }
+
+  @Benchmark
+  public Object deserializer() {
+    return deserializer.deserialize(Integer.class, null, "timeout", node, path);
+  }
+
+
+  @Benchmark
+  public int proxyRead() {
+    return proxied.timeout();
+  }
+
+  @Benchmark
+  public int generatedRead() {
+    return generated.timeout();
+  }
+
+  @Benchmark
+  public int snapshotRead() {
+    return snapshot.timeout();
+  }
+
+}
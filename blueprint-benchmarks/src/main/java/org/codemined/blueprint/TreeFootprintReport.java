@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.InMemoryTree;
+import org.codemined.util.Tree;
+
+/**
+ * Heap retained by the configuration tree of {@link FootprintReport}, held in an
+ * {@link InMemoryTree} and in a {@link FrozenTree} frozen from it.  Keys and values are
+ * distinct strings, as a parser would produce them.  Run with
+ * <pre>
+ *   java -cp blueprint-benchmarks/target/benchmarks.jar org.codemined.blueprint.TreeFootprintReport [keys]
+ * </pre>
+ * The number of keys defaults to one million.
+ *
+ * @author Zoran Rilak
+ */
+public class TreeFootprintReport {
+
+  private static Object retained;
+
+
+  public static void main(String[] args) throws InterruptedException {
+    final int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+    final long empty = usedHeap();
+    retained = tree(keys / 5);
+    final long inMemory = usedHeap() - empty;
+    retained = FrozenTree.freeze(tree(keys / 5));
+    final long frozen = usedHeap() - empty;
+
+    System.out.printf("keys:            %,d%n", keys);
+    System.out.printf("InMemoryTree:    %,d bytes%n", inMemory);
+    System.out.printf("FrozenTree:      %,d bytes%n", frozen);
+    System.out.printf("saved:           %,d bytes (%.1f%%)%n", inMemory - frozen, 100.0 * (inMemory - frozen) / inMemory);
+    System.out.printf("bytes per key:   %.1f -> %.1f%n", (double) inMemory / keys, (double) frozen / keys);
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static long usedHeap() throws InterruptedException {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+
+  private static Tree<String, String> tree(int hosts) {
+    final Tree<String, String> t = new InMemoryTree<String, String>();
+    final Tree<String, String> fleet = t.put("hosts", null);
+    for (int i = 0; i < hosts; i++) {
+      final Tree<String, String> host = fleet.put("host-" + i, null);
+      host.put(new String("region"), "eu-west-" + (i % 8));
+      host.put(new String("zone"), "eu-west-" + (i % 8) + (char) ('a' + i % 3));
+      host.put(new String("tier"), new String(i % 10 == 0 ? "canary" : "production"));
+      host.put(new String("port"), Integer.toString(8000 + i % 20));
+      host.put(new String("endpoint"), "https://api-" + (i % 50) + ".example.org/v1");
+    }
+    return t;
+  }
+
+}
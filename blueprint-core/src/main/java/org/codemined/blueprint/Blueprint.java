@@ -22,9 +22,13 @@ import org.codemined.util.Strings;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Creates a blueprint object from an interface and a configuration source.
@@ -40,13 +44,22 @@ public class Blueprint {
    */
   public static class Builder<T> {
     private Class<T> iface;
-    private CompositeTree compositeTree;
+    private CompositeTree<?> compositeTree;
     private KeyResolver keyResolver;
+    private boolean eager;
+    private final Map<Class<?>, Converter<?>> converters = new HashMap<Class<?>, Converter<?>>();
+    private ForkJoinPool pool;
+    private int parallelThreshold;
+    private boolean lazy;
+    private boolean canonicalize;
+    private boolean merged;
 
     Builder(Class<T> iface) {
-      checkInterface(iface);
+      if (PrecompiledBlueprint.factoryFor(iface) == null) {
+        checkInterface(iface);
+      }
       this.iface = iface;
-      this.compositeTree = new CompositeTree();
+      this.compositeTree = new CompositeTree<>();
       this.keyResolver = KeyResolver.IDENTITY;
     }
 
@@ -67,7 +80,14 @@ public class Blueprint {
 
     Builder<T> from(String fileName, Source.Format format)
             throws FileNotFoundException {
-      compositeTree.add(format.load(new FileInputStream(fileName)));
+      /* compiled configurations stay mapped after the stream is closed */
+      try (FileInputStream in = new FileInputStream(fileName)) {
+        compositeTree.add(format.load(in));
+      } catch (FileNotFoundException e) {
+        throw e;
+      } catch (IOException e) {
+        throw new BlueprintException("Failed to read the configuration file " + fileName, e);
+      }
       return this;
     }
 
@@ -76,8 +96,86 @@ public class Blueprint {
       return this;
     }
 
+    /**
+     * Registers a converter for values of the given type.  It is used in preference to
+     * the type's static factory methods and String constructor.
+     */
+    <V> Builder<T> withConverter(Class<V> type, Converter<? extends V> converter) {
+      converters.put(type, converter);
+      return this;
+    }
+
+    /**
+     * Makes collections, maps and arrays with at least {@code threshold} elements be
+     * deserialized in parallel on the given pool.  Elements keep their order.
+     */
+    Builder<T> parallel(ForkJoinPool pool, int threshold) {
+      if (pool == null) {
+        throw new NullPointerException("pool");
+      }
+      this.pool = pool;
+      this.parallelThreshold = threshold;
+      return this;
+    }
+
+    /**
+     * Makes collections, maps and arrays with at least {@code threshold} elements be
+     * deserialized in parallel on the common fork-join pool.
+     */
+    Builder<T> parallel(int threshold) {
+      return parallel(ForkJoinPool.commonPool(), threshold);
+    }
+
+    /**
+     * Makes all methods returning a {@code Map}, {@code List}, {@code Collection} or {@code Set}
+     * return views deserializing their elements on first access, as if annotated with {@link Lazy}.
+     */
+    Builder<T> lazy() {
+      this.lazy = true;
+      return this;
+    }
+
+    /**
+     * Makes equal strings, boxed primitives and other immutable values share a single
+     * instance, across all blueprints built this way; see {@link Immutable}.
+     */
+    Builder<T> canonicalize() {
+      this.canonicalize = true;
+      return this;
+    }
+
+    /**
+     * Makes {@link #build()} flatten all configuration sources into a single compact tree,
+     * so that looking up a key costs the same however many sources there are.  The sources
+     * are copied onto the heap when the blueprint is built, and the blueprint does not see
+     * any later changes to them; build it again after reloading a source.  See
+     * {@link CompositeTree#merge()}, and {@link CompositeTree#route()} for an index which
+     * keeps reading the sources themselves.
+     */
+    Builder<T> merged() {
+      this.merged = true;
+      return this;
+    }
+
+    /**
+     * Makes {@link #build()} materialize all values up front and return an immutable
+     * snapshot of the blueprint; see {@link Blueprint#snapshot(Object)}.
+     */
+    Builder<T> eager() {
+      this.eager = true;
+      return this;
+    }
+
     T build() {
-      return Blueprint.create(iface, compositeTree, keyResolver);
+      final Deserializer deserializer = new Deserializer(iface.getClassLoader(), keyResolver, settings());
+      final ConfigNode<?> root = merged ? compositeTree.merge() : compositeTree;
+      final T blueprint = Blueprint.create(iface, root, keyResolver, deserializer);
+      return eager ? Snapshot.of(iface, blueprint) : blueprint;
+    }
+
+    private Deserializer.Settings settings() {
+      return new Deserializer.Settings(new HashMap<Class<?>, Converter<?>>(converters),
+              pool, parallelThreshold, lazy, canonicalize ? Interner.SHARED : null);
     }
   }
 
@@ -97,14 +195,52 @@ public class Blueprint {
    * @return an instance implementing {@code iface} whose methods return values from the configuration.
    */
   public static <T> T create(Class<T> iface, ConfigNode<?> node, KeyResolver keyResolver) {
-    checkInterface(iface);
+    return create(iface, node, keyResolver, new Deserializer(iface.getClassLoader(), keyResolver));
+  }
+
+
+  static <T> T create(Class<T> iface, ConfigNode<?> node, KeyResolver keyResolver, Deserializer deserializer) {
+
+    /* implementations generated at compile time have been checked by the compiler */
+    final PrecompiledBlueprint.Factory<T> factory = PrecompiledBlueprint.factoryFor(iface);
+    if (factory != null) {
+      return factory.create(new PrecompiledBlueprint.Scope(node, new Path<String>(), deserializer, keyResolver));
+    }
 
-    final Deserializer deserializer = new Deserializer(iface.getClassLoader(), keyResolver);
+    checkInterface(iface);
     final Stub<T> stub = new Stub<T>(iface, node, new Path<String>(), deserializer, keyResolver);
     return stub.getProxy();
   }
 
 
+  /**
+   * Takes an immutable snapshot of a blueprint object.
+   * <p>
+   *   Every method without arguments is called once, including those of nested interfaces
+   *   and of interfaces held in collections, maps and arrays, and the results are kept
+   *   in final fields of the returned object.  Collections and maps returned through
+   *   collection interfaces are made unmodifiable.  Methods taking runtime type hints are
+   *   passed on to the original blueprint.
+   * </p>
+   *
+   * @param blueprint object created by Blueprint.
+   * @return an immutable object implementing the same blueprint interface.
+   * @throws BlueprintException listing all values that could not be deserialized.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T snapshot(T blueprint) {
+    if (! Snapshot.isBlueprint(blueprint)) {
+      throw new IllegalArgumentException(blueprint + " is not a blueprint");
+    }
+    for (Class<?> i : blueprint.getClass().getInterfaces()) {
+      if (i != BlueprintProxy.class) {
+        return (T) Snapshot.of((Class<Object>) i, blueprint);
+      }
+    }
+    throw new IllegalArgumentException(blueprint + " is not a blueprint");
+  }
+
+
   /* Privates ------------------------------------------------------- */
 
   /**
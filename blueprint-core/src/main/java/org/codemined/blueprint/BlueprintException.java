@@ -67,15 +67,21 @@ public class BlueprintException extends RuntimeException {
   /* Privates ------------------------------------------------------- */
 
   private static String decorateException(String message) {
-    LinkedList<String> argStr = new LinkedList<String>();
     Context ctxt = Context.getThreadInstance();
-    for (Object o : ctxt.getArgClasses()) {
-      argStr.add(o.toString());
+    if (ctxt.getIface() == null) {
+      return message;
+    }
+    String method = "";
+    if (ctxt.getMethod() != null) {
+      LinkedList<String> argStr = new LinkedList<String>();
+      for (Object o : ctxt.getArgClasses()) {
+        argStr.add(String.valueOf(o));
+      }
+      method = "in method " + ctxt.getMethod().getName() + "(" + Strings.join(", ", argStr) + "), ";
     }
     return message +
-            " (in method " + ctxt.getMethod().getName()
-            + "(" + Strings.join(", ", argStr) + ")"
-            + ", for class " + ctxt.getIface().getCanonicalName()
+            " (" + method
+            + "for class " + ctxt.getIface().getCanonicalName()
             + ", on config path '/" + Strings.join("/", ctxt.getCfgPath()) + "'"
             + ")";
   }
@@ -16,14 +16,115 @@
 
 package org.codemined.blueprint;
 
+import org.codemined.util.Types;
+
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Describes a method of a blueprint interface.
+ * <p>
+ *   Everything Blueprint needs to know about a method that does not depend on runtime
+ *   arguments is computed once, when the method is first seen, and reused on every call.
+ *   Static helpers check whether a method conforms to blueprint calling conventions.
+ * </p>
+ *
  * @author Zoran Rilak
  */
 class BlueprintMethod {
 
+  /** Java reflection object representing the method. */
+  final Method method;
+
+  /** Index of the method in its interface's {@link MethodTable}. */
+  final int slot;
+
+  /** Method's declared return type, boxed. */
+  final Class<?> returnType;
+
+  /** Type given by the method's {@link UseType} annotation, boxed, or null if not annotated. */
+  final Class<?> staticHint;
+
+  /** Configuration key given by the method's {@link Key} annotation, or null if not annotated. */
+  final String annotatedKey;
+
+  /** Value given by the method's {@link Default} annotation, or null if not annotated. */
+  final String defaultValue;
+
+  /** True if the method is annotated with {@link Lazy}. */
+  final boolean lazy;
+
+  /** True if the method is annotated with {@link FromFile}. */
+  final boolean fromFile;
+
+  /** {@link FromFile#checkInterval()} of the method, if annotated with {@link FromFile}. */
+  final long fileCheckInterval;
+
+  /** True if the method declares any parameters, i.e. takes runtime type hints. */
+  final boolean takesArguments;
+
+  /** Reason why the method violates blueprint calling conventions, or null if it doesn't. */
+  final String argumentError;
+
+  /** Plan for deserializing the method's value, built on first use. */
+  private volatile DeserializationPlan plan;
+
+
+  BlueprintMethod(Method method, int slot) {
+    this.method = method;
+    this.slot = slot;
+    this.returnType = Types.boxed(method.getReturnType());
+    UseType useType = method.getAnnotation(UseType.class);
+    this.staticHint = useType == null ? null : Types.boxed(useType.value());
+    Key key = method.getAnnotation(Key.class);
+    this.annotatedKey = key == null ? null : key.value();
+    Default defaultAnnotation = method.getAnnotation(Default.class);
+    this.defaultValue = defaultAnnotation == null ? null : defaultAnnotation.value();
+    this.lazy = method.isAnnotationPresent(Lazy.class);
+    FromFile fromFileAnnotation = method.getAnnotation(FromFile.class);
+    this.fromFile = fromFileAnnotation != null;
+    this.fileCheckInterval = fromFile ? fromFileAnnotation.checkInterval() : 0;
+    this.takesArguments = method.getParameterTypes().length > 0;
+    List<String> errors = new ArrayList<String>(1);
+    checkArguments(method, errors);
+    this.argumentError = errors.isEmpty() ? null : errors.get(0);
+  }
+
+
+  /**
+   * Gets the configuration key the method maps onto.
+   *
+   * @param keyResolver resolver to use unless the method is annotated with {@link Key}.
+   * @return configuration key.
+   */
+  String resolveKey(KeyResolver keyResolver) {
+    if (annotatedKey != null) {
+      return annotatedKey;
+    }
+    return keyResolver.resolve(method.getName());
+  }
+
+
+  /**
+   * Gets the plan for deserializing the value of the method, built from its generic
+   * return type and {@link UseType} annotation.  Methods taking type hints are planned
+   * for each invocation instead.
+   *
+   * @throws BlueprintException if the return type needs a type hint which is missing,
+   * or if the hint is not compatible with the return type.
+   */
+  DeserializationPlan plan() {
+    DeserializationPlan p = plan;
+    if (p == null) {
+      p = DeserializationPlan.of(method.getGenericReturnType(), staticHint);
+      plan = p;
+    }
+    return p;
+  }
+
+
+  /* Static helpers ------------------------------------------------- */
 
   public static void checkReturnType(Class<?> type) {
     checkReturnType(type, null);
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal class file writer, just capable enough to emit the classes generated by
+ * {@link StubGenerator}.
+ * <p>
+ *   Classes are written in the Java 5 class file format (major version 49), which
+ *   lets the verifier infer stack map frames on its own.  Only the instructions actually
+ *   used by the generator are supported; branches are limited to forward jumps.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+class ClassFileWriter {
+
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_PRIVATE = 0x0002;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SUPER = 0x0020;
+  static final int ACC_VOLATILE = 0x0040;
+
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final int MAJOR_VERSION = 49;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+  private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+  private final DataOutputStream pool = new DataOutputStream(poolBytes);
+  private final Map<String, Integer> poolIndex = new HashMap<String, Integer>();
+  private int poolSize = 1;
+
+  private final int access;
+  private final int thisClass;
+  private final int superClass;
+  private final int[] interfaces;
+  private final List<byte[]> fields = new ArrayList<byte[]>();
+  private final List<byte[]> methods = new ArrayList<byte[]>();
+
+
+  /**
+   * @param access class access flags.
+   * @param name internal (slashed) name of the class.
+   * @param superName internal name of the superclass.
+   * @param interfaceNames internal names of the implemented interfaces.
+   */
+  ClassFileWriter(int access, String name, String superName, String... interfaceNames) {
+    this.access = access;
+    this.thisClass = classRef(name);
+    this.superClass = classRef(superName);
+    this.interfaces = new int[interfaceNames.length];
+    for (int i = 0; i < interfaceNames.length; i++) {
+      interfaces[i] = classRef(interfaceNames[i]);
+    }
+  }
+
+
+  void addField(int access, String name, String descriptor) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeShort(access);
+      out.writeShort(utf8(name));
+      out.writeShort(utf8(descriptor));
+      out.writeShort(0);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    fields.add(bytes.toByteArray());
+  }
+
+
+  /**
+   * Starts a new method.  The method is added to the class once {@link Code#end()} is called.
+   */
+  Code addMethod(int access, String name, String descriptor, int maxStack, int maxLocals) {
+    return new Code(access, name, descriptor, maxStack, maxLocals);
+  }
+
+
+  byte[] toByteArray() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(MAGIC);
+      out.writeShort(0);
+      out.writeShort(MAJOR_VERSION);
+      out.writeShort(poolSize);
+      poolBytes.writeTo(out);
+      out.writeShort(access);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(interfaces.length);
+      for (int i : interfaces) {
+        out.writeShort(i);
+      }
+      out.writeShort(fields.size());
+      for (byte[] f : fields) {
+        out.write(f);
+      }
+      out.writeShort(methods.size());
+      for (byte[] m : methods) {
+        out.write(m);
+      }
+      out.writeShort(0);
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  /* Constant pool -------------------------------------------------- */
+
+  int utf8(String s) {
+    Integer i = poolIndex.get("U" + s);
+    if (i == null) {
+      i = newEntry("U" + s);
+      write(CONSTANT_UTF8);
+      writeUtf(s);
+    }
+    return i;
+  }
+
+  int classRef(String internalName) {
+    Integer i = poolIndex.get("C" + internalName);
+    if (i == null) {
+      int name = utf8(internalName);
+      i = newEntry("C" + internalName);
+      write(CONSTANT_CLASS);
+      writeShort(name);
+    }
+    return i;
+  }
+
+  int stringRef(String s) {
+    Integer i = poolIndex.get("S" + s);
+    if (i == null) {
+      int utf = utf8(s);
+      i = newEntry("S" + s);
+      write(CONSTANT_STRING);
+      writeShort(utf);
+    }
+    return i;
+  }
+
+  int integer(int value) {
+    Integer i = poolIndex.get("I" + value);
+    if (i == null) {
+      i = newEntry("I" + value);
+      write(CONSTANT_INTEGER);
+      try {
+        pool.writeInt(value);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return i;
+  }
+
+  int fieldRef(String owner, String name, String descriptor) {
+    return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+  }
+
+  int methodRef(String owner, String name, String descriptor) {
+    return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+  }
+
+  int interfaceMethodRef(String owner, String name, String descriptor) {
+    return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+  }
+
+  private int memberRef(int tag, String owner, String name, String descriptor) {
+    String key = tag + owner + "." + name + descriptor;
+    Integer i = poolIndex.get(key);
+    if (i == null) {
+      int cls = classRef(owner);
+      int nat = nameAndType(name, descriptor);
+      i = newEntry(key);
+      write(tag);
+      writeShort(cls);
+      writeShort(nat);
+    }
+    return i;
+  }
+
+  private int nameAndType(String name, String descriptor) {
+    String key = "N" + name + ":" + descriptor;
+    Integer i = poolIndex.get(key);
+    if (i == null) {
+      int n = utf8(name);
+      int d = utf8(descriptor);
+      i = newEntry(key);
+      write(CONSTANT_NAME_AND_TYPE);
+      writeShort(n);
+      writeShort(d);
+    }
+    return i;
+  }
+
+  private int newEntry(String key) {
+    int i = poolSize++;
+    poolIndex.put(key, i);
+    return i;
+  }
+
+  private void write(int b) {
+    try {
+      pool.writeByte(b);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void writeShort(int s) {
+    try {
+      pool.writeShort(s);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void writeUtf(String s) {
+    try {
+      pool.writeUTF(s);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  /**
+   * Bytecode of a single method.
+   */
+  class Code {
+    private final int access;
+    private final String name;
+    private final String descriptor;
+    private final int maxStack;
+    private final int maxLocals;
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+    private Code(int access, String name, String descriptor, int maxStack, int maxLocals) {
+      this.access = access;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.maxStack = maxStack;
+      this.maxLocals = maxLocals;
+    }
+
+    Code op(int opcode) {
+      code.write(opcode);
+      return this;
+    }
+
+    Code op(int opcode, int u1) {
+      code.write(opcode);
+      code.write(u1);
+      return this;
+    }
+
+    Code op2(int opcode, int u2) {
+      code.write(opcode);
+      code.write(u2 >>> 8);
+      code.write(u2);
+      return this;
+    }
+
+    /** Pushes an int constant using the shortest available instruction. */
+    Code iconst(int value) {
+      if (value >= -1 && value <= 5) {
+        return op(Opcodes.ICONST_0 + value);
+      } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+        return op(Opcodes.BIPUSH, value & 0xff);
+      } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+        return op2(Opcodes.SIPUSH, value & 0xffff);
+      } else {
+        return op2(Opcodes.LDC_W, integer(value));
+      }
+    }
+
+    Code ldc(String value) {
+      return op2(Opcodes.LDC_W, stringRef(value));
+    }
+
+    Code load(int opcode, int slot) {
+      return op(opcode, slot);
+    }
+
+    Code getfield(String owner, String name, String descriptor) {
+      return op2(Opcodes.GETFIELD, fieldRef(owner, name, descriptor));
+    }
+
+    Code putfield(String owner, String name, String descriptor) {
+      return op2(Opcodes.PUTFIELD, fieldRef(owner, name, descriptor));
+    }
+
+    Code invokevirtual(String owner, String name, String descriptor) {
+      return op2(Opcodes.INVOKEVIRTUAL, methodRef(owner, name, descriptor));
+    }
+
+    Code invokespecial(String owner, String name, String descriptor) {
+      return op2(Opcodes.INVOKESPECIAL, methodRef(owner, name, descriptor));
+    }
+
+    Code invokestatic(String owner, String name, String descriptor) {
+      return op2(Opcodes.INVOKESTATIC, methodRef(owner, name, descriptor));
+    }
+
+    Code checkcast(String internalName) {
+      return op2(Opcodes.CHECKCAST, classRef(internalName));
+    }
+
+    Code anewarray(String internalName) {
+      return op2(Opcodes.ANEWARRAY, classRef(internalName));
+    }
+
+    /**
+     * Emits a forward branch instruction and returns a handle to patch its target with
+     * {@link #bind(int)}.
+     */
+    int branch(int opcode) {
+      int at = code.size();
+      op2(opcode, 0);
+      return at;
+    }
+
+    /** Points the branch emitted at {@code branch} to the current position. */
+    Code bind(int branch) {
+      byte[] bytes = code.toByteArray();
+      int offset = bytes.length - branch;
+      bytes[branch + 1] = (byte) (offset >>> 8);
+      bytes[branch + 2] = (byte) offset;
+      code.reset();
+      code.write(bytes, 0, bytes.length);
+      return this;
+    }
+
+    void end() {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      try {
+        out.writeShort(access);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(descriptor));
+        out.writeShort(1);
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + code.size());
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.size());
+        code.writeTo(out);
+        out.writeShort(0);  /* exception table */
+        out.writeShort(0);  /* attributes */
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      methods.add(bytes.toByteArray());
+    }
+  }
+
+
+  /**
+   * Opcodes used by the generator.
+   */
+  static final class Opcodes {
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int LLOAD = 0x16;
+    static final int FLOAD = 0x17;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int ISTORE = 0x36;
+    static final int LSTORE = 0x37;
+    static final int FSTORE = 0x38;
+    static final int DSTORE = 0x39;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int DUP_X1 = 0x5a;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFNONNULL = 0xc7;
+    static final int IRETURN = 0xac;
+    static final int LRETURN = 0xad;
+    static final int FRETURN = 0xae;
+    static final int DRETURN = 0xaf;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int ANEWARRAY = 0xbd;
+    static final int CHECKCAST = 0xc0;
+
+    private Opcodes() {
+    }
+  }
+
+}
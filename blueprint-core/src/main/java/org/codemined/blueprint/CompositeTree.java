@@ -16,20 +16,49 @@
 
 package org.codemined.blueprint;
 
+import org.codemined.util.Path;
+
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
+ * Configuration made of layers, each key being looked up in the first layer which has it.
+ * <p>
+ *   By default every lookup asks the layers in turn, so it costs more the more layers
+ *   there are, but always sees the layers as they are.  There are two ways to make lookups
+ *   cost the same however many layers there are:
+ * </p>
+ * <ul>
+ *   <li>{@link #route()} keeps a routing index from each key to the layer which wins it.
+ *   Lookups then go straight to that layer, which is still read live, so changed values
+ *   are seen; keys added to or removed from the layers are not, until the index is built
+ *   again with {@link #route()}.  The index takes one hash entry per top-level key.</li>
+ *   <li>{@link #merge()} copies the winning subtrees into a single compact, indexed
+ *   {@link FrozenTree}, which is independent of the layers: nothing done to them later is
+ *   seen, and the copy has to be made again after reloading any of them.  The copy holds
+ *   the whole configuration on the heap, even for layers which are kept elsewhere, like a
+ *   {@link MappedTree}.</li>
+ * </ul>
+ *
+ * @param <T> node type of the layers; layers of different types are combined in a
+ *           {@code CompositeTree<?>}.
+ *
  * @author Zoran Rilak
  * @version 0.1
  * @since 0.1
  */
-public class CompositeTree implements ConfigNode {
+public class CompositeTree<T extends ConfigNode<T>> implements ConfigNode<T> {
 
   private final List<ConfigNode<?>> nodes;
 
+  /** Routing index, or null to look up keys in the layers in turn. */
+  private volatile Routes routes;
+
 
   public CompositeTree() {
     this.nodes = new CopyOnWriteArrayList<ConfigNode<?>>();
@@ -37,13 +66,53 @@ public class CompositeTree implements ConfigNode {
 
   public void add(ConfigNode<?> node) {
     this.nodes.add(node);
+    if (routes != null) {
+      route();
+    }
   }
 
-  public CompositeTree with(ConfigNode<?> node) {
+  public CompositeTree<T> with(ConfigNode<?> node) {
     add(node);
     return this;
   }
 
+  /**
+   * Builds, or builds again, the routing index from each key to the first layer which has
+   * a node for it, and makes lookups use it.  Call again after keys have been added to or
+   * removed from any layer, e.g. when it was reloaded; layers added with {@link #add}
+   * are routed right away.
+   *
+   * @return this tree.
+   */
+  public CompositeTree<T> route() {
+    final HashMap<String, ConfigNode<?>> winners = new HashMap<String, ConfigNode<?>>();
+    final Set<String> keys = new HashSet<String>();
+    for (ConfigNode<?> t : nodes) {
+      for (String key : t.keySet()) {
+        keys.add(key);
+        if (! winners.containsKey(key) && t.getChildNode(key) != null) {
+          winners.put(key, t);
+        }
+      }
+    }
+    routes = new Routes(winners, Collections.unmodifiableSet(keys));
+    return this;
+  }
+
+  /**
+   * Flattens the layers into a single compact tree, in which each key leads to a copy
+   * of the subtree of the first layer containing it, as {@link #getChildNode(String)}
+   * does.  The merged tree is {@link FrozenTree#indexed() indexed}, so that finding a
+   * key takes a single hash lookup however many layers there were.  The merged tree is
+   * a copy on the heap: later changes to the layers are not reflected in it, and it has
+   * to be merged again after reloading any of them.
+   *
+   * @return the merged tree.
+   */
+  public FrozenTree merge() {
+    return FrozenTree.freeze((ConfigNode<?>) this).indexed();
+  }
+
   @Override
   public boolean hasValue() {
     return false;
@@ -60,12 +129,17 @@ public class CompositeTree implements ConfigNode {
   }
 
   @Override
-  public List<? extends ConfigNode<?>> getArrayNodes() {
-    return nodes;
+  @SuppressWarnings("unchecked")
+  public List<T> getArrayNodes() {
+    return (List<T>) (List<?>) nodes;
   }
 
   @Override
   public boolean containsKey(String key) {
+    final Routes r = routes;
+    if (r != null) {
+      return r.keys.contains(key);
+    }
     for (ConfigNode<?> t : nodes) {
       if (t.containsKey(key)) {
         return true;
@@ -75,7 +149,13 @@ public class CompositeTree implements ConfigNode {
   }
 
   @Override
-  public ConfigNode<?> getChildNode(String key) {
+  @SuppressWarnings("unchecked")
+  public T getChildNode(String key) {
+    final Routes r = routes;
+    if (r != null) {
+      final ConfigNode<?> layer = r.winners.get(key);
+      return layer == null ? null : (T) layer.getChildNode(key);
+    }
     ConfigNode<?> node = null;
     for (ConfigNode<?> t : nodes) {
       node = t.getChildNode(key);
@@ -83,11 +163,42 @@ public class CompositeTree implements ConfigNode {
         break;
       }
     }
-    return node;
+    return (T) node;
+  }
+
+  /**
+   * Finds the node in the first layer which has a node for the first key of the path,
+   * as {@link #getChildNode(String)} and {@link #route()} do, letting the layer look up
+   * the whole path.
+   * The composite tree itself is not a node of its layers' type, so the empty path
+   * finds no node.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T getByPath(Path<String> path) {
+    if (path.isEmpty()) {
+      return null;
+    }
+    final String key = path.getFirst();
+    final Routes r = routes;
+    if (r != null) {
+      final ConfigNode<?> layer = r.winners.get(key);
+      return layer == null ? null : (T) layer.getByPath(path);
+    }
+    for (ConfigNode<?> t : nodes) {
+      if (t.getChildNode(key) != null) {
+        return (T) t.getByPath(path);
+      }
+    }
+    return null;
   }
 
   @Override
   public Set<String> keySet() {
+    final Routes r = routes;
+    if (r != null) {
+      return r.keys;
+    }
     Set<String> keySet = new HashSet<String>();
     for (ConfigNode<?> t : nodes) {
       keySet.addAll(t.keySet());
@@ -95,4 +206,22 @@ public class CompositeTree implements ConfigNode {
     return keySet;
   }
 
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * The layer winning each key, and the keys of all layers.
+   */
+  private static final class Routes {
+
+    final Map<String, ConfigNode<?>> winners;
+
+    final Set<String> keys;
+
+    Routes(Map<String, ConfigNode<?>> winners, Set<String> keys) {
+      this.winners = winners;
+      this.keys = keys;
+    }
+  }
+
 }
@@ -16,6 +16,8 @@
 
 package org.codemined.blueprint;
 
+import org.codemined.util.Path;
+
 import java.util.List;
 import java.util.Set;
 
@@ -50,10 +52,39 @@ public interface ConfigNode<T extends ConfigNode<T>> {
    */
   List<T> getArrayNodes();
 
+  /**
+   * Returns the string values of all array nodes at once, for nodes which know them
+   * without creating a node per element.  Used to deserialize arrays of primitives
+   * straight into the target array.
+   * @return the values, or null if the node does not know them up front.
+   */
+  default String[] getArrayValues() {
+    return null;
+  }
+
   T getChildNode(String key);
 
   boolean containsKey(String key);
 
   Set<String> keySet();
 
+  /**
+   * Returns the node at the given path below this node, following {@link #getChildNode(String)}
+   * key by key.  Nodes which keep an index of full paths override this to find the node
+   * directly, e.g. by the path's precomputed hash.
+   * @param path keys leading from this node to the requested node.
+   * @return the node, this node if the path is empty, or null if there is no such node.
+   */
+  @SuppressWarnings("unchecked")
+  default T getByPath(Path<String> path) {
+    ConfigNode<?> t = this;
+    for (String key : path) {
+      t = t.getChildNode(key);
+      if (t == null) {
+        return null;
+      }
+    }
+    return (T) t;
+  }
+
 }
@@ -5,34 +5,85 @@ import org.codemined.util.Path;
 import java.lang.reflect.Method;
 
 /**
+ * Describes the value being deserialized on the current thread, for diagnostics.
+ * <p>
+ *   A context is only established while a value is actually being deserialized, i.e. on
+ *   a cache miss, and is removed as soon as deserialization is done, so reading cached
+ *   values touches no thread-local state and idle threads hold no context.  Contexts nest
+ *   when deserializing a value descends into nested blueprints.
+ * </p>
+ *
  * @author Zoran Rilak
  * @version 0.1
  * @since 0.1
  */
 public class Context {
 
-  private static final ThreadLocal<Context> threadContext = new ThreadLocal<Context>() {
-    @Override
-    protected Context initialValue() {
-      return new Context();
-    }
-  };
+  private static final ThreadLocal<Context> threadContext = new ThreadLocal<Context>();
 
-  private Method method;
-  private Object[] args;
-  private Class iface;
-  private Path<String> cfgPath;
+  /** Returned when nothing is being deserialized. */
+  private static final Context NONE = new Context(null, null, null, null, null);
 
+  private final Method method;
+  private final Object[] args;
+  private final Class iface;
+  private final Path<String> cfgPath;
+  private final Context outer;
 
-  public static Context getThreadInstance() {
-    return threadContext.get();
-  }
 
-  public void setContext(Method method, Object[] argClasses, Class iface, Path<String> cfgPath) {
+  private Context(Method method, Object[] argClasses, Class iface, Path<String> cfgPath, Context outer) {
     this.method = method;
     this.args = argClasses == null ? new Object[]{}: argClasses;
     this.iface = iface;
     this.cfgPath = cfgPath;
+    this.outer = outer;
+  }
+
+
+  /**
+   * Gets the context of the value being deserialized on the current thread.
+   *
+   * @return the innermost context, or an empty context if no value is being deserialized.
+   */
+  public static Context getThreadInstance() {
+    Context ctxt = threadContext.get();
+    return ctxt != null ? ctxt : NONE;
+  }
+
+
+  /**
+   * Establishes a new context on the current thread.  Must be paired with {@link #exit()}.
+   */
+  static Context enter(Method method, Object[] argClasses, Class iface, Path<String> cfgPath) {
+    Context ctxt = new Context(method, argClasses, iface, cfgPath, threadContext.get());
+    threadContext.set(ctxt);
+    return ctxt;
+  }
+
+
+  /**
+   * Establishes a copy of this context, taken on another thread, on the current thread,
+   * for work forked off the deserialization it describes.  Must be paired with {@link #exit()}.
+   *
+   * @return the copy, or null if this is the empty context.
+   */
+  Context enterCopy() {
+    if (this == NONE) {
+      return null;
+    }
+    return enter(method, args, iface, cfgPath);
+  }
+
+
+  /**
+   * Restores the context which was current when this one was entered.
+   */
+  void exit() {
+    if (outer == null) {
+      threadContext.remove();
+    } else {
+      threadContext.set(outer);
+    }
   }
 
   public Method getMethod() {
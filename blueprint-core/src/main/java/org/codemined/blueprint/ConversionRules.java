@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rules by which a value is converted from a string when no converter is registered for
+ * its type, shared by the runtime deserializer and by classes generated at compile time.
+ * <p>
+ *   A type with a stand-in is converted by it.  Otherwise, the first public static method
+ *   among {@link #FACTORY_METHODS} taking a String and returning the type is used, and
+ *   failing that, a public constructor taking a String.  Enums are converted by a lookup
+ *   of their constants in place of {@link #ENUM_LOOKUP_METHOD}, so that only the factory
+ *   methods before it are tried.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+public final class ConversionRules {
+
+  /**
+   * Names of static factory methods taking a String, in the order they are tried.
+   * {@code valueOf}, the standard name in the JRE, comes last, so that types can supply
+   * their own conversion under one of the other names.
+   */
+  public static final List<String> FACTORY_METHODS = Collections.unmodifiableList(Arrays.asList(
+          "fromString",
+          "parse",
+          "deserialize",
+          "valueOf"));
+
+  /**
+   * Factory method enums replace with a lookup of their constants, which also accepts
+   * names in lower case or with dashes.  Enums can still supply their own conversion
+   * under one of the factory method names before it.
+   */
+  public static final String ENUM_LOOKUP_METHOD = "valueOf";
+
+  private static final Map<String, StandIn> STAND_INS = new HashMap<String, StandIn>();
+
+  static {
+    /* boxed primitives are parsed directly, standing in for their valueOf(String) */
+    standIn("java.lang.Integer", "org.codemined.util.Parsers", "parseInt", "method valueOf(String)");
+    standIn("java.lang.Long", "org.codemined.util.Parsers", "parseLong", "method valueOf(String)");
+    standIn("java.lang.Double", "org.codemined.util.Parsers", "parseDouble", "method valueOf(String)");
+    standIn("java.lang.Boolean", "org.codemined.util.Parsers", "parseBoolean", "method valueOf(String)");
+    /* patterns have no factory method of the usual names */
+    standIn("java.util.regex.Pattern", "java.util.regex.Pattern", "compile", "method compile(String)");
+  }
+
+
+  private ConversionRules() {
+  }
+
+
+  /**
+   * Static method converting values of a type in place of the type's own factory methods.
+   */
+  public static final class StandIn {
+
+    /** Qualified name of the class declaring the method. */
+    public final String owner;
+
+    /** Name of the static method, which takes a String or a CharSequence. */
+    public final String method;
+
+    /** Description of the conversion in error messages, e.g. "method valueOf(String)". */
+    public final String description;
+
+    private StandIn(String owner, String method, String description) {
+      this.owner = owner;
+      this.method = method;
+      this.description = description;
+    }
+  }
+
+
+  /**
+   * Gets the stand-in converting values of a type.
+   *
+   * @param typeName qualified name of the type.
+   * @return the stand-in, or null if the type is converted by its own methods.
+   */
+  public static StandIn standIn(String typeName) {
+    return STAND_INS.get(typeName);
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static void standIn(String typeName, String owner, String method, String description) {
+    STAND_INS.put(typeName, new StandIn(owner, method, description));
+  }
+
+}
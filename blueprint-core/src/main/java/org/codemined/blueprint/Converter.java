@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+/**
+ * Converts configuration values from their string representation.
+ * <p>
+ *   Blueprint converts simple values by calling the first public static method of the
+ *   target type named {@code fromString}, {@code parse}, {@code deserialize} or
+ *   {@code valueOf} which takes a single String, or else its String constructor.
+ *   Converters registered with {@link Blueprint.Builder} take precedence over these,
+ *   which allows adding conversions to types that have none, or replacing the default.
+ * </p>
+ *
+ * @param <T> type the converter produces.
+ *
+ * @author Zoran Rilak
+ */
+public interface Converter<T> {
+
+  /**
+   * Converts a value.  Exceptions thrown from here are reported as deserialization failures.
+   *
+   * @param value string value from the configuration.
+   * @return the converted value.
+   */
+  T convert(String value) throws Exception;
+
+}
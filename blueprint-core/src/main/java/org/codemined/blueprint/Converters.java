@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+
+/**
+ * Default converters, resolved once per type.
+ * <p>
+ *   The static factory method or constructor used to convert values of a type, picked by
+ *   the {@link ConversionRules} shared with generated classes, is looked up the first
+ *   time a value of that type is deserialized and is then kept, bound to a
+ *   {@link MethodHandle}, in a {@link ClassValue}, so that it goes away along with the
+ *   type's class loader.  Types without a suitable method are remembered as well.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+class Converters {
+
+  private static final MethodType CONVERTER_TYPE = MethodType.methodType(Object.class, String.class);
+
+  /** Default converters by type, empty for types which have none. */
+  private static final ClassValue<Optional<Converter<?>>> DEFAULTS = new ClassValue<Optional<Converter<?>>>() {
+    @Override
+    protected Optional<Converter<?>> computeValue(Class<?> type) {
+      return Optional.<Converter<?>>ofNullable(resolve(type));
+    }
+  };
+
+
+  /**
+   * Gets the default converter of a type.
+   *
+   * @return the converter, or null if the type has neither a suitable static factory
+   * method nor a String constructor.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Converter<T> forType(Class<T> type) {
+    return (Converter<T>) DEFAULTS.get(type).orElse(null);
+  }
+
+
+  /**
+   * Describes a converter for use in error messages, e.g. "method valueOf(String)".
+   */
+  static String describe(Converter<?> converter) {
+    if (converter instanceof DefaultConverter) {
+      return ((DefaultConverter<?>) converter).description;
+    }
+    return "converter " + converter.getClass().getName();
+  }
+
+
+  /**
+   * Base class of default converters, which are described by the method they stand for.
+   */
+  abstract static class DefaultConverter<T> implements Converter<T> {
+
+    final String description;
+
+    DefaultConverter(String description) {
+      this.description = description;
+    }
+  }
+
+
+  /**
+   * Converter calling a static factory method or a constructor.
+   */
+  static final class HandleConverter extends DefaultConverter<Object> {
+
+    private final MethodHandle handle;
+
+    HandleConverter(MethodHandle handle, String description) {
+      super(description);
+      this.handle = handle.asType(CONVERTER_TYPE);
+    }
+
+    @Override
+    public Object convert(String value) throws Exception {
+      try {
+        return (Object) handle.invokeExact(value);
+      } catch (Exception e) {
+        throw e;
+      } catch (Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * Finds the default converter of a type, or null if it has none.
+   */
+  private static Converter<?> resolve(Class<?> type) {
+    /* no conversion needed */
+    if (type == String.class) {
+      return new HandleConverter(MethodHandles.identity(String.class), "constructor(String)");
+    }
+    final ConversionRules.StandIn standIn = ConversionRules.standIn(type.getName());
+    if (standIn != null) {
+      return bind(standIn);
+    }
+
+    for (String methodName : ConversionRules.FACTORY_METHODS) {
+      /* enums are looked up in tables instead, unless they bring a factory method of their own */
+      if (type.isEnum() && methodName.equals(ConversionRules.ENUM_LOOKUP_METHOD)) {
+        return EnumConverter.forType(type);
+      }
+      try {
+        Method method = type.getMethod(methodName, String.class);
+        if (Modifier.isStatic(method.getModifiers()) && type.isAssignableFrom(method.getReturnType())) {
+          return bind(method, "method " + methodName + "(String)");
+        }
+      } catch (NoSuchMethodException e) {
+        // try the next one
+      }
+    }
+
+    try {
+      return bind(type.getConstructor(String.class), "constructor(String)");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+
+  private static Converter<?> bind(ConversionRules.StandIn standIn) {
+    try {
+      final Class<?> owner = Class.forName(standIn.owner, false, Converters.class.getClassLoader());
+      for (Method m : owner.getMethods()) {
+        if (m.getName().equals(standIn.method) && Modifier.isStatic(m.getModifiers()) &&
+                m.getParameterTypes().length == 1 && m.getParameterTypes()[0].isAssignableFrom(String.class)) {
+          return bind(m, standIn.description);
+        }
+      }
+      throw new NoSuchMethodException(standIn.method);
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      throw new IllegalStateException("Missing stand-in " + standIn.owner + "." + standIn.method, e);
+    }
+  }
+
+
+  private static Converter<?> bind(AccessibleObject member, String description) {
+    /* public members of non-public classes need to be made accessible */
+    try {
+      member.setAccessible(true);
+    } catch (RuntimeException e) {
+      // leave it to the lookup to decide
+    }
+
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodHandle handle = member instanceof Method ?
+              lookup.unreflect((Method) member) :
+              lookup.unreflectConstructor((Constructor<?>) member);
+      return new HandleConverter(handle, description);
+    } catch (final IllegalAccessException e) {
+      /* report the failure whenever a value is converted, as before */
+      return new Converter<Object>() {
+        @Override
+        public Object convert(String value) throws Exception {
+          throw e;
+        }
+      };
+    }
+  }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.annotation.*;
+
+/**
+ * Gives the value of a method whose configuration key is missing, as it would be
+ * written in the configuration.
+ * <p>
+ *   Default values are converted like configuration values, so they can be given
+ *   for any type converted from a single string, including {@code Optional} types
+ *   of such types.  Without a default value, methods returning {@code Optional},
+ *   {@code OptionalInt}, {@code OptionalLong} or {@code OptionalDouble} return an empty
+ *   optional for missing keys, and all other methods throw a {@link BlueprintException}.
+ *   Either way, the value is kept like any other, so probing a missing key costs
+ *   no more than reading a present one.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface Default {
+
+  /** Default value, as a configuration value. */
+  String value();
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.IntList;
+import org.codemined.util.LongIntervalMap;
+import org.codemined.util.LongSet;
+import org.codemined.util.PatternSet;
+import org.codemined.util.StringIntMap;
+import org.codemined.util.StringLongMap;
+import org.codemined.util.StringSet;
+import org.codemined.util.Types;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+/**
+ * Tells {@link Deserializer} how to deserialize a value of a given type, decided once
+ * per type rather than on every call.
+ * <p>
+ *   Plans are trees: maps, collections and arrays have a plan for their elements,
+ *   so nested types like {@code Map<String, List<SubConfig>>} are deserialized without
+ *   any type hints.  Element types are read from the type arguments of generic return
+ *   types where they are given as concrete types; type hints take precedence over type
+ *   arguments of a different type, and are required where there are none.
+ * </p>
+ *
+ * <p>
+ *   Plans of blueprint methods without arguments are kept by {@link BlueprintMethod};
+ *   plans for types given at runtime are cached by type, unless a hint is given.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+final class DeserializationPlan {
+
+  enum Shape {
+    MAP,
+    COLLECTION,
+    OPTIONAL,
+    STRING_SET,
+    INTERVAL_MAP,
+    PATTERN_SET,
+    INT_LIST,
+    LONG_SET,
+    STRING_INT_MAP,
+    STRING_LONG_MAP,
+    INTERFACE,
+    CLASS,
+    ARRAY,
+    SIMPLE
+  }
+
+  private static final ClassValue<DeserializationPlan> UNHINTED = new ClassValue<DeserializationPlan>() {
+    @Override
+    protected DeserializationPlan computeValue(Class<?> type) {
+      return of(type, null);
+    }
+  };
+
+  final Shape shape;
+
+  /**
+   * Type to deserialize to, boxed.  For maps and collections, this is the declared type,
+   * for other types the hinted type if one was given.
+   */
+  final Class<?> type;
+
+  /**
+   * Plan for the elements of maps, collections and arrays, for the values of optionals
+   * and interval maps; null for other types, and for interval maps of their own text.
+   */
+  final DeserializationPlan element;
+
+
+  private DeserializationPlan(Shape shape, Class<?> type, DeserializationPlan element) {
+    this.shape = shape;
+    this.type = type;
+    this.element = element;
+  }
+
+
+  /**
+   * Gets the plan for a type given at runtime.
+   *
+   * @param type type to deserialize to.
+   * @param hintedType type hint or null.
+   * @throws BlueprintException if the type needs a hint which is missing, or if the hint
+   * is not compatible with the type.
+   */
+  static DeserializationPlan forType(Class<?> type, Class<?> hintedType) {
+    return hintedType == null ? UNHINTED.get(type) : of(type, hintedType);
+  }
+
+
+  /**
+   * Builds the plan for a generic type.
+   *
+   * @param type type to deserialize to; a class or a generic type.
+   * @param hintedType type hint or null.
+   * @throws BlueprintException if the type needs a hint which is missing, or if the hint
+   * is not compatible with the type.
+   */
+  static DeserializationPlan of(Type type, Class<?> hintedType) {
+    final Class<?> raw = Types.boxed(rawType(type));
+
+    /* Maps and collections require an element type, from the hint or type arguments. */
+    if (Map.class.isAssignableFrom(raw)) {
+      return new DeserializationPlan(Shape.MAP, raw, elementPlan(typeArgument(type, 1, 2), hintedType, "Maps"));
+    }
+    if (Collection.class.isAssignableFrom(raw)) {
+      return new DeserializationPlan(Shape.COLLECTION, raw,
+              elementPlan(typeArgument(type, 0, 1), hintedType, "Collections"));
+    }
+
+    /* Optionals hold a value of their type argument, or of a fixed primitive type. */
+    if (raw == Optional.class) {
+      return new DeserializationPlan(Shape.OPTIONAL, raw, elementPlan(typeArgument(type, 0, 1), hintedType, "Optionals"));
+    }
+    if (raw == OptionalInt.class) {
+      return new DeserializationPlan(Shape.OPTIONAL, raw, UNHINTED.get(Integer.class));
+    }
+    if (raw == OptionalLong.class) {
+      return new DeserializationPlan(Shape.OPTIONAL, raw, UNHINTED.get(Long.class));
+    }
+    if (raw == OptionalDouble.class) {
+      return new DeserializationPlan(Shape.OPTIONAL, raw, UNHINTED.get(Double.class));
+    }
+
+    /* Lookup structures and primitive collections have fixed element types. */
+    if (raw == StringSet.class) {
+      return new DeserializationPlan(Shape.STRING_SET, raw, null);
+    }
+    if (raw == LongIntervalMap.class) {
+      /* interval maps of their own text are told apart by the missing hint */
+      return new DeserializationPlan(Shape.INTERVAL_MAP, raw, hintedType == null ? null : of(hintedType, null));
+    }
+    if (raw == PatternSet.class) {
+      return new DeserializationPlan(Shape.PATTERN_SET, raw, null);
+    }
+    if (raw == IntList.class) {
+      return new DeserializationPlan(Shape.INT_LIST, raw, null);
+    }
+    if (raw == LongSet.class) {
+      return new DeserializationPlan(Shape.LONG_SET, raw, null);
+    }
+    if (raw == StringIntMap.class) {
+      return new DeserializationPlan(Shape.STRING_INT_MAP, raw, null);
+    }
+    if (raw == StringLongMap.class) {
+      return new DeserializationPlan(Shape.STRING_LONG_MAP, raw, null);
+    }
+
+    /* Other return types will be superseded by the hinted type if given;
+    if the types are not compatible, an exception is thrown. */
+    Class<?> target = raw;
+    if (hintedType != null) {
+      try {
+        target = hintedType.asSubclass(raw);
+      } catch (ClassCastException e) {
+        throw new BlueprintException("Type hint " + hintedType.getCanonicalName() +
+                ", is not assignment-compatible with the" +
+                " method's return type, " + raw.getCanonicalName());
+      }
+    }
+
+    if (target.isInterface()) {
+      return new DeserializationPlan(Shape.INTERFACE, target, null);
+    }
+    if (Class.class.isAssignableFrom(target)) {
+      return new DeserializationPlan(Shape.CLASS, target, null);
+    }
+    if (target.isArray()) {
+      final Type componentType = target == raw && type instanceof GenericArrayType ?
+              ((GenericArrayType) type).getGenericComponentType() : target.getComponentType();
+      /* primitive elements keep their type, to be parsed straight into the array */
+      final DeserializationPlan element = target.getComponentType().isPrimitive() ?
+              new DeserializationPlan(Shape.SIMPLE, target.getComponentType(), null) :
+              of(componentType, null);
+      return new DeserializationPlan(Shape.ARRAY, target, element);
+    }
+    return new DeserializationPlan(Shape.SIMPLE, target, null);
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static DeserializationPlan elementPlan(Type typeArgument, Class<?> hintedType, String what) {
+    if (hintedType != null && (typeArgument == null || rawType(typeArgument) != hintedType)) {
+      return of(hintedType, null);
+    }
+    if (typeArgument == null) {
+      throw new BlueprintException(what + " require a non-null type hint");
+    }
+    return of(typeArgument, null);
+  }
+
+
+  /**
+   * Gets a type argument of a parameterized type with the given number of type parameters.
+   *
+   * @return the type argument, or null if it is not known.
+   */
+  private static Type typeArgument(Type type, int index, int arity) {
+    if (! (type instanceof ParameterizedType)) {
+      return null;
+    }
+    final Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+    if (arguments.length != arity) {
+      return null;
+    }
+    Type argument = arguments[index];
+    if (argument instanceof WildcardType) {
+      final Type[] upperBounds = ((WildcardType) argument).getUpperBounds();
+      argument = upperBounds.length == 1 && upperBounds[0] != Object.class ? upperBounds[0] : null;
+    }
+    if (argument instanceof TypeVariable || (argument != null && isUnresolved(argument))) {
+      return null;
+    }
+    return argument;
+  }
+
+
+  /** Tells whether an array type has a type variable for its component type. */
+  private static boolean isUnresolved(Type type) {
+    while (type instanceof GenericArrayType) {
+      type = ((GenericArrayType) type).getGenericComponentType();
+    }
+    return type instanceof TypeVariable || type instanceof WildcardType;
+  }
+
+
+  private static Class<?> rawType(Type type) {
+    if (type instanceof Class) {
+      return (Class<?>) type;
+    }
+    if (type instanceof ParameterizedType) {
+      return (Class<?>) ((ParameterizedType) type).getRawType();
+    }
+    if (type instanceof GenericArrayType) {
+      return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+    }
+    if (type instanceof WildcardType) {
+      return rawType(((WildcardType) type).getUpperBounds()[0]);
+    }
+    if (type instanceof TypeVariable) {
+      return rawType(((TypeVariable<?>) type).getBounds()[0]);
+    }
+    throw new BlueprintException("Unsupported type " + type);
+  }
+
+}
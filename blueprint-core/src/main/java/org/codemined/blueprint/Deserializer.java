@@ -16,94 +16,276 @@
 
 package org.codemined.blueprint;
 
+import org.codemined.util.IntList;
+import org.codemined.util.LongIntervalMap;
+import org.codemined.util.LongSet;
 import org.codemined.util.Path;
+import org.codemined.util.PatternSet;
+import org.codemined.util.StringIntMap;
+import org.codemined.util.StringLongMap;
+import org.codemined.util.StringSet;
 import org.codemined.util.Types;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * @author Zoran Rilak
  */
 class Deserializer {
 
-  /* keep `valueOf' last to allow overriding it.
-  ValueOf is the standard name for a deserializer method in JRE, but we sometimes want to
-  supply our own method to convert Strings into instances of our type. One example would be
-  deserializing Enums.  Enum.valueOf() recognized only uppercase Enum constants; by adding a
-  static method called "fromString", "parse", or "deserialize" to our Enum class, we can
-  supply custom deserialization logic. */
-  private static final String[] STATIC_DESERIALIZER_METHODS = {
-          "fromString",
-          "parse",
-          "deserialize",
-          "valueOf"
-  };
-
   private final ClassLoader classLoader;
 
   private final KeyResolver keyResolver;
 
+  private final Map<Class<?>, Converter<?>> converters;
+
+  /** Pool for deserializing elements in parallel, or null to deserialize them on the calling thread. */
+  private final ForkJoinPool pool;
+
+  /** Smallest number of elements deserialized in parallel. */
+  private final int parallelThreshold;
+
+  /** Whether all collections and maps that can be are returned as lazy views; see {@link Lazy}. */
+  private final boolean lazy;
+
+  /** Table of canonical values, or null to keep every deserialized value. */
+  private final Interner interner;
+
   public Deserializer(ClassLoader classLoader, KeyResolver keyResolver) {
+    this(classLoader, keyResolver, Settings.DEFAULT);
+  }
+
+  /**
+   * @param settings how values are deserialized, as set up on {@link Blueprint.Builder}.
+   */
+  public Deserializer(ClassLoader classLoader, KeyResolver keyResolver, Settings settings) {
     this.classLoader = classLoader;
     this.keyResolver = keyResolver;
+    this.converters = settings.converters;
+    this.pool = settings.pool;
+    this.parallelThreshold = settings.parallelThreshold;
+    this.lazy = settings.lazy;
+    this.interner = settings.interner;
+  }
+
+
+  /**
+   * How a deserializer converts values, built by {@link Blueprint.Builder}.
+   */
+  static final class Settings {
+
+    /** Settings of blueprints created without a builder. */
+    static final Settings DEFAULT = new Settings(Collections.<Class<?>, Converter<?>>emptyMap(),
+            null, 0, false, null);
+
+    final Map<Class<?>, Converter<?>> converters;
+
+    final ForkJoinPool pool;
+
+    final int parallelThreshold;
+
+    final boolean lazy;
+
+    final Interner interner;
+
+    /**
+     * @param converters user converters, consulted before the types' own factory methods and constructors.
+     * @param pool pool for deserializing the elements of large collections, maps and arrays in parallel,
+     *             or null to deserialize all elements on the calling thread.
+     * @param parallelThreshold smallest number of elements deserialized in parallel.
+     * @param lazy whether to return lazy views of all collections and maps that can be, as if their
+     *             methods were annotated with {@link Lazy}.
+     * @param interner table to canonicalize converted values through, or null to keep them as they are.
+     */
+    Settings(Map<Class<?>, Converter<?>> converters, ForkJoinPool pool, int parallelThreshold,
+             boolean lazy, Interner interner) {
+      this.converters = converters;
+      this.pool = pool;
+      this.parallelThreshold = parallelThreshold;
+      this.lazy = lazy;
+      this.interner = interner;
+    }
+
   }
 
 
+  /**
+   * Gets the user converter registered for a type.
+   *
+   * @return the converter or null if none was registered.
+   */
   @SuppressWarnings("unchecked")
+  <T> Converter<T> userConverter(Class<T> type) {
+    return converters.isEmpty() ? null : (Converter<T>) converters.get(type);
+  }
+
+
+  /**
+   * Gets the canonical instance of a converted value if values are canonicalized.
+   *
+   * @return the canonical instance, or the value itself.
+   */
+  <T> T canonical(T value) {
+    return interner == null ? value : interner.intern(value);
+  }
+
+
+  /**
+   * Deserializes a configuration node.
+   *
+   * @param returnType type to deserialize to.
+   * @param hintedType type hint or null.
+   * @param key key of the node in its parent.
+   * @param cfg configuration node to deserialize.
+   * @param cfgPath path to the node, given to nested blueprints.
+   * @param <T> type to deserialize to.
+   * @return deserialized value.
+   */
   public <T> T deserialize(Class<?> returnType,
                            Class<?> hintedType,
                            String key,
-                           ConfigNode<?> cfg) {
+                           ConfigNode<?> cfg,
+                           Path<String> cfgPath) {
+    return deserialize(returnType, hintedType, key, cfg, cfgPath, false);
+  }
 
-    /* Maps and collections require a type hint to use as element type. */
-    if (Map.class.isAssignableFrom(returnType)) {
-      if (hintedType == null) {
-        throw new BlueprintException("Maps require a non-null type hint");
-      }
-      return (T) deserializeMap(hintedType, cfg);
-    }
 
-    if (Collection.class.isAssignableFrom(returnType)) {
-      if (hintedType == null) {
-        throw new BlueprintException("Collections require a non-null type hint");
+  /**
+   * Deserializes a configuration node, optionally to a lazy view.
+   *
+   * @param returnType type to deserialize to.
+   * @param hintedType type hint or null.
+   * @param key key of the node in its parent.
+   * @param cfg configuration node to deserialize.
+   * @param cfgPath path to the node, given to nested blueprints.
+   * @param lazyView whether maps and collections should be returned as lazy views where
+   *                 possible, e.g. because the method is annotated with {@link Lazy}.
+   * @param <T> type to deserialize to.
+   * @return deserialized value.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T deserialize(Class<?> returnType,
+                           Class<?> hintedType,
+                           String key,
+                           ConfigNode<?> cfg,
+                           Path<String> cfgPath,
+                           boolean lazyView) {
+    return (T) deserialize(DeserializationPlan.forType(returnType, hintedType), key, cfg, cfgPath, lazyView);
+  }
+
+
+  /**
+   * Deserializes a configuration node following a plan.
+   *
+   * @param plan plan for the type to deserialize to.
+   * @param key key of the node in its parent.
+   * @param cfg configuration node to deserialize.
+   * @param cfgPath path to the node, given to nested blueprints.
+   * @param lazyView whether maps and collections should be returned as lazy views where
+   *                 possible, e.g. because the method is annotated with {@link Lazy}.
+   * @return deserialized value.
+   */
+  @SuppressWarnings("unchecked")
+  Object deserialize(DeserializationPlan plan, String key, ConfigNode<?> cfg, Path<String> cfgPath,
+                     boolean lazyView) {
+    switch (plan.shape) {
+      case MAP:
+        if ((lazyView || lazy) && LazyViews.supports(plan.type)) {
+          return LazyViews.map(this, plan.element, cfg, cfgPath);
+        }
+        return deserializeMap(plan.element, cfg, cfgPath);
+
+      case COLLECTION:
+        if ((lazyView || lazy) && LazyViews.supports(plan.type)) {
+          return LazyViews.collection(plan.type, this, plan.element, cfg, cfgPath);
+        }
+        return deserializeCollection((Class<Collection>) plan.type, plan.element, cfg, cfgPath);
+
+      case OPTIONAL:
+        return optionalOf(plan.type, deserialize(plan.element, key, cfg, cfgPath, lazyView));
+
+      /* Lookup structures are built straight from the nodes' values. */
+      case STRING_SET:
+        return StringSet.of(PrimitiveArrays.Builder.valuesOf(cfg));
+
+      case INTERVAL_MAP:
+        return deserializeIntervalMap(plan.element, cfg, cfgPath);
+
+      case PATTERN_SET:
+        return deserializePatternSet(cfg);
+
+      /* Primitive collections are parsed without boxing. */
+      case INT_LIST:
+        return IntList.of((int[]) deserializeArray(int[].class, cfg, cfgPath));
+
+      case LONG_SET:
+        return LongSet.of((long[]) deserializeArray(long[].class, cfg, cfgPath));
+
+      case STRING_INT_MAP: {
+        final String[] keys = keysOf(cfg);
+        final int[] values = (int[]) parsePrimitives(int.class, childValuesOf(cfg, keys));
+        final StringIntMap.Builder builder = StringIntMap.builder(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+          builder.put(keys[i], values[i]);
+        }
+        return builder.build();
       }
-      return (T) deserializeCollection((Class<Collection>)returnType, hintedType, cfg);
-    }
 
-    /* Other (non-map, non-collection) return types will be superseded by the
-    hinted type if given; it the types are not compatible, an exception is thrown. */
-    if (hintedType != null) {
-      try {
-        returnType = hintedType.asSubclass(returnType);
-      } catch (ClassCastException e) {
-        throw new BlueprintException("Type hint " + hintedType.getCanonicalName() +
-                ", is not assignment-compatible with the" +
-                " method's return type, " + returnType.getCanonicalName());
+      case STRING_LONG_MAP: {
+        final String[] keys = keysOf(cfg);
+        final long[] values = (long[]) parsePrimitives(long.class, childValuesOf(cfg, keys));
+        final StringLongMap.Builder builder = StringLongMap.builder(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+          builder.put(keys[i], values[i]);
+        }
+        return builder.build();
       }
-    }
 
-    if (returnType.isInterface()) {
-      Path<String> p = Context.getThreadInstance().getCfgPath().to(key);
-      return (T) deserializeInterface(returnType, cfg, p);
-    }
+      case INTERFACE:
+        return deserializeInterface(plan.type, cfg, cfgPath);
 
-    if (Class.class.isAssignableFrom(returnType)) {
-      return (T) deserializeClass(cfg);
-    }
+      case CLASS:
+        return deserializeClass(cfg.getValue());
+
+      case ARRAY:
+        return deserializeArray(plan, cfg, cfgPath);
 
-    if (returnType.isArray()) {
-      return (T) deserializeArray(returnType, cfg);
+      default:
+        /* if no special handling applies, deserialize as a simple type
+        (through a static factory method or String ctor) */
+        return deserializeSimpleType(plan.type, cfg);
     }
+  }
+
 
-    /* if no special handling applies, deserialize as a simple type
-    (through a static factory method or String ctor) */
-    return (T) deserializeSimpleType(returnType, cfg);
+  /**
+   * Gets the value of a method whose configuration key is missing: its default value,
+   * or an empty optional for optional types.
+   *
+   * @param plan plan for the method's return type.
+   * @param defaultValue value given by the method's {@link Default} annotation, or null.
+   * @return the value, or null if the key is required.
+   * @throws BlueprintException if the default value cannot be converted.
+   */
+  Object deserializeAbsent(DeserializationPlan plan, String defaultValue) {
+    if (plan.shape == DeserializationPlan.Shape.OPTIONAL) {
+      if (defaultValue == null) {
+        return optionalOf(plan.type, null);
+      }
+      return optionalOf(plan.type, deserializeDefault(plan.element, defaultValue));
+    }
+    return defaultValue == null ? null : deserializeDefault(plan, defaultValue);
   }
 
 
@@ -111,39 +293,134 @@ class Deserializer {
    *
    * @param elementType Type of values stored in the map.
    * @param cfg Configuration cfg to deserialize from.
+   * @param cfgPath Path to the configuration node.
    * @param <E> Element type.
-   * @return Deserialized instance of the given map type.
+   * @return Deserialized, immutable map.
    */
-  public <E> Map<String, E> deserializeMap(Class<E> elementType, ConfigNode<?> cfg) {
-    final Map<String, E> map = Reifier.reifyStringMap();
-    for (String key : cfg.keySet()) {
-      final E element = deserialize(elementType, null, key, cfg.getChildNode(key));
-      map.put(key, element);
+  @SuppressWarnings("unchecked")
+  public <E> Map<String, E> deserializeMap(final Class<E> elementType, ConfigNode<?> cfg, final Path<String> cfgPath) {
+    return (Map<String, E>) deserializeMap(DeserializationPlan.forType(elementType, null), cfg, cfgPath);
+  }
+
+
+  private Map<String, ?> deserializeMap(final DeserializationPlan element, ConfigNode<?> cfg,
+                                        final Path<String> cfgPath) {
+    final String[] keys = keysOf(cfg);
+    final Object[] elements = new Object[keys.length];
+
+    if (isParallel(keys.length)) {
+      /* child nodes are looked up here, as nodes need not be safe for concurrent lookups */
+      final ConfigNode<?>[] nodes = new ConfigNode<?>[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        nodes[i] = cfg.getChildNode(keys[i]);
+      }
+      ParallelRanges.run(pool, keys.length, new ParallelRanges.Range() {
+        @Override
+        public void run(int from, int to) {
+          for (int i = from; i < to; i++) {
+            elements[i] = deserialize(element, keys[i], nodes[i], cfgPath.to(keys[i]), false);
+          }
+        }
+      });
+    } else {
+      for (int i = 0; i < keys.length; i++) {
+        elements[i] = deserialize(element, keys[i], cfg.getChildNode(keys[i]), cfgPath.to(keys[i]), false);
+      }
     }
-    return map;
+    return Reifier.reifyStringMap(keys, elements);
   }
 
 
   /**
    *
    * @param type Collection type to deserialize to.
-   * @param elementType Type of elements contained in the collection.
+   * @param element Plan for the elements contained in the collection.
    * @param cfg Configuration cfg to deserialize from.
-   * @param <E> Element type.
-   * @return Deserialized collection.
+   * @param cfgPath Path to the configuration node.
+   * @return Deserialized collection; immutable if {@code type} is an interface, see
+   * {@link Reifier#reifyCollection(Class, Class, Object[])}.
    */
   @SuppressWarnings("unchecked")
-  private <E, T extends Collection<E>> T deserializeCollection(Class<T> type,
-                                                            Class<E> elementType,
-                                                            ConfigNode<?> cfg) {
-    final T col = (T) Reifier.reifyCollection(type);
-    int i = 0;
-    for (ConfigNode<?> t : cfg.getArrayNodes()) {
-      col.add(elementType.cast(deserialize(elementType, null, "[" + i + "]", t)));
-//      col.add(elementType.cast(deserialize(elementType, null, Integer.toString(i), t)));
-      i++;
+  private <T extends Collection<?>> T deserializeCollection(Class<T> type,
+                                                         DeserializationPlan element,
+                                                         ConfigNode<?> cfg,
+                                                         Path<String> cfgPath) {
+    final List<? extends ConfigNode<?>> nodes = cfg.getArrayNodes();
+    final Object[] elements;
+    if (isParallel(nodes.size())) {
+      elements = deserializeElements(element, nodes, cfgPath);
+    } else {
+      elements = new Object[nodes.size()];
+      int i = 0;
+      for (ConfigNode<?> t : nodes) {
+        final String key = "[" + i + "]";
+        elements[i++] = element.type.cast(deserialize(element, key, t, cfgPath.to(key), false));
+      }
+    }
+    return (T) Reifier.reifyCollection((Class) type, element.type, elements);
+  }
+
+
+  /**
+   * Builds an interval map from a list of intervals, each mapped to its own text, or,
+   * given a type hint, from a map of intervals to values of the hinted type.
+   *
+   * @param value Plan for the values stored in the map, or null to read a list of intervals.
+   * @param cfg Configuration cfg to deserialize from.
+   * @param cfgPath Path to the configuration node.
+   * @return Deserialized interval map.
+   */
+  private LongIntervalMap<?> deserializeIntervalMap(DeserializationPlan value, ConfigNode<?> cfg,
+                                                    Path<String> cfgPath) {
+    final LongIntervalMap.Builder<Object> builder;
+    if (value == null) {
+      final String[] intervals = PrimitiveArrays.Builder.valuesOf(cfg);
+      builder = LongIntervalMap.builder(intervals.length);
+      for (String interval : intervals) {
+        putInterval(builder, interval, interval);
+      }
+    } else {
+      final Set<String> keys = cfg.keySet();
+      builder = LongIntervalMap.builder(keys.size());
+      for (String key : keys) {
+        putInterval(builder, key, deserialize(value, key, cfg.getChildNode(key), cfgPath.to(key), false));
+      }
+    }
+
+    try {
+      return builder.build();
+    } catch (IllegalArgumentException e) {
+      throw new BlueprintException("Failed to deserialize configuration item as an instance of " +
+              LongIntervalMap.class.getCanonicalName() + ": " + e.getMessage(), e);
+    }
+  }
+
+
+  private static void putInterval(LongIntervalMap.Builder<Object> builder, String interval, Object value) {
+    try {
+      builder.put(interval, value);
+    } catch (IllegalArgumentException e) {
+      throw new BlueprintException("Failed to deserialize configuration item as an interval" +
+              " of " + LongIntervalMap.class.getCanonicalName() +
+              ", from value \"" + interval + "\"", e);
+    }
+  }
+
+
+  /**
+   * Compiles a list of regular expressions into a pattern set.
+   *
+   * @param cfg Configuration cfg to deserialize from.
+   * @return Compiled pattern set.
+   */
+  private PatternSet deserializePatternSet(ConfigNode<?> cfg) {
+    try {
+      return PatternSet.compile(PrimitiveArrays.Builder.valuesOf(cfg));
+    } catch (PatternSyntaxException e) {
+      throw new BlueprintException("Failed to deserialize configuration item" +
+              " as an instance of " + PatternSet.class.getCanonicalName() +
+              ", from value \"" + e.getPattern() + "\"", e);
     }
-    return col;
   }
 
 
@@ -151,36 +428,74 @@ class Deserializer {
    *
    * @param type Interface to deserialize to.
    * @param cfg Configuration cfg to deserialize from.
+   * @param cfgPath Path to the configuration node.
    * @param <T> Interface type.
    * @return Deserialized instance of the given interface type.
    */
   private <T> T deserializeInterface(Class<T> type, ConfigNode<?> cfg, Path<String> cfgPath) {
+    final PrecompiledBlueprint.Factory<T> factory = PrecompiledBlueprint.factoryFor(type);
+    if (factory != null) {
+      return factory.create(new PrecompiledBlueprint.Scope(cfg, cfgPath, this, keyResolver));
+    }
     return new Stub<T>(type, cfg, cfgPath, this, keyResolver).getProxy();
   }
 
 
   /**
-   * @param cfg Configuration cfg to deserialize from.
+   * @param name Name of the class.
    * @return Deserialized class object.
    */
-  private Class<?> deserializeClass(ConfigNode<?> cfg) {
+  private Class<?> deserializeClass(String name) {
     try {
-      return classLoader.loadClass(cfg.getValue());
+      return classLoader.loadClass(name);
     } catch (ClassNotFoundException e) {
       throw new BlueprintException(e);
     }
   }
 
-  private <T> T deserializeArray(Class<T> type, ConfigNode<?> cfg) {
-    Class<?> elementType = type.getComponentType();
+  private Object deserializeArray(Class<?> type, ConfigNode<?> cfg, Path<String> cfgPath) {
+    return deserializeArray(DeserializationPlan.forType(type, null), cfg, cfgPath);
+  }
+
+  private Object deserializeArray(DeserializationPlan plan, ConfigNode<?> cfg, Path<String> cfgPath) {
+    final Class<?> type = plan.type;
+    final Class<?> elementType = type.getComponentType();
+
+    /* primitives are parsed straight into the array, unless the user converts them */
+    if (elementType.isPrimitive() && userConverter(Types.boxed(elementType)) == null) {
+      final PrimitiveArrays.Builder builder = PrimitiveArrays.builderFor(elementType);
+      if (builder != null) {
+        final String[] values = PrimitiveArrays.Builder.valuesOf(cfg);
+        final Object array = builder.newArray(values.length);
+        if (isParallel(values.length)) {
+          ParallelRanges.run(pool, values.length, new ParallelRanges.Range() {
+            @Override
+            public void run(int from, int to) {
+              builder.parse(values, array, from, to);
+            }
+          });
+        } else {
+          builder.parse(values, array, 0, values.length);
+        }
+        return type.cast(array);
+      }
+    }
+
     List<? extends ConfigNode<?>> elements = cfg.getArrayNodes();
+    if (! elementType.isPrimitive() && isParallel(elements.size())) {
+      final Object[] deserialized = deserializeElements(plan.element, elements, cfgPath);
+      final Object array = Array.newInstance(elementType, deserialized.length);
+      System.arraycopy(deserialized, 0, array, 0, deserialized.length);
+      return type.cast(array);
+    }
 
     Object array = Array.newInstance(elementType, elements.size());
     for (int i = 0; i < elements.size(); i++) {
       if (elementType.isPrimitive()) {
         Array.set(array, i, deserializeSimpleType(Types.boxed(elementType), elements.get(i)));
       } else {
-        Array.set(array, i, deserialize(elementType, null, "[" + i + "]", elements.get(i)));
+        final String key = "[" + i + "]";
+        Array.set(array, i, deserialize(plan.element, key, elements.get(i), cfgPath.to(key), false));
       }
     }
 
@@ -188,119 +503,159 @@ class Deserializer {
   }
 
   /**
-   *
-   * @param type Simple type to deserialize to.
-   * @param cfg Configuration cfg to deserialize from.
-   * @param <T> Simple type (primitive, boxed or String).
-   * @return Deserialized instance of a simple type.
+   * Parses values into an array of a primitive type, with the user converter of the
+   * boxed type if one was registered.
    */
-  private <T> T deserializeSimpleType(Class<T> type, ConfigNode<?> cfg) {
-    return deserializeSimpleTypeFromValue(type, cfg.getValue());
+  private Object parsePrimitives(Class<?> type, String[] values) {
+    final Class<?> boxedType = Types.boxed(type);
+    if (userConverter(boxedType) == null) {
+      final PrimitiveArrays.Builder builder = PrimitiveArrays.builderFor(type);
+      final Object array = builder.newArray(values.length);
+      builder.parse(values, array, 0, values.length);
+      return array;
+    }
+    final Object array = Array.newInstance(type, values.length);
+    for (int i = 0; i < values.length; i++) {
+      Array.set(array, i, deserializeSimpleTypeFromValue(boxedType, values[i]));
+    }
+    return array;
+  }
+
+
+  private Object deserializeDefault(DeserializationPlan plan, String value) {
+    switch (plan.shape) {
+      case SIMPLE:
+        return deserializeSimpleTypeFromValue(plan.type, value);
+      case CLASS:
+        return deserializeClass(value);
+      default:
+        throw new BlueprintException("Default values can only be given for types converted" +
+                " from a single value, not for " + plan.type.getCanonicalName());
+    }
   }
 
 
   /**
-   *
-   * @param type Simple type (String or boxed) to deserialize to.
-   * @param value String to deserialize from.
-   * @param <T> Simple type (primitive, boxed or String).
-   * @return Deserialized instance of a simple type.
+   * Wraps a value in an optional of the given type; returns an empty optional for null.
    */
-  private <T> T deserializeSimpleTypeFromValue(Class<T> type, String value) {
-    T o = null;
-
-    for (String methodName : STATIC_DESERIALIZER_METHODS) {
-      o = useStaticDeserializer(type, methodName, value);
-      if (o != null) {
-        break;
-      }
+  private static Object optionalOf(Class<?> type, Object value) {
+    if (type == OptionalInt.class) {
+      return value == null ? OptionalInt.empty() : OptionalInt.of((Integer) value);
     }
-    if (o == null) {
-      o = useConstructorDeserializer(type, value);
+    if (type == OptionalLong.class) {
+      return value == null ? OptionalLong.empty() : OptionalLong.of((Long) value);
     }
-    if (o == null) {
-      throw new BlueprintException("No appropriate deserialization method found" +
-              " for type " + type.getName());
+    if (type == OptionalDouble.class) {
+      return value == null ? OptionalDouble.empty() : OptionalDouble.of((Double) value);
     }
+    return Optional.ofNullable(value);
+  }
 
-    return o;
+
+  private static String[] keysOf(ConfigNode<?> cfg) {
+    final Set<String> keySet = cfg.keySet();
+    return keySet.toArray(new String[keySet.size()]);
+  }
+
+
+  private static String[] childValuesOf(ConfigNode<?> cfg, String[] keys) {
+    final String[] values = new String[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      values[i] = cfg.getChildNode(keys[i]).getValue();
+    }
+    return values;
   }
 
+
   /**
-   * Attempts to deserialize an object using a static factory method.
-   * <p>
-   *   The type is queried for a method that meets the following criteria:
-   *   <ul>
-   *     <li>is public and static;</li>
-   *     <li>has the name {@code methodName};</li>
-   *     <li>takes one String parameter;</li>
-   *     <li>{@code type} is assignable from this method's return type, as per {@link Class#isAssignableFrom(Class)}.</li>
-   *   </ul>
-   *   If no such method is found, useStaticDeserializer returns null.
-   * </p>
-   * @param type Type to deserialize into.
-   * @param methodName Name of the static factory method to use.
-   * @param value String to deserialize from.
-   * @param <T> Type to deserialize into.
-   * @return Deserialized instance or null if no adequate method is found.
-   * @throws BlueprintException if an exception is thrown from inside the deserializer method.
+   * Tells whether the elements of a collection, map or array of the given size
+   * are deserialized in parallel.
    */
-  private <T> T useStaticDeserializer(Class<T> type, String methodName, String value) {
-    Method method;
+  private boolean isParallel(int size) {
+    return pool != null && size >= parallelThreshold && size > 1;
+  }
 
-    try {
-      method = type.getMethod(methodName, String.class);
-      if (! Modifier.isStatic(method.getModifiers()) ||
-              ! type.isAssignableFrom(method.getReturnType())) {
-        return null;
-      }
-    } catch (NoSuchMethodException e) {
-      return null;
-    }
 
-    try {
-      return type.cast(method.invoke(null, value));
-    } catch (Exception e) {
-      throw new BlueprintException("Failed to deserialize configuration item" +
-              " as an instance of " + type.getCanonicalName() +
-              ", using method " + methodName + "(String)" +
-              ", from value \"" + value + "\"", e);
+  /**
+   * Deserializes array nodes in parallel, checking each element against its plan's type
+   * just like the sequential paths do.
+   *
+   * @return deserialized elements, in the order of the nodes.
+   */
+  private Object[] deserializeElements(final DeserializationPlan element,
+                                       List<? extends ConfigNode<?>> elementNodes,
+                                       final Path<String> cfgPath) {
+    final ConfigNode<?>[] nodes = elementNodes.toArray(new ConfigNode<?>[elementNodes.size()]);
+    final Object[] elements = new Object[nodes.length];
+    ParallelRanges.run(pool, nodes.length, new ParallelRanges.Range() {
+      @Override
+      public void run(int from, int to) {
+        for (int i = from; i < to; i++) {
+          final String key = "[" + i + "]";
+          elements[i] = element.type.cast(deserialize(element, key, nodes[i], cfgPath.to(key), false));
+        }
       }
+    });
+    return elements;
+  }
+
+
+  /**
+   *
+   * @param type Simple type to deserialize to.
+   * @param cfg Configuration cfg to deserialize from.
+   * @param <T> Simple type (primitive, boxed or String).
+   * @return Deserialized instance of a simple type.
+   */
+  private <T> T deserializeSimpleType(Class<T> type, ConfigNode<?> cfg) {
+    return deserializeSimpleTypeFromValue(type, cfg.getValue());
   }
 
 
   /**
-   * Attempts to deserialize an object using the String constructor.
-   * <p>
-   *   The type is queried for a constructor that meets the following criteria:
-   *   <ul>
-   *     <li>is public;</li>
-   *     <li>takes one String parameter.</li>
-   *   </ul>
-   *   If no such constructor is found, useConstructorDeserializer returns null.
-   * </p>
-   * @param type Type to deserialize into.
+   * Converts a string using the type's user converter, if one was registered, or its
+   * default converter otherwise.  Default converters are resolved once per type; see
+   * {@link Converters}.
+   *
+   * @param type Simple type (String or boxed) to deserialize to.
    * @param value String to deserialize from.
-   * @param <T> Type to deserialize into.
-   * @return Deserialized instance or null if no adequate constructor is found.
-   * @throws BlueprintException if an exception is thrown from inside the constructor.
+   * @param <T> Simple type (primitive, boxed or String).
+   * @return Deserialized instance of a simple type.
+   * @throws BlueprintException if the type cannot be converted to, or if the conversion fails.
    */
-  private <T> T useConstructorDeserializer(Class<T> type, String value) {
-    Constructor<T> ctor;
-    try {
-      ctor = type.getConstructor(String.class);
-    } catch (NoSuchMethodException e) {
-      return null;
+  <T> T deserializeSimpleTypeFromValue(Class<T> type, String value) {
+    Converter<T> converter = userConverter(type);
+    if (converter == null) {
+      converter = Converters.forType(type);
+      if (converter == null) {
+        throw new BlueprintException("No appropriate deserialization method found" +
+                " for type " + type.getName());
+      }
     }
 
+    final T converted;
     try {
-      return ctor.newInstance(value);
+      converted = converter.convert(value);
     } catch (Exception e) {
-      throw new BlueprintException("Failed to deserialize configuration item" +
-              " as an instance of " + type.getCanonicalName() +
-              ", using constructor(String)" +
-              ", from value \"" + value + "\"", e);
+      throw conversionFailed(type, Converters.describe(converter), value, e);
     }
+    return canonical(converted);
+  }
+
+
+  /**
+   * Creates the exception thrown when a value cannot be converted to a simple type.
+   *
+   * @param type type converted to.
+   * @param using description of the conversion, as given by {@link Converters#describe(Converter)}.
+   * @param value value being converted.
+   * @param cause exception thrown by the conversion.
+   */
+  static BlueprintException conversionFailed(Class<?> type, String using, String value, Throwable cause) {
+    return new BlueprintException("Failed to deserialize configuration item" +
+            " as an instance of " + type.getCanonicalName() +
+            ", using " + using +
+            ", from value \"" + value + "\"", cause);
   }
 
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts names to the constants of an enum by looking them up in tables built once
+ * per enum, without reflection.
+ * <p>
+ *   Names are matched exactly first, and then ignoring case and treating dashes as
+ *   underscores, so that {@code FAIL_OPEN}, {@code fail_open} and {@code fail-open}
+ *   all name the same constant.  Names which would match more than one constant once
+ *   normalized only match exactly.
+ * </p>
+ *
+ * @param <E> enum type.
+ *
+ * @author Zoran Rilak
+ */
+final class EnumConverter<E extends Enum<E>> extends Converters.DefaultConverter<E> {
+
+  private final Class<E> type;
+
+  private final Map<String, E> exact;
+
+  /** Constants by normalized name; null for names shared by several constants. */
+  private final Map<String, E> normalized;
+
+
+  EnumConverter(Class<E> type) {
+    super("lookup of constant names");
+    this.type = type;
+    final E[] constants = type.getEnumConstants();
+    final int capacity = (int) (constants.length / .75f) + 1;
+    this.exact = new HashMap<String, E>(capacity);
+    this.normalized = new HashMap<String, E>(capacity);
+    for (E c : constants) {
+      exact.put(c.name(), c);
+      final String key = normalize(c.name());
+      normalized.put(key, normalized.containsKey(key) ? null : c);
+    }
+  }
+
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static Converter<?> forType(Class<?> type) {
+    return new EnumConverter(type.asSubclass(Enum.class));
+  }
+
+
+  @Override
+  public E convert(String value) {
+    if (value == null) {
+      throw new NullPointerException("Name is null");
+    }
+    E c = exact.get(value);
+    if (c == null) {
+      c = normalized.get(normalize(value));
+      if (c == null) {
+        throw new IllegalArgumentException("No enum constant " + type.getCanonicalName() + "." + value);
+      }
+    }
+    return c;
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static String normalize(String name) {
+    final char[] chars = new char[name.length()];
+    for (int i = 0; i < chars.length; i++) {
+      final char ch = name.charAt(i);
+      chars[i] = ch == '-' ? '_' : Character.toLowerCase(ch);
+    }
+    return new String(chars);
+  }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.StringSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contents of a file named by a configuration value, for methods annotated with
+ * {@link FromFile}.
+ * <p>
+ *   A file value is what blueprints cache for such methods.  Each call to {@link #get()}
+ *   returns the loaded contents until the check interval has passed; the next call then
+ *   reads the file's attributes and loads the file again only if its modification time
+ *   or size differs from that of the loaded contents.  Files are mapped into memory
+ *   read-only; lines are found when the file is loaded, but decoded only when read.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+final class FileValue {
+
+  private final Path file;
+
+  private final Class<?> type;
+
+  /** The context the value was created in, entered again when the file is loaded. */
+  private final Context context;
+
+  /** Nanoseconds between checks for changes, or negative to never check again. */
+  private final long checkInterval;
+
+  private volatile Loaded loaded;
+
+  /** {@link System#nanoTime()} of the last check; races only cost an extra check. */
+  private volatile long checked;
+
+
+  private FileValue(Path file, Class<?> type, long checkInterval) {
+    this.file = file;
+    this.type = type;
+    this.checkInterval = checkInterval;
+    this.context = Context.getThreadInstance();
+  }
+
+
+  /**
+   * Creates a file value.
+   *
+   * @param returnType method's boxed return type.
+   * @param hintedType method's type hint or null.
+   * @param fileName name of the file.
+   * @param checkInterval milliseconds between checks for changes, zero to check on every
+   * call, or negative to never check again.
+   * @throws BlueprintException if the return type cannot be read from a file,
+   * or the file name is not valid.
+   */
+  static FileValue of(Class<?> returnType, Class<?> hintedType, String fileName,
+                      long checkInterval) {
+    if (returnType == List.class || returnType == Collection.class) {
+      if (hintedType != null && hintedType != String.class) {
+        throw new BlueprintException("Files can only be read as collections of String, not " +
+                hintedType.getCanonicalName());
+      }
+    } else if (returnType != ByteBuffer.class && returnType != StringSet.class) {
+      throw new BlueprintException("Files can only be read as ByteBuffer, List<String>," +
+              " Collection<String> or StringSet, not " + returnType.getCanonicalName());
+    }
+    if (fileName == null) {
+      throw new BlueprintException("Configuration value does not name a file");
+    }
+    try {
+      return new FileValue(Paths.get(fileName), returnType,
+              checkInterval < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(checkInterval));
+    } catch (InvalidPathException e) {
+      throw new BlueprintException("Invalid file name '" + fileName + "'", e);
+    }
+  }
+
+
+  /**
+   * Gets the contents of the file, loading it again if the check interval has passed
+   * and the file has changed since it was last loaded.
+   *
+   * @throws BlueprintException if the file cannot be read.
+   */
+  Object get() {
+    Loaded l = loaded;
+    if (l == null || isCheckDue()) {
+      final BasicFileAttributes attributes = attributes();
+      checked = System.nanoTime();
+      if (l == null || l.isStale(attributes)) {
+        synchronized (this) {
+          l = loaded;
+          if (l == null || l.isStale(attributes)) {
+            l = load(attributes);
+            loaded = l;
+          }
+        }
+      }
+    }
+    /* buffers have a position of their own, which callers must not share */
+    return l.value instanceof ByteBuffer ? ((ByteBuffer) l.value).duplicate() : l.value;
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private boolean isCheckDue() {
+    return checkInterval >= 0 && System.nanoTime() - checked >= checkInterval;
+  }
+
+
+  private BasicFileAttributes attributes() {
+    try {
+      return Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException e) {
+      throw failed(e);
+    }
+  }
+
+
+  private Loaded load(BasicFileAttributes attributes) {
+    if (attributes.size() > Integer.MAX_VALUE) {
+      throw failed(new IOException("file is larger than 2 GB"));
+    }
+    final ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      /* mapping stays valid once the channel is closed */
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, attributes.size()).asReadOnlyBuffer();
+    } catch (IOException e) {
+      throw failed(e);
+    }
+
+    final Object value;
+    if (type == ByteBuffer.class) {
+      value = buffer;
+    } else if (type == StringSet.class) {
+      final Lines lines = new Lines(buffer);
+      value = StringSet.of(lines.toArray(new String[lines.size()]));
+    } else {
+      value = new Lines(buffer);
+    }
+    return new Loaded(attributes.lastModifiedTime(), attributes.size(), value);
+  }
+
+
+  private BlueprintException failed(IOException e) {
+    final Context ctxt = context.enterCopy();
+    try {
+      return new BlueprintException("Failed to read file '" + file + "'", e);
+    } finally {
+      if (ctxt != null) {
+        ctxt.exit();
+      }
+    }
+  }
+
+
+  /**
+   * Contents of the file as loaded, with the attributes the file had at the time.
+   */
+  private static final class Loaded {
+
+    final FileTime modified;
+
+    final long size;
+
+    final Object value;
+
+    Loaded(FileTime modified, long size, Object value) {
+      this.modified = modified;
+      this.size = size;
+      this.value = value;
+    }
+
+    boolean isStale(BasicFileAttributes attributes) {
+      return size != attributes.size() || ! modified.equals(attributes.lastModifiedTime());
+    }
+
+  }
+
+
+  /**
+   * Read-only list of the lines of a mapped file.  Lines end in {@code \n} or
+   * {@code \r\n}, which are not part of the line; a final line terminator does not
+   * start another line.
+   */
+  static final class Lines extends AbstractList<String> implements RandomAccess {
+
+    private final ByteBuffer buffer;
+
+    /** Offsets at which lines start, followed by the offset past the last line. */
+    private final int[] starts;
+
+    Lines(ByteBuffer buffer) {
+      this.buffer = buffer;
+      final int limit = buffer.limit();
+      int n = 0;
+      for (int i = 0; i < limit; i++) {
+        if (buffer.get(i) == '\n') {
+          n++;
+        }
+      }
+      final boolean unterminated = limit > 0 && buffer.get(limit - 1) != '\n';
+      this.starts = new int[n + (unterminated ? 2 : 1)];
+      int line = 1;
+      for (int i = 0; i < limit; i++) {
+        if (buffer.get(i) == '\n') {
+          starts[line++] = i + 1;
+        }
+      }
+      if (unterminated) {
+        starts[line] = limit + 1;
+      }
+    }
+
+    @Override
+    public String get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+      }
+      final int start = starts[index];
+      int end = starts[index + 1] - 1;
+      if (end > start && buffer.get(end - 1) == '\r') {
+        end--;
+      }
+      final byte[] bytes = new byte[end - start];
+      buffer.get(start, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+      return starts.length - 1;
+    }
+
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.annotation.*;
+
+/**
+ * Makes a method return the contents of the file named by its configuration value,
+ * rather than the value itself.
+ * <p>
+ *   Methods may return a {@code java.nio.ByteBuffer}, which is a read-only view of the
+ *   file mapped into memory, a {@code List<String>} or {@code Collection<String>} of the
+ *   file's lines, decoded as UTF-8 when they are read, or a {@code StringSet} of the
+ *   file's lines.  The file is opened when the method is first called.  After that,
+ *   Blueprint checks the file's modification time and size at most once per
+ *   {@link #checkInterval()}, and loads the file again if either one has changed;
+ *   calls in between return the loaded contents without touching the file system.
+ * </p>
+ *
+ * <p>
+ *   Relative file names are resolved against the working directory.  Mapped files
+ *   may not be larger than 2 GB.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface FromFile {
+
+  /**
+   * Milliseconds to wait before checking the file for changes again.  Zero checks
+   * the file on every call, and a negative interval never checks it again once it
+   * is loaded.
+   */
+  long checkInterval() default 1000;
+
+}
@@ -0,0 +1,623 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.AbstractTree;
+import org.codemined.util.Path;
+import org.codemined.util.Tree;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Compact, immutable tree of configuration values, which can be read by any number of
+ * threads without synchronization.
+ * <p>
+ *   All nodes of a frozen tree are kept in a handful of arrays shared by the whole tree,
+ *   laid out breadth first, so that the children of every node take up a contiguous range:
+ *   named children first, sorted by key and found by binary search, then array nodes.
+ *   A node costs its key, its value, and two offsets into the arrays; leaves need nothing
+ *   more.  Equal keys and values are stored once.  The {@code FrozenTree} objects handed
+ *   out for nodes are only views of a position in the arrays, created when asked for.
+ * </p>
+ *
+ * <p>
+ *   Frozen trees are built from any {@link ConfigNode} or string {@link Tree} with
+ *   {@link #freeze(ConfigNode)} and {@link #freeze(Tree)}.  Methods which would modify
+ *   the tree throw {@link UnsupportedOperationException}.  {@link #indexed()} adds an
+ *   index of full paths, with which {@link #getByPath(Path)} finds a node by hashing
+ *   the path rather than descending key by key, and {@link #getChildNode(String)} by
+ *   hashing the key rather than by binary search.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+public final class FrozenTree extends AbstractTree<String, String> implements ConfigNode<FrozenTree> {
+
+  private final Nodes nodes;
+
+  private final int id;
+
+
+  private FrozenTree(Nodes nodes, int id) {
+    this.nodes = nodes;
+    this.id = id;
+  }
+
+
+  /**
+   * Freezes a configuration node and everything below it.
+   *
+   * @param root the node to freeze.
+   * @return the root of the frozen tree.
+   */
+  public static FrozenTree freeze(ConfigNode<?> root) {
+    if (root instanceof FrozenTree) {
+      return (FrozenTree) root;
+    }
+    return new FrozenTree(new Builder().build(root), 0);
+  }
+
+
+  /**
+   * Freezes a tree of strings, e.g. an {@link org.codemined.util.InMemoryTree}.
+   *
+   * @param root the tree to freeze.
+   * @return the root of the frozen tree.
+   */
+  public static FrozenTree freeze(Tree<String, String> root) {
+    if (root instanceof FrozenTree) {
+      return (FrozenTree) root;
+    }
+    return new FrozenTree(new Builder().build(root), 0);
+  }
+
+
+  /**
+   * Gets this node in a tree which also indexes the full path of every node reachable by
+   * keys alone, i.e. not below array nodes.  The index takes less than 24 bytes per node:
+   * the parent and path hash of each node, and a hash table at most half full, which is
+   * sized to the next power of two of twice the number of nodes.
+   *
+   * @return the same node in the indexed tree; this node if the tree is indexed already.
+   */
+  public FrozenTree indexed() {
+    return nodes.index != null ? this : new FrozenTree(nodes.withIndex(), id);
+  }
+
+
+  /* Methods from ConfigNode ---------------------------------------- */
+
+  @Override
+  public boolean hasValue() {
+    return nodes.values[id] != null;
+  }
+
+  @Override
+  public String getValue() {
+    return nodes.values[id];
+  }
+
+  @Override
+  public boolean hasArrayNodes() {
+    return nodes.elementStart[id] < nodes.childStart[id + 1];
+  }
+
+  @Override
+  public List<FrozenTree> getArrayNodes() {
+    return new Elements(nodes, nodes.elementStart[id], nodes.childStart[id + 1]);
+  }
+
+  /**
+   * Gets the values of all array nodes, if none of them has nodes of its own.
+   */
+  @Override
+  public String[] getArrayValues() {
+    final int from = nodes.elementStart[id];
+    final int to = nodes.childStart[id + 1];
+    for (int i = from; i < to; i++) {
+      if (nodes.childStart[i] < nodes.childStart[i + 1]) {
+        return null;
+      }
+    }
+    return Arrays.copyOfRange(nodes.values, from, to);
+  }
+
+  @Override
+  public FrozenTree getChildNode(String key) {
+    final int i = indexOf(key);
+    return i < 0 ? null : new FrozenTree(nodes, i);
+  }
+
+  @Override
+  public boolean containsKey(String key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return new KeySet(nodes, nodes.childStart[id], nodes.elementStart[id]);
+  }
+
+  @Override
+  public FrozenTree getByPath(Path<String> path) {
+    final Index index = nodes.index;
+    if (index == null || (index.parent[id] < 0 && id != 0)) {
+      return ConfigNode.super.getByPath(path);
+    }
+    final int i = index.find(nodes, id, path);
+    return i < 0 ? null : i == id ? this : new FrozenTree(nodes, i);
+  }
+
+
+  /* Methods from Tree ---------------------------------------------- */
+
+  @Override
+  public FrozenTree get(String key) {
+    return getChildNode(key);
+  }
+
+  @Override
+  public boolean contains(String key) {
+    return containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return nodes.elementStart[id] - nodes.childStart[id];
+  }
+
+  @Override
+  public Iterator<Tree<String, String>> iterator() {
+    final Iterator<FrozenTree> children = new Elements(nodes, nodes.childStart[id], nodes.elementStart[id]).iterator();
+    return new Iterator<Tree<String, String>>() {
+      @Override
+      public boolean hasNext() {
+        return children.hasNext();
+      }
+
+      @Override
+      public Tree<String, String> next() {
+        return children.next();
+      }
+    };
+  }
+
+  @Override
+  public Set<Map.Entry<String, Tree<String, String>>> entrySet() {
+    final int from = nodes.childStart[id];
+    final int to = nodes.elementStart[id];
+    return new AbstractSet<Map.Entry<String, Tree<String, String>>>() {
+      @Override
+      public Iterator<Map.Entry<String, Tree<String, String>>> iterator() {
+        return new Iterator<Map.Entry<String, Tree<String, String>>>() {
+          private int i = from;
+
+          @Override
+          public boolean hasNext() {
+            return i < to;
+          }
+
+          @Override
+          public Map.Entry<String, Tree<String, String>> next() {
+            if (i >= to) {
+              throw new NoSuchElementException();
+            }
+            final int child = i++;
+            return new AbstractMap.SimpleImmutableEntry<String, Tree<String, String>>(
+                    nodes.keys[child], new FrozenTree(nodes, child));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return to - from;
+      }
+    };
+  }
+
+  @Override
+  public void setValue(String value) {
+    throw immutable();
+  }
+
+  @Override
+  public Tree<String, String> put(String key, String value) {
+    throw immutable();
+  }
+
+  @Override
+  public Tree<String, String> putTree(String key, Tree<String, String> subTree) {
+    throw immutable();
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof FrozenTree && ((FrozenTree) o).nodes == nodes && ((FrozenTree) o).id == id;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * System.identityHashCode(nodes) + id;
+  }
+
+  @Override
+  public String toString() {
+    return "FrozenTree[" + (nodes.keys[id] != null ? nodes.keys[id] + "=" : "") + nodes.values[id] + "]";
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private int indexOf(String key) {
+    if (key == null) {
+      return -1;
+    }
+    final Index index = nodes.index;
+    if (index != null && (id == 0 || index.parent[id] >= 0)) {
+      return index.findChild(nodes, id, key);
+    }
+    return nodes.indexOf(key, nodes.childStart[id], nodes.elementStart[id]);
+  }
+
+
+  private static UnsupportedOperationException immutable() {
+    return new UnsupportedOperationException("Frozen trees cannot be modified");
+  }
+
+
+  /**
+   * The nodes of a frozen tree, indexed by node id in breadth-first order.
+   */
+  private static final class Nodes {
+
+    /** Key of each node in its parent, or null for the root and array nodes. */
+    final String[] keys;
+
+    final String[] values;
+
+    /**
+     * Id of the first child of each node, followed by the total number of nodes.
+     * The children of node {@code i} are {@code childStart[i]} up to {@code childStart[i + 1]}.
+     */
+    final int[] childStart;
+
+    /** Id of the first array node among the children of each node. */
+    final int[] elementStart;
+
+    /** Index of full paths, or null. */
+    final Index index;
+
+    Nodes(String[] keys, String[] values, int[] childStart, int[] elementStart, Index index) {
+      this.keys = keys;
+      this.values = values;
+      this.childStart = childStart;
+      this.elementStart = elementStart;
+      this.index = index;
+    }
+
+    Nodes withIndex() {
+      return new Nodes(keys, values, childStart, elementStart, new Index(this));
+    }
+
+    int indexOf(String key, int from, int to) {
+      int lo = from;
+      int hi = to - 1;
+      while (lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        final int c = keys[mid].compareTo(key);
+        if (c < 0) {
+          lo = mid + 1;
+        } else if (c > 0) {
+          hi = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+  }
+
+
+  /**
+   * Open-addressing table from the hash of each node's path to the node.  Hashes are
+   * those of {@link java.util.List#hashCode()}, which paths keep precomputed; the path of
+   * a node found by hash is compared key by key, walking up the tree.
+   */
+  private static final class Index {
+
+    /** Parent of each node reachable by keys alone, -1 for any other node and the root. */
+    final int[] parent;
+
+    /** Hash of the path of each node reachable by keys alone. */
+    private final int[] hashes;
+
+    /** Node ids plus one, 0 marking empty entries; the next power of two of 2n entries. */
+    private final int[] table;
+
+    private final int mask;
+
+    Index(Nodes nodes) {
+      final int n = nodes.keys.length;
+      this.parent = new int[n];
+      this.hashes = new int[n];
+      this.table = new int[Integer.highestOneBit(Math.max(n, 2) - 1) << 2];
+      this.mask = table.length - 1;
+
+      Arrays.fill(parent, -1);
+      hashes[0] = 1;
+      put(0);
+      for (int i = 0; i < n; i++) {
+        if (i != 0 && parent[i] < 0) {
+          continue;
+        }
+        for (int c = nodes.childStart[i]; c < nodes.elementStart[i]; c++) {
+          parent[c] = i;
+          hashes[c] = 31 * hashes[i] + nodes.keys[c].hashCode();
+          put(c);
+        }
+      }
+    }
+
+    /**
+     * Finds the node at a path below the given node.
+     */
+    int find(Nodes nodes, int from, Path<String> path) {
+      final int length = path.size();
+      if (length == 0) {
+        return from;
+      }
+      /* hash of the concatenated paths, from the hashes of both */
+      int power = 1;
+      for (int i = 0; i < length; i++) {
+        power *= 31;
+      }
+      final int hash = hashes[from] * power + path.hashCode() - power;
+      for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+        final int candidate = table[slot] - 1;
+        if (hashes[candidate] == hash && matches(nodes, candidate, from, path)) {
+          return candidate;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Finds a named child of the given node.
+     */
+    int findChild(Nodes nodes, int from, String key) {
+      final int hash = 31 * hashes[from] + key.hashCode();
+      for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+        final int candidate = table[slot] - 1;
+        if (hashes[candidate] == hash && parent[candidate] == from && nodes.keys[candidate].equals(key)) {
+          return candidate;
+        }
+      }
+      return -1;
+    }
+
+    private boolean matches(Nodes nodes, int node, int from, Path<String> path) {
+      for (Path<String> p = path; p.size() > 0; p = p.getParent()) {
+        if (node <= 0 || ! nodes.keys[node].equals(p.getLast())) {
+          return false;
+        }
+        node = parent[node];
+      }
+      return node == from;
+    }
+
+    private void put(int node) {
+      int slot = spread(hashes[node]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = node + 1;
+    }
+
+    private static int spread(int h) {
+      return h ^ (h >>> 16);
+    }
+  }
+
+
+  /**
+   * Lays out the nodes of a tree breadth first.  Source nodes are either
+   * {@link ConfigNode}s or {@link Tree}s.
+   */
+  private static final class Builder {
+
+    private final ArrayList<Object> sources = new ArrayList<Object>();
+
+    private String[] keys = new String[16];
+
+    private String[] values = new String[16];
+
+    private int[] childStart = new int[17];
+
+    private int[] elementStart = new int[16];
+
+    private int size;
+
+    /** Equal keys and values, stored once. */
+    private final HashMap<String, String> strings = new HashMap<String, String>();
+
+
+    Nodes build(Object root) {
+      add(null, root);
+      for (int i = 0; i < size; i++) {
+        final Object source = sources.get(i);
+        /* drop the source once laid out, so that it can be collected while freezing */
+        sources.set(i, null);
+        childStart[i] = size;
+        values[i] = canonical(valueOf(source));
+        final String[] childKeys = keysOf(source);
+        Arrays.sort(childKeys);
+        for (String key : childKeys) {
+          /* key sets of composite trees may name keys no layer returns a node for */
+          final Object child = childOf(source, key);
+          if (child != null) {
+            add(canonical(key), child);
+          }
+        }
+        elementStart[i] = size;
+        for (Object element : elementsOf(source)) {
+          add(null, element);
+        }
+      }
+      childStart[size] = size;
+      return new Nodes(Arrays.copyOf(keys, size), Arrays.copyOf(values, size),
+              Arrays.copyOf(childStart, size + 1), Arrays.copyOf(elementStart, size), null);
+    }
+
+    private void add(String key, Object source) {
+      if (size == keys.length) {
+        final int capacity = size * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        childStart = Arrays.copyOf(childStart, capacity + 1);
+        elementStart = Arrays.copyOf(elementStart, capacity);
+      }
+      keys[size++] = key;
+      sources.add(source);
+    }
+
+    private String canonical(String s) {
+      if (s == null) {
+        return null;
+      }
+      final String existing = strings.putIfAbsent(s, s);
+      return existing != null ? existing : s;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String valueOf(Object source) {
+      if (source instanceof ConfigNode) {
+        return ((ConfigNode<?>) source).getValue();
+      }
+      return ((Tree<String, String>) source).getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String[] keysOf(Object source) {
+      if (source instanceof ConfigNode) {
+        final Set<String> keySet = ((ConfigNode<?>) source).keySet();
+        return keySet.toArray(new String[keySet.size()]);
+      }
+      final Set<Map.Entry<String, Tree<String, String>>> entries = ((Tree<String, String>) source).entrySet();
+      final String[] keys = new String[entries.size()];
+      int i = 0;
+      for (Map.Entry<String, Tree<String, String>> e : entries) {
+        keys[i++] = e.getKey();
+      }
+      return keys;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object childOf(Object source, String key) {
+      if (source instanceof ConfigNode) {
+        return ((ConfigNode<?>) source).getChildNode(key);
+      }
+      return ((Tree<String, String>) source).get(key);
+    }
+
+    private static List<?> elementsOf(Object source) {
+      if (source instanceof ConfigNode && ((ConfigNode<?>) source).hasArrayNodes()) {
+        return ((ConfigNode<?>) source).getArrayNodes();
+      }
+      return Collections.emptyList();
+    }
+  }
+
+
+  private static final class Elements extends AbstractList<FrozenTree> implements RandomAccess {
+
+    private final Nodes nodes;
+
+    private final int from;
+
+    private final int to;
+
+    Elements(Nodes nodes, int from, int to) {
+      this.nodes = nodes;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public FrozenTree get(int index) {
+      if (index < 0 || index >= to - from) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + (to - from));
+      }
+      return new FrozenTree(nodes, from + index);
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+
+
+  /**
+   * Keys of the named children of a node, in sorted order.
+   */
+  private static final class KeySet extends AbstractSet<String> {
+
+    private final Nodes nodes;
+
+    private final int from;
+
+    private final int to;
+
+    KeySet(Nodes nodes, int from, int to) {
+      this.nodes = nodes;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof String && nodes.indexOf((String) o, from, to) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return Collections.unmodifiableList(Arrays.asList(nodes.keys).subList(from, to)).iterator();
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+
+}
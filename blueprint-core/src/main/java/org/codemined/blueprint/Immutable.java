@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a value type whose instances never change and are interchangeable when equal,
+ * so that blueprints built with {@code Blueprint.Builder.canonicalize()} may share one
+ * instance between all equal values.  The type must implement {@code equals} and
+ * {@code hashCode}.
+ *
+ * @author Zoran Rilak
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Immutable {
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Placeholder for a value being deserialized by some thread.
+ * <p>
+ *   A thread missing a cached value installs an InFlight placeholder in its place and
+ *   deserializes the value; threads arriving in the meantime find the placeholder and
+ *   wait for the result instead of deserializing the same value again.  Waiting is only
+ *   done on misses, so reading a cached value never takes a lock.
+ * </p>
+ * <p>
+ *   Waiters park on a {@link CompletableFuture} rather than an object monitor, so a
+ *   waiting virtual thread releases its carrier instead of pinning it.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+final class InFlight {
+
+  private final Thread owner = Thread.currentThread();
+
+  private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+
+  /**
+   * Publishes the deserialized value to waiting threads.
+   */
+  void complete(Object value) {
+    result.complete(value);
+  }
+
+
+  /**
+   * Publishes the failure to waiting threads, who will rethrow it.
+   */
+  void fail(Throwable failure) {
+    result.completeExceptionally(failure);
+  }
+
+
+  /**
+   * Waits for the value, uninterruptibly.
+   *
+   * @return the deserialized value.
+   * @throws BlueprintException if called from the thread deserializing the value.
+   */
+  Object await() {
+    if (! result.isDone() && owner == Thread.currentThread()) {
+      throw new BlueprintException("Recursive invocation while deserializing a value");
+    }
+    try {
+      return result.join();
+    } catch (CompletionException e) {
+      final Throwable failure = e.getCause();
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      throw e;
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Weak table of canonical instances of immutable values, shared by all blueprints
+ * built with {@link Blueprint.Builder#canonicalize()}.
+ * <p>
+ *   Strings, boxed primitives, {@code BigInteger}, {@code BigDecimal}, {@code URI},
+ *   {@code UUID} and types annotated with {@link Immutable} are canonicalized; enum
+ *   constants already are canonical.  Values are held weakly, so a canonical instance
+ *   lives only as long as some blueprint refers to it, and blueprints reloaded while
+ *   the old ones are still in use share their values with them.  The table is split
+ *   into segments locked separately.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+final class Interner {
+
+  static final Interner SHARED = new Interner();
+
+  private static final int SEGMENTS = 16;
+
+  private static final ClassValue<Boolean> CANONICALIZABLE = new ClassValue<Boolean>() {
+    @Override
+    protected Boolean computeValue(Class<?> type) {
+      return type == String.class
+              || type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+              || type == Character.class || type == Double.class || type == Float.class
+              || type == BigInteger.class || type == BigDecimal.class
+              || type == URI.class || type == UUID.class
+              || type.isAnnotationPresent(Immutable.class);
+    }
+  };
+
+  private final Map<Object, WeakReference<Object>>[] segments;
+
+
+  @SuppressWarnings("unchecked")
+  Interner() {
+    segments = (Map<Object, WeakReference<Object>>[]) new Map<?, ?>[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new WeakHashMap<Object, WeakReference<Object>>();
+    }
+  }
+
+
+  /**
+   * Gets the canonical instance equal to a value, making the value canonical if
+   * there is none.  Values of other types are returned as they are.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T intern(T value) {
+    if (value == null || ! CANONICALIZABLE.get(value.getClass())) {
+      return value;
+    }
+    final int h = value.hashCode();
+    final Map<Object, WeakReference<Object>> segment = segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    synchronized (segment) {
+      final WeakReference<Object> ref = segment.get(value);
+      final Object canonical = ref == null ? null : ref.get();
+      if (canonical != null) {
+        return (T) canonical;
+      }
+      segment.put(value, new WeakReference<Object>(value));
+      return value;
+    }
+  }
+
+
+  /**
+   * Gets the number of canonical instances currently in the table.
+   */
+  int size() {
+    int size = 0;
+    for (Map<Object, WeakReference<Object>> segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+}
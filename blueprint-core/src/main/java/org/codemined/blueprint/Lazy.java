@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.annotation.*;
+
+/**
+ * Makes a method returning a {@code Map}, {@code List}, {@code Collection} or {@code Set}
+ * return a read-only view of the configuration, whose elements are deserialized when they
+ * are first accessed rather than all at once.
+ * <p>
+ *   List and map elements are deserialized one by one and kept once deserialized.  Sets
+ *   need all their elements to tell them apart, so a lazy set is deserialized as a whole
+ *   when it is first used.  Other collection and map types are always deserialized eagerly.
+ *   All methods can be made lazy at once with {@code Blueprint.Builder.lazy()}.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface Lazy {
+}
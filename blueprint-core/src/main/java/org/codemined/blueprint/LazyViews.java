@@ -0,0 +1,383 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Path;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only lists, sets and maps backed by configuration nodes, whose elements are
+ * deserialized on first access; see {@link Lazy}.
+ * <p>
+ *   Deserialized list elements are kept in an {@link AtomicReferenceArray}, and map values
+ *   in a {@link ConcurrentHashMap} holding only the keys accessed so far, both of which
+ *   publish them safely to other threads.  Threads racing to deserialize the same element
+ *   may each do so, but only the first result is kept and returned to all of them.
+ *   Elements are deserialized in a copy of the context the view was created in, so that
+ *   failures tell which method the element belongs to.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+final class LazyViews {
+
+  private LazyViews() {
+  }
+
+
+  /**
+   * Tells whether a lazy view can be returned for the given declared return type.
+   */
+  static boolean supports(Class<?> type) {
+    return type == Map.class || type == List.class || type == Collection.class || type == Set.class;
+  }
+
+
+  static <E> Map<String, E> map(Deserializer deserializer, DeserializationPlan element,
+                                ConfigNode<?> cfg, Path<String> cfgPath) {
+    final Set<String> keySet = cfg.keySet();
+    final String[] keys = keySet.toArray(new String[keySet.size()]);
+    return new LazyMap<E>(new Source(deserializer, element, cfg, cfgPath), keys);
+  }
+
+
+  /**
+   * @param type {@code List}, {@code Collection} or {@code Set}.
+   */
+  static <E> Collection<E> collection(Class<?> type, Deserializer deserializer, DeserializationPlan element,
+                                      ConfigNode<?> cfg, Path<String> cfgPath) {
+    final List<? extends ConfigNode<?>> nodeList = cfg.getArrayNodes();
+    final ConfigNode<?>[] nodes = nodeList.toArray(new ConfigNode<?>[nodeList.size()]);
+    final String[] keys = new String[nodes.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = "[" + i + "]";
+    }
+    final Elements elements = new Elements(new Source(deserializer, element, cfg, cfgPath), keys, nodes);
+    return type == Set.class ? new LazySet<E>(elements) : new LazyList<E>(elements);
+  }
+
+
+  /**
+   * Deserializes the elements of a view from the children of a node.
+   */
+  private static final class Source {
+
+    /** Stands for deserialized null values. */
+    static final Object NULL = new Object();
+
+    private final Deserializer deserializer;
+
+    private final DeserializationPlan element;
+
+    private final ConfigNode<?> parent;
+
+    private final Path<String> cfgPath;
+
+    /** Context the view was created in. */
+    private final Context context;
+
+
+    Source(Deserializer deserializer, DeserializationPlan element, ConfigNode<?> parent, Path<String> cfgPath) {
+      this.deserializer = deserializer;
+      this.element = element;
+      this.parent = parent;
+      this.cfgPath = cfgPath;
+      this.context = Context.getThreadInstance();
+    }
+
+
+    /**
+     * @return the deserialized element, or {@link #NULL}.
+     */
+    Object deserialize(String key, ConfigNode<?> node) {
+      final Context ctxt = context.enterCopy();
+      try {
+        final Object v = deserializer.deserialize(element, key, node, cfgPath.to(key), false);
+        return v == null ? NULL : v;
+      } finally {
+        if (ctxt != null) {
+          ctxt.exit();
+        }
+      }
+    }
+
+
+    /* nodes need not be safe for concurrent lookups */
+
+    synchronized boolean containsKey(String key) {
+      return parent.containsKey(key);
+    }
+
+
+    synchronized ConfigNode<?> getChildNode(String key) {
+      return parent.getChildNode(key);
+    }
+  }
+
+
+  /**
+   * Deserializes and keeps the elements of a list or set, by index.
+   */
+  private static final class Elements {
+
+    private final Source source;
+
+    /** Keys of the elements in the parent node. */
+    private final String[] keys;
+
+    private final ConfigNode<?>[] nodes;
+
+    private final AtomicReferenceArray<Object> values;
+
+
+    Elements(Source source, String[] keys, ConfigNode<?>[] nodes) {
+      this.source = source;
+      this.keys = keys;
+      this.nodes = nodes;
+      this.values = new AtomicReferenceArray<Object>(keys.length);
+    }
+
+
+    int size() {
+      return keys.length;
+    }
+
+
+    Object get(int i) {
+      Object v = values.get(i);
+      if (v == null) {
+        v = source.deserialize(keys[i], nodes[i]);
+        if (! values.compareAndSet(i, null, v)) {
+          v = values.get(i);
+        }
+      }
+      return v == Source.NULL ? null : v;
+    }
+
+
+    Object[] getAll() {
+      final Object[] all = new Object[keys.length];
+      for (int i = 0; i < all.length; i++) {
+        all[i] = get(i);
+      }
+      return all;
+    }
+  }
+
+
+  private static final class LazyList<E> extends AbstractList<E> implements RandomAccess {
+
+    private final Elements elements;
+
+    LazyList(Elements elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+      if (index < 0 || index >= elements.size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + elements.size());
+      }
+      return (E) elements.get(index);
+    }
+
+    @Override
+    public int size() {
+      return elements.size();
+    }
+  }
+
+
+  /**
+   * Set deserialized as a whole on first use, since telling its elements apart takes
+   * all of them.
+   */
+  private static final class LazySet<E> extends AbstractSet<E> {
+
+    private final Elements elements;
+
+    private volatile Set<E> set;
+
+    LazySet(Elements elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      return set().iterator();
+    }
+
+    @Override
+    public int size() {
+      return set().size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return set().contains(o);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<E> set() {
+      Set<E> s = set;
+      if (s == null) {
+        synchronized (this) {
+          s = set;
+          if (s == null) {
+            s = (Set<E>) Reifier.reifyCollection(Set.class, elements.source.element.type, elements.getAll());
+            set = s;
+          }
+        }
+      }
+      return s;
+    }
+  }
+
+
+  /**
+   * Map whose values are looked up and deserialized by key on access, so that reading
+   * a few values of a large map costs nothing in proportion to its size.
+   */
+  private static final class LazyMap<E> extends AbstractMap<String, E> {
+
+    private final Source source;
+
+    /** Keys in the order of the parent node. */
+    private final String[] keys;
+
+    /** Values deserialized so far, by key. */
+    private final ConcurrentMap<String, Object> values = new ConcurrentHashMap<String, Object>();
+
+    LazyMap(Source source, String[] keys) {
+      this.source = source;
+      this.keys = keys;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(Object key) {
+      if (! (key instanceof String)) {
+        return null;
+      }
+      final String k = (String) key;
+      Object v = values.get(k);
+      if (v == null) {
+        if (! source.containsKey(k)) {
+          return null;
+        }
+        v = source.deserialize(k, source.getChildNode(k));
+        final Object previous = values.putIfAbsent(k, v);
+        if (previous != null) {
+          v = previous;
+        }
+      }
+      return v == Source.NULL ? null : (E) v;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && (values.containsKey(key) || source.containsKey((String) key));
+    }
+
+    @Override
+    public int size() {
+      return keys.length;
+    }
+
+    /** Keys are listed without deserializing any values. */
+    @Override
+    public Set<String> keySet() {
+      return new AbstractSet<String>() {
+        @Override
+        public Iterator<String> iterator() {
+          return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+              return next < keys.length;
+            }
+
+            @Override
+            public String next() {
+              if (next >= keys.length) {
+                throw new NoSuchElementException();
+              }
+              return keys[next++];
+            }
+          };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+          return containsKey(o);
+        }
+
+        @Override
+        public int size() {
+          return keys.length;
+        }
+      };
+    }
+
+    @Override
+    public Set<Entry<String, E>> entrySet() {
+      return new AbstractSet<Entry<String, E>>() {
+        @Override
+        public Iterator<Entry<String, E>> iterator() {
+          return new Iterator<Entry<String, E>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+              return next < keys.length;
+            }
+
+            @Override
+            public Entry<String, E> next() {
+              if (next >= keys.length) {
+                throw new NoSuchElementException();
+              }
+              final String key = keys[next++];
+              return new SimpleImmutableEntry<String, E>(key, get(key));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return keys.length;
+        }
+      };
+    }
+  }
+
+}
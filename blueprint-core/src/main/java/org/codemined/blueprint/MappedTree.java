@@ -0,0 +1,661 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Configuration tree read directly from a compiled binary file, usually mapped into memory.
+ * <p>
+ *   {@link #compile(ConfigNode, OutputStream)} writes any configuration tree in the binary
+ *   format, and {@link #open(Path)} maps such a file read-only, so that opening it costs
+ *   little more than checking its header, and JVMs reading the same file share its pages.
+ *   Opening a file does not read it through; {@link #verify()} checks its checksum when
+ *   asked to.  Offsets are checked as they are read, so that a corrupt file fails with a
+ *   {@link BlueprintException} rather than reading past the end of the buffer.  Nothing is copied onto the heap: strings are decoded only when a key or value
+ *   is asked for, and child nodes are found by binary search over the encoded keys.  Node
+ *   objects are views of a position in the file, created when asked for; reads need no
+ *   synchronization.
+ * </p>
+ *
+ * <p>
+ *   A file consists of a header, a node table, a string index and the string data, all
+ *   integers being big-endian:
+ * </p>
+ * <pre>
+ *   header         magic "BPCF", version, node count, string count, checksum (CRC-32 of
+ *                  everything after the header)
+ *   node table     for each node: key id, value id, first child, first array node
+ *   string index   for each string, and one past the last: offset into string data
+ *   string data    UTF-8 encoded strings, each stored once
+ * </pre>
+ * <p>
+ *   Nodes are laid out breadth first with the root first, so that the children of each
+ *   node take up the range up to the first child of the next node: named children first,
+ *   sorted by the bytes of their keys, then array nodes.  Missing keys and values have the
+ *   id -1.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+public final class MappedTree implements ConfigNode<MappedTree> {
+
+  /** Suffix of compiled configuration files. */
+  public static final String SUFFIX = ".bpc";
+
+  static final int MAGIC = 0x42504346;
+
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 20;
+
+  private static final int NODE_SIZE = 16;
+
+  private final Image image;
+
+  private final int id;
+
+
+  private MappedTree(Image image, int id) {
+    this.image = image;
+    this.id = id;
+  }
+
+
+  /**
+   * Writes a configuration tree in the binary format.
+   *
+   * @param root the root of the tree.
+   * @param out stream to write to; not closed.
+   * @throws IOException if the stream cannot be written to.
+   */
+  public static void compile(ConfigNode<?> root, OutputStream out) throws IOException {
+    new Compiler().compile(root, out);
+  }
+
+
+  /**
+   * Writes a configuration tree in the binary format to a file.
+   *
+   * @param root the root of the tree.
+   * @param file file to write, replaced if it exists.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void compile(ConfigNode<?> root, Path file) throws IOException {
+    try (OutputStream out = Files.newOutputStream(file)) {
+      compile(root, out);
+    }
+  }
+
+
+  /**
+   * Maps a compiled configuration file into memory.
+   *
+   * @param file compiled configuration file.
+   * @return the root of the tree.
+   * @throws BlueprintException if the file cannot be read or is not a valid compiled configuration.
+   */
+  public static MappedTree open(Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return of(channel);
+    } catch (IOException e) {
+      throw new BlueprintException("Cannot read compiled configuration " + file, e);
+    }
+  }
+
+
+  /**
+   * Reads a compiled configuration from a stream.  File streams are mapped into memory;
+   * other streams are read into a buffer on the heap.  The stream is not closed.
+   *
+   * @param in stream positioned at the start of the compiled configuration, which takes
+   * up the rest of the stream.
+   * @return the root of the tree.
+   * @throws BlueprintException if the stream cannot be read or is not a valid compiled configuration.
+   */
+  public static MappedTree load(InputStream in) {
+    try {
+      if (in instanceof FileInputStream) {
+        return of(((FileInputStream) in).getChannel());
+      }
+      return new MappedTree(new Image(ByteBuffer.wrap(in.readAllBytes())), 0);
+    } catch (IOException e) {
+      throw new BlueprintException("Cannot read compiled configuration", e);
+    }
+  }
+
+
+  /**
+   * Checks the compiled configuration against its checksum.  This reads the whole file,
+   * which opening it does not.
+   *
+   * @return this node.
+   * @throws BlueprintException if the checksum does not match.
+   */
+  public MappedTree verify() {
+    image.verify();
+    return this;
+  }
+
+
+  /* Methods from ConfigNode ---------------------------------------- */
+
+  @Override
+  public boolean hasValue() {
+    return image.valueId(id) >= 0;
+  }
+
+  @Override
+  public String getValue() {
+    return image.string(image.valueId(id));
+  }
+
+  @Override
+  public boolean hasArrayNodes() {
+    return image.elementStart(id) < image.childEnd(id);
+  }
+
+  @Override
+  public List<MappedTree> getArrayNodes() {
+    return new Elements(image, image.elementStart(id), image.childEnd(id));
+  }
+
+  /**
+   * Gets the values of all array nodes, if none of them has nodes of its own.
+   */
+  @Override
+  public String[] getArrayValues() {
+    final int from = image.elementStart(id);
+    final int to = image.childEnd(id);
+    for (int i = from; i < to; i++) {
+      if (image.childStart(i) < image.childEnd(i)) {
+        return null;
+      }
+    }
+    final String[] values = new String[to - from];
+    for (int i = from; i < to; i++) {
+      values[i - from] = image.string(image.valueId(i));
+    }
+    return values;
+  }
+
+  @Override
+  public MappedTree getChildNode(String key) {
+    final int i = indexOf(key);
+    return i < 0 ? null : new MappedTree(image, i);
+  }
+
+  @Override
+  public boolean containsKey(String key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return new KeySet(image, image.childStart(id), image.elementStart(id));
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof MappedTree && ((MappedTree) o).image == image && ((MappedTree) o).id == id;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * System.identityHashCode(image) + id;
+  }
+
+  @Override
+  public String toString() {
+    return "MappedTree[" + id + "]";
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private int indexOf(String key) {
+    if (key == null) {
+      return -1;
+    }
+    return image.indexOf(key, image.childStart(id), image.elementStart(id));
+  }
+
+
+  /**
+   * Maps a channel from its current position to its end.
+   */
+  private static MappedTree of(FileChannel channel) throws IOException {
+    final long position = channel.position();
+    return new MappedTree(new Image(channel.map(FileChannel.MapMode.READ_ONLY, position,
+            channel.size() - position)), 0);
+  }
+
+
+  /**
+   * Compares UTF-8 encoded strings byte by byte, which orders them by code point.
+   */
+  private static int compare(byte[] a, byte[] b) {
+    return Arrays.compareUnsigned(a, b);
+  }
+
+
+  /**
+   * A compiled configuration, read with absolute gets only.  The header is checked when
+   * the image is created; node and string offsets are checked as they are read.
+   */
+  private static final class Image {
+
+    private final ByteBuffer buffer;
+
+    private final int nodeCount;
+
+    private final int stringCount;
+
+    private final int nodeTable;
+
+    private final int stringIndex;
+
+    private final int stringData;
+
+    /** Length of the string data. */
+    private final int dataLength;
+
+    Image(ByteBuffer buffer) {
+      this.buffer = buffer;
+      if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+        throw new BlueprintException("Not a compiled configuration");
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new BlueprintException("Unsupported version " + buffer.getInt(4) + " of compiled configuration");
+      }
+      this.nodeCount = buffer.getInt(8);
+      this.stringCount = buffer.getInt(12);
+      final long stringData = HEADER_SIZE + (long) nodeCount * NODE_SIZE + ((long) stringCount + 1) * 4;
+      if (nodeCount < 1 || stringCount < 0 || stringData > buffer.limit()
+              || stringData + buffer.getInt((int) stringData - 4) != buffer.limit()) {
+        throw malformed();
+      }
+      this.nodeTable = HEADER_SIZE;
+      this.stringIndex = nodeTable + nodeCount * NODE_SIZE;
+      this.stringData = (int) stringData;
+      this.dataLength = buffer.limit() - this.stringData;
+    }
+
+    void verify() {
+      final CRC32 crc = new CRC32();
+      crc.update(buffer.duplicate().position(HEADER_SIZE));
+      if ((int) crc.getValue() != buffer.getInt(16)) {
+        throw new BlueprintException("Checksum of compiled configuration does not match");
+      }
+    }
+
+    int keyId(int node) {
+      return checkString(buffer.getInt(nodeTable + node * NODE_SIZE));
+    }
+
+    int valueId(int node) {
+      return checkString(buffer.getInt(nodeTable + node * NODE_SIZE + 4));
+    }
+
+    /** Children come after their parent in breadth-first order. */
+    int childStart(int node) {
+      final int start = buffer.getInt(nodeTable + node * NODE_SIZE + 8);
+      if (start <= node || start > nodeCount) {
+        throw malformed();
+      }
+      return start;
+    }
+
+    int elementStart(int node) {
+      final int start = buffer.getInt(nodeTable + node * NODE_SIZE + 12);
+      if (start < childStart(node) || start > childEnd(node)) {
+        throw malformed();
+      }
+      return start;
+    }
+
+    int childEnd(int node) {
+      final int end = node + 1 < nodeCount ? childStart(node + 1) : nodeCount;
+      if (end < childStart(node)) {
+        throw malformed();
+      }
+      return end;
+    }
+
+    String string(int stringId) {
+      if (stringId < 0) {
+        return null;
+      }
+      final int start = stringStart(stringId);
+      final byte[] bytes = new byte[stringEnd(stringId, start) - start];
+      buffer.get(stringData + start, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the node with the given key among nodes sorted by key.
+     */
+    int indexOf(String key, int from, int to) {
+      int lo = from;
+      int hi = to - 1;
+      while (lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        final int c = compareKey(keyId(mid), key);
+        if (c < 0) {
+          lo = mid + 1;
+        } else if (c > 0) {
+          hi = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Compares a stored key with the UTF-8 encoding of a string, encoding the string
+     * as it is compared instead of allocating its bytes.  Unpaired surrogates are
+     * encoded as {@code '?'}, like {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    private int compareKey(int stringId, String key) {
+      if (stringId < 0) {
+        throw malformed();
+      }
+      final int offset = stringStart(stringId);
+      final int length = stringEnd(stringId, offset) - offset;
+      final int start = stringData + offset;
+      final int n = key.length();
+      int p = 0;
+      for (int i = 0; i < n; i++) {
+        int cp = key.charAt(i);
+        if (cp < 0x80) {
+          if (p == length) {
+            return -1;
+          }
+          final int c = (buffer.get(start + p++) & 0xff) - cp;
+          if (c != 0) {
+            return c;
+          }
+          continue;
+        }
+
+        if (Character.isHighSurrogate((char) cp) && i + 1 < n && Character.isLowSurrogate(key.charAt(i + 1))) {
+          cp = Character.toCodePoint((char) cp, key.charAt(++i));
+        } else if (Character.isSurrogate((char) cp)) {
+          cp = '?';
+        }
+        final int extra = cp < 0x80 ? 0 : cp < 0x800 ? 1 : cp < 0x10000 ? 2 : 3;
+        for (int k = extra; k >= 0; k--) {
+          /* the leading byte has as many high bits set as there are bytes, followed by a zero */
+          final int b = k < extra ? 0x80 | ((cp >> (6 * k)) & 0x3f) :
+                  extra == 0 ? cp : ((0xf00 >> (extra + 1)) & 0xff) | (cp >> (6 * k));
+          if (p == length) {
+            return -1;
+          }
+          final int c = (buffer.get(start + p++) & 0xff) - b;
+          if (c != 0) {
+            return c;
+          }
+        }
+      }
+      return length - p;
+    }
+
+    private int checkString(int stringId) {
+      if (stringId < -1 || stringId >= stringCount) {
+        throw malformed();
+      }
+      return stringId;
+    }
+
+    private int stringStart(int stringId) {
+      final int start = buffer.getInt(stringIndex + stringId * 4);
+      if (start < 0 || start > dataLength) {
+        throw malformed();
+      }
+      return start;
+    }
+
+    private int stringEnd(int stringId, int start) {
+      final int end = buffer.getInt(stringIndex + stringId * 4 + 4);
+      if (end < start || end > dataLength) {
+        throw malformed();
+      }
+      return end;
+    }
+
+    private static BlueprintException malformed() {
+      return new BlueprintException("Compiled configuration is truncated or malformed");
+    }
+  }
+
+
+  /**
+   * Lays out a tree breadth first and writes it out.
+   */
+  private static final class Compiler {
+
+    private final ArrayList<ConfigNode<?>> sources = new ArrayList<ConfigNode<?>>();
+
+    private int[] nodes = new int[16 * 4];
+
+    private int size;
+
+    private final HashMap<String, Integer> stringIds = new HashMap<String, Integer>();
+
+    private final ArrayList<byte[]> strings = new ArrayList<byte[]>();
+
+    private int stringBytes;
+
+
+    void compile(ConfigNode<?> root, OutputStream out) throws IOException {
+      add(null, root);
+      for (int i = 0; i < size; i++) {
+        final ConfigNode<?> source = sources.get(i);
+        /* drop the source once laid out, so that it can be collected while compiling */
+        sources.set(i, null);
+        nodes[i * 4 + 1] = stringId(source.getValue());
+        nodes[i * 4 + 2] = size;
+        final List<String> keys = new ArrayList<String>(source.keySet());
+        final HashMap<String, byte[]> encoded = new HashMap<String, byte[]>();
+        for (String key : keys) {
+          encoded.put(key, key.getBytes(StandardCharsets.UTF_8));
+        }
+        keys.sort(new Comparator<String>() {
+          @Override
+          public int compare(String a, String b) {
+            return MappedTree.compare(encoded.get(a), encoded.get(b));
+          }
+        });
+        for (String key : keys) {
+          /* key sets of composite trees may name keys no layer returns a node for */
+          final ConfigNode<?> child = source.getChildNode(key);
+          if (child != null) {
+            add(key, child);
+          }
+        }
+        nodes[i * 4 + 3] = size;
+        if (source.hasArrayNodes()) {
+          for (ConfigNode<?> element : source.getArrayNodes()) {
+            add(null, element);
+          }
+        }
+      }
+      write(out);
+    }
+
+    private void add(String key, ConfigNode<?> source) {
+      if ((size + 1) * 4 > nodes.length) {
+        nodes = Arrays.copyOf(nodes, nodes.length * 2);
+      }
+      nodes[size * 4] = stringId(key);
+      size++;
+      sources.add(source);
+    }
+
+    private int stringId(String s) {
+      if (s == null) {
+        return -1;
+      }
+      Integer id = stringIds.get(s);
+      if (id == null) {
+        id = strings.size();
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        strings.add(bytes);
+        stringBytes += bytes.length;
+        stringIds.put(s, id);
+      }
+      return id;
+    }
+
+    private void write(OutputStream out) throws IOException {
+      final ByteArrayOutputStream body = new ByteArrayOutputStream(
+              size * NODE_SIZE + (strings.size() + 1) * 4 + stringBytes);
+      final DataOutputStream data = new DataOutputStream(body);
+      for (int i = 0; i < size * 4; i++) {
+        data.writeInt(nodes[i]);
+      }
+      int offset = 0;
+      for (byte[] s : strings) {
+        data.writeInt(offset);
+        offset += s.length;
+      }
+      data.writeInt(offset);
+      for (byte[] s : strings) {
+        data.write(s);
+      }
+      data.flush();
+
+      final CRC32 crc = new CRC32();
+      crc.update(body.toByteArray());
+      final DataOutputStream header = new DataOutputStream(out);
+      header.writeInt(MAGIC);
+      header.writeInt(VERSION);
+      header.writeInt(size);
+      header.writeInt(strings.size());
+      header.writeInt((int) crc.getValue());
+      body.writeTo(out);
+      out.flush();
+    }
+  }
+
+
+  private static final class Elements extends AbstractList<MappedTree> implements RandomAccess {
+
+    private final Image image;
+
+    private final int from;
+
+    private final int to;
+
+    Elements(Image image, int from, int to) {
+      this.image = image;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public MappedTree get(int index) {
+      if (index < 0 || index >= to - from) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + (to - from));
+      }
+      return new MappedTree(image, from + index);
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+
+
+  /**
+   * Keys of the named children of a node, decoded as they are iterated over.
+   */
+  private static final class KeySet extends AbstractSet<String> {
+
+    private final Image image;
+
+    private final int from;
+
+    private final int to;
+
+    KeySet(Image image, int from, int to) {
+      this.image = image;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof String
+              && image.indexOf((String) o, from, to) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return new Iterator<String>() {
+        private int i = from;
+
+        @Override
+        public boolean hasNext() {
+          return i < to;
+        }
+
+        @Override
+        public String next() {
+          if (i >= to) {
+            throw new NoSuchElementException();
+          }
+          return image.string(image.keyId(i++));
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+
+}
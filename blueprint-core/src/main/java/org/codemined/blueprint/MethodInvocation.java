@@ -47,6 +47,12 @@ class MethodInvocation {
   /** Stand-in for null argument list of methods without arguments. */
   private static final Object[] NO_ARGS = new Object[] {};
 
+  /** Hint of invocations passing no runtime type hint; see {@link #hintOf(Object[])}. */
+  static final Object NO_HINT = new Object();
+
+  /** Message of the exception thrown when a runtime type hint is not a Class. */
+  static final String INVALID_HINT = "Runtime type hints must be instances of Class";
+
   /** Java reflection object representing the method being called. */
   private final Method method;
 
@@ -73,13 +79,26 @@ class MethodInvocation {
    * @param args runtime arguments passed in the method call.
    */
   public MethodInvocation(Method method, Object[] args) {
+    this(new BlueprintMethod(method, -1), args);
+  }
+
+
+  /**
+   * Creates a new MethodInvocation object from a method descriptor and its runtime arguments.
+   *
+   * @param method descriptor of the method being called.
+   * @param args runtime arguments passed in the method call.
+   */
+  MethodInvocation(BlueprintMethod method, Object[] args) {
     /* ensure that the blueprint runtime call semantic has been observed */
-    BlueprintMethod.checkArguments(method);
+    if (method.argumentError != null) {
+      throw new BlueprintException(method.argumentError);
+    }
 
-    this.method = method;
+    this.method = method.method;
     this.args = unwrapRuntimeArguments(args);
-    this.returnType = Types.boxed(method.getReturnType());
-    this.hintedType = Types.boxed(getHintedType0());
+    this.returnType = method.returnType;
+    this.hintedType = getHintedType0(method.staticHint);
   }
 
 
@@ -108,6 +127,40 @@ class MethodInvocation {
   }
 
 
+  /**
+   * Gets the runtime type hint passed to a method, without creating an invocation.
+   * The hint alone decides the value of a method taking type hints, so blueprints
+   * use it to key cached values within the method's slot.
+   *
+   * @param args runtime arguments passed in the method call.
+   * @return the class passed as a type hint, {@link #NO_HINT} if none was passed, or null
+   * if the hint is not an instance of Class; see {@link #INVALID_HINT}.
+   */
+  static Object hintOf(Object[] args) {
+    if (args == null) {
+      return NO_HINT;
+    }
+    if (args.length == 1 && args[0] instanceof Object[]) {
+      args = (Object[]) args[0];
+    }
+    if (args.length == 0) {
+      return NO_HINT;
+    }
+    return args[0] instanceof Class ? args[0] : null;
+  }
+
+
+  /**
+   * Gets the type to deserialize a hinted value as, observing rules of precedence.
+   *
+   * @param hint hint returned by {@link #hintOf(Object[])}.
+   * @param staticHint boxed type given by the method's {@link UseType} annotation, or null.
+   */
+  static Class<?> hintedType(Object hint, Class<?> staticHint) {
+    return hint == NO_HINT ? staticHint : Types.boxed((Class<?>) hint);
+  }
+
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -151,35 +204,22 @@ class MethodInvocation {
   /**
    * Gets the class to use as a type hint, observing rules of precedence.
    *
+   * @param staticHint boxed type given by the method's {@link UseType} annotation, or null.
    * @return class to use as a type hint or null if none given.
    */
-  private Class<?> getHintedType0() {
+  private Class<?> getHintedType0(Class<?> staticHint) {
     Class<?> hintedType;
 
     /* Apply type hint rules, observing precedence */
-    hintedType = getRuntimeTypeHint0();
+    hintedType = Types.boxed(getRuntimeTypeHint0());
     if (hintedType == null) {
-      hintedType = getAnnotationTypeHint0();
+      hintedType = staticHint;
     }
 
     return hintedType;
   }
 
 
-  /**
-   * Gets the type hint specified in the {@link UseType} annotation.
-   *
-   * @return class object or null.
-   */
-  private Class<?> getAnnotationTypeHint0() {
-    UseType ann = method.getAnnotation(UseType.class);
-    if (ann != null) {
-      return ann.value();
-    }
-    return null;
-  }
-
-
   /**
    * Gets the type hint specified as a value of an argument at the time of invocation.
    *
@@ -190,7 +230,7 @@ class MethodInvocation {
         return null;
     } else {
       if (! (args[0] instanceof Class)) {
-        throw new BlueprintException("Runtime type hints must be instances of Class");
+        throw new BlueprintException(INVALID_HINT);
       }
       return (Class<?>) args[0];
     }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Dispatch table of a blueprint interface.
+ * <p>
+ *   Each method of the interface is assigned a slot, in which its {@link BlueprintMethod}
+ *   descriptor is kept.  Slots are shared between the stub and the implementation class
+ *   generated for the interface.  Tables are built once per interface and are immutable,
+ *   except for the memoized configuration keys, which are replaced atomically.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+class MethodTable {
+
+  private static final ClassValue<MethodTable> TABLES = new ClassValue<MethodTable>() {
+    @Override
+    protected MethodTable computeValue(Class<?> iface) {
+      return new MethodTable(iface);
+    }
+  };
+
+  /** Methods indexed by slot. */
+  final BlueprintMethod[] methods;
+
+  private final Map<Method, BlueprintMethod> byMethod;
+
+  /** Keys resolved by the most recently used key resolver. */
+  private volatile ResolvedKeys resolvedKeys;
+
+
+  private MethodTable(Class<?> iface) {
+    Map<String, BlueprintMethod> bySignature = new LinkedHashMap<String, BlueprintMethod>();
+    this.byMethod = new HashMap<Method, BlueprintMethod>();
+    for (Method m : iface.getMethods()) {
+      if (Modifier.isStatic(m.getModifiers()) || isObjectMethod(m)) {
+        continue;
+      }
+      /* signatures inherited from several super-interfaces share the first one's slot */
+      String signature = m.getName() + Arrays.toString(m.getParameterTypes()) + m.getReturnType();
+      BlueprintMethod bm = bySignature.get(signature);
+      if (bm == null) {
+        bm = new BlueprintMethod(m, bySignature.size());
+        bySignature.put(signature, bm);
+      }
+      byMethod.put(m, bm);
+    }
+    this.methods = bySignature.values().toArray(new BlueprintMethod[bySignature.size()]);
+  }
+
+
+  /**
+   * Gets the dispatch table of a blueprint interface.
+   * <p>
+   *   Static methods and methods overriding those from {@link Object} are not included,
+   *   and signatures inherited from more than one super-interface share a single slot.
+   * </p>
+   */
+  static MethodTable forInterface(Class<?> iface) {
+    return TABLES.get(iface);
+  }
+
+
+  /**
+   * Gets the descriptor of an interface method.
+   *
+   * @return method descriptor or null if the method doesn't belong to the interface.
+   */
+  BlueprintMethod get(Method method) {
+    return byMethod.get(method);
+  }
+
+
+  /**
+   * Gets configuration keys for all methods, indexed by slot.
+   * <p>
+   *   Keys are memoized for the most recently used key resolver, since all stubs
+   *   belonging to a blueprint share the same resolver instance.
+   * </p>
+   */
+  String[] keys(KeyResolver keyResolver) {
+    ResolvedKeys rk = resolvedKeys;
+    if (rk == null || rk.keyResolver != keyResolver) {
+      String[] keys = new String[methods.length];
+      for (int i = 0; i < methods.length; i++) {
+        keys[i] = methods[i].resolveKey(keyResolver);
+      }
+      rk = new ResolvedKeys(keyResolver, keys);
+      resolvedKeys = rk;
+    }
+    return rk.keys;
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static boolean isObjectMethod(Method m) {
+    try {
+      Object.class.getMethod(m.getName(), m.getParameterTypes());
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+
+  private static final class ResolvedKeys {
+    final KeyResolver keyResolver;
+    final String[] keys;
+
+    ResolvedKeys(KeyResolver keyResolver, String[] keys) {
+      this.keyResolver = keyResolver;
+      this.keys = keys;
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits work on the elements of a large collection, map or array across a fork-join pool.
+ * <p>
+ *   The index range of the elements is halved until the pieces are small enough to keep
+ *   every worker of the pool busy several times over, and each piece is processed on
+ *   whichever worker picks it up.  The context of the calling thread is carried over to
+ *   the workers, so exceptions thrown there describe the value being deserialized just as
+ *   they would on the calling thread.  The first exception thrown by any piece is rethrown,
+ *   as it was thrown, once all pieces are done.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+class ParallelRanges {
+
+  /** Smallest number of elements worth a task of its own. */
+  private static final int MIN_PIECE = 64;
+
+  /** Number of pieces per worker, for balancing pieces of uneven cost. */
+  private static final int PIECES_PER_WORKER = 8;
+
+
+  /**
+   * Work on a range of element indexes.
+   */
+  interface Range {
+    void run(int from, int to);
+  }
+
+
+  /**
+   * Runs {@code range} over the indexes {@code [0, size)}, in pieces, on the pool,
+   * and waits for all of it to finish.
+   */
+  static void run(ForkJoinPool pool, int size, Range range) {
+    final int piece = Math.max(MIN_PIECE, size / (pool.getParallelism() * PIECES_PER_WORKER));
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    pool.invoke(new Piece(range, 0, size, piece, Context.getThreadInstance(), failure));
+
+    final Throwable t = failure.get();
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * Tasks are never serialized; the serialization members only keep lint quiet.
+   */
+  private static final class Piece extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Range range;
+    private final int from;
+    private final int to;
+    private final int piece;
+    private final transient Context context;
+    private final AtomicReference<Throwable> failure;
+
+    Piece(Range range, int from, int to, int piece, Context context, AtomicReference<Throwable> failure) {
+      this.range = range;
+      this.from = from;
+      this.to = to;
+      this.piece = piece;
+      this.context = context;
+      this.failure = failure;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > piece) {
+        final int mid = (from + to) >>> 1;
+        invokeAll(new Piece(range, from, mid, piece, context, failure),
+                new Piece(range, mid, to, piece, context, failure));
+        return;
+      }
+
+      // don't bother once another piece has failed
+      if (failure.get() != null) {
+        return;
+      }
+      final Context ctxt = context.enterCopy();
+      try {
+        range.run(from, to);
+      } catch (RuntimeException | Error e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        if (ctxt != null) {
+          ctxt.exit();
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a blueprint interface whose implementation is generated at compile time.
+ * <p>
+ *   With blueprint-apt on the annotation processor path, the compiler generates an
+ *   implementation of the annotated interface (and of the interfaces it returns), which
+ *   {@link Blueprint#create} then uses instead of a runtime-generated stub.  Methods that
+ *   don't follow blueprint conventions are reported as compilation errors.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Precompiled {
+
+}
@@ -0,0 +1,667 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Path;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Base class of blueprint implementations generated at compile time.
+ * <p>
+ *   Implementations are generated by blueprint-apt for interfaces annotated with
+ *   {@link Precompiled}.  Each generated class carries a static {@link Plan} naming the
+ *   interface's methods and keys, converts simple values by calling their static factory
+ *   methods or constructors directly, and uses the protected helpers below for everything
+ *   else.  Generated classes are registered as {@link Factory} services, so that
+ *   {@link Blueprint} can find them without any reflection on the interface itself.
+ * </p>
+ *
+ * <p>This class is not meant to be extended by hand.</p>
+ *
+ * @author Zoran Rilak
+ */
+public abstract class PrecompiledBlueprint {
+
+  /** Suffix appended to the flattened interface name to get the name of the generated class. */
+  public static final String CLASS_NAME_SUFFIX = "_Blueprint";
+
+  private static final ClassValue<Factory<?>> FACTORIES = new ClassValue<Factory<?>>() {
+    @Override
+    protected Factory<?> computeValue(Class<?> iface) {
+      return findFactory(iface);
+    }
+  };
+
+  private final Plan plan;
+
+  private final Scope scope;
+
+  private final String[] keys;
+
+  /**
+   * Values of methods taking type hints and key paths, indexed by slot.  Generated code
+   * keeps the values of methods without arguments itself.
+   */
+  private final SlotCache slots;
+
+
+  protected PrecompiledBlueprint(Plan plan, Scope scope) {
+    this.plan = plan;
+    this.scope = scope;
+    this.keys = plan.keys(scope.keyResolver);
+    this.slots = new SlotCache(scope.path, keys);
+  }
+
+
+  /**
+   * Creates instances of a generated implementation.
+   * Generated classes provide a nested {@code Factory} class registered as a service.
+   *
+   * @param <T> blueprint interface.
+   */
+  public interface Factory<T> {
+
+    /** Gets the blueprint interface implemented by the generated class. */
+    Class<T> type();
+
+    T create(Scope scope);
+
+  }
+
+
+  /**
+   * Static binding plan of a generated class: the blueprint interface, and the names,
+   * {@link Key} overrides, {@link Default} values, generic return types and
+   * {@link FromFile#checkInterval()}s of its methods, indexed by slot.  Everything is
+   * read from the interface at compile time, so no reflection is done at runtime.
+   */
+  public static final class Plan {
+
+    private final Class<?> iface;
+
+    private final String[] methodNames;
+
+    private final String[] annotatedKeys;
+
+    /** Generic return types of methods deserialized at runtime without type hints, or null. */
+    private final Type[] returnTypes;
+
+    private final String[] defaultValues;
+
+    private final long[] fileCheckIntervals;
+
+    private volatile Object[] resolvedKeys;
+
+    /**
+     * Plans for deserializing the values of methods without arguments, built on first use.
+     * Plans are immutable, so racing threads may each build and publish one.
+     */
+    private final DeserializationPlan[] deserializationPlans;
+
+    public Plan(Class<?> iface, String[] methodNames, String[] annotatedKeys, Type[] returnTypes,
+                String[] defaultValues, long[] fileCheckIntervals) {
+      this.iface = iface;
+      this.methodNames = methodNames;
+      this.annotatedKeys = annotatedKeys;
+      this.returnTypes = returnTypes;
+      this.defaultValues = defaultValues;
+      this.fileCheckIntervals = fileCheckIntervals;
+      this.deserializationPlans = new DeserializationPlan[methodNames.length];
+    }
+
+    /**
+     * Gets the plan for deserializing the value of a method without arguments.
+     */
+    DeserializationPlan deserializationPlan(int slot, Class<?> staticHint) {
+      DeserializationPlan p = deserializationPlans[slot];
+      if (p == null) {
+        p = DeserializationPlan.of(returnTypes[slot], staticHint);
+        deserializationPlans[slot] = p;
+      }
+      return p;
+    }
+
+    /**
+     * Gets the value of a method's {@link Default} annotation, or null.
+     */
+    String defaultValue(int slot) {
+      return defaultValues[slot];
+    }
+
+    /**
+     * Gets the {@link FromFile#checkInterval()} of a method annotated with {@link FromFile}.
+     */
+    long fileCheckInterval(int slot) {
+      return fileCheckIntervals[slot];
+    }
+
+    /**
+     * Gets configuration keys for all slots, memoized for the most recently used resolver.
+     */
+    String[] keys(KeyResolver keyResolver) {
+      Object[] rk = resolvedKeys;
+      if (rk == null || rk[0] != keyResolver) {
+        String[] keys = new String[methodNames.length];
+        for (int i = 0; i < keys.length; i++) {
+          keys[i] = annotatedKeys[i] != null ? annotatedKeys[i] : keyResolver.resolve(methodNames[i]);
+        }
+        rk = new Object[] { keyResolver, keys };
+        resolvedKeys = rk;
+      }
+      return (String[]) rk[1];
+    }
+  }
+
+
+  /**
+   * The configuration node a blueprint instance is bound to, along with the objects
+   * shared by all instances belonging to the same blueprint.
+   */
+  public static final class Scope {
+
+    final ConfigNode<?> node;
+
+    final Path<String> path;
+
+    final Deserializer deserializer;
+
+    final KeyResolver keyResolver;
+
+    Scope(ConfigNode<?> node, Path<String> path, Deserializer deserializer, KeyResolver keyResolver) {
+      if (node == null) {
+        throw new NullPointerException();
+      }
+      this.node = node;
+      this.path = path;
+      this.deserializer = deserializer;
+      this.keyResolver = keyResolver;
+    }
+  }
+
+
+  /* Helpers for generated classes ---------------------------------- */
+
+  /**
+   * Gets the configuration node bound to a method.
+   *
+   * @throws BlueprintException if the configuration key does not exist.
+   */
+  protected final ConfigNode<?> node(int slot) {
+    ConfigNode<?> t = scope.node.getChildNode(keys[slot]);
+    if (t == null) {
+      throw missingKey(slot);
+    }
+    return t;
+  }
+
+
+  /**
+   * Gets the string value bound to a method, or the method's {@link Default} value
+   * if the configuration key does not exist.
+   *
+   * @throws BlueprintException if the configuration key does not exist and the method
+   * has no default value.
+   */
+  protected final String value(int slot) {
+    final ConfigNode<?> t = scope.node.getChildNode(keys[slot]);
+    if (t != null) {
+      return t.getValue();
+    }
+    final String defaultValue = plan.defaultValue(slot);
+    if (defaultValue == null) {
+      throw missingKey(slot);
+    }
+    return defaultValue;
+  }
+
+
+  /**
+   * Creates the file value of a method annotated with {@link FromFile}, to be kept by
+   * generated code and passed to {@link #contents(Object)} on every call.
+   *
+   * @param slot method slot.
+   * @param returnType method's boxed return type.
+   * @param hintedType method's static type hint or null.
+   */
+  protected final Object fileValue(int slot, Class<?> returnType, Class<?> hintedType) {
+    final Context ctxt = enterContext(slot);
+    try {
+      return FileValue.of(returnType, hintedType, value(slot), plan.fileCheckInterval(slot));
+    } finally {
+      ctxt.exit();
+    }
+  }
+
+
+  /**
+   * Gets the contents of a file value, loading the file again if it has changed.
+   */
+  protected static Object contents(Object fileValue) {
+    return ((FileValue) fileValue).get();
+  }
+
+
+  /**
+   * Deserializes the value bound to a method at runtime.  Used for return types
+   * which cannot be converted by generated code alone, like collections and interfaces.
+   *
+   * @param slot method slot.
+   * @param returnType method's boxed return type.
+   * @param hintedType method's static type hint or null.
+   */
+  protected final Object deserialize(int slot, Class<?> returnType, Class<?> hintedType) {
+    return deserialize(slot, returnType, hintedType, false);
+  }
+
+
+  /**
+   * Deserializes the value bound to a method at runtime, returning a lazy view of
+   * collections and maps if the method is annotated with {@link Lazy}.
+   *
+   * @param slot method slot.
+   * @param returnType method's boxed return type.
+   * @param hintedType method's static type hint or null.
+   * @param lazy whether the method is annotated with {@link Lazy}.
+   */
+  protected final Object deserialize(int slot, Class<?> returnType, Class<?> hintedType, boolean lazy) {
+    return deserialize(slot, null, returnType, hintedType, lazy);
+  }
+
+
+  /**
+   * Invokes a method taking runtime type hints, observing the same hinting rules
+   * as runtime-generated blueprints.
+   *
+   * @param slot method slot.
+   * @param returnType method's boxed return type.
+   * @param staticHint type given by the method's {@link UseType} annotation, or null.
+   * @param args method arguments.
+   */
+  protected final Object invoke(int slot, Class<?> returnType, Class<?> staticHint, Object[] args) {
+    return invoke(slot, returnType, staticHint, false, args);
+  }
+
+
+  /**
+   * Invokes a method taking runtime type hints, observing the same hinting rules
+   * as runtime-generated blueprints.
+   *
+   * @param slot method slot.
+   * @param returnType method's boxed return type.
+   * @param staticHint type given by the method's {@link UseType} annotation, or null.
+   * @param lazy whether the method is annotated with {@link Lazy}.
+   * @param args method arguments.
+   */
+  protected final Object invoke(int slot, Class<?> returnType, Class<?> staticHint, boolean lazy, Object[] args) {
+    /* values are cached by hint within the slot, absent keys included */
+    final Object hint = MethodInvocation.hintOf(args);
+    if (hint == null) {
+      final Context ctxt = enterContext(slot);
+      try {
+        throw new BlueprintException(MethodInvocation.INVALID_HINT);
+      } finally {
+        ctxt.exit();
+      }
+    }
+    final Object o = slots.get(slot, hint);
+    if (o != null) {
+      return o;
+    }
+    return slots.resolve(slot, hint, args, new SlotCache.Resolver() {
+      @Override
+      public Object resolve(int slot, Object hint, Object[] args) {
+        return deserialize(slot, args, returnType, MethodInvocation.hintedType(hint, staticHint), lazy);
+      }
+    });
+  }
+
+
+  /**
+   * Gets the converter registered for a type on {@link Blueprint.Builder}, which generated
+   * code must use instead of its own conversion.
+   *
+   * @return the converter, or null if none was registered.
+   */
+  protected final <T> Converter<T> converter(Class<T> type) {
+    return scope.deserializer.userConverter(type);
+  }
+
+
+  /**
+   * Gets the canonical instance of a converted value, if the blueprint was built to
+   * canonicalize values; see {@link Blueprint.Builder#canonicalize()}.
+   */
+  protected final Object canonical(Object value) {
+    return scope.deserializer.canonical(value);
+  }
+
+
+  /**
+   * Converts the value bound to a method using a registered converter.
+   */
+  protected final Object convert(int slot, Converter<?> converter, Class<?> type, String value) {
+    /* converters see the same context as when called by the runtime deserializer */
+    final Context ctxt = enterContext(slot);
+    try {
+      return converter.convert(value);
+    } catch (Exception e) {
+      throw Deserializer.conversionFailed(type, Converters.describe(converter), value, e);
+    } finally {
+      ctxt.exit();
+    }
+  }
+
+
+  /**
+   * Creates the exception thrown when a value cannot be converted, decorated like
+   * the exceptions thrown by runtime-generated blueprints.
+   */
+  protected final BlueprintException conversionFailed(int slot, Class<?> type, String using,
+                                                      String value, Throwable cause) {
+    final Context ctxt = enterContext(slot);
+    try {
+      return Deserializer.conversionFailed(type, using, value, cause);
+    } finally {
+      ctxt.exit();
+    }
+  }
+
+
+  /* Generic types of plans ----------------------------------------- */
+
+  /**
+   * Creates the parameterized return type of a method for its {@link Plan}.
+   *
+   * @param rawType erasure of the type.
+   * @param typeArguments type arguments; type variables are given as unbounded wildcards.
+   */
+  protected static Type parameterizedType(Class<?> rawType, Type... typeArguments) {
+    return new ParameterizedTypeImpl(rawType, typeArguments);
+  }
+
+
+  /**
+   * Creates a wildcard type argument for a {@link Plan}.
+   *
+   * @param upperBound upper bound of the wildcard, {@code Object.class} if it has none.
+   */
+  protected static Type wildcardType(Type upperBound) {
+    return new WildcardTypeImpl(upperBound);
+  }
+
+
+  /**
+   * Creates an array type with a generic component type for a {@link Plan}.
+   */
+  protected static Type genericArrayType(Type componentType) {
+    return new GenericArrayTypeImpl(componentType);
+  }
+
+
+  private static final class ParameterizedTypeImpl implements ParameterizedType {
+
+    private final Class<?> rawType;
+
+    private final Type[] typeArguments;
+
+    ParameterizedTypeImpl(Class<?> rawType, Type[] typeArguments) {
+      this.rawType = rawType;
+      this.typeArguments = typeArguments;
+    }
+
+    @Override
+    public Type[] getActualTypeArguments() {
+      return typeArguments.clone();
+    }
+
+    @Override
+    public Type getRawType() {
+      return rawType;
+    }
+
+    @Override
+    public Type getOwnerType() {
+      return rawType.getDeclaringClass();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ParameterizedTypeImpl &&
+              rawType == ((ParameterizedTypeImpl) o).rawType &&
+              Arrays.equals(typeArguments, ((ParameterizedTypeImpl) o).typeArguments);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * rawType.hashCode() + Arrays.hashCode(typeArguments);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder(rawType.getTypeName()).append('<');
+      for (int i = 0; i < typeArguments.length; i++) {
+        sb.append(i > 0 ? ", " : "").append(typeArguments[i].getTypeName());
+      }
+      return sb.append('>').toString();
+    }
+  }
+
+
+  private static final class WildcardTypeImpl implements WildcardType {
+
+    private final Type upperBound;
+
+    WildcardTypeImpl(Type upperBound) {
+      this.upperBound = upperBound;
+    }
+
+    @Override
+    public Type[] getUpperBounds() {
+      return new Type[] { upperBound };
+    }
+
+    @Override
+    public Type[] getLowerBounds() {
+      return new Type[0];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof WildcardTypeImpl && upperBound.equals(((WildcardTypeImpl) o).upperBound);
+    }
+
+    @Override
+    public int hashCode() {
+      return upperBound.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return upperBound == Object.class ? "?" : "? extends " + upperBound.getTypeName();
+    }
+  }
+
+
+  private static final class GenericArrayTypeImpl implements GenericArrayType {
+
+    private final Type componentType;
+
+    GenericArrayTypeImpl(Type componentType) {
+      this.componentType = componentType;
+    }
+
+    @Override
+    public Type getGenericComponentType() {
+      return componentType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof GenericArrayTypeImpl && componentType.equals(((GenericArrayTypeImpl) o).componentType);
+    }
+
+    @Override
+    public int hashCode() {
+      return componentType.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return componentType.getTypeName() + "[]";
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * Deserializes the value bound to a method, following the plan built from the method's
+   * generic return type, or, for methods taking type hints, from the hinted type.
+   */
+  private Object deserialize(int slot, Object[] args, Class<?> returnType, Class<?> hintedType, boolean lazy) {
+    final ConfigNode<?> t = scope.node.getChildNode(keys[slot]);
+    final Path<String> path = slots.pathOf(slot);
+    final Context ctxt = Context.enter(null, null, plan.iface, path);
+    try {
+      final DeserializationPlan p = args == null ?
+              plan.deserializationPlan(slot, hintedType) : DeserializationPlan.forType(returnType, hintedType);
+      if (t == null) {
+        /* defaults and empty optionals are kept by generated code like any other value */
+        final Object absent = scope.deserializer.deserializeAbsent(p, plan.defaultValue(slot));
+        if (absent == null) {
+          throw missingKey(slot);
+        }
+        return absent;
+      }
+      return scope.deserializer.deserialize(p, keys[slot], t, path, lazy);
+    } finally {
+      ctxt.exit();
+    }
+  }
+
+
+  private BlueprintException missingKey(int slot) {
+    final Context ctxt = enterContext(slot);
+    try {
+      return new BlueprintException("Configuration key '" + keys[slot] +
+              "' does not exist on path " + scope.path);
+    } finally {
+      ctxt.exit();
+    }
+  }
+
+
+  /**
+   * Describes the method in a slot as being deserialized, for exceptions to tell where
+   * they came from.  Must be paired with {@link Context#exit()}.
+   */
+  private Context enterContext(int slot) {
+    return Context.enter(null, null, plan.iface, slots.pathOf(slot));
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public final boolean equals(Object o) {
+    return this == o;
+  }
+
+  @Override
+  public final int hashCode() {
+    return 31 * plan.iface.hashCode() + scope.deserializer.hashCode();
+  }
+
+  @Override
+  public final String toString() {
+    return "[" + plan.iface.getName() + " blueprint]";
+  }
+
+
+  /* Lookup --------------------------------------------------------- */
+
+  /**
+   * Gets the factory of the generated implementation of an interface.
+   *
+   * @return the factory, or null if no implementation has been generated.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Factory<T> factoryFor(Class<T> iface) {
+    return (Factory<T>) FACTORIES.get(iface);
+  }
+
+
+  /**
+   * Gets the name of the class generated for an interface, e.g.
+   * {@code com.example.Config_Http_Blueprint} for {@code com.example.Config.Http}.
+   */
+  public static String generatedClassName(String packageName, List<String> simpleNames) {
+    StringBuilder sb = new StringBuilder();
+    if (! packageName.isEmpty()) {
+      sb.append(packageName).append('.');
+    }
+    for (int i = 0; i < simpleNames.size(); i++) {
+      if (i > 0) {
+        sb.append('_');
+      }
+      sb.append(simpleNames.get(i));
+    }
+    return sb.append(CLASS_NAME_SUFFIX).toString();
+  }
+
+
+  private static Factory<?> findFactory(Class<?> iface) {
+    if (! iface.isInterface() || iface.getClassLoader() == null) {
+      return null;
+    }
+
+    List<String> simpleNames = new ArrayList<String>();
+    for (Class<?> c = iface; c != null; c = c.getDeclaringClass()) {
+      simpleNames.add(0, c.getSimpleName());
+    }
+    String factoryName = generatedClassName(iface.getPackageName(), simpleNames) + "$Factory";
+
+    for (ServiceLoader.Provider<Factory<?>> p : factoryLoader(iface.getClassLoader()).stream().toList()) {
+      if (p.type().getName().equals(factoryName)) {
+        Factory<?> factory = p.get();
+        if (factory.type() == iface) {
+          return factory;
+        }
+      }
+    }
+    return null;
+  }
+
+
+  /**
+   * Gets a service loader of factories.  The class literal of a generic type is raw,
+   * so the loader is typed here, once.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static ServiceLoader<Factory<?>> factoryLoader(ClassLoader classLoader) {
+    return (ServiceLoader) ServiceLoader.load(Factory.class, classLoader);
+  }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Parsers;
+
+import java.util.List;
+
+/**
+ * Builders of primitive arrays.
+ * <p>
+ *   Each builder parses the values of a node's array elements straight into an array of
+ *   its primitive component type, without boxing the elements or setting them through
+ *   {@link java.lang.reflect.Array}.  Nodes which know all of their values up front, through
+ *   {@link ConfigNode#getArrayValues()}, are read without creating a node per element.
+ *   The builders accept the same values as {@code valueOf(String)} of the boxed types and
+ *   report failures the same way as {@link Deserializer} does.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+class PrimitiveArrays {
+
+  /**
+   * Gets the builder of arrays with the given component type.
+   *
+   * @return the builder, or null if arrays of the type are not built by this class.
+   */
+  static Builder builderFor(Class<?> componentType) {
+    if (componentType == int.class) return INT;
+    if (componentType == long.class) return LONG;
+    if (componentType == double.class) return DOUBLE;
+    if (componentType == boolean.class) return BOOLEAN;
+    if (componentType == short.class) return SHORT;
+    if (componentType == byte.class) return BYTE;
+    if (componentType == float.class) return FLOAT;
+    return null;
+  }
+
+
+  /**
+   * Builds arrays of a primitive type.
+   */
+  abstract static class Builder {
+
+    /** Boxed component type, used in error messages. */
+    final Class<?> boxedType;
+
+    Builder(Class<?> boxedType) {
+      this.boxedType = boxedType;
+    }
+
+    /**
+     * Gets the values of a node's array elements.
+     */
+    static String[] valuesOf(ConfigNode<?> cfg) {
+      String[] values = cfg.getArrayValues();
+      if (values == null) {
+        final List<? extends ConfigNode<?>> nodes = cfg.getArrayNodes();
+        values = new String[nodes.size()];
+        int i = 0;
+        for (ConfigNode<?> node : nodes) {
+          values[i++] = node.getValue();
+        }
+      }
+      return values;
+    }
+
+    abstract Object newArray(int length);
+
+    /**
+     * Parses {@code values[from..to)} into the same elements of {@code array}.
+     */
+    abstract void parse(String[] values, Object array, int from, int to);
+
+    final BlueprintException failed(String value, RuntimeException cause) {
+      return new BlueprintException("Failed to deserialize configuration item" +
+              " as an instance of " + boxedType.getCanonicalName() +
+              ", using method valueOf(String)" +
+              ", from value \"" + value + "\"", cause);
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static final Builder INT = new Builder(Integer.class) {
+    @Override
+    Object newArray(int length) {
+      return new int[length];
+    }
+
+    @Override
+    void parse(String[] values, Object array, int from, int to) {
+      final int[] a = (int[]) array;
+      for (int i = from; i < to; i++) {
+        try {
+          a[i] = Parsers.parseInt(values[i]);
+        } catch (RuntimeException e) {
+          throw failed(values[i], e);
+        }
+      }
+    }
+  };
+
+  private static final Builder LONG = new Builder(Long.class) {
+    @Override
+    Object newArray(int length) {
+      return new long[length];
+    }
+
+    @Override
+    void parse(String[] values, Object array, int from, int to) {
+      final long[] a = (long[]) array;
+      for (int i = from; i < to; i++) {
+        try {
+          a[i] = Parsers.parseLong(values[i]);
+        } catch (RuntimeException e) {
+          throw failed(values[i], e);
+        }
+      }
+    }
+  };
+
+  private static final Builder DOUBLE = new Builder(Double.class) {
+    @Override
+    Object newArray(int length) {
+      return new double[length];
+    }
+
+    @Override
+    void parse(String[] values, Object array, int from, int to) {
+      final double[] a = (double[]) array;
+      for (int i = from; i < to; i++) {
+        try {
+          a[i] = Parsers.parseDouble(values[i]);
+        } catch (RuntimeException e) {
+          throw failed(values[i], e);
+        }
+      }
+    }
+  };
+
+  private static final Builder BOOLEAN = new Builder(Boolean.class) {
+    @Override
+    Object newArray(int length) {
+      return new boolean[length];
+    }
+
+    @Override
+    void parse(String[] values, Object array, int from, int to) {
+      final boolean[] a = (boolean[]) array;
+      for (int i = from; i < to; i++) {
+        a[i] = Parsers.parseBoolean(values[i]);
+      }
+    }
+  };
+
+  private static final Builder SHORT = new Builder(Short.class) {
+    @Override
+    Object newArray(int length) {
+      return new short[length];
+    }
+
+    @Override
+    void parse(String[] values, Object array, int from, int to) {
+      final short[] a = (short[]) array;
+      for (int i = from; i < to; i++) {
+        try {
+          a[i] = Short.parseShort(values[i]);
+        } catch (RuntimeException e) {
+          throw failed(values[i], e);
+        }
+      }
+    }
+  };
+
+  private static final Builder BYTE = new Builder(Byte.class) {
+    @Override
+    Object newArray(int length) {
+      return new byte[length];
+    }
+
+    @Override
+    void parse(String[] values, Object array, int from, int to) {
+      final byte[] a = (byte[]) array;
+      for (int i = from; i < to; i++) {
+        try {
+          a[i] = Byte.parseByte(values[i]);
+        } catch (RuntimeException e) {
+          throw failed(values[i], e);
+        }
+      }
+    }
+  };
+
+  private static final Builder FLOAT = new Builder(Float.class) {
+    @Override
+    Object newArray(int length) {
+      return new float[length];
+    }
+
+    @Override
+    void parse(String[] values, Object array, int from, int to) {
+      final float[] a = (float[]) array;
+      for (int i = from; i < to; i++) {
+        try {
+          a[i] = Float.parseFloat(values[i]);
+        } catch (RuntimeException e) {
+          throw failed(values[i], e);
+        }
+      }
+    }
+  };
+
+}
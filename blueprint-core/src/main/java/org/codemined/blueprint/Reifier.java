@@ -24,6 +24,9 @@ import java.util.*;
  */
 public class Reifier {
 
+  /**
+   * Creates an empty, mutable collection of the given type.
+   */
   @SuppressWarnings("unchecked")
   public static <E> Collection<E> reifyCollection(Class<? extends Collection> type) {
     if (! Collection.class.isAssignableFrom(type)) {
@@ -52,9 +55,123 @@ public class Reifier {
     }
   }
 
+  /**
+   * Creates an empty, mutable map of strings.
+   */
   public static <E> Map<String, E> reifyStringMap() {
     return new HashMap<String, E>();
   }
 
 
+  /**
+   * Creates a collection holding the given elements, in order.
+   * <p>
+   *   Collection interfaces are reified as immutable collections sized for the elements,
+   *   which can be cached and shared between threads as they are:
+   *   <ul>
+   *     <li>{@code List} and {@code Collection}: an array-backed list;</li>
+   *     <li>{@code Set}: a {@link LinkedHashSet} iterating in the order of the elements,
+   *         or an {@link EnumSet} for enum elements;</li>
+   *     <li>{@code SortedSet} and {@code NavigableSet}: a {@link TreeSet};</li>
+   *     <li>{@code Queue} and {@code Deque}: an {@link ArrayDeque}, which, being a queue,
+   *         is left mutable.</li>
+   *   </ul>
+   *   Concrete collection classes are instantiated and filled as they are.
+   * </p>
+   *
+   * @param type collection type.
+   * @param elementType type of the elements.
+   * @param elements elements; the array is not kept.
+   * @return collection of the given type.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> Collection<E> reifyCollection(Class<? extends Collection> type,
+                                                  Class<E> elementType,
+                                                  Object[] elements) {
+    if (! Collection.class.isAssignableFrom(type)) {
+      throw new BlueprintException("Type is not a Collection: " + type);
+    }
+    if (! type.isInterface()) {
+      final Collection<E> col = reifyCollection(type);
+      if (col instanceof ArrayList) {
+        ((ArrayList<E>) col).ensureCapacity(elements.length);
+      }
+      col.addAll((List<E>) Arrays.asList(elements));
+      return col;
+    }
+
+    final boolean hasNulls = containsNull(elements);
+    if (type.isAssignableFrom(List.class)) {
+      return hasNulls ?
+              Collections.unmodifiableList((List<E>) Arrays.asList(elements.clone())) :
+              (List<E>) List.of(elements);
+    }
+    if (type.isAssignableFrom(Set.class)) {
+      if (elementType.isEnum() && ! hasNulls) {
+        return (Set<E>) Collections.unmodifiableSet(enumSet((Class) elementType, elements));
+      }
+      /* sets keep the order of the configuration, the same on every run */
+      final Set<E> set = new LinkedHashSet<E>((int) (elements.length / 0.75f) + 1);
+      set.addAll((List<E>) Arrays.asList(elements));
+      return Collections.unmodifiableSet(set);
+    }
+    if (type.isAssignableFrom(TreeSet.class)) {
+      return Collections.unmodifiableNavigableSet(new TreeSet<E>((List<E>) Arrays.asList(elements)));
+    }
+    if (type.isAssignableFrom(ArrayDeque.class) && ! hasNulls) {
+      return new ArrayDeque<E>((List<E>) Arrays.asList(elements));
+    }
+    if (type.isAssignableFrom(LinkedList.class)) {
+      return new LinkedList<E>((List<E>) Arrays.asList(elements));
+    }
+    throw new BlueprintException("Don't know how to reify " + type);
+  }
+
+
+  /**
+   * Creates an immutable map of strings, sized for the given entries.
+   *
+   * @param keys keys of the entries.
+   * @param values values of the entries, in the order of the keys.
+   * @return open-addressed hash map holding the entries.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> Map<String, E> reifyStringMap(String[] keys, Object[] values) {
+    if (containsNull(values)) {
+      final Map<String, E> map = new HashMap<String, E>((int) (keys.length / 0.75f) + 1);
+      for (int i = 0; i < keys.length; i++) {
+        map.put(keys[i], (E) values[i]);
+      }
+      return Collections.unmodifiableMap(map);
+    }
+
+    final Map.Entry<String, E>[] entries = (Map.Entry<String, E>[]) new Map.Entry<?, ?>[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      entries[i] = Map.entry(keys[i], (E) values[i]);
+    }
+    return Map.ofEntries(entries);
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static <E extends Enum<E>> EnumSet<E> enumSet(Class<E> elementType, Object[] elements) {
+    final EnumSet<E> set = EnumSet.noneOf(elementType);
+    for (Object e : elements) {
+      set.add(elementType.cast(e));
+    }
+    return set;
+  }
+
+
+  private static boolean containsNull(Object[] elements) {
+    for (Object e : elements) {
+      if (e == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Path;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Values and key paths of a blueprint instance, indexed by method slot.
+ * <p>
+ *   A slot of a method without arguments holds its value, and a slot of a method taking
+ *   runtime type hints holds a map of its values by hint.  Callers look values up with
+ *   {@code get} and call {@code resolve} on a miss, which deserializes the value with a
+ *   {@link Resolver} one thread at a time: the first thread missing a value installs an
+ *   {@link InFlight} placeholder, and the others wait for its result.  Failures are not
+ *   cached.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+final class SlotCache {
+
+  private final Path<String> parent;
+
+  private final String[] keys;
+
+  /** Paths of the configuration keys, built on first use. */
+  private final Path<String>[] paths;
+
+  private final AtomicReferenceArray<Object> values;
+
+
+  /**
+   * Deserializes values missing from the cache.
+   */
+  interface Resolver {
+
+    /**
+     * @param slot method slot.
+     * @param hint hint returned by {@link MethodInvocation#hintOf(Object[])}, which is
+     * {@link MethodInvocation#NO_HINT} for methods without arguments.
+     * @param args method arguments, or null for methods without arguments.
+     * @return the value, which is only cached if it is not null.
+     */
+    Object resolve(int slot, Object hint, Object[] args);
+
+  }
+
+
+  /**
+   * @param parent path of the configuration node the blueprint instance is bound to.
+   * @param keys configuration keys, indexed by slot.
+   */
+  @SuppressWarnings("unchecked")
+  SlotCache(Path<String> parent, String[] keys) {
+    this.parent = parent;
+    this.keys = keys;
+    this.paths = (Path<String>[]) new Path<?>[keys.length];
+    this.values = new AtomicReferenceArray<Object>(keys.length);
+  }
+
+
+  /**
+   * Gets the cached value of a method without arguments.
+   *
+   * @return the value, or null on a miss.
+   */
+  Object get(int slot) {
+    final Object o = values.get(slot);
+    return o instanceof InFlight ? null : o;
+  }
+
+
+  /**
+   * Gets the cached value of a method taking type hints.
+   *
+   * @param hint hint returned by {@link MethodInvocation#hintOf(Object[])}.
+   * @return the value, or null on a miss.
+   */
+  Object get(int slot, Object hint) {
+    final Object o = hintedValues(slot).get(hint);
+    return o instanceof InFlight ? null : o;
+  }
+
+
+  /**
+   * Deserializes the value of a method without arguments on a cache miss, making sure
+   * that only one thread deserializes it while the others wait for the result.
+   */
+  Object resolve(int slot, Resolver resolver) {
+    for (;;) {
+      Object o = values.get(slot);
+      if (o instanceof InFlight) {
+        return ((InFlight) o).await();
+      }
+      if (o != null) {
+        return o;
+      }
+
+      final InFlight flight = new InFlight();
+      if (values.compareAndSet(slot, null, flight)) {
+        try {
+          o = resolver.resolve(slot, MethodInvocation.NO_HINT, null);
+        } catch (RuntimeException | Error e) {
+          values.set(slot, null);
+          flight.fail(e);
+          throw e;
+        }
+        values.set(slot, o);
+        flight.complete(o);
+        return o;
+      }
+    }
+  }
+
+
+  /**
+   * Deserializes the value of a method taking type hints on a cache miss, with the same
+   * guarantees as {@link #resolve(int, Resolver)}.
+   *
+   * @param args method arguments, passed on to the resolver.
+   */
+  Object resolve(int slot, Object hint, Object[] args, Resolver resolver) {
+    final ConcurrentMap<Object, Object> cache = hintedValues(slot);
+    final InFlight flight = new InFlight();
+    Object o = cache.putIfAbsent(hint, flight);
+    if (o instanceof InFlight) {
+      return ((InFlight) o).await();
+    }
+    if (o != null) {
+      return o;
+    }
+
+    try {
+      o = resolver.resolve(slot, hint, args);
+    } catch (RuntimeException | Error e) {
+      cache.remove(hint, flight);
+      flight.fail(e);
+      throw e;
+    }
+    if (o != null) {
+      cache.replace(hint, flight, o);
+    } else {
+      cache.remove(hint, flight);
+    }
+    flight.complete(o);
+    return o;
+  }
+
+
+  /**
+   * Gets the path of the key in a slot.  Paths are immutable, so racing threads may
+   * each build and publish one.
+   */
+  Path<String> pathOf(int slot) {
+    Path<String> p = paths[slot];
+    if (p == null) {
+      p = parent.to(keys[slot]);
+      paths[slot] = p;
+    }
+    return p;
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  @SuppressWarnings("unchecked")
+  private ConcurrentMap<Object, Object> hintedValues(int slot) {
+    Object m = values.get(slot);
+    if (m == null) {
+      m = new ConcurrentHashMap<Object, Object>();
+      if (! values.compareAndSet(slot, null, m)) {
+        m = values.get(slot);
+      }
+    }
+    return (ConcurrentMap<Object, Object>) m;
+  }
+
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Strings;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable copy of a blueprint, with all values materialized up front.
+ * <p>
+ *   Taking a snapshot calls every method without arguments on the blueprint, descending
+ *   into nested interfaces, and into optionals, collections, maps and arrays of them.
+ *   Any failures are collected along the way and reported together in a single exception,
+ *   so that a broken configuration is rejected when the snapshot is taken rather than
+ *   when a value is first read.
+ * </p>
+ *
+ * <p>
+ *   Snapshots are implemented by classes from {@link StubGenerator} which keep the values
+ *   in final fields, falling back to a {@link Proxy} backed by this handler.  Collections
+ *   and maps returned through collection interfaces are wrapped to be unmodifiable.
+ *   Arrays and values of concrete collection types are returned as they are, as are
+ *   values of methods taking runtime type hints, which are passed on to the original
+ *   blueprint.
+ * </p>
+ *
+ * @param <I> blueprint interface.
+ *
+ * @author Zoran Rilak
+ */
+class Snapshot<I> implements InvocationHandler {
+
+  /**
+   * Methods to call on blueprints of each interface, indexed by slot and found on first
+   * use: the interface method itself, or a private copy of it made accessible if the
+   * interface is not accessible from here.  The methods of {@link MethodTable} are
+   * shared with stubs, so they are never made accessible themselves.
+   */
+  private static final ClassValue<AtomicReferenceArray<Method>> CALLABLE =
+          new ClassValue<AtomicReferenceArray<Method>>() {
+    @Override
+    protected AtomicReferenceArray<Method> computeValue(Class<?> iface) {
+      return new AtomicReferenceArray<Method>(MethodTable.forInterface(iface).methods.length);
+    }
+  };
+
+  private final Class<I> iface;
+
+  /** The blueprint the snapshot was taken from. */
+  private final Object blueprint;
+
+  private final MethodTable table;
+
+  /** Values of methods without arguments, indexed by slot. */
+  private final Object[] values;
+
+  private final I proxy;
+
+
+  private Snapshot(Class<I> iface, Object blueprint, String path, List<String> errors) {
+    this.iface = iface;
+    this.blueprint = blueprint;
+    this.table = MethodTable.forInterface(iface);
+    this.values = new Object[table.methods.length];
+
+    for (BlueprintMethod bm : table.methods) {
+      if (bm.takesArguments) {
+        continue;
+      }
+      final String methodPath = path + bm.method.getName() + "()";
+      try {
+        values[bm.slot] = materialize(bm, call(bm, null), methodPath, errors);
+      } catch (RuntimeException e) {
+        errors.add(methodPath + ": " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+      }
+    }
+
+    final StubGenerator.Template template = Boolean.getBoolean(Stub.USE_PROXIES_PROPERTY) ?
+            null : StubGenerator.snapshotTemplateFor(iface);
+    if (! errors.isEmpty()) {
+      // the snapshot is going to be discarded, and primitive fields cannot take missing values
+      this.proxy = null;
+    } else if (template != null) {
+      this.proxy = iface.cast(template.newInstance(this, values));
+    } else {
+      this.proxy = iface.cast(Proxy.newProxyInstance(
+              iface.getClassLoader(), new Class<?>[]{ iface, BlueprintProxy.class }, this));
+    }
+  }
+
+
+  /**
+   * Takes a snapshot of a blueprint.
+   *
+   * @param iface blueprint interface.
+   * @param blueprint blueprint implementing {@code iface}.
+   * @return an immutable blueprint implementing {@code iface}.
+   * @throws BlueprintException listing every value that could not be materialized.
+   */
+  static <T> T of(Class<T> iface, T blueprint) {
+    final List<String> errors = new ArrayList<String>();
+    final Snapshot<T> snapshot = new Snapshot<T>(iface, blueprint, "", errors);
+    if (! errors.isEmpty()) {
+      throw new BlueprintException(String.format("Failed to materialize a snapshot of %s:\n%s",
+              iface.getName(), Strings.join("\n", errors)));
+    }
+    return snapshot.proxy;
+  }
+
+
+  /**
+   * Tells whether an object is a blueprint which can be snapshotted.
+   */
+  static boolean isBlueprint(Object o) {
+    return o instanceof BlueprintProxy || o instanceof PrecompiledBlueprint;
+  }
+
+
+  /**
+   * Gets the value of the method in the given slot.  Called from generated classes.
+   */
+  Object invokeSlot(int slot, Object[] args) {
+    final BlueprintMethod bm = table.methods[slot];
+    if (! bm.takesArguments) {
+      /* buffers have a position of their own, which callers must not share */
+      final Object v = values[slot];
+      return v instanceof ByteBuffer ? ((ByteBuffer) v).duplicate() : v;
+    }
+    return call(bm, args);
+  }
+
+
+  /* Methods from InvocationHandler --------------------------------- */
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return method.invoke(this, args);
+    }
+
+    final BlueprintMethod bm = table.get(method);
+    if (bm == null) {
+      throw new BlueprintException("Method " + method + " does not belong to " + iface.getName());
+    }
+    return invokeSlot(bm.slot, bm.takesArguments ? args : null);
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    return proxy == o;
+  }
+
+
+  @Override
+  public int hashCode() {
+    return 31 * iface.hashCode() + blueprint.hashCode();
+  }
+
+
+  @Override
+  public String toString() {
+    return "[" + iface.getName() + " blueprint snapshot]";
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private Object call(BlueprintMethod bm, Object[] args) {
+    try {
+      return callable(bm).invoke(blueprint, args);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new BlueprintException(e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new BlueprintException("Cannot call " + bm.method, e);
+    }
+  }
+
+
+  private Method callable(BlueprintMethod bm) {
+    final AtomicReferenceArray<Method> methods = CALLABLE.get(iface);
+    Method m = methods.get(bm.slot);
+    if (m != null) {
+      return m;
+    }
+    m = bm.method;
+    if (! m.canAccess(blueprint)) {
+      /* interfaces not accessible from here; needed only once per method */
+      try {
+        m = m.getDeclaringClass().getMethod(m.getName(), m.getParameterTypes());
+        m.setAccessible(true);
+      } catch (NoSuchMethodException | RuntimeException e) {
+        throw new BlueprintException("Cannot make " + bm.method + " accessible", e);
+      }
+    }
+    methods.compareAndSet(bm.slot, null, m);
+    return methods.get(bm.slot);
+  }
+
+
+  private static Object materialize(BlueprintMethod bm, Object value, String path, List<String> errors) {
+    return freeze(bm.plan(), value, path, errors);
+  }
+
+
+  /**
+   * Takes a snapshot of a nested blueprint, descending into maps, collections and arrays
+   * as far as the plan of their type goes; returns any other value as it is.
+   */
+  private static Object freeze(DeserializationPlan plan, Object value, String path, List<String> errors) {
+    if (plan == null || value == null) {
+      return value;
+    }
+    if (value instanceof Map) {
+      return freezeMap(plan.type, (Map<?, ?>) value, plan.element, path, errors);
+    }
+    if (value instanceof Collection) {
+      return freezeCollection(plan.type, (Collection<?>) value, plan.element, path, errors);
+    }
+    if (value instanceof Optional) {
+      return freezeOptional((Optional<?>) value, plan.element, path, errors);
+    }
+    if (value.getClass().isArray() && ! value.getClass().getComponentType().isPrimitive()) {
+      return freezeArray(value, plan.shape == DeserializationPlan.Shape.ARRAY ? plan.element :
+              DeserializationPlan.forType(value.getClass().getComponentType(), null), path, errors);
+    }
+    if (! plan.type.isInterface() || ! isBlueprint(value)) {
+      return value;
+    }
+    return snapshotOf(plan.type, value, path + ".", errors);
+  }
+
+
+  private static <T> T snapshotOf(Class<T> type, Object value, String path, List<String> errors) {
+    return new Snapshot<T>(type, value, path, errors).proxy;
+  }
+
+
+  private static Object freezeOptional(Optional<?> o, DeserializationPlan element, String path, List<String> errors) {
+    if (o.isEmpty()) {
+      return o;
+    }
+    final Object frozen = freeze(element, o.get(), path, errors);
+    return frozen == o.get() ? o : Optional.ofNullable(frozen);
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private static Object freezeCollection(Class<?> declared, Collection<?> c, DeserializationPlan element,
+                                         String path, List<String> errors) {
+    /* concrete collection types cannot be replaced */
+    if (! declared.isInterface()) {
+      return c;
+    }
+
+    final List<Object> elements = new ArrayList<Object>(c.size());
+    boolean changed = false;
+    int i = 0;
+    for (Object e : c) {
+      Object frozen = freeze(element, e, path + "[" + i++ + "]", errors);
+      changed |= frozen != e;
+      elements.add(frozen);
+    }
+
+    if (List.class.isAssignableFrom(declared)) {
+      return Collections.unmodifiableList(changed ? elements : (List<Object>) c);
+    }
+    if (declared == NavigableSet.class && c instanceof NavigableSet) {
+      return Collections.unmodifiableNavigableSet((NavigableSet<Object>) c);
+    }
+    if (declared == SortedSet.class && c instanceof SortedSet) {
+      return Collections.unmodifiableSortedSet((SortedSet<Object>) c);
+    }
+    if (declared == Set.class) {
+      return Collections.unmodifiableSet(changed ? new LinkedHashSet<Object>(elements) : (Set<Object>) c);
+    }
+    if (declared == Collection.class) {
+      return Collections.unmodifiableCollection(changed ? elements : (Collection<Object>) c);
+    }
+    return c;
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private static Object freezeMap(Class<?> declared, Map<?, ?> m, DeserializationPlan element,
+                                  String path, List<String> errors) {
+    if (! declared.isInterface()) {
+      return m;
+    }
+
+    Map<Object, Object> copy = (Map<Object, Object>) m;
+    for (Map.Entry<?, ?> e : m.entrySet()) {
+      Object frozen = freeze(element, e.getValue(), path + "[" + e.getKey() + "]", errors);
+      if (frozen != e.getValue()) {
+        if (copy == m) {
+          copy = m instanceof SortedMap ?
+                  new TreeMap<Object, Object>((SortedMap<Object, Object>) m) :
+                  new LinkedHashMap<Object, Object>(m);
+        }
+        copy.put(e.getKey(), frozen);
+      }
+    }
+
+    if (declared == NavigableMap.class && copy instanceof NavigableMap) {
+      return Collections.unmodifiableNavigableMap((NavigableMap<Object, Object>) copy);
+    }
+    if (declared == SortedMap.class && copy instanceof SortedMap) {
+      return Collections.unmodifiableSortedMap((SortedMap<Object, Object>) copy);
+    }
+    if (declared == Map.class) {
+      return Collections.unmodifiableMap(copy);
+    }
+    return copy;
+  }
+
+
+  private static Object freezeArray(Object array, DeserializationPlan element, String path, List<String> errors) {
+    final Class<?> componentType = array.getClass().getComponentType();
+    final int length = Array.getLength(array);
+    Object copy = array;
+    for (int i = 0; i < length; i++) {
+      Object e = Array.get(array, i);
+      Object frozen = freeze(element, e, path + "[" + i + "]", errors);
+      if (frozen != e) {
+        if (copy == array) {
+          copy = Array.newInstance(componentType, length);
+          System.arraycopy(array, 0, copy, 0, length);
+        }
+        Array.set(copy, i, frozen);
+      }
+    }
+    return copy;
+  }
+
+}
@@ -18,6 +18,8 @@ package org.codemined.blueprint;
 
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.regex.Pattern;
 
 /**
@@ -34,7 +36,9 @@ public class Source {
   public enum Formats implements Format {
     XML (".xml", "org.codemined.blueprint.impl.ApacheTree", "blueprint-apache"),
     PROPERTIES (".properties", "org.codemined.blueprint.impl.ApacheTree", "blueprint-apache"),
-    JSON (".json", "org.codemined.blueprint.impl.JsonTree", "blueprint-jackson-json");
+    JSON (".json", "org.codemined.blueprint.impl.JsonTree", "blueprint-jackson-json"),
+    /** Compiled configuration, see {@link MappedTree}. */
+    COMPILED (MappedTree.SUFFIX, "org.codemined.blueprint.MappedTree", "blueprint-core");
 
     private final String suffix;
     private final Pattern suffixPattern;
@@ -67,23 +71,38 @@ public class Source {
                 suffix, moduleName));
       }
 
+      /* nodes are read by a static factory taking the stream */
+      final Method factory = loadMethod();
+      if (factory == null) {
+        throw new RuntimeException(String.format(
+                "%s cannot read %s files, as it has no static load(InputStream) method. " +
+                "Make sure you're using the latest version of %s.",
+                nodeClass.getName(), suffix, moduleName));
+      }
+
       try {
-        ConfigNode<?> node = nodeClass.getDeclaredConstructor().newInstance();
-        load(in);
-        return node;
-      } catch (InstantiationException e) {
-        throw new RuntimeException(e);
+        return (ConfigNode<?>) factory.invoke(null, in);
       } catch (IllegalAccessException e) {
         throw new RuntimeException(e);
       } catch (InvocationTargetException e) {
-        throw new RuntimeException(e);
-      } catch (NoSuchMethodException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
         throw new RuntimeException(e);
       }
     }
 
     public boolean matches(String fileName) {
-      return suffixPattern.matcher(fileName).matches();
+      return suffixPattern.matcher(fileName).find();
+    }
+
+    private Method loadMethod() {
+      try {
+        final Method m = nodeClass.getMethod("load", InputStream.class);
+        return Modifier.isStatic(m.getModifiers()) ? m : null;
+      } catch (NoSuchMethodException e) {
+        return null;
+      }
     }
 
   }
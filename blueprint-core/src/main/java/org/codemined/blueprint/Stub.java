@@ -31,9 +31,6 @@ import org.codemined.util.Path;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Binds values from the configuration to the given interface's methods. 
@@ -42,6 +39,8 @@ import java.util.Map;
  *   <li>Implements common fluff from Object(): toString(), equals(), hashCode(), ...
  *   <li> Scans Interface for contained interfaces and methods
  *   <li>Sub-interfaces are processed by creating and caching proxy classes
+ *   <li>Implementations are hidden classes emitted by {@link StubGenerator} when possible,
+ *       falling back to {@link Proxy} otherwise
  *   <li>Methods are processed thus:
  *     <ul>
  *       <li>Simple return type (Integer, Boolean...) is passed on to the deserializer
@@ -66,7 +65,13 @@ import java.util.Map;
  * @version 0.1
  * @since 0.1
  */
-class Stub<I> implements InvocationHandler {
+class Stub<I> implements InvocationHandler, SlotCache.Resolver {
+
+  /**
+   * Setting this system property to {@code true} disables generating implementation
+   * classes and makes Blueprint use {@link Proxy} objects for all interfaces.
+   */
+  static final String USE_PROXIES_PROPERTY = "org.codemined.blueprint.useProxies";
 
   private final Class<I> iface;
 
@@ -78,7 +83,14 @@ class Stub<I> implements InvocationHandler {
 
   private final KeyResolver keyResolver;
 
-  private final Map<MethodInvocation, Object> cache;
+  /** Dispatch table of the interface, shared by all stubs. */
+  private final MethodTable table;
+
+  /** Configuration keys indexed by slot. */
+  private final String[] keys;
+
+  /** Values and key paths, indexed by slot. */
+  private final SlotCache slots;
 
   private final I proxy;
 
@@ -96,8 +108,17 @@ class Stub<I> implements InvocationHandler {
     this.cfgPath = configPath;
     this.deserializer = deserializer;
     this.keyResolver = keyResolver;
-    this.cache = Collections.synchronizedMap(new HashMap<MethodInvocation, Object>());
-    this.proxy = createProxy();
+    this.table = MethodTable.forInterface(iface);
+    this.keys = table.keys(keyResolver);
+    this.slots = new SlotCache(configPath, keys);
+
+    // prefer the generated implementation and fall back to a Proxy if there is none
+    final StubGenerator.Template template = getTemplate(iface);
+    if (template != null) {
+      this.proxy = iface.cast(template.newInstance(this, null));
+    } else {
+      this.proxy = createProxy();
+    }
   }
 
 
@@ -106,42 +127,41 @@ class Stub<I> implements InvocationHandler {
   }
 
 
+  /**
+   * Invokes the method in the given slot.  Called from generated classes.
+   *
+   * @param slot slot index assigned to the method by the {@link MethodTable}.
+   * @param args method arguments, or null for methods without arguments.
+   * @return the method's return value.
+   */
+  Object invokeSlot(int slot, Object[] args) {
+    return invoke(table.methods[slot], args);
+  }
+
+
   /* Methods from InvocationHandler --------------------------------- */
 
   @Override
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-    final String key = getKeyFor(method);
-
-    // mark the context in which we're going to execute
-    Context.getThreadInstance().setContext(method, args, iface, cfgPath.to(key));
-
     // route methods not declared on the blueprint interface to self
     if (method.getDeclaringClass() == Object.class) {
       return method.invoke(this, args);
     }
 
-    // Values are cached by (method, args) pairs to support runtime type hints.
-    MethodInvocation invocation = new MethodInvocation(method, args);
-    Object o = cache.get(invocation);
-    if (o == null) {
-      // Get the tree whose value will be passed to the deserializer.
-      // For special methods ($value, $asMap), use the tree already associated
-      // with this stub instead of looking up children trees.
-      ConfigNode<?> t;
-      if (key == null) {
-        t = cfg;
-      } else {
-        t = cfg.getChildNode(key);
-      }
-      if (t == null) {
-        throw new BlueprintException("Configuration key '" + key +
-                "' does not exist on path " + cfgPath);
-      }
-
-      o = deserializer.deserialize(invocation.getReturnType(), invocation.getHintedType(), key, t);
-      cache.put(invocation, o);
+    final BlueprintMethod bm = table.get(method);
+    if (bm == null) {
+      throw new BlueprintException("Method " + method + " does not belong to " + iface.getName());
     }
-    return o;
+    return invoke(bm, args);
+  }
+
+
+  /* Methods from SlotCache.Resolver -------------------------------- */
+
+  @Override
+  public Object resolve(int slot, Object hint, Object[] args) {
+    final BlueprintMethod bm = table.methods[slot];
+    return resolve(bm, args, bm.returnType, MethodInvocation.hintedType(hint, bm.staticHint));
   }
 
 
@@ -170,6 +190,104 @@ class Stub<I> implements InvocationHandler {
 
   /* Privates ------------------------------------------------------- */
 
+  private Object invoke(BlueprintMethod bm, Object[] args) {
+    // Values of methods without arguments are cached by slot.
+    if (! bm.takesArguments) {
+      Object o = slots.get(bm.slot);
+      if (o == null) {
+        o = slots.resolve(bm.slot, this);
+      }
+      return bm.fromFile ? ((FileValue) o).get() : o;
+    }
+
+    // Values of methods taking type hints are cached by hint within their slot,
+    // absent keys included, so cache hits allocate nothing.
+    final Object hint = bm.argumentError == null ? MethodInvocation.hintOf(args) : null;
+    if (hint == null) {
+      throw argumentError(bm, args);
+    }
+    Object o = slots.get(bm.slot, hint);
+    if (o == null) {
+      o = slots.resolve(bm.slot, hint, args, this);
+    }
+    return bm.fromFile ? ((FileValue) o).get() : o;
+  }
+
+
+  /**
+   * Creates the exception thrown when a method taking type hints is declared or called
+   * with the wrong arguments, within a context telling where the invocation came from.
+   */
+  private BlueprintException argumentError(BlueprintMethod bm, Object[] args) {
+    final Context ctxt = enterContext(bm, args);
+    try {
+      return new BlueprintException(bm.argumentError != null ? bm.argumentError : MethodInvocation.INVALID_HINT);
+    } finally {
+      ctxt.exit();
+    }
+  }
+
+
+  private Object resolve(BlueprintMethod bm, Object[] args, Class<?> returnType, Class<?> hintedType) {
+    final String key = keys[bm.slot];
+
+    // describe what's being deserialized for the duration of the call
+    final Context ctxt = enterContext(bm, args);
+    try {
+      // Get the tree whose value will be passed to the deserializer.
+      // For special methods ($value, $asMap), use the tree already associated
+      // with this stub instead of looking up children trees.
+      ConfigNode<?> t;
+      Path<String> path;
+      if (key == null) {
+        t = cfg;
+        path = cfgPath;
+      } else {
+        t = cfg.getChildNode(key);
+        path = slots.pathOf(bm.slot);
+      }
+      if (bm.fromFile) {
+        final String fileName = t != null ? t.getValue() : bm.defaultValue;
+        if (fileName == null) {
+          throw missingKey(key);
+        }
+        return FileValue.of(returnType, hintedType, fileName, bm.fileCheckInterval);
+      }
+
+      final DeserializationPlan plan = bm.takesArguments ?
+              DeserializationPlan.forType(returnType, hintedType) : bm.plan();
+      if (t == null) {
+        /* defaults and empty optionals are kept like any other value */
+        final Object absent = deserializer.deserializeAbsent(plan, bm.defaultValue);
+        if (absent == null) {
+          throw missingKey(key);
+        }
+        return absent;
+      }
+      return deserializer.deserialize(plan, key, t, path, bm.lazy);
+    } finally {
+      ctxt.exit();
+    }
+  }
+
+
+  private BlueprintException missingKey(String key) {
+    return new BlueprintException("Configuration key '" + key + "' does not exist on path " + cfgPath);
+  }
+
+
+  private Context enterContext(BlueprintMethod bm, Object[] args) {
+    return Context.enter(bm.method, args, iface, slots.pathOf(bm.slot));
+  }
+
+
+  private static StubGenerator.Template getTemplate(Class<?> iface) {
+    if (Boolean.getBoolean(USE_PROXIES_PROPERTY)) {
+      return null;
+    }
+    return StubGenerator.templateFor(iface);
+  }
+
 
   private I createProxy() {
     try {
@@ -182,20 +300,5 @@ class Stub<I> implements InvocationHandler {
     }
   }
 
-
-  private String getKeyFor(Method method) {
-    /* handle special methods */
-    //if ("$value".equals(method.getName())) {
-    //  return null;
-    //}
-    /* check for our Key annotation first */
-    Key keyAnn = method.getAnnotation(Key.class);
-    if (keyAnn != null) {
-      return keyAnn.value();
-    }
-    /* no overrides -- return the method's name */
-    return keyResolver.resolve(method.getName());
-  }
-
 }
 
@@ -0,0 +1,548 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.blueprint.ClassFileWriter.Code;
+import org.codemined.util.Types;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+
+import static org.codemined.blueprint.ClassFileWriter.*;
+import static org.codemined.blueprint.ClassFileWriter.Opcodes.*;
+
+/**
+ * Generates blueprint implementation classes as hidden classes.
+ * <p>
+ *   For every blueprint interface, the generator emits a concrete class implementing
+ *   the interface and {@link BlueprintProxy}.  Each method occupies the slot assigned to it
+ *   by the interface's {@link MethodTable}; methods without arguments get a field of their
+ *   own which caches the value returned by the stub, so that after the first call, reading
+ *   a configuration value amounts to a field load.  Methods returning primitives keep their
+ *   value in a field of the primitive type, guarded by a volatile flag, so that reading it
+ *   neither unboxes nor casts.  Methods taking type hints, methods annotated with
+ *   {@link FromFile}, and cache misses are delegated to {@link Stub#invokeSlot(int, Object[])}.
+ * </p>
+ *
+ * <p>
+ *   Snapshot classes, used by {@link Snapshot}, are generated the same way, except that
+ *   values of methods without arguments are passed to the constructor and kept in final
+ *   fields, so reading them needs neither a null check nor a volatile load.
+ * </p>
+ *
+ * <p>
+ *   Generated classes are defined in this package, so they can only be created for
+ *   interfaces (and return types) that are accessible from here and visible to Blueprint's
+ *   class loader.  For all other interfaces, {@link #templateFor(Class)} returns null and
+ *   the stub falls back to a {@link java.lang.reflect.Proxy}.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+class StubGenerator {
+
+  private static final String OBJECT = "java/lang/Object";
+  private static final String HANDLER = "handler";
+  private static final String INVOKE_SLOT_DESCRIPTOR = "(I[Ljava/lang/Object;)Ljava/lang/Object;";
+
+  private static final ClassValue<Template> TEMPLATES = new ClassValue<Template>() {
+    @Override
+    protected Template computeValue(Class<?> iface) {
+      return generate(iface, Stub.class, false);
+    }
+  };
+
+  private static final ClassValue<Template> SNAPSHOT_TEMPLATES = new ClassValue<Template>() {
+    @Override
+    protected Template computeValue(Class<?> iface) {
+      return generate(iface, Snapshot.class, true);
+    }
+  };
+
+
+  /**
+   * Gets the generated implementation of a blueprint interface.
+   *
+   * @param iface blueprint interface.
+   * @return the template for creating instances of the generated class,
+   * or null if no implementation can be generated for the interface.
+   */
+  static Template templateFor(Class<?> iface) {
+    return TEMPLATES.get(iface);
+  }
+
+
+  /**
+   * Gets the generated snapshot class of a blueprint interface.
+   *
+   * @param iface blueprint interface.
+   * @return the template for creating snapshot instances,
+   * or null if no snapshot class can be generated for the interface.
+   */
+  static Template snapshotTemplateFor(Class<?> iface) {
+    return SNAPSHOT_TEMPLATES.get(iface);
+  }
+
+
+  /**
+   * Creates instances of a generated class.
+   */
+  static final class Template {
+
+    private final MethodHandle constructor;
+
+    Template(MethodHandle constructor) {
+      this.constructor = constructor.asType(
+              MethodType.methodType(Object.class, Object.class, Object[].class));
+    }
+
+    /**
+     * @param handler the stub or snapshot backing the instance.
+     * @param values values of methods without arguments indexed by slot, for snapshots;
+     *               ignored by stub classes.
+     */
+    Object newInstance(Object handler, Object[] values) {
+      try {
+        return (Object) constructor.invokeExact(handler, values);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new BlueprintException("Error instantiating generated class for " + handler, t);
+      }
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * Generates a stub class, or a snapshot class if {@code snapshot} is set.
+   *
+   * @param handler class providing {@code invokeSlot(int, Object[])} and the methods from Object.
+   */
+  private static Template generate(Class<?> iface, Class<?> handler, boolean snapshot) {
+    BlueprintMethod[] slots = MethodTable.forInterface(iface).methods;
+    if (! isAccessible(iface) || ! areSignaturesAccessible(slots)) {
+      return null;
+    }
+
+    String handlerName = internalName(handler);
+    String className = "org/codemined/blueprint/" + iface.getName().replace('.', '_') +
+            (snapshot ? "$$Snapshot" : "$$Blueprint");
+    ClassFileWriter cw = new ClassFileWriter(ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, OBJECT,
+            internalName(iface), internalName(BlueprintProxy.class));
+
+    cw.addField(ACC_PRIVATE | ACC_FINAL, HANDLER, "L" + handlerName + ";");
+    if (snapshot) {
+      writeSnapshotConstructor(cw, className, handlerName, slots);
+    } else {
+      writeConstructor(cw, className, handlerName);
+    }
+    writeObjectMethods(cw, className, handlerName);
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i].takesArguments ||
+              (slots[i].fromFile && (! snapshot || slots[i].method.getReturnType() == ByteBuffer.class))) {
+        /* values read from files are checked for changes on every call,
+        and snapshots give every call a buffer with a position of its own */
+        writeDelegatingMethod(cw, className, handlerName, slots[i].method, i);
+      } else if (snapshot) {
+        writeFinalFieldMethod(cw, className, slots[i].method, i);
+      } else {
+        writeCachingMethod(cw, className, handlerName, slots[i].method, i);
+      }
+    }
+
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(cw.toByteArray(), true);
+      MethodHandle ctor;
+      if (snapshot) {
+        ctor = lookup.findConstructor(lookup.lookupClass(),
+                MethodType.methodType(void.class, handler, Object[].class));
+      } else {
+        ctor = MethodHandles.dropArguments(lookup.findConstructor(lookup.lookupClass(),
+                MethodType.methodType(void.class, handler)), 1, Object[].class);
+      }
+      return new Template(ctor);
+    } catch (IllegalAccessException e) {
+      return null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+
+  private static void writeConstructor(ClassFileWriter cw, String className, String handler) {
+    Code c = cw.addMethod(ACC_PUBLIC, "<init>", "(L" + handler + ";)V", 2, 2);
+    c.load(ALOAD, 0)
+     .invokespecial(OBJECT, "<init>", "()V")
+     .load(ALOAD, 0)
+     .load(ALOAD, 1)
+     .putfield(className, HANDLER, "L" + handler + ";")
+     .op(RETURN)
+     .end();
+  }
+
+
+  /**
+   * Writes a constructor which copies the values of methods without arguments
+   * into their final fields.
+   */
+  private static void writeSnapshotConstructor(ClassFileWriter cw, String className, String handler,
+                                               BlueprintMethod[] slots) {
+    Code c = cw.addMethod(ACC_PUBLIC, "<init>", "(L" + handler + ";[Ljava/lang/Object;)V", 4, 3);
+    c.load(ALOAD, 0)
+     .invokespecial(OBJECT, "<init>", "()V")
+     .load(ALOAD, 0)
+     .load(ALOAD, 1)
+     .putfield(className, HANDLER, "L" + handler + ";");
+    for (int i = 0; i < slots.length; i++) {
+      if (! slots[i].takesArguments) {
+        String descriptor = fieldDescriptorOf(slots[i].method.getReturnType());
+        cw.addField(ACC_PRIVATE | ACC_FINAL, "v" + i, descriptor);
+        c.load(ALOAD, 0)
+         .load(ALOAD, 2)
+         .iconst(i)
+         .op(AALOAD);
+        writeUnbox(c, slots[i].method.getReturnType());
+        c.putfield(className, "v" + i, descriptor);
+      }
+    }
+    c.op(RETURN).end();
+  }
+
+
+  private static void writeObjectMethods(ClassFileWriter cw, String className, String handler) {
+    cw.addMethod(ACC_PUBLIC, "toString", "()Ljava/lang/String;", 1, 1)
+            .load(ALOAD, 0)
+            .getfield(className, HANDLER, "L" + handler + ";")
+            .invokevirtual(handler, "toString", "()Ljava/lang/String;")
+            .op(ARETURN)
+            .end();
+    cw.addMethod(ACC_PUBLIC, "hashCode", "()I", 1, 1)
+            .load(ALOAD, 0)
+            .getfield(className, HANDLER, "L" + handler + ";")
+            .invokevirtual(handler, "hashCode", "()I")
+            .op(IRETURN)
+            .end();
+    cw.addMethod(ACC_PUBLIC, "equals", "(Ljava/lang/Object;)Z", 2, 2)
+            .load(ALOAD, 0)
+            .getfield(className, HANDLER, "L" + handler + ";")
+            .load(ALOAD, 1)
+            .invokevirtual(handler, "equals", "(Ljava/lang/Object;)Z")
+            .op(IRETURN)
+            .end();
+  }
+
+
+  /**
+   * Writes a method without arguments, which returns the value cached in its field,
+   * or asks the stub for the value and caches it.
+   */
+  private static void writeCachingMethod(ClassFileWriter cw, String className, String handler,
+                                         Method m, int slot) {
+    if (m.getReturnType().isPrimitive()) {
+      writePrimitiveCachingMethod(cw, className, handler, m, slot);
+      return;
+    }
+    String field = "v" + slot;
+    cw.addField(ACC_PRIVATE | ACC_VOLATILE, field, "Ljava/lang/Object;");
+
+    Code c = cw.addMethod(ACC_PUBLIC, m.getName(), descriptorOf(m), 4, 2);
+    c.load(ALOAD, 0)
+     .getfield(className, field, "Ljava/lang/Object;")
+     .op(ASTORE, 1)
+     .load(ALOAD, 1);
+    int cached = c.branch(IFNONNULL);
+    c.load(ALOAD, 0)
+     .load(ALOAD, 0)
+     .getfield(className, HANDLER, "L" + handler + ";")
+     .iconst(slot)
+     .op(ACONST_NULL)
+     .invokevirtual(handler, "invokeSlot", INVOKE_SLOT_DESCRIPTOR)
+     .op(DUP_X1)
+     .putfield(className, field, "Ljava/lang/Object;")
+     .op(ASTORE, 1)
+     .bind(cached)
+     .load(ALOAD, 1);
+    writeReturn(c, m.getReturnType());
+    c.end();
+  }
+
+
+  /**
+   * Writes a method without arguments returning a primitive, which keeps the value in
+   * a field of the primitive type.  The value is written before the volatile flag which
+   * tells that it is set, and read after it, so readers never see a partly written value.
+   */
+  private static void writePrimitiveCachingMethod(ClassFileWriter cw, String className, String handler,
+                                                  Method m, int slot) {
+    Class<?> type = m.getReturnType();
+    String field = "v" + slot;
+    String flag = "s" + slot;
+    String descriptor = descriptorOf(type);
+    cw.addField(ACC_PRIVATE, field, descriptor);
+    cw.addField(ACC_PRIVATE | ACC_VOLATILE, flag, "Z");
+
+    Code c = cw.addMethod(ACC_PUBLIC, m.getName(), descriptorOf(m), 3, 3);
+    c.load(ALOAD, 0)
+     .getfield(className, flag, "Z");
+    int miss = c.branch(IFEQ);
+    c.load(ALOAD, 0)
+     .getfield(className, field, descriptor);
+    c.op(returnOpcode(type));
+    c.bind(miss)
+     .load(ALOAD, 0)
+     .getfield(className, HANDLER, "L" + handler + ";")
+     .iconst(slot)
+     .op(ACONST_NULL)
+     .invokevirtual(handler, "invokeSlot", INVOKE_SLOT_DESCRIPTOR);
+    writeUnbox(c, type);
+    c.op(storeOpcode(type), 1)
+     .load(ALOAD, 0)
+     .load(loadOpcode(type), 1)
+     .putfield(className, field, descriptor)
+     .load(ALOAD, 0)
+     .iconst(1)
+     .putfield(className, flag, "Z")
+     .load(loadOpcode(type), 1)
+     .op(returnOpcode(type))
+     .end();
+  }
+
+
+  /**
+   * Writes a snapshot method without arguments, which returns the value of its final field.
+   */
+  private static void writeFinalFieldMethod(ClassFileWriter cw, String className, Method m, int slot) {
+    Class<?> type = m.getReturnType();
+    Code c = cw.addMethod(ACC_PUBLIC, m.getName(), descriptorOf(m), 2, 1);
+    c.load(ALOAD, 0)
+     .getfield(className, "v" + slot, fieldDescriptorOf(type));
+    if (type.isPrimitive()) {
+      c.op(returnOpcode(type));
+    } else {
+      writeReturn(c, type);
+    }
+    c.end();
+  }
+
+
+  /**
+   * Writes a method taking type hints, which passes its arguments on to the handler.
+   */
+  private static void writeDelegatingMethod(ClassFileWriter cw, String className, String handler,
+                                            Method m, int slot) {
+    Class<?>[] params = m.getParameterTypes();
+    int locals = 1;
+    for (Class<?> p : params) {
+      locals += (p == long.class || p == double.class) ? 2 : 1;
+    }
+
+    Code c = cw.addMethod(ACC_PUBLIC, m.getName(), descriptorOf(m), 7, locals);
+    c.load(ALOAD, 0)
+     .getfield(className, HANDLER, "L" + handler + ";")
+     .iconst(slot)
+     .iconst(params.length)
+     .anewarray(OBJECT);
+    int local = 1;
+    for (int i = 0; i < params.length; i++) {
+      c.op(DUP).iconst(i);
+      local += writeLoadBoxed(c, params[i], local);
+      c.op(AASTORE);
+    }
+    c.invokevirtual(handler, "invokeSlot", INVOKE_SLOT_DESCRIPTOR);
+    writeReturn(c, m.getReturnType());
+    c.end();
+  }
+
+
+  /**
+   * Loads a method parameter, boxing it if it is a primitive.
+   *
+   * @return number of local variable slots taken up by the parameter.
+   */
+  private static int writeLoadBoxed(Code c, Class<?> type, int local) {
+    if (! type.isPrimitive()) {
+      c.load(ALOAD, local);
+      return 1;
+    }
+    Class<?> boxed = Types.boxed(type);
+    if (type == long.class) {
+      c.load(LLOAD, local);
+    } else if (type == double.class) {
+      c.load(DLOAD, local);
+    } else if (type == float.class) {
+      c.load(FLOAD, local);
+    } else {
+      c.load(ILOAD, local);
+    }
+    c.invokestatic(internalName(boxed), "valueOf",
+            "(" + descriptorOf(type) + ")" + descriptorOf(boxed));
+    return (type == long.class || type == double.class) ? 2 : 1;
+  }
+
+
+  /**
+   * Casts (and unboxes, if needed) the object on top of the stack to the method's return type
+   * and returns it.
+   */
+  private static void writeReturn(Code c, Class<?> type) {
+    if (type == void.class) {
+      c.op(POP).op(RETURN);
+    } else if (type.isPrimitive()) {
+      writeUnbox(c, type);
+      c.op(returnOpcode(type));
+    } else {
+      if (type != Object.class) {
+        c.checkcast(internalName(type));
+      }
+      c.op(ARETURN);
+    }
+  }
+
+
+  /**
+   * Casts the object on top of the stack to the boxed type of a primitive and unboxes it.
+   * Leaves other objects as they are.
+   */
+  private static void writeUnbox(Code c, Class<?> type) {
+    if (type.isPrimitive()) {
+      Class<?> boxed = Types.boxed(type);
+      c.checkcast(internalName(boxed))
+       .invokevirtual(internalName(boxed), type.getName() + "Value", "()" + descriptorOf(type));
+    }
+  }
+
+
+  private static int loadOpcode(Class<?> type) {
+    if (type == long.class) return LLOAD;
+    if (type == double.class) return DLOAD;
+    if (type == float.class) return FLOAD;
+    return ILOAD;
+  }
+
+
+  private static int storeOpcode(Class<?> type) {
+    if (type == long.class) return LSTORE;
+    if (type == double.class) return DSTORE;
+    if (type == float.class) return FSTORE;
+    return ISTORE;
+  }
+
+
+  private static int returnOpcode(Class<?> type) {
+    if (type == long.class) return LRETURN;
+    if (type == double.class) return DRETURN;
+    if (type == float.class) return FRETURN;
+    return IRETURN;
+  }
+
+
+  private static boolean areSignaturesAccessible(BlueprintMethod[] methods) {
+    for (BlueprintMethod bm : methods) {
+      Method m = bm.method;
+      if (! isAccessible(m.getReturnType())) {
+        return false;
+      }
+      for (Class<?> p : m.getParameterTypes()) {
+        if (! isAccessible(p)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Checks whether the generated class, being defined in this package by Blueprint's
+   * class loader, can link against the given type.
+   */
+  private static boolean isAccessible(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+
+    ClassLoader loader = StubGenerator.class.getClassLoader();
+    try {
+      if (Class.forName(type.getName(), false, loader) != type) {
+        return false;
+      }
+    } catch (ClassNotFoundException e) {
+      return false;
+    } catch (LinkageError e) {
+      return false;
+    }
+
+    int modifiers = type.getModifiers();
+    return Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers) ||
+            (type.getClassLoader() == loader &&
+                    StubGenerator.class.getPackageName().equals(type.getPackageName()));
+  }
+
+
+  private static String internalName(Class<?> type) {
+    return type.getName().replace('.', '/');
+  }
+
+
+  private static String descriptorOf(Method m) {
+    StringBuilder sb = new StringBuilder("(");
+    for (Class<?> p : m.getParameterTypes()) {
+      sb.append(descriptorOf(p));
+    }
+    return sb.append(')').append(descriptorOf(m.getReturnType())).toString();
+  }
+
+
+  /**
+   * Descriptor of the field holding a value of the given type: primitives are
+   * kept as they are, everything else as an Object.
+   */
+  private static String fieldDescriptorOf(Class<?> type) {
+    return type.isPrimitive() ? descriptorOf(type) : "Ljava/lang/Object;";
+  }
+
+
+  private static String descriptorOf(Class<?> type) {
+    if (type.isArray()) {
+      return type.getName().replace('.', '/');
+    }
+    if (type.isPrimitive()) {
+      if (type == int.class) return "I";
+      if (type == long.class) return "J";
+      if (type == boolean.class) return "Z";
+      if (type == byte.class) return "B";
+      if (type == char.class) return "C";
+      if (type == short.class) return "S";
+      if (type == float.class) return "F";
+      if (type == double.class) return "D";
+      return "V";
+    }
+    return "L" + internalName(type) + ";";
+  }
+
+}
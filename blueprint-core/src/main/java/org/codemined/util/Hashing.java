@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+/**
+ * Hash spreading and table sizing shared by the open-addressing tables in this package.
+ *
+ * @author Zoran Rilak
+ */
+final class Hashing {
+
+  private static final int MAX_TABLE_SIZE = 1 << 30;
+
+  private Hashing() {
+  }
+
+
+  static int mix(long x) {
+    x *= 0x9E3779B97F4A7C15L;
+    return (int) (x ^ (x >>> 32));
+  }
+
+
+  static int mix(int x) {
+    x *= 0x9E3779B9;
+    return x ^ (x >>> 16);
+  }
+
+
+  /**
+   * Gets the power of two at least twice the number of entries, so that tables stay at
+   * most half full.
+   */
+  static int tableSize(int entries) {
+    if (entries >= MAX_TABLE_SIZE / 2) {
+      return MAX_TABLE_SIZE;
+    }
+    return Math.max(4, Integer.highestOneBit(Math.max(1, entries * 2 - 1)) << 1);
+  }
+
+}
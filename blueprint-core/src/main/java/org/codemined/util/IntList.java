@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable list of {@code int} values, kept in an array without boxing.
+ *
+ * @author Zoran Rilak
+ */
+public final class IntList {
+
+  private static final IntList EMPTY = new IntList(new int[0]);
+
+  private final int[] elements;
+
+
+  private IntList(int[] elements) {
+    this.elements = elements;
+  }
+
+
+  /**
+   * Creates a list of the given values, in order.
+   */
+  public static IntList of(int... values) {
+    return values.length == 0 ? EMPTY : new IntList(values.clone());
+  }
+
+
+  public int size() {
+    return elements.length;
+  }
+
+
+  public boolean isEmpty() {
+    return elements.length == 0;
+  }
+
+
+  /**
+   * @throws IndexOutOfBoundsException if the index is out of range.
+   */
+  public int get(int index) {
+    return elements[index];
+  }
+
+
+  /**
+   * @return index of the first occurrence of the value, or -1 if the list does not contain it.
+   */
+  public int indexOf(int value) {
+    for (int i = 0; i < elements.length; i++) {
+      if (elements[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+  public boolean contains(int value) {
+    return indexOf(value) >= 0;
+  }
+
+
+  /**
+   * @return a copy of the values.
+   */
+  public int[] toArray() {
+    return elements.clone();
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    return o == this || (o instanceof IntList && Arrays.equals(elements, ((IntList) o).elements));
+  }
+
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(elements);
+  }
+
+
+  @Override
+  public String toString() {
+    return Arrays.toString(elements);
+  }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable map from disjoint, closed intervals of {@code long} keys to values, for
+ * lookup lists such as port ranges or IPv4 address blocks.
+ * <p>
+ *   Interval bounds are kept in two sorted {@code long} arrays and looked up by binary
+ *   search, so lookups neither box keys nor allocate.  Intervals are written as a single
+ *   number ({@code 8080}), an inclusive range ({@code 1024-65535}, {@code -10--1}),
+ *   an IPv4 address ({@code 10.1.2.3}), a range of addresses, or an IPv4 CIDR block
+ *   ({@code 10.0.0.0/8}); addresses map onto keys as unsigned 32-bit numbers.
+ * </p>
+ *
+ * @param <V> value type.
+ *
+ * @author Zoran Rilak
+ */
+public final class LongIntervalMap<V> {
+
+  /** Lower and upper interval bounds, both inclusive, in ascending order. */
+  private final long[] lows, highs;
+
+  private final Object[] values;
+
+
+  private LongIntervalMap(long[] lows, long[] highs, Object[] values) {
+    this.lows = lows;
+    this.highs = highs;
+    this.values = values;
+  }
+
+
+  public static <V> Builder<V> builder(int expectedSize) {
+    return new Builder<V>(expectedSize);
+  }
+
+
+  /**
+   * Gets the value of the interval containing the key.
+   *
+   * @return the value, or null if no interval contains the key.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    final int i = indexOf(key);
+    return i < 0 ? null : (V) values[i];
+  }
+
+
+  /**
+   * Tells whether any interval contains the key.
+   */
+  public boolean contains(long key) {
+    return indexOf(key) >= 0;
+  }
+
+
+  /**
+   * Gets the number of intervals.
+   */
+  public int size() {
+    return lows.length;
+  }
+
+
+  /**
+   * Parses an interval.
+   *
+   * @return lower and upper bound, inclusive.
+   * @throws IllegalArgumentException if the interval is malformed or empty.
+   */
+  public static long[] parseInterval(String s) {
+    final int slash = s.indexOf('/');
+    if (slash >= 0) {
+      final long address = parseAddress(s.substring(0, slash));
+      final int bits = Parsers.parseInt(s.substring(slash + 1));
+      if (bits < 0 || bits > 32) {
+        throw new IllegalArgumentException("Invalid prefix length in \"" + s + "\"");
+      }
+      final long size = 1L << (32 - bits);
+      final long low = address & ~(size - 1);
+      return new long[] { low, low + size - 1 };
+    }
+
+    /* a leading minus sign belongs to the lower bound */
+    final int dash = s.indexOf('-', 1);
+    final long low = parseBound(dash < 0 ? s : s.substring(0, dash));
+    final long high = dash < 0 ? low : parseBound(s.substring(dash + 1));
+    if (high < low) {
+      throw new IllegalArgumentException("Empty interval \"" + s + "\"");
+    }
+    return new long[] { low, high };
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (! (o instanceof LongIntervalMap)) {
+      return false;
+    }
+    final LongIntervalMap<?> m = (LongIntervalMap<?>) o;
+    return Arrays.equals(lows, m.lows) && Arrays.equals(highs, m.highs) && Arrays.equals(values, m.values);
+  }
+
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Arrays.hashCode(lows) + Arrays.hashCode(highs)) + Arrays.hashCode(values);
+  }
+
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < lows.length; i++) {
+      sb.append(i > 0 ? ", " : "").append(lows[i]).append("..").append(highs[i]).append('=').append(values[i]);
+    }
+    return sb.append('}').toString();
+  }
+
+
+  /**
+   * Collects intervals in any order and sorts them once when built.
+   */
+  public static final class Builder<V> {
+
+    private long[] lows, highs;
+
+    private Object[] values;
+
+    private int size;
+
+    private Builder(int expectedSize) {
+      final int capacity = Math.max(expectedSize, 4);
+      lows = new long[capacity];
+      highs = new long[capacity];
+      values = new Object[capacity];
+    }
+
+    /**
+     * Adds the interval {@code [low, high]}.
+     */
+    public Builder<V> put(long low, long high, V value) {
+      if (high < low) {
+        throw new IllegalArgumentException("Empty interval " + low + ".." + high);
+      }
+      if (size == lows.length) {
+        final int capacity = size + (size >> 1);
+        lows = Arrays.copyOf(lows, capacity);
+        highs = Arrays.copyOf(highs, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+      lows[size] = low;
+      highs[size] = high;
+      values[size] = value;
+      size++;
+      return this;
+    }
+
+    /**
+     * Adds an interval given in any of the forms listed in {@link LongIntervalMap}.
+     */
+    public Builder<V> put(String interval, V value) {
+      final long[] bounds = parseInterval(interval);
+      return put(bounds[0], bounds[1], value);
+    }
+
+    /**
+     * @throws IllegalArgumentException if any intervals overlap.
+     */
+    public LongIntervalMap<V> build() {
+      final int[] order = new int[size];
+      boolean sorted = true;
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+        sorted &= i == 0 || lows[i - 1] <= lows[i];
+      }
+      if (! sorted) {
+        mergeSort(order, new int[size], 0, size);
+      }
+
+      final long[] l = new long[size];
+      final long[] h = new long[size];
+      final Object[] v = new Object[size];
+      for (int i = 0; i < size; i++) {
+        l[i] = lows[order[i]];
+        h[i] = highs[order[i]];
+        v[i] = values[order[i]];
+        if (i > 0 && l[i] <= h[i - 1]) {
+          throw new IllegalArgumentException("Interval " + l[i] + ".." + h[i] +
+                  " overlaps interval " + l[i - 1] + ".." + h[i - 1]);
+        }
+      }
+      return new LongIntervalMap<V>(l, h, v);
+    }
+
+    /**
+     * Sorts {@code order[from..to)} by lower bound, without boxing.
+     */
+    private void mergeSort(int[] order, int[] tmp, int from, int to) {
+      if (to - from < 2) {
+        return;
+      }
+      final int mid = (from + to) >>> 1;
+      mergeSort(order, tmp, from, mid);
+      mergeSort(order, tmp, mid, to);
+      System.arraycopy(order, from, tmp, from, to - from);
+      int a = from, b = mid;
+      for (int i = from; i < to; i++) {
+        if (b >= to || (a < mid && lows[tmp[a]] <= lows[tmp[b]])) {
+          order[i] = tmp[a++];
+        } else {
+          order[i] = tmp[b++];
+        }
+      }
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private int indexOf(long key) {
+    int i = Arrays.binarySearch(lows, key);
+    if (i >= 0) {
+      return i;
+    }
+    /* the interval starting right below the key, if any */
+    i = -i - 2;
+    return i >= 0 && key <= highs[i] ? i : -1;
+  }
+
+
+  private static long parseBound(String s) {
+    return s.indexOf('.') >= 0 ? parseAddress(s) : Parsers.parseLong(s);
+  }
+
+
+  /**
+   * Parses a dotted-quad IPv4 address into an unsigned 32-bit number.
+   */
+  private static long parseAddress(String s) {
+    long address = 0;
+    int start = 0;
+    for (int octet = 0; octet < 4; octet++) {
+      int end = s.indexOf('.', start);
+      if (end < 0) {
+        end = s.length();
+      }
+      if ((end == s.length()) != (octet == 3)) {
+        throw new IllegalArgumentException("Invalid IPv4 address \"" + s + "\"");
+      }
+      final int value = Parsers.parseInt(s.subSequence(start, end));
+      if (value < 0 || value > 255 || end == start) {
+        throw new IllegalArgumentException("Invalid IPv4 address \"" + s + "\"");
+      }
+      address = (address << 8) | value;
+      start = end + 1;
+    }
+    return address;
+  }
+
+}
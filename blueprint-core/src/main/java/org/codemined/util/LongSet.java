@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of {@code long} values in an open-addressing hash table, without boxing.
+ * <p>
+ *   The table is a single {@code long} array at most half full, probed linearly; zero
+ *   marks empty slots, so whether the set contains zero is kept aside.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+public final class LongSet {
+
+  private final long[] table;
+
+  private final boolean containsZero;
+
+  private final int size;
+
+
+  private LongSet(long[] table, boolean containsZero, int size) {
+    this.table = table;
+    this.containsZero = containsZero;
+    this.size = size;
+  }
+
+
+  /**
+   * Creates a set of the given values.  Duplicates are dropped.
+   */
+  public static LongSet of(long... values) {
+    final long[] table = new long[Hashing.tableSize(values.length)];
+    final int mask = table.length - 1;
+    boolean containsZero = false;
+    int size = 0;
+    for (long v : values) {
+      if (v == 0) {
+        size += containsZero ? 0 : 1;
+        containsZero = true;
+        continue;
+      }
+      int i = Hashing.mix(v) & mask;
+      while (table[i] != 0 && table[i] != v) {
+        i = (i + 1) & mask;
+      }
+      if (table[i] == 0) {
+        table[i] = v;
+        size++;
+      }
+    }
+    return new LongSet(table, containsZero, size);
+  }
+
+
+  public boolean contains(long value) {
+    if (value == 0) {
+      return containsZero;
+    }
+    final int mask = table.length - 1;
+    int i = Hashing.mix(value) & mask;
+    long e;
+    while ((e = table[i]) != 0) {
+      if (e == value) {
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+
+
+  public int size() {
+    return size;
+  }
+
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+
+  /**
+   * @return the values, in ascending order.
+   */
+  public long[] toArray() {
+    final long[] values = new long[size];
+    int n = 0;
+    if (containsZero) {
+      values[n++] = 0;
+    }
+    for (long e : table) {
+      if (e != 0) {
+        values[n++] = e;
+      }
+    }
+    Arrays.sort(values);
+    return values;
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (! (o instanceof LongSet)) {
+      return false;
+    }
+    final LongSet other = (LongSet) o;
+    if (other.size != size || other.containsZero != containsZero) {
+      return false;
+    }
+    for (long e : table) {
+      if (e != 0 && ! other.contains(e)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  @Override
+  public int hashCode() {
+    int h = 0;
+    for (long e : table) {
+      h += Long.hashCode(e);
+    }
+    return h;
+  }
+
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+
+}
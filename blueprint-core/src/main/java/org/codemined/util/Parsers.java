@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+/**
+ * Parses primitive values from character sequences without boxing them.
+ * <p>
+ *   The parsers accept exactly what the corresponding {@code valueOf(String)} methods
+ *   of the boxed types accept, and fail the same way.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+public class Parsers {
+
+  private static final String TRUE = "true";
+
+
+  /**
+   * Parses a decimal int, as {@link Integer#valueOf(String)} does.
+   *
+   * @throws NumberFormatException if the sequence is null or not a valid int.
+   */
+  public static int parseInt(CharSequence s) {
+    if (s == null) {
+      throw new NumberFormatException("Cannot parse null string: null");
+    }
+    return Integer.parseInt(s, 0, s.length(), 10);
+  }
+
+
+  /**
+   * Parses a decimal long, as {@link Long#valueOf(String)} does.
+   *
+   * @throws NumberFormatException if the sequence is null or not a valid long.
+   */
+  public static long parseLong(CharSequence s) {
+    if (s == null) {
+      throw new NumberFormatException("Cannot parse null string: null");
+    }
+    return Long.parseLong(s, 0, s.length(), 10);
+  }
+
+
+  /**
+   * Parses a double, as {@link Double#valueOf(String)} does.
+   *
+   * @throws NumberFormatException if the sequence is not a valid double.
+   * @throws NullPointerException if the sequence is null.
+   */
+  public static double parseDouble(CharSequence s) {
+    return Double.parseDouble(s.toString());
+  }
+
+
+  /**
+   * Parses a boolean, as {@link Boolean#valueOf(String)} does: the sequence "true",
+   * ignoring case, is true, anything else, including null, is false.
+   */
+  public static boolean parseBoolean(CharSequence s) {
+    if (s == null || s.length() != TRUE.length()) {
+      return false;
+    }
+    for (int i = 0; i < TRUE.length(); i++) {
+      if (Character.toLowerCase(s.charAt(i)) != TRUE.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -16,58 +16,286 @@
 
 package org.codemined.util;
 
-import java.util.ArrayList;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * A sequence of keys representing a path in a tree starting from the root node.
  *
- * <p>This is a helper class that adds some utility methods to ArrayList.</p>
- * 
- * <p>Instances of this class are immutable.</p>
+ * <p>
+ *   Paths are immutable and persistent: each path keeps its last key and a reference to
+ *   the path leading to it, so that {@link #to(Object)} takes constant time and paths
+ *   descending from a common prefix share it.  The hash code is computed along with the
+ *   path, and the string form is built only when first asked for.  Paths are lists of
+ *   their keys, equal to any list with the same keys; getting a key by index walks back
+ *   from the end of the path.
+ * </p>
+ * <p>
+ *   Paths serialize as the list of their keys, and the chain of parents is rebuilt when
+ *   they are read back.
+ * </p>
  *
  * @author Zoran Rilak
  */
-public class Path<K> extends ArrayList<K> {
+public class Path<K> extends AbstractList<K> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The path without the last key, or null for the empty path. */
+  private final Path<K> parent;
+
+  private final K key;
+
+  private final K first;
+
+  private final int size;
+
+  /** Same as {@link List#hashCode()}, which can be computed key by key. */
+  private final int hash;
+
+  /** The string form, built on first use; racing threads build equal strings. */
+  private transient String string;
+
 
   public Path() {
-    super();
+    this.parent = null;
+    this.key = null;
+    this.first = null;
+    this.size = 0;
+    this.hash = 1;
   }
 
   public Path(List<K> keys) {
-    super(keys);
+    this(prefix(keys), keys.isEmpty() ? null : keys.get(keys.size() - 1), ! keys.isEmpty());
   }
 
+  @SafeVarargs
   public Path(K... keys) {
-    if (keys != null) {
-      addAll(Arrays.asList(keys));
+    /* the keys are read one by one, so that the array never leaves this constructor */
+    final int n = keys == null ? 0 : keys.length;
+    Path<K> p = new Path<K>();
+    for (int i = 0; i < n - 1; i++) {
+      p = p.to(keys[i]);
+    }
+    if (n > 0) {
+      this.parent = p;
+      this.key = keys[n - 1];
+      this.first = p.size == 0 ? key : p.first;
+      this.size = p.size + 1;
+      this.hash = 31 * p.hash + (key == null ? 0 : key.hashCode());
+    } else {
+      this.parent = null;
+      this.key = null;
+      this.first = null;
+      this.size = 0;
+      this.hash = 1;
     }
   }
-  
-  @SuppressWarnings("unchecked")
+
+  private Path(Path<K> parent, K key, boolean hasKey) {
+    if (hasKey) {
+      this.parent = parent;
+      this.key = key;
+      this.first = parent.size == 0 ? key : parent.first;
+      this.size = parent.size + 1;
+      this.hash = 31 * parent.hash + (key == null ? 0 : key.hashCode());
+    } else {
+      this.parent = null;
+      this.key = null;
+      this.first = null;
+      this.size = 0;
+      this.hash = 1;
+    }
+  }
+
+
+  /**
+   * Gets the path one key below this one.
+   */
   public Path<K> to(K subKey) {
-    return via(subKey);
+    return new Path<K>(this, subKey, true);
   }
 
-  public Path<K> via(K... subKeys) {
+  @SafeVarargs
+  public final Path<K> via(K... subKeys) {
     if (subKeys == null) {
       return this;
     }
-    Path<K> newPath = new Path<K>(this);
-    newPath.addAll(Arrays.asList(subKeys));
-    return newPath;
+    Path<K> p = this;
+    for (K k : subKeys) {
+      p = p.to(k);
+    }
+    return p;
+  }
+
+  /**
+   * Gets the path without its last key, or null if this path is empty.
+   */
+  public Path<K> getParent() {
+    return size == 0 ? null : parent;
+  }
+
+  /**
+   * Gets the first key of the path, or null if the path is empty.
+   */
+  public K getFirst() {
+    return first;
+  }
+
+  /**
+   * Gets the last key of the path, or null if the path is empty.
+   */
+  public K getLast() {
+    return key;
+  }
+
+
+  /* Methods from List ---------------------------------------------- */
+
+  @Override
+  public K get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+    Path<K> p = this;
+    for (int i = size - 1; i > index; i--) {
+      p = p.parent;
+    }
+    return p.key;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<K> iterator() {
+    final Object[] keys = new Object[size];
+    Path<K> p = this;
+    for (int i = size - 1; i >= 0; i--) {
+      keys[i] = p.key;
+      p = p.parent;
+    }
+    return new Iterator<K>() {
+      private int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < keys.length;
+      }
+
+      @Override
+      public K next() {
+        if (i >= keys.length) {
+          throw new NoSuchElementException();
+        }
+        return (K) keys[i++];
+      }
+    };
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (! (o instanceof Path)) {
+      return super.equals(o);
+    }
+    Path<?> a = this;
+    Path<?> b = (Path<?>) o;
+    if (a.size != b.size || a.hash != b.hash) {
+      return false;
+    }
+    /* walk back until the paths share their prefix */
+    while (a != b) {
+      if (a.key == null ? b.key != null : ! a.key.equals(b.key)) {
+        return false;
+      }
+      a = a.parent;
+      b = b.parent;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
   }
 
   @Override
   public String toString() {
-    ArrayList<String> l = new ArrayList<String>(this.size());
-    for (K k : this) {
-      l.add(k.toString());
+    String s = string;
+    if (s == null) {
+      final StringBuilder sb = new StringBuilder();
+      boolean first = true;
+      for (K k : this) {
+        if (! first) {
+          sb.append('/');
+        }
+        sb.append(k);
+        first = false;
+      }
+      s = sb.toString();
+      string = s;
     }
-    return Strings.join("/", l);
+    return s;
   }
 
-  /* equals(Object) and hashCode() from ArrayList behave as required for Path, too. */
+
+  /* Serialization -------------------------------------------------- */
+
+  /**
+   * Keys of a path, which is written in place of the path itself.
+   */
+  private static final class SerialForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object[] keys;
+
+    SerialForm(Object[] keys) {
+      this.keys = keys;
+    }
+
+    private Object readResolve() {
+      return new Path<Object>(Arrays.asList(keys));
+    }
+
+  }
+
+  private Object writeReplace() {
+    return new SerialForm(toArray());
+  }
+
+  private void readObject(ObjectInputStream in) throws InvalidObjectException {
+    throw new InvalidObjectException("Paths are read from their serial form");
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * Gets the path made of all but the last of the given keys.
+   */
+  private static <K> Path<K> prefix(List<K> keys) {
+    Path<K> p = new Path<K>();
+    final Iterator<K> iter = keys.iterator();
+    for (int i = 0; i < keys.size() - 1; i++) {
+      p = p.to(iter.next());
+    }
+    return p;
+  }
 
 }
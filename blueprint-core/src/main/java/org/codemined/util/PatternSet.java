@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable, ordered list of regular expressions matched against an input all at once.
+ * <p>
+ *   The expressions are compiled into a single alternation, each wrapped in a group of its
+ *   own, so one pass of the regex engine over the input tells which of them matched.
+ *   Expressions that cannot be combined safely, like those using numbered back references,
+ *   quoting, or comments, make the set match them one after another instead, with the same
+ *   results.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+public final class PatternSet {
+
+  private final Pattern[] patterns;
+
+  /** All patterns combined, or null if they are matched one by one. */
+  private final Pattern combined;
+
+  /** Index of the group wrapping each pattern within {@link #combined}. */
+  private final int[] groups;
+
+
+  private PatternSet(Pattern[] patterns, Pattern combined, int[] groups) {
+    this.patterns = patterns;
+    this.combined = combined;
+    this.groups = groups;
+  }
+
+
+  /**
+   * Compiles a list of regular expressions.
+   *
+   * @throws PatternSyntaxException if any of the expressions is invalid.
+   */
+  public static PatternSet compile(String... regexes) {
+    final Pattern[] patterns = new Pattern[regexes.length];
+    final int[] groups = new int[regexes.length];
+    final StringBuilder sb = new StringBuilder();
+    boolean combinable = regexes.length > 1;
+    int group = 1;
+    for (int i = 0; i < regexes.length; i++) {
+      patterns[i] = Pattern.compile(regexes[i]);
+      combinable &= isCombinable(regexes[i]);
+      groups[i] = group;
+      group += 1 + patterns[i].matcher("").groupCount();
+      sb.append(i > 0 ? "|(" : "(").append(regexes[i]).append(')');
+    }
+
+    Pattern combined = null;
+    if (combinable) {
+      try {
+        combined = Pattern.compile(sb.toString());
+        if (combined.matcher("").groupCount() != group - 1) {
+          combined = null;
+        }
+      } catch (PatternSyntaxException e) {
+        /* e.g. the same group name used by two patterns */
+        combined = null;
+      }
+    }
+    return new PatternSet(patterns, combined, groups);
+  }
+
+
+  public int size() {
+    return patterns.length;
+  }
+
+
+  public Pattern get(int index) {
+    return patterns[index];
+  }
+
+
+  /**
+   * Finds the first pattern matching the entire input.
+   *
+   * @return index of the pattern, or -1 if none matches.
+   */
+  public int match(CharSequence input) {
+    if (combined != null) {
+      final Matcher m = combined.matcher(input);
+      return m.matches() ? matchedPattern(m) : -1;
+    }
+    for (int i = 0; i < patterns.length; i++) {
+      if (patterns[i].matcher(input).matches()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * Tells whether any pattern matches the entire input.
+   */
+  public boolean matches(CharSequence input) {
+    return match(input) >= 0;
+  }
+
+
+  /**
+   * Finds the pattern matching earliest within the input; of the patterns matching
+   * at the same position, the first one.
+   *
+   * @return index of the pattern, or -1 if none is found.
+   */
+  public int find(CharSequence input) {
+    if (combined != null) {
+      final Matcher m = combined.matcher(input);
+      return m.find() ? matchedPattern(m) : -1;
+    }
+    int found = -1;
+    int start = Integer.MAX_VALUE;
+    for (int i = 0; i < patterns.length; i++) {
+      final Matcher m = patterns[i].matcher(input);
+      if (m.find() && m.start() < start) {
+        found = i;
+        start = m.start();
+      }
+    }
+    return found;
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (! (o instanceof PatternSet)) {
+      return false;
+    }
+    final PatternSet other = (PatternSet) o;
+    if (other.patterns.length != patterns.length) {
+      return false;
+    }
+    for (int i = 0; i < patterns.length; i++) {
+      if (! patterns[i].pattern().equals(other.patterns[i].pattern())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  @Override
+  public int hashCode() {
+    int h = 1;
+    for (Pattern p : patterns) {
+      h = 31 * h + p.pattern().hashCode();
+    }
+    return h;
+  }
+
+
+  @Override
+  public String toString() {
+    return Arrays.toString(patterns);
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * Gets the index of the pattern whose group took part in the match.
+   */
+  private int matchedPattern(Matcher m) {
+    for (int i = 0; i < groups.length; i++) {
+      if (m.start(groups[i]) >= 0) {
+        return i;
+      }
+    }
+    throw new IllegalStateException("No pattern took part in the match");
+  }
+
+
+  /**
+   * Tells whether a pattern keeps its meaning when wrapped in a group and put in
+   * an alternation.  Numbered back references would refer to other groups, quoting
+   * to the end of the pattern and comments could swallow the alternation.
+   */
+  private static boolean isCombinable(String regex) {
+    for (int i = 0; i < regex.length(); i++) {
+      final char c = regex.charAt(i);
+      if (c == '#') {
+        return false;
+      }
+      if (c == '\\' && i + 1 < regex.length()) {
+        final char next = regex.charAt(++i);
+        if (next == 'Q' || (next >= '1' && next <= '9')) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable map from strings to {@code int} values in an open-addressing hash table,
+ * without boxing the values.
+ * <p>
+ *   Keys and values are kept in two parallel arrays at most half full, probed linearly.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+public final class StringIntMap {
+
+  private final String[] keys;
+
+  private final int[] values;
+
+  private final int size;
+
+
+  private StringIntMap(String[] keys, int[] values, int size) {
+    this.keys = keys;
+    this.values = values;
+    this.size = size;
+  }
+
+
+  public static Builder builder(int expectedSize) {
+    return new Builder(expectedSize);
+  }
+
+
+  public boolean containsKey(String key) {
+    return indexOf(key) >= 0;
+  }
+
+
+  /**
+   * @return the value mapped to the key, or {@code defaultValue} if there is none.
+   */
+  public int getOrDefault(String key, int defaultValue) {
+    final int i = indexOf(key);
+    return i < 0 ? defaultValue : values[i];
+  }
+
+
+  public int size() {
+    return size;
+  }
+
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+
+  /**
+   * @return the keys, sorted.
+   */
+  public StringSet keySet() {
+    final String[] present = new String[size];
+    int n = 0;
+    for (String k : keys) {
+      if (k != null) {
+        present[n++] = k;
+      }
+    }
+    return StringSet.of(present);
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (! (o instanceof StringIntMap)) {
+      return false;
+    }
+    final StringIntMap other = (StringIntMap) o;
+    if (other.size != size) {
+      return false;
+    }
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        final int j = other.indexOf(keys[i]);
+        if (j < 0 || other.values[j] != values[i]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+
+  @Override
+  public int hashCode() {
+    int h = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        h += keys[i].hashCode() ^ Integer.hashCode(values[i]);
+      }
+    }
+    return h;
+  }
+
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    for (String k : keySet()) {
+      sb.append(sb.length() > 1 ? ", " : "").append(k).append('=').append(getOrDefault(k, 0));
+    }
+    return sb.append('}').toString();
+  }
+
+
+  /**
+   * Collects entries and hashes them once when built.  Later entries replace earlier
+   * ones with the same key.
+   */
+  public static final class Builder {
+
+    private String[] keys;
+
+    private int[] values;
+
+    private int count;
+
+    private Builder(int expectedSize) {
+      final int capacity = Math.max(expectedSize, 4);
+      keys = new String[capacity];
+      values = new int[capacity];
+    }
+
+    /**
+     * @throws NullPointerException if the key is null.
+     */
+    public Builder put(String key, int value) {
+      if (key == null) {
+        throw new NullPointerException("key");
+      }
+      if (count == keys.length) {
+        final int capacity = count + (count >> 1);
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+      keys[count] = key;
+      values[count] = value;
+      count++;
+      return this;
+    }
+
+    public StringIntMap build() {
+      final int length = Hashing.tableSize(count);
+      final String[] k = new String[length];
+      final int[] v = new int[length];
+      int size = 0;
+      for (int n = 0; n < count; n++) {
+        int i = slot(keys[n], k);
+        if (k[i] == null) {
+          k[i] = keys[n];
+          size++;
+        }
+        v[i] = values[n];
+      }
+      return new StringIntMap(k, v, size);
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private int indexOf(String key) {
+    if (key == null) {
+      return -1;
+    }
+    final int i = slot(key, keys);
+    return keys[i] == null ? -1 : i;
+  }
+
+
+  /**
+   * Gets the slot holding the key, or the empty slot where it belongs.
+   */
+  private static int slot(String key, String[] keys) {
+    final int mask = keys.length - 1;
+    int i = Hashing.mix(key.hashCode()) & mask;
+    String k;
+    while ((k = keys[i]) != null && ! k.equals(key)) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of strings kept in a single sorted array, for large lookup lists such
+ * as host name blocklists.
+ * <p>
+ *   Membership is tested by binary search, directly against any character sequence,
+ *   so that neither lookups nor prefix checks allocate.  Compared to a {@code HashSet}
+ *   or {@code TreeSet} the set holds no entries or nodes, only the strings themselves.
+ * </p>
+ *
+ * @author Zoran Rilak
+ */
+public final class StringSet implements Iterable<String> {
+
+  private static final StringSet EMPTY = new StringSet(new String[0]);
+
+  /** Distinct elements in ascending order. */
+  private final String[] elements;
+
+  /** Lengths of the shortest and the longest element. */
+  private final int minLength, maxLength;
+
+
+  private StringSet(String[] elements) {
+    this.elements = elements;
+    int min = Integer.MAX_VALUE;
+    int max = 0;
+    for (String e : elements) {
+      min = Math.min(min, e.length());
+      max = Math.max(max, e.length());
+    }
+    this.minLength = min;
+    this.maxLength = max;
+  }
+
+
+  /**
+   * Creates a set of the given strings.  Duplicates are dropped.
+   *
+   * @throws NullPointerException if any of the strings is null.
+   */
+  public static StringSet of(String... values) {
+    if (values.length == 0) {
+      return EMPTY;
+    }
+    final String[] sorted = values.clone();
+    Arrays.sort(sorted);
+    int n = 1;
+    for (int i = 1; i < sorted.length; i++) {
+      if (! sorted[i].equals(sorted[n - 1])) {
+        sorted[n++] = sorted[i];
+      }
+    }
+    return new StringSet(n == sorted.length ? sorted : Arrays.copyOf(sorted, n));
+  }
+
+
+  public int size() {
+    return elements.length;
+  }
+
+
+  public boolean isEmpty() {
+    return elements.length == 0;
+  }
+
+
+  /**
+   * Tells whether the set contains a string equal to the given sequence.
+   */
+  public boolean contains(CharSequence s) {
+    return s != null && search(s, s.length()) >= 0;
+  }
+
+
+  /**
+   * Tells whether the set contains a prefix of the given sequence, including the
+   * sequence itself.  Takes at most one binary search for each length between those of
+   * the shortest and the longest element.
+   */
+  public boolean containsPrefixOf(CharSequence s) {
+    if (s == null) {
+      return false;
+    }
+    final int max = Math.min(s.length(), maxLength);
+    for (int len = minLength; len <= max; len++) {
+      if (search(s, len) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < elements.length;
+      }
+
+      @Override
+      public String next() {
+        if (next >= elements.length) {
+          throw new NoSuchElementException();
+        }
+        return elements[next++];
+      }
+    };
+  }
+
+
+  /* Methods from Object -------------------------------------------- */
+
+  @Override
+  public boolean equals(Object o) {
+    return o == this || (o instanceof StringSet && Arrays.equals(elements, ((StringSet) o).elements));
+  }
+
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(elements);
+  }
+
+
+  @Override
+  public String toString() {
+    return Arrays.toString(elements);
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  /**
+   * Binary search for the first {@code len} characters of {@code s}.
+   *
+   * @return index of the element, or a negative number if there is none.
+   */
+  private int search(CharSequence s, int len) {
+    int low = 0;
+    int high = elements.length - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int c = compare(elements[mid], s, len);
+      if (c < 0) {
+        low = mid + 1;
+      } else if (c > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+
+  /**
+   * Compares a string to the first {@code len} characters of a sequence, in the order
+   * of {@link String#compareTo(String)}.
+   */
+  private static int compare(String e, CharSequence s, int len) {
+    final int n = Math.min(e.length(), len);
+    for (int i = 0; i < n; i++) {
+      final int d = e.charAt(i) - s.charAt(i);
+      if (d != 0) {
+        return d;
+      }
+    }
+    return e.length() - len;
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Verifies that reading a cached value does not allocate.
+ *
+ * @author Zoran Rilak
+ */
+@Test
+public class AllocationTest {
+
+  private static final int WARMUP_CALLS = 20000;
+  private static final int MEASURED_CALLS = 100000;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+          (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  @AfterMethod
+  public void clearProperty() {
+    System.clearProperty(Stub.USE_PROXIES_PROPERTY);
+  }
+
+  @Test
+  public void cacheHitsOnGeneratedClassDoNotAllocate() {
+    TestInterface cfg = Blueprint.create(TestInterface.class, new TestTree());
+    assertEquals(bytesPerCall(cfg), 0L);
+  }
+
+  @Test
+  public void cacheHitsOnProxyDoNotAllocate() {
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    TestInterface cfg = Blueprint.create(TestInterface.class, new TestTree());
+    assertEquals(bytesPerCall(cfg), 0L);
+  }
+
+  /* Privates ------------------------------------------------------- */
+
+  private static long bytesPerCall(TestInterface cfg) {
+    long sink = 0;
+    for (int i = 0; i < WARMUP_CALLS; i++) {
+      sink += read(cfg);
+    }
+
+    long before = THREADS.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < MEASURED_CALLS; i++) {
+      sink += read(cfg);
+    }
+    long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+
+    assertEquals(sink, (long) (WARMUP_CALLS + MEASURED_CALLS) * 48);
+    return allocated / MEASURED_CALLS;
+  }
+
+  private static int read(TestInterface cfg) {
+    return cfg.timeout() + cfg.serviceName().length() + cfg.db().production().name().length() +
+            (cfg.isActive() ? 1 : 0) + cfg.protocols().size() + cfg.activeBackupDays().length;
+  }
+
+}
@@ -52,4 +52,17 @@ public class BuilderTest {
     assertEquals(i.serviceName(), "DummyServiceUnderscored");
   }
 
+  @Test(dependsOnMethods = "createsBuilderFromTree")
+  void createsBlueprintFromMergedSources() {
+    TestNode overrides = new TestNode();
+    overrides.put("serviceName", "OverriddenService");
+    TestInterface i = Blueprint.of(TestInterface.class)
+            .from(overrides)
+            .from(new TestTree())
+            .merged()
+            .build();
+    assertEquals(i.serviceName(), "OverriddenService");
+    assertEquals(i.timeout(), 15);
+  }
+
 }
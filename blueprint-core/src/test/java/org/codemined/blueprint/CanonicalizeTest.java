@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class CanonicalizeTest {
+
+  public interface Iface {
+    String primaryRegion();
+    String backupRegion();
+    Integer primaryPort();
+    Integer backupPort();
+    @UseType(Region.class)
+    List<Region> regions();
+    @UseType(Host.class)
+    List<Host> hosts();
+  }
+
+  @Immutable
+  public static class Region {
+    final String name;
+
+    public Region(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Region && ((Region) o).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+  }
+
+  /** Not marked immutable. */
+  public static class Host extends Region {
+    public Host(String name) {
+      super(name);
+    }
+  }
+
+
+  @Test
+  public void sharesEqualValues() {
+    Iface cfg = Blueprint.of(Iface.class).from(tree()).canonicalize().build();
+    assertEquals(cfg.primaryRegion(), "eu-west-1");
+    assertSame(cfg.primaryRegion(), cfg.backupRegion());
+    assertEquals(cfg.primaryPort(), Integer.valueOf(8443));
+    assertSame(cfg.primaryPort(), cfg.backupPort());
+    assertSame(cfg.regions().get(0), cfg.regions().get(1));
+    assertNotSame(cfg.hosts().get(0), cfg.hosts().get(1));
+  }
+
+  @Test
+  public void sharesValuesAcrossBlueprints() {
+    Iface a = Blueprint.of(Iface.class).from(tree()).canonicalize().build();
+    Iface b = Blueprint.of(Iface.class).from(tree()).canonicalize().build();
+    assertSame(a.primaryRegion(), b.primaryRegion());
+  }
+
+  @Test
+  public void keepsValuesAsTheyAreByDefault() {
+    Iface cfg = Blueprint.of(Iface.class).from(tree()).build();
+    assertEquals(cfg.primaryRegion(), cfg.backupRegion());
+    assertNotSame(cfg.primaryRegion(), cfg.backupRegion());
+    assertNotSame(cfg.primaryPort(), cfg.backupPort());
+    assertNotSame(cfg.regions().get(0), cfg.regions().get(1));
+  }
+
+  @Test
+  public void leavesOtherValuesAlone() {
+    Interner interner = new Interner();
+    Object o = new Object();
+    assertSame(interner.intern(o), o);
+    assertNull(interner.intern(null));
+    assertEquals(interner.size(), 0);
+    assertSame(interner.intern(Thread.State.NEW), Thread.State.NEW);
+    assertEquals(interner.size(), 0);
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static TestNode tree() {
+    TestNode t = new TestNode();
+    /* distinct instances of equal strings, as parsers produce them */
+    t.put("primaryRegion", new String("eu-west-1"));
+    t.put("backupRegion", new String("eu-west-1"));
+    t.put("primaryPort", "8443");
+    t.put("backupPort", "8443");
+    t.put("regions", null).setList(new Object[] { "eu-west-1", "eu-west-1" });
+    t.put("hosts", null).setList(new Object[] { "a", "a" });
+    return t;
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class ContextTest {
+
+  public interface Iface {
+    Nested db();
+
+    interface Nested {
+      String missing();
+      <T> T production(Class<T> hint);
+    }
+  }
+
+  @Test
+  public void noContextOutsideOfDeserialization() {
+    TestInterface cfg = Blueprint.create(TestInterface.class, new TestTree());
+    assertEquals(cfg.db().production().name(), "Production");
+    assertNull(Context.getThreadInstance().getIface());
+    assertNull(Context.getThreadInstance().getMethod());
+  }
+
+  @Test
+  public void contextDescribesFailure() {
+    Iface cfg = Blueprint.create(Iface.class, new TestTree());
+    try {
+      cfg.db().missing();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("in method missing()"), e.getMessage());
+      assertTrue(e.getMessage().contains("on config path '/db/missing'"), e.getMessage());
+    }
+    assertNull(Context.getThreadInstance().getIface());
+  }
+
+  @Test
+  public void contextDescribesInvalidTypeHints() {
+    Iface cfg = Blueprint.create(Iface.class, new TestTree());
+    try {
+      cfg.db().production(null);
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("in method production(null)"), e.getMessage());
+    }
+    assertNull(Context.getThreadInstance().getIface());
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class ConverterTest {
+
+  public interface Iface {
+    int timeout();
+    Pattern pattern();
+    Duration duration();
+    <T> List<T> backupHours(Class<T> elementType);
+  }
+
+  public enum Mode {
+    ON, OFF;
+
+    public static Mode fromString(String s) {
+      return valueOf(s.toUpperCase());
+    }
+  }
+
+  @Test
+  public void resolvesDefaultConvertersOnce() {
+    Converter<Integer> c = Converters.forType(Integer.class);
+    assertNotNull(c);
+    assertSame(Converters.forType(Integer.class), c);
+    assertEquals(Converters.describe(c), "method valueOf(String)");
+    assertEquals(Converters.describe(Converters.forType(java.io.File.class)), "constructor(String)");
+    assertNull(Converters.forType(Object.class));
+  }
+
+  @Test
+  public void preservesStaticMethodPrecedence() throws Exception {
+    assertSame(Converters.forType(Mode.class).convert("on"), Mode.ON);
+    assertSame(Converters.forType(String.class).convert("x"), "x");
+  }
+
+  @Test
+  public void userConvertersOverrideDefaults() {
+    TestTree t = new TestTree();
+    t.put("timeout", "ff");
+    Iface i = Blueprint.of(Iface.class)
+            .from(t)
+            .withConverter(Integer.class, new Converter<Integer>() {
+              @Override
+              public Integer convert(String value) {
+                return Integer.valueOf(value, 16);
+              }
+            })
+            .build();
+    assertEquals(i.timeout(), 255);
+    assertEquals(i.backupHours(Integer.class), List.of(0x3, 0x8, 0x18));;
+  }
+
+  @Test
+  public void userConvertersAddConversions() {
+    TestTree t = new TestTree();
+    t.put("pattern", "a+b");
+    Iface i = Blueprint.of(Iface.class)
+            .from(t)
+            .withConverter(Pattern.class, new Converter<Pattern>() {
+              @Override
+              public Pattern convert(String value) {
+                return Pattern.compile(value);
+              }
+            })
+            .build();
+    assertTrue(i.pattern().matcher("aab").matches());
+  }
+
+  @Test
+  public void reportsConversionFailures() {
+    TestTree t = new TestTree();
+    t.put("timeout", "fifteen");
+    Iface i = Blueprint.create(Iface.class, t);
+    try {
+      i.timeout();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("using method valueOf(String)"), e.getMessage());
+      assertTrue(e.getCause() instanceof NumberFormatException);
+    }
+  }
+
+  @Test
+  public void reportsMissingConversions() {
+    TestTree t = new TestTree();
+    t.put("duration", "PT5S");
+    Iface i = Blueprint.create(Iface.class, t);
+    try {
+      i.duration();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("No appropriate deserialization method found"), e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class DefaultValueTest {
+
+  public interface Iface {
+    Optional<String> motd();
+    Optional<String> banner();
+    OptionalInt maxUsers();
+    OptionalDouble loadFactor();
+    Optional<Server> admin();
+    @Default("80") int port();
+    @Default("8443") int sslPort();
+    @Default("5") Optional<Integer> retries();
+    @Default("java.util.Random") Class<?> impl();
+    @Default("x") @UseType(String.class) List<String> names();
+    String required();
+    @Default("7") <T> T level(Class<T> type);
+  }
+
+  public interface Server {
+    String host();
+  }
+
+
+  @Test
+  public void fillsPresentOptionals() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.motd(), Optional.of("Welcome"));
+    assertEquals(cfg.maxUsers(), OptionalInt.of(100));
+    assertEquals(cfg.admin().get().host(), "admin.local");
+  }
+
+  @Test
+  public void leavesMissingOptionalsEmpty() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.banner(), Optional.empty());
+    assertEquals(cfg.loadFactor(), OptionalDouble.empty());
+  }
+
+  @Test
+  public void usesDefaultsForMissingKeys() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.port(), 80);
+    assertEquals(cfg.sslPort(), 443);
+    assertEquals(cfg.retries(), Optional.of(5));
+    assertEquals(cfg.impl(), java.util.Random.class);
+  }
+
+  @Test
+  public void keepsValuesOfMissingKeys() {
+    final CountingNode t = new CountingNode();
+    t.put("port", "8080");
+    Iface cfg = Blueprint.create(Iface.class, t);
+    for (int i = 0; i < 3; i++) {
+      assertFalse(cfg.banner().isPresent());
+      assertEquals(cfg.retries().get(), Integer.valueOf(5));
+    }
+    assertEquals(t.lookups, 2);
+  }
+
+  @Test
+  public void keepsHintedValuesOfMissingKeys() {
+    final CountingNode t = new CountingNode();
+    Iface cfg = Blueprint.create(Iface.class, t);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(cfg.level(Integer.class), Integer.valueOf(7));
+      assertEquals(cfg.level(Long.class), Long.valueOf(7));
+    }
+    assertEquals(t.lookups, 2);
+  }
+
+  @Test
+  public void keepsValuesOfMissingKeysOnProxies() {
+    final CountingNode t = new CountingNode();
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    try {
+      Iface cfg = Blueprint.create(Iface.class, t);
+      assertEquals(cfg.port(), 80);
+      assertEquals(cfg.port(), 80);
+      assertEquals(t.lookups, 1);
+    } finally {
+      System.clearProperty(Stub.USE_PROXIES_PROPERTY);
+    }
+  }
+
+  @Test
+  public void rejectsDefaultsOfStructuredTypes() {
+    try {
+      Blueprint.create(Iface.class, tree()).names();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("Default values"), e.getMessage());
+    }
+  }
+
+  @Test
+  public void requiresKeysWithoutDefaults() {
+    try {
+      Blueprint.create(Iface.class, tree()).required();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("'required' does not exist"), e.getMessage());
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static TestNode tree() {
+    TestNode t = new TestNode();
+    t.put("motd", "Welcome");
+    t.put("maxUsers", "100");
+    t.put("admin", null).put("host", "admin.local");
+    t.put("sslPort", "443");
+    return t;
+  }
+
+
+  private static class CountingNode extends TestNode {
+
+    int lookups;
+
+    @Override
+    public TestNode getChildNode(String key) {
+      lookups++;
+      return super.getChildNode(key);
+    }
+  }
+
+}
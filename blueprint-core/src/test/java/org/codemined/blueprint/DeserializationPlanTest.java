@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class DeserializationPlanTest {
+
+  public interface Iface {
+    Map<String, List<Integer>> backupWindows();
+    Map<String, Server> servers();
+    List<Map<String, Long>> quotaTiers();
+    List<String>[] shards();
+    @UseType(Integer.class)
+    List<Number> weights();
+    List<?> unknown();
+  }
+
+  public interface Pools {
+    Map<String, List<Server>> pools();
+  }
+
+  public interface Server {
+    String host();
+    int port();
+  }
+
+
+  @Test
+  public void readsElementTypesFromTypeArguments() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.backupWindows().get("weekdays"), Arrays.asList(1, 2, 3));
+    assertEquals(cfg.backupWindows().get("weekends"), Arrays.asList(4));
+    assertEquals(cfg.servers().get("primary").port(), 8080);
+    assertEquals(cfg.quotaTiers().get(1).get("storage"), Long.valueOf(50000000000L));
+  }
+
+  @Test
+  public void readsComponentTypesOfGenericArrays() {
+    List<String>[] shards = Blueprint.create(Iface.class, tree()).shards();
+    assertEquals(shards.length, 2);
+    assertEquals(shards[1], Arrays.asList("c"));
+  }
+
+  @Test
+  public void prefersTypeHints() {
+    List<Number> weights = Blueprint.create(Iface.class, tree()).weights();
+    assertEquals(weights, Arrays.<Number>asList(10, 20));
+  }
+
+  @Test
+  public void requiresTypeHintsForUnknownElementTypes() {
+    try {
+      Blueprint.create(Iface.class, tree()).unknown();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("require a non-null type hint"), e.getMessage());
+    }
+  }
+
+  @Test
+  public void buildsPlansOnce() {
+    BlueprintMethod bm = MethodTable.forInterface(Iface.class).methods[0];
+    assertSame(bm.plan(), bm.plan());
+    assertEquals(bm.plan().shape, DeserializationPlan.Shape.MAP);
+    assertEquals(bm.plan().element.shape, DeserializationPlan.Shape.COLLECTION);
+    assertEquals(bm.plan().element.element.type, Integer.class);
+  }
+
+  @Test
+  public void snapshotsFreezeNestedShapes() {
+    TestNode t = new TestNode();
+    TestNode pool = t.put("pools", null).put("web", null);
+    pool.setList("", "");
+    for (int i = 0; i < 2; i++) {
+      pool.getArrayNodes().get(i).put("host", "web" + (i + 1));
+      pool.getArrayNodes().get(i).put("port", "80");
+    }
+    Pools snapshot = Blueprint.snapshot(Blueprint.create(Pools.class, t));
+    List<Server> web = snapshot.pools().get("web");
+    assertEquals(web.get(1).host(), "web2");
+    assertEquals(web.get(1).toString(), "[" + Server.class.getName() + " blueprint snapshot]");
+    try {
+      web.clear();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static TestNode tree() {
+    TestNode t = new TestNode();
+    TestNode windows = t.put("backupWindows", null);
+    windows.put("weekdays", null).setList(1, 2, 3);
+    windows.put("weekends", null).setList(4);
+    TestNode servers = t.put("servers", null);
+    TestNode primary = servers.put("primary", null);
+    primary.put("host", "localhost");
+    primary.put("port", "8080");
+    TestNode tiers = t.put("quotaTiers", null);
+    tiers.setList("free", "pro");
+    tiers.getArrayNodes().get(0).put("storage", "1000000000");
+    tiers.getArrayNodes().get(1).put("storage", "50000000000");
+    TestNode shards = t.put("shards", null);
+    shards.setList("", "");
+    shards.getArrayNodes().get(0).setList("a", "b");
+    shards.getArrayNodes().get(1).setList("c");
+    t.put("weights", null).setList(10, 20);
+    t.put("unknown", null).setList("x");
+    return t;
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class EnumConverterTest {
+
+  public enum Policy {
+    FAIL_OPEN, FAIL_CLOSED, RETRY
+  }
+
+  /** Constants which only differ in case. */
+  public enum Clashing {
+    ab, AB, Ab_c
+  }
+
+  public enum Custom {
+    ON, OFF;
+
+    public static Custom fromString(String s) {
+      return s.equals("yes") ? ON : OFF;
+    }
+  }
+
+  public interface Iface {
+    @UseType(Policy.class)
+    List<Policy> policies();
+    Custom custom();
+  }
+
+
+  @Test
+  public void matchesExactNames() {
+    Converter<?> c = Converters.forType(Policy.class);
+    assertTrue(c instanceof EnumConverter);
+    assertEquals(Converters.describe(c), "lookup of constant names");
+    assertSame(convert(c, "FAIL_OPEN"), Policy.FAIL_OPEN);
+    assertSame(Converters.forType(Policy.class), c);
+  }
+
+  @Test
+  public void matchesNamesIgnoringCaseAndDashes() {
+    Converter<?> c = Converters.forType(Policy.class);
+    assertSame(convert(c, "fail_closed"), Policy.FAIL_CLOSED);
+    assertSame(convert(c, "fail-closed"), Policy.FAIL_CLOSED);
+    assertSame(convert(c, "Retry"), Policy.RETRY);
+  }
+
+  @Test
+  public void ambiguousNamesOnlyMatchExactly() {
+    Converter<?> c = Converters.forType(Clashing.class);
+    assertSame(convert(c, "ab"), Clashing.ab);
+    assertSame(convert(c, "AB"), Clashing.AB);
+    assertSame(convert(c, "ab-c"), Clashing.Ab_c);
+    try {
+      convert(c, "aB");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void honorsFactoryMethods() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.custom(), Custom.ON);
+    assertFalse(Converters.forType(Custom.class) instanceof EnumConverter);
+  }
+
+  @Test
+  public void deserializesEnums() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.policies().get(0), Policy.FAIL_OPEN);
+    assertEquals(cfg.policies().get(1), Policy.RETRY);
+  }
+
+  @Test
+  public void reportsUnknownNames() {
+    TestNode t = tree();
+    t.getChildNode("policies").setList(new Object[] { "sometimes" });
+    try {
+      Blueprint.create(Iface.class, t).policies();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("using lookup of constant names, from value \"sometimes\""),
+              e.getMessage());
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static Object convert(Converter<?> c, String value) {
+    try {
+      return c.convert(value);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static TestNode tree() {
+    TestNode t = new TestNode();
+    t.put("policies", null).setList(new Object[] { "fail-open", "RETRY" });
+    t.put("custom", "yes");
+    return t;
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.StringSet;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class FromFileTest {
+
+  public interface Iface {
+    @FromFile ByteBuffer blob();
+    @FromFile List<String> hosts();
+    @FromFile(checkInterval = 0) @UseType(String.class) Collection<String> words();
+    @FromFile(checkInterval = 60000) List<String> throttled();
+    @FromFile(checkInterval = -1) List<String> pinned();
+    @FromFile StringSet blockedHosts();
+    @FromFile Integer port();
+  }
+
+  public interface Blob {
+    @FromFile ByteBuffer blob();
+  }
+
+  private Path dir;
+
+
+  @BeforeMethod
+  public void createFiles() throws IOException {
+    dir = Files.createTempDirectory("blueprint");
+    Files.write(dir.resolve("blob"), new byte[] { 1, 2, 3 });
+    Files.write(dir.resolve("hosts"), "localhost\r\nexample.com\n\nžabljak.me".getBytes(StandardCharsets.UTF_8));
+    Files.write(dir.resolve("words"), "one\ntwo\n".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @AfterMethod
+  public void deleteFiles() throws IOException {
+    for (String name : new String[] { "blob", "hosts", "words" }) {
+      Files.deleteIfExists(dir.resolve(name));
+    }
+    Files.delete(dir);
+  }
+
+
+  @Test
+  public void mapsBuffers() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    ByteBuffer blob = cfg.blob();
+    assertTrue(blob.isReadOnly());
+    assertEquals(blob.remaining(), 3);
+    assertEquals(blob.get(), 1);
+    /* every call gets a buffer with a position of its own */
+    assertEquals(cfg.blob().position(), 0);
+  }
+
+  @Test
+  public void snapshotsGiveEveryReadABufferOfItsOwn() {
+    assertIndependentReads(Blueprint.of(Blob.class).from(tree()).eager().build());
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    try {
+      assertIndependentReads(Blueprint.of(Blob.class).from(tree()).eager().build());
+    } finally {
+      System.clearProperty(Stub.USE_PROXIES_PROPERTY);
+    }
+  }
+
+  @Test
+  public void readsLines() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.hosts(), Arrays.asList("localhost", "example.com", "", "žabljak.me"));
+    assertEquals(cfg.words(), Arrays.asList("one", "two"));
+    assertEquals(cfg.blockedHosts(), StringSet.of("localhost", "example.com", "", "žabljak.me"));
+  }
+
+  @Test
+  public void keepsUnchangedFiles() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertSame(cfg.hosts(), cfg.hosts());
+    assertSame(cfg.blockedHosts(), cfg.blockedHosts());
+  }
+
+  @Test
+  public void reloadsChangedFiles() throws IOException {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.words().size(), 2);
+
+    Files.write(dir.resolve("words"), "one\ntwo\nthree\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals(cfg.words(), Arrays.asList("one", "two", "three"));
+
+    /* same size, told apart by the modification time */
+    final Path words = dir.resolve("words");
+    final FileTime modified = Files.getLastModifiedTime(words);
+    Files.write(words, "uno\ndos\ntres\n".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(words, FileTime.fromMillis(modified.toMillis() + 1000));
+    assertEquals(cfg.words(), Arrays.asList("uno", "dos", "tres"));
+  }
+
+  @Test
+  public void checksFilesOncePerInterval() throws IOException {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.throttled(), Arrays.asList("one", "two"));
+    assertEquals(cfg.pinned(), Arrays.asList("one", "two"));
+
+    Files.write(dir.resolve("words"), "one\ntwo\nthree\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals(cfg.words(), Arrays.asList("one", "two", "three"));
+    assertEquals(cfg.throttled(), Arrays.asList("one", "two"));
+    assertEquals(cfg.pinned(), Arrays.asList("one", "two"));
+  }
+
+  @Test
+  public void reportsMissingFiles() throws IOException {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    Files.delete(dir.resolve("blob"));
+    try {
+      cfg.blob();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("blob"), e.getMessage());
+    }
+  }
+
+  @Test(expectedExceptions = BlueprintException.class)
+  public void rejectsOtherTypes() {
+    Blueprint.create(Iface.class, tree()).port();
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static void assertIndependentReads(Blob cfg) {
+    ByteBuffer first = cfg.blob();
+    ByteBuffer second = cfg.blob();
+    assertEquals(first.get(), 1);
+    assertEquals(first.get(), 2);
+    assertEquals(second.get(), 1);
+    assertEquals(first.position(), 2);
+    assertEquals(second.position(), 1);
+    assertEquals(cfg.blob().position(), 0);
+  }
+
+  private TestNode tree() {
+    TestNode t = new TestNode();
+    t.put("blob", dir.resolve("blob").toString());
+    t.put("hosts", dir.resolve("hosts").toString());
+    t.put("words", dir.resolve("words").toString());
+    t.put("throttled", dir.resolve("words").toString());
+    t.put("pinned", dir.resolve("words").toString());
+    t.put("blockedHosts", dir.resolve("hosts").toString());
+    t.put("port", "8080");
+    return t;
+  }
+
+}
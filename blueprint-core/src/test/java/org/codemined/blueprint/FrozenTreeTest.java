@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.InMemoryTree;
+import org.codemined.util.Path;
+import org.codemined.util.Tree;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class FrozenTreeTest {
+
+  @Test
+  public void freezesConfigNodes() {
+    FrozenTree t = FrozenTree.freeze(new TestTree());
+    assertFalse(t.hasValue());
+    assertEquals(t.getChildNode("serviceName").getValue(), "DummyService");
+    assertEquals(t.getChildNode("http").getChildNode("port").getValue(), "65536");
+    assertEquals(t.getChildNode("protocols").getChildNode("ftp").getValue(), "enabled");
+    assertEquals(t.getChildNode("protocols").keySet(), new HashSet<String>(Arrays.asList("telnet", "ftp", "dns")));
+    assertNull(t.getChildNode("missing"));
+    assertNull(t.getChildNode("serviceName").getChildNode("x"));
+    assertFalse(t.containsKey("missing"));
+    assertTrue(t.containsKey("db"));
+  }
+
+  @Test
+  public void keysAreSorted() {
+    FrozenTree t = FrozenTree.freeze(new TestTree());
+    Iterator<String> keys = t.getChildNode("protocols").keySet().iterator();
+    assertEquals(keys.next(), "dns");
+    assertEquals(keys.next(), "ftp");
+    assertEquals(keys.next(), "telnet");
+    assertFalse(keys.hasNext());
+  }
+
+  @Test
+  public void freezesArrayNodes() {
+    FrozenTree t = FrozenTree.freeze(new TestTree());
+    FrozenTree hours = t.getChildNode("backupHours");
+    assertTrue(hours.hasArrayNodes());
+    assertFalse(t.hasArrayNodes());
+    List<FrozenTree> elements = hours.getArrayNodes();
+    assertEquals(elements.size(), 3);
+    assertEquals(elements.get(2).getValue(), "18");
+    assertEquals(hours.getArrayValues(), new String[]{ "3", "8", "18" });
+    assertTrue(hours.keySet().isEmpty());
+  }
+
+  @Test
+  public void storesEqualStringsOnce() {
+    TestNode node = new TestNode();
+    node.put(new String("a"), new String("on")).put(new String("name"), new String("x"));
+    node.put(new String("b"), new String("on")).put(new String("name"), new String("y"));
+    FrozenTree t = FrozenTree.freeze(node);
+    assertSame(t.getChildNode("a").getValue(), t.getChildNode("b").getValue());
+    assertSame(t.getChildNode("a").keySet().iterator().next(), t.getChildNode("b").keySet().iterator().next());
+  }
+
+  @Test
+  public void freezesTrees() {
+    Tree<String, String> source = new InMemoryTree<String, String>("root");
+    source.putByPath(Arrays.asList("a", "b"), "ab");
+    source.put("c", "c");
+    FrozenTree t = FrozenTree.freeze(source);
+    assertEquals(t.getValue(), "root");
+    assertEquals(t.size(), 2);
+    assertEquals(t.getByPath(Arrays.asList("a", "b")).getValue(), "ab");
+    assertNull(t.getByPath(Arrays.asList("a", "x")));
+    assertTrue(t.contains("c"));
+
+    int n = 0;
+    for (Map.Entry<String, Tree<String, String>> e : t.entrySet()) {
+      assertEquals(e.getValue(), t.get(e.getKey()));
+      n++;
+    }
+    assertEquals(n, 2);
+  }
+
+  @Test
+  public void nodesAreViews() {
+    FrozenTree t = FrozenTree.freeze(new TestTree());
+    assertEquals(t.getChildNode("http"), t.getChildNode("http"));
+    assertEquals(t.getChildNode("http").hashCode(), t.getChildNode("http").hashCode());
+    assertNotEquals(t.getChildNode("http"), t.getChildNode("db"));
+    assertSame(FrozenTree.freeze((ConfigNode<?>) t), t);
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void cannotBeModified() {
+    FrozenTree.freeze(new TestTree()).put("serviceName", "other");
+  }
+
+  @Test
+  public void backsBlueprints() {
+    TestInterface cfg = Blueprint.create(TestInterface.class, FrozenTree.freeze(new TestTree()));
+    assertEquals(cfg.serviceName(), "DummyService");
+    assertEquals(cfg.timeout(), 15);
+    assertEquals(cfg.tempDir(), new File("/tmp/blueprint"));
+    assertEquals(cfg.backupHours(Integer.class), Arrays.asList(3, 8, 18));
+  }
+
+  @Test
+  public void findsNodesByPath() {
+    for (FrozenTree t : new FrozenTree[]{ FrozenTree.freeze(new TestTree()), FrozenTree.freeze(new TestTree()).indexed() }) {
+      assertSame(t.getByPath(new Path<String>()), t);
+      assertEquals(t.getByPath(new Path<String>("serviceName")).getValue(), "DummyService");
+      assertEquals(t.getByPath(new Path<String>("db", "production", "name")).getValue(), "Production");
+      assertEquals(t.getByPath(new Path<String>("db").to("development").to("name")).getValue(), "devel");
+      assertEquals(t.getChildNode("protocols").getByPath(new Path<String>("dns", "port")).getValue(), "53");
+      assertEquals(t.getByPath(new Path<String>("db", "production")), t.getChildNode("db").getChildNode("production"));
+      assertNull(t.getByPath(new Path<String>("db", "staging", "name")));
+      assertNull(t.getByPath(new Path<String>("production", "name")));
+      assertNull(t.getChildNode("http").getByPath(new Path<String>("db")));
+      assertNull(t.getByPath(new Path<String>("backupHours", "3")));
+    }
+  }
+
+  @Test
+  public void findsNodesBelowArrayNodes() {
+    TestNode root = new TestNode();
+    TestNode hosts = root.put("hosts", null);
+    hosts.list = new java.util.ArrayList<TestNode>();
+    TestNode host = new TestNode();
+    host.put("name", "alpha").put("port", "80");
+    hosts.list.add(host);
+    FrozenTree t = FrozenTree.freeze(root).indexed();
+    FrozenTree element = t.getChildNode("hosts").getArrayNodes().get(0);
+    assertEquals(element.getByPath(new Path<String>("name", "port")).getValue(), "80");
+    assertNull(t.getByPath(new Path<String>("hosts", "name")));
+  }
+
+  @Test
+  public void indexesOnce() {
+    FrozenTree t = FrozenTree.freeze(new TestTree()).indexed();
+    assertSame(t.indexed(), t);
+    assertEquals(t.getChildNode("db").indexed(), t.getChildNode("db"));
+  }
+
+  @Test
+  public void compositeTreesLookUpPathsInLayers() {
+    TestNode top = new TestNode();
+    top.put("http", null).put("port", "8080");
+    top.subTrees.put("serviceName", null);
+    CompositeTree<?> t = new CompositeTree<>()
+            .with(top)
+            .with(FrozenTree.freeze(new TestTree()).indexed());
+    assertEquals(t.getByPath(new Path<String>("http", "port")).getValue(), "8080");
+    /* layers naming a key without a node for it don't win it, as in getChildNode() */
+    assertEquals(t.getByPath(new Path<String>("serviceName")).getValue(), "DummyService");
+    assertEquals(t.getChildNode("serviceName").getValue(), "DummyService");
+    assertNull(t.getByPath(new Path<String>("http", "host")));
+    assertEquals(t.getByPath(new Path<String>("db", "production", "name")).getValue(), "Production");
+    assertNull(t.getByPath(new Path<String>("missing")));
+    assertNull(t.getByPath(new Path<String>()));
+  }
+
+  @Test
+  public void mergesCompositeTrees() {
+    TestNode top = new TestNode();
+    top.put("http", null).put("port", "8080");
+    top.put("region", "eu-west-1");
+    CompositeTree<?> layers = new CompositeTree<>().with(top).with(new TestTree());
+    FrozenTree t = layers.merge();
+    assertEquals(t.keySet(), layers.keySet());
+    assertEquals(t.getChildNode("region").getValue(), "eu-west-1");
+    assertEquals(t.getChildNode("http").getChildNode("port").getValue(), "8080");
+    assertFalse(t.getChildNode("http").containsKey("host"));
+    assertEquals(t.getChildNode("serviceName").getValue(), "DummyService");
+    assertEquals(t.getChildNode("backupHours").getArrayValues(), new String[]{ "3", "8", "18" });
+
+    top.put("serviceName", "Override");
+    assertEquals(t.getChildNode("serviceName").getValue(), "DummyService");
+    assertEquals(layers.merge().getChildNode("serviceName").getValue(), "Override");
+  }
+
+  @Test
+  public void routesKeysToWinningLayers() {
+    TestNode top = new TestNode();
+    top.put("http", null).put("port", "8080");
+    top.subTrees.put("ghost", null);
+    TestTree bottom = new TestTree();
+    CompositeTree<?> t = new CompositeTree<>().with(top).with(bottom).route();
+    assertEquals(t.getChildNode("http").getChildNode("port").getValue(), "8080");
+    assertEquals(t.getChildNode("serviceName").getValue(), "DummyService");
+    assertEquals(t.getByPath(new Path<String>("db", "production", "name")).getValue(), "Production");
+    assertNull(t.getChildNode("ghost"));
+    assertNull(t.getChildNode("missing"));
+    assertTrue(t.containsKey("ghost"));
+    assertSame(t.keySet(), t.keySet());
+
+    /* values are read live, keys only once routed again */
+    bottom.getChildNode("serviceName").setValue("Renamed");
+    assertEquals(t.getChildNode("serviceName").getValue(), "Renamed");
+    top.put("serviceName", "Override");
+    assertEquals(t.getChildNode("serviceName").getValue(), "Renamed");
+    assertEquals(t.route().getChildNode("serviceName").getValue(), "Override");
+
+    TestNode added = new TestNode();
+    added.put("added", "yes");
+    t.add(added);
+    assertEquals(t.getChildNode("added").getValue(), "yes");
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class LazyTest {
+
+  private static final int SIZE = 100;
+
+  public interface Iface {
+    @Lazy @UseType(Probe.class)
+    List<Probe> probes();
+    @Lazy @UseType(Probe.class)
+    Set<Probe> probeSet();
+    @Lazy @UseType(Entry.class)
+    Map<String, Entry> entries();
+    @Lazy
+    <T> Collection<T> numbers(Class<T> elementType);
+    @UseType(Probe.class)
+    List<Probe> eagerProbes();
+
+    interface Entry {
+      String name();
+    }
+  }
+
+  /** Counts the values converted. */
+  public static class Probe {
+    static final AtomicInteger created = new AtomicInteger();
+
+    final String value;
+
+    public Probe(String value) {
+      created.incrementAndGet();
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Probe && ((Probe) o).value.equals(value);
+    }
+
+    @Override
+    public int hashCode() {
+      return value.hashCode();
+    }
+  }
+
+
+  @BeforeMethod
+  public void resetProbes() {
+    Probe.created.set(0);
+  }
+
+
+  @Test
+  public void listElementsAreConvertedOnFirstAccess() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    List<Probe> probes = cfg.probes();
+    assertEquals(probes.size(), SIZE);
+    assertEquals(Probe.created.get(), 0);
+
+    Probe p = probes.get(42);
+    assertEquals(p.value, "42");
+    assertEquals(Probe.created.get(), 1);
+    assertSame(probes.get(42), p);
+    assertEquals(Probe.created.get(), 1);
+  }
+
+  @Test
+  public void mapValuesAreConvertedOnFirstAccess() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    Map<String, Iface.Entry> entries = cfg.entries();
+    assertEquals(entries.size(), SIZE);
+    assertTrue(entries.containsKey("e7"));
+    assertFalse(entries.containsKey("x"));
+    assertEquals(entries.keySet().size(), SIZE);
+    assertNull(entries.get("x"));
+
+    Iface.Entry e = entries.get("e7");
+    assertEquals(e.name(), "entry 7");
+    assertSame(entries.get("e7"), e);
+
+    int n = 0;
+    for (Map.Entry<String, Iface.Entry> entry : entries.entrySet()) {
+      assertEquals(entry.getValue().name(), "entry " + entry.getKey().substring(1));
+      n++;
+    }
+    assertEquals(n, SIZE);
+  }
+
+  @Test
+  public void setsAreConvertedOnFirstUse() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    Set<Probe> probes = cfg.probeSet();
+    assertEquals(Probe.created.get(), 0);
+    assertTrue(probes.contains(new Probe("3")));
+    assertEquals(probes.size(), SIZE);
+    assertEquals(Probe.created.get(), SIZE + 1);
+  }
+
+  @Test
+  public void viewsAreReadOnly() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    try {
+      cfg.probes().add(new Probe("x"));
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      cfg.entries().remove("e1");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test
+  public void viewsEqualEagerValues() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.probes(), cfg.eagerProbes());
+    assertEquals(new ArrayList<Integer>(cfg.numbers(Integer.class)).get(SIZE - 1), Integer.valueOf(SIZE - 1));
+  }
+
+  @Test
+  public void builderMakesAllMethodsLazy() {
+    Iface cfg = Blueprint.of(Iface.class).from(tree()).lazy().build();
+    assertEquals(cfg.eagerProbes().size(), SIZE);
+    assertEquals(Probe.created.get(), 0);
+  }
+
+  @Test
+  public void failuresCarryTheMethodContext() {
+    TestNode t = tree();
+    t.getChildNode("numbers").getArrayNodes().get(5).setValue("x");
+    Iface cfg = Blueprint.create(Iface.class, t);
+    List<Integer> numbers = new ArrayList<Integer>();
+    Collection<Integer> view = cfg.numbers(Integer.class);
+    try {
+      numbers.addAll(view);
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("in method numbers"), e.getMessage());
+    }
+    assertNull(Context.getThreadInstance().getIface());
+  }
+
+  @Test
+  public void concurrentReadersSeeTheSameElements() throws InterruptedException {
+    final List<Probe> probes = Blueprint.create(Iface.class, tree()).probes();
+    final Probe[][] seen = new Probe[4][SIZE];
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < seen.length; t++) {
+      final Probe[] mine = seen[t];
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < SIZE; i++) {
+            mine[i] = probes.get(i);
+          }
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int i = 0; i < SIZE; i++) {
+      for (Probe[] s : seen) {
+        assertSame(s[i], probes.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void snapshotsMaterializeViews() {
+    Iface cfg = Blueprint.snapshot(Blueprint.create(Iface.class, tree()));
+    assertEquals(cfg.entries().get("e9").name(), "entry 9");
+    assertEquals(cfg.probes().get(9).value, "9");
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static TestNode tree() {
+    TestNode t = new TestNode();
+    List<Object> numbers = new ArrayList<Object>();
+    for (int i = 0; i < SIZE; i++) {
+      numbers.add(i);
+    }
+    t.put("probes", null).setList(numbers.toArray());
+    t.put("probeSet", null).setList(numbers.toArray());
+    t.put("eagerProbes", null).setList(numbers.toArray());
+    t.put("numbers", null).setList(numbers.toArray());
+    TestNode entries = t.put("entries", null);
+    for (int i = 0; i < SIZE; i++) {
+      entries.put("e" + i, null).put("name", "entry " + i);
+    }
+    return t;
+  }
+
+}
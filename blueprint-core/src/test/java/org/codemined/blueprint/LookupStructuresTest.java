@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.IntList;
+import org.codemined.util.LongIntervalMap;
+import org.codemined.util.LongSet;
+import org.codemined.util.PatternSet;
+import org.codemined.util.StringIntMap;
+import org.codemined.util.StringLongMap;
+import org.codemined.util.StringSet;
+import org.testng.annotations.Test;
+
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class LookupStructuresTest {
+
+  public interface Iface {
+    StringSet blockedHosts();
+    LongIntervalMap<String> blockedRanges();
+    @UseType(Integer.class)
+    LongIntervalMap<Integer> portWeights();
+    PatternSet routes();
+    Pattern fallbackRoute();
+    IntList retryDelays();
+    LongSet blockedAccounts();
+    StringIntMap quotas();
+    StringLongMap weights();
+  }
+
+
+  @Test
+  public void buildsStringSets() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.blockedHosts(), StringSet.of("ads.example.com", "tracker.net"));
+    assertSame(cfg.blockedHosts(), cfg.blockedHosts());
+  }
+
+  @Test
+  public void buildsIntervalMapsFromLists() {
+    LongIntervalMap<String> ranges = Blueprint.create(Iface.class, tree()).blockedRanges();
+    assertEquals(ranges.size(), 2);
+    assertEquals(ranges.get(LongIntervalMap.parseInterval("10.20.30.40")[0]), "10.0.0.0/8");
+    assertEquals(ranges.get(7), "1-9");
+    assertNull(ranges.get(10));
+  }
+
+  @Test
+  public void buildsIntervalMapsFromMaps() {
+    LongIntervalMap<Integer> weights = Blueprint.create(Iface.class, tree()).portWeights();
+    assertEquals(weights.get(443), Integer.valueOf(10));
+    assertEquals(weights.get(9000), Integer.valueOf(1));
+    assertNull(weights.get(80));
+  }
+
+  @Test
+  public void compilesPatternSets() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    PatternSet routes = cfg.routes();
+    assertEquals(routes.size(), 2);
+    assertEquals(routes.match("/api/v1/users"), 0);
+    assertEquals(routes.match("/health"), 1);
+    assertSame(cfg.routes(), routes);
+  }
+
+  @Test
+  public void compilesPatterns() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertTrue(cfg.fallbackRoute().matcher("/anything").matches());
+  }
+
+  @Test
+  public void reportsInvalidPatterns() {
+    TestNode t = tree();
+    t.getChildNode("routes").setList(new Object[] { "/ok", "/broken(" });
+    try {
+      Blueprint.create(Iface.class, t).routes();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("\"/broken(\""), e.getMessage());
+    }
+  }
+
+  @Test
+  public void fillsPrimitiveCollections() {
+    Iface cfg = Blueprint.create(Iface.class, tree());
+    assertEquals(cfg.retryDelays(), IntList.of(100, 200, 400));
+    assertEquals(cfg.blockedAccounts(), LongSet.of(9000000001L, 9000000002L));
+    assertEquals(cfg.quotas().getOrDefault("pro", 0), 1000);
+    assertEquals(cfg.quotas().size(), 2);
+    assertEquals(cfg.weights().getOrDefault("eu", 0), 30000000000L);
+  }
+
+  @Test
+  public void fillsPrimitiveMapsThroughUserConverters() {
+    Iface cfg = Blueprint.of(Iface.class).from(tree())
+            .withConverter(Integer.class, new Converter<Integer>() {
+              @Override
+              public Integer convert(String value) {
+                return Integer.parseInt(value) * 2;
+              }
+            })
+            .build();
+    assertEquals(cfg.quotas().getOrDefault("pro", 0), 2000);
+    assertEquals(cfg.retryDelays().get(0), 200);
+  }
+
+  @Test
+  public void reportsMalformedPrimitives() {
+    TestNode t = tree();
+    t.getChildNode("quotas").put("team", "lots");
+    try {
+      Blueprint.create(Iface.class, t).quotas();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("\"lots\""), e.getMessage());
+    }
+  }
+
+  @Test
+  public void reportsMalformedIntervals() {
+    TestNode t = tree();
+    t.getChildNode("blockedRanges").setList(new Object[] { "1-9", "9-x" });
+    try {
+      Blueprint.create(Iface.class, t).blockedRanges();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("\"9-x\""), e.getMessage());
+    }
+  }
+
+  @Test
+  public void reportsOverlappingIntervals() {
+    TestNode t = tree();
+    t.getChildNode("blockedRanges").setList(new Object[] { "1-9", "5" });
+    try {
+      Blueprint.create(Iface.class, t).blockedRanges();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("overlaps"), e.getMessage());
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static TestNode tree() {
+    TestNode t = new TestNode();
+    t.put("blockedHosts", null).setList(new Object[] { "tracker.net", "ads.example.com", "tracker.net" });
+    t.put("blockedRanges", null).setList(new Object[] { "10.0.0.0/8", "1-9" });
+    TestNode weights = t.put("portWeights", null);
+    weights.put("443", "10");
+    weights.put("8000-9999", "1");
+    t.put("routes", null).setList(new Object[] { "/api/v\\d+/.*", "/health|/ready" });
+    t.put("fallbackRoute", "/.*");
+    t.put("retryDelays", null).setList(new Object[] { 100, 200, 400 });
+    t.put("blockedAccounts", null).setList(new Object[] { 9000000001L, 9000000002L, 9000000001L });
+    TestNode quotas = t.put("quotas", null);
+    quotas.put("free", "10");
+    quotas.put("pro", "1000");
+    TestNode w = t.put("weights", null);
+    w.put("eu", "30000000000");
+    w.put("us", "50000000000");
+    return t;
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class MappedTreeTest {
+
+  @Test
+  public void readsCompiledTrees() throws IOException {
+    MappedTree t = MappedTree.load(new ByteArrayInputStream(compiled(new TestTree())));
+    assertFalse(t.hasValue());
+    assertNull(t.getValue());
+    assertEquals(t.getChildNode("serviceName").getValue(), "DummyService");
+    assertEquals(t.getChildNode("http").getChildNode("port").getValue(), "65536");
+    assertEquals(t.getChildNode("protocols").getChildNode("ftp").getValue(), "enabled");
+    assertEquals(t.getChildNode("protocols").keySet(), new HashSet<String>(Arrays.asList("telnet", "ftp", "dns")));
+    assertTrue(t.containsKey("db"));
+    assertFalse(t.containsKey("missing"));
+    assertNull(t.getChildNode("missing"));
+    assertNull(t.getChildNode("serviceName").getChildNode("x"));
+    assertEquals(t.getChildNode("http"), t.getChildNode("http"));
+    assertNotEquals(t.getChildNode("http"), t.getChildNode("db"));
+  }
+
+  @Test
+  public void readsArrayNodes() throws IOException {
+    MappedTree t = MappedTree.load(new ByteArrayInputStream(compiled(new TestTree())));
+    MappedTree hours = t.getChildNode("backupHours");
+    assertTrue(hours.hasArrayNodes());
+    assertFalse(t.hasArrayNodes());
+    List<MappedTree> elements = hours.getArrayNodes();
+    assertEquals(elements.size(), 3);
+    assertEquals(elements.get(1).getValue(), "8");
+    assertEquals(hours.getArrayValues(), new String[]{ "3", "8", "18" });
+    assertTrue(hours.keySet().isEmpty());
+  }
+
+  @Test
+  public void findsKeysInCodePointOrder() throws IOException {
+    TestNode node = new TestNode();
+    String[] keys = { "😀", "Ａ", "z", "Z", "é", "" };
+    for (String key : keys) {
+      node.put(key, "value of " + key);
+    }
+    MappedTree t = MappedTree.load(new ByteArrayInputStream(compiled(node)));
+    for (String key : keys) {
+      assertEquals(t.getChildNode(key).getValue(), "value of " + key);
+    }
+    Iterator<String> iter = t.keySet().iterator();
+    assertEquals(iter.next(), "");
+    assertEquals(iter.next(), "Z");
+    assertEquals(iter.next(), "z");
+    assertEquals(iter.next(), "é");
+    assertEquals(iter.next(), "Ａ");
+    assertEquals(iter.next(), "😀");
+    assertFalse(iter.hasNext());
+  }
+
+  @Test
+  public void comparesKeysAsEncoded() throws IOException {
+    TestNode node = new TestNode();
+    String[] keys = { "a", "ab", "aé", "a€", "a😀", "é", "?" };
+    for (String key : keys) {
+      node.put(key, key);
+    }
+    MappedTree t = MappedTree.load(new ByteArrayInputStream(compiled(node)));
+    for (String key : keys) {
+      assertEquals(t.getChildNode(key).getValue(), key);
+      assertTrue(t.keySet().contains(key));
+    }
+    for (String key : new String[] { "", "b", "abc", "aè", "a😁", "é!", "a\uD83D" }) {
+      assertNull(t.getChildNode(key), key);
+      assertFalse(t.containsKey(key), key);
+    }
+    /* unpaired surrogates are encoded as '?' */
+    assertEquals(t.getChildNode("\uDE00").getValue(), "?");
+  }
+
+  @Test(expectedExceptions = BlueprintException.class, expectedExceptionsMessageRegExp = "Checksum.*")
+  public void verifiesChecksums() throws IOException {
+    byte[] b = compiled(new TestTree());
+    b[b.length - 1] ^= 1;
+    MappedTree t = MappedTree.load(new ByteArrayInputStream(b));
+    assertEquals(t.getChildNode("serviceName").getValue(), "DummyService");
+    t.verify();
+  }
+
+  @Test
+  public void passesVerification() throws IOException {
+    MappedTree t = MappedTree.load(new ByteArrayInputStream(compiled(new TestTree())));
+    assertSame(t.verify(), t);
+  }
+
+  @Test(expectedExceptions = BlueprintException.class, expectedExceptionsMessageRegExp = ".*malformed.*")
+  public void rejectsBadOffsets() throws IOException {
+    byte[] b = compiled(new TestTree());
+    /* first child of the root points past the node table */
+    ByteBuffer.wrap(b).putInt(MappedTree.HEADER_SIZE + 8, 1 << 20);
+    MappedTree.load(new ByteArrayInputStream(b)).getChildNode("serviceName");
+  }
+
+  @Test(expectedExceptions = BlueprintException.class, expectedExceptionsMessageRegExp = ".*malformed.*")
+  public void rejectsBadStringIds() throws IOException {
+    byte[] b = compiled(new TestTree());
+    /* value of the root */
+    ByteBuffer.wrap(b).putInt(MappedTree.HEADER_SIZE + 4, 1 << 20);
+    MappedTree.load(new ByteArrayInputStream(b)).getValue();
+  }
+
+  @Test
+  public void skipsKeysWithoutNodes() throws IOException {
+    TestNode top = new TestNode();
+    top.put("region", "eu");
+    top.subTrees.put("ghost", null);
+    CompositeTree<?> layers = new CompositeTree<>().with(top).with(new TestTree());
+    assertTrue(layers.keySet().contains("ghost"));
+    MappedTree t = MappedTree.load(new ByteArrayInputStream(compiled(layers)));
+    assertEquals(t.getChildNode("region").getValue(), "eu");
+    assertEquals(t.getChildNode("serviceName").getValue(), "DummyService");
+    assertFalse(t.containsKey("ghost"));
+  }
+
+  @Test(expectedExceptions = BlueprintException.class, expectedExceptionsMessageRegExp = "Not a compiled.*")
+  public void rejectsOtherFiles() {
+    MappedTree.load(new ByteArrayInputStream("{ \"serviceName\": 1 }".getBytes()));
+  }
+
+  @Test(expectedExceptions = BlueprintException.class, expectedExceptionsMessageRegExp = ".*truncated.*")
+  public void rejectsTruncatedFiles() throws IOException {
+    byte[] b = compiled(new TestTree());
+    MappedTree.load(new ByteArrayInputStream(Arrays.copyOf(b, b.length - 10)));
+  }
+
+  @Test
+  public void mapsFilesFromStreamPosition() throws IOException {
+    Path file = Files.createTempFile("blueprint", MappedTree.SUFFIX);
+    try {
+      byte[] b = compiled(new TestTree());
+      byte[] prefixed = new byte[b.length + 3];
+      System.arraycopy(b, 0, prefixed, 3, b.length);
+      Files.write(file, prefixed);
+      try (FileInputStream in = new FileInputStream(file.toFile())) {
+        assertEquals(in.skip(3), 3);
+        assertEquals(MappedTree.load(in).verify().getChildNode("timeout").getValue(), "15");
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void mapsFiles() throws IOException {
+    Path file = Files.createTempFile("blueprint", MappedTree.SUFFIX);
+    try {
+      MappedTree.compile(new TestTree(), file);
+      assertEquals(MappedTree.open(file).getChildNode("db").getChildNode("production").getChildNode("name").getValue(),
+              "Production");
+
+      TestInterface cfg = Blueprint.of(TestInterface.class).from(file.toString()).build();
+      assertEquals(cfg.serviceName(), "DummyService");
+      assertEquals(cfg.timeout(), 15);
+      assertEquals(cfg.tempDir(), new File("/tmp/blueprint"));
+      assertEquals(cfg.backupHours(Integer.class), Arrays.asList(3, 8, 18));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static byte[] compiled(ConfigNode<?> root) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MappedTree.compile(root, out);
+    return out.toByteArray();
+  }
+
+}
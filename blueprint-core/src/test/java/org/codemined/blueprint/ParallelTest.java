@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class ParallelTest {
+
+  private static final int SIZE = 5000;
+
+  public interface Iface {
+    <T> List<T> numbers(Class<T> elementType);
+    int[] ints();
+    String[] strings();
+    @UseType(Entry.class)
+    Map<String, Entry> entries();
+
+    interface Entry {
+      String name();
+    }
+  }
+
+  /** Records the threads which convert values. */
+  public static class Probe {
+    static final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    final String value;
+
+    public Probe(String value) {
+      threads.add(Thread.currentThread());
+      this.value = value;
+    }
+  }
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+
+  @AfterClass
+  public void shutDown() {
+    pool.shutdown();
+  }
+
+
+  @Test
+  public void keepsElementOrder() {
+    Iface cfg = Blueprint.of(Iface.class).from(tree()).parallel(pool, 100).build();
+
+    List<Integer> numbers = cfg.numbers(Integer.class);
+    assertEquals(numbers.size(), SIZE);
+    int[] ints = cfg.ints();
+    String[] strings = cfg.strings();
+    for (int i = 0; i < SIZE; i++) {
+      assertEquals((int) numbers.get(i), i);
+      assertEquals(ints[i], i);
+      assertEquals(strings[i], "s" + i);
+    }
+
+    Map<String, Iface.Entry> entries = cfg.entries();
+    assertEquals(entries.size(), SIZE);
+    assertEquals(entries.get("e42").name(), "entry 42");
+  }
+
+  @Test
+  public void convertsOnPoolThreads() {
+    Probe.threads.clear();
+    Iface cfg = Blueprint.of(Iface.class).from(tree()).parallel(pool, 100).build();
+    assertEquals(cfg.numbers(Probe.class).get(SIZE - 1).value, Integer.toString(SIZE - 1));
+    assertFalse(Probe.threads.contains(Thread.currentThread()));
+  }
+
+  @Test
+  public void smallCollectionsStayOnTheCallingThread() {
+    Probe.threads.clear();
+    Iface cfg = Blueprint.of(Iface.class).from(tree()).parallel(pool, SIZE + 1).build();
+    cfg.numbers(Probe.class);
+    assertEquals(Probe.threads, Set.of(Thread.currentThread()));
+  }
+
+  @Test
+  public void rethrowsFailuresWithContext() {
+    TestNode t = tree();
+    t.getChildNode("numbers").getArrayNodes().get(SIZE / 2).setValue("x");
+    Iface cfg = Blueprint.of(Iface.class).from(t).parallel(pool, 100).build();
+    try {
+      cfg.numbers(Integer.class);
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().startsWith("Failed to deserialize configuration item"), e.getMessage());
+      assertTrue(e.getMessage().contains("in method numbers"), e.getMessage());
+    }
+    assertNull(Context.getThreadInstance().getIface());
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static TestNode tree() {
+    TestNode t = new TestNode();
+    List<Object> numbers = new ArrayList<Object>();
+    List<Object> strings = new ArrayList<Object>();
+    for (int i = 0; i < SIZE; i++) {
+      numbers.add(i);
+      strings.add("s" + i);
+    }
+    t.put("numbers", null).setList(numbers.toArray());
+    t.put("ints", null).setList(numbers.toArray());
+    t.put("strings", null).setList(strings.toArray());
+    TestNode entries = t.put("entries", null);
+    for (int i = 0; i < SIZE; i++) {
+      entries.put("e" + i, null).put("name", "entry " + i);
+    }
+    return t;
+  }
+
+}
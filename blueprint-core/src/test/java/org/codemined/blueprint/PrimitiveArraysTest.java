@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class PrimitiveArraysTest {
+
+  public interface Tables {
+    int[] ints();
+    long[] longs();
+    double[] doubles();
+    boolean[] flags();
+    short[] shorts();
+    byte[] bytes();
+    float[] floats();
+  }
+
+  /** Node listing its array values up front. */
+  private static class ValuesNode extends TestNode {
+    @Override
+    public String[] getArrayValues() {
+      if (list == null) {
+        return null;
+      }
+      String[] values = new String[list.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = list.get(i).getValue();
+      }
+      return values;
+    }
+
+    @Override
+    public TestNode put(String key, String value) {
+      TestNode t = new ValuesNode();
+      t.setValue(value);
+      subTrees.put(key, t);
+      return t;
+    }
+  }
+
+
+  @Test
+  public void buildsArraysFromNodes() {
+    assertTables(Blueprint.create(Tables.class, tree(new TestNode())));
+  }
+
+  @Test
+  public void buildsArraysFromValues() {
+    assertTables(Blueprint.create(Tables.class, tree(new ValuesNode())));
+  }
+
+  @Test
+  public void reportsInvalidElements() {
+    TestNode t = tree(new ValuesNode());
+    t.put("ints", null).setList("1", "two", "3");
+    try {
+      Blueprint.create(Tables.class, t).ints();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("as an instance of java.lang.Integer"), e.getMessage());
+      assertTrue(e.getMessage().contains("from value \"two\""), e.getMessage());
+    }
+  }
+
+  @Test
+  public void userConvertersApplyToElements() {
+    Tables cfg = Blueprint.of(Tables.class)
+            .from(tree(new TestNode()))
+            .withConverter(Integer.class, new Converter<Integer>() {
+              @Override
+              public Integer convert(String value) {
+                return Integer.valueOf(value, 16);
+              }
+            })
+            .build();
+    assertEquals(cfg.ints(), new int[] { 1, -2, 0x10 });
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static TestNode tree(TestNode root) {
+    root.put("ints", null).setList("1", "-2", "10");
+    root.put("longs", null).setList("9223372036854775807", "0");
+    root.put("doubles", null).setList("0.5", "-1e3");
+    root.put("flags", null).setList("true", "FALSE", "TRUE");
+    root.put("shorts", null).setList("-32768");
+    root.put("bytes", null).setList("127", "1");
+    root.put("floats", null).setList("1.5");
+    return root;
+  }
+
+  private static void assertTables(Tables cfg) {
+    assertEquals(cfg.ints(), new int[] { 1, -2, 10 });
+    assertEquals(cfg.longs(), new long[] { Long.MAX_VALUE, 0 });
+    assertEquals(cfg.doubles(), new double[] { 0.5, -1000.0 });
+    assertEquals(cfg.flags(), new boolean[] { true, false, true });
+    assertEquals(cfg.shorts(), new short[] { Short.MIN_VALUE });
+    assertEquals(cfg.bytes(), new byte[] { 127, 1 });
+    assertEquals(cfg.floats(), new float[] { 1.5f });
+  }
+
+}
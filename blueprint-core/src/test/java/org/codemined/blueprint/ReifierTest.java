@@ -63,4 +63,70 @@ public class ReifierTest {
     map.put("string", 0);
   }
 
+  public void reifiesImmutableLists() {
+    Collection<Object> list = Reifier.reifyCollection(List.class, Object.class, new Object[] { "b", "a", "b" });
+    assertEquals(list, Arrays.asList("b", "a", "b"));
+    assertImmutable(list);
+    assertImmutable(Reifier.reifyCollection(Collection.class, Object.class, new Object[] { "a", null }));
+  }
+
+  public void reifiesImmutableSets() {
+    Collection<Object> set = Reifier.reifyCollection(Set.class, Object.class, new Object[] { "b", "a", "b" });
+    assertEquals((Set<Object>) set, new HashSet<Object>(Arrays.asList("a", "b")));
+    assertImmutable(set);
+
+    /* sets iterate in the order of the configuration, with or without nulls */
+    assertEquals(new ArrayList<Object>(set), Arrays.asList("b", "a"));
+    Collection<Object> withNull = Reifier.reifyCollection(Set.class, Object.class, new Object[] { "c", null, "a", "c" });
+    assertEquals(new ArrayList<Object>(withNull), Arrays.asList("c", null, "a"));
+    assertImmutable(withNull);
+
+    Collection<Object> sorted = Reifier.reifyCollection(SortedSet.class, Object.class, new Object[] { "b", "a" });
+    assertEquals(new ArrayList<Object>(sorted), Arrays.asList("a", "b"));
+    assertImmutable(sorted);
+  }
+
+  public void reifiesEnumSets() {
+    Collection<TestInterface._State> set = Reifier.reifyCollection(Set.class, TestInterface._State.class,
+            new Object[] { TestInterface._State.FALSE, TestInterface._State.TRUE });
+    assertEquals(new ArrayList<Object>(set), Arrays.asList(TestInterface._State.TRUE, TestInterface._State.FALSE));
+    assertImmutable(set);
+  }
+
+  public void reifiesMutableQueues() {
+    Collection<Object> queue = Reifier.reifyCollection(Deque.class, Object.class, new Object[] { "a", "b" });
+    assertEquals(((Deque<Object>) queue).peekLast(), "b");
+    queue.add("c");
+  }
+
+  public void fillsConcreteCollectionClasses() {
+    Collection<Object> list = Reifier.reifyCollection(ArrayList.class, Object.class, new Object[] { "a", "b" });
+    assertEquals(list.getClass(), ArrayList.class);
+    assertEquals(list, Arrays.asList("a", "b"));
+    list.add("c");
+  }
+
+  public void reifiesImmutableStringMaps() {
+    Map<String, Object> map = Reifier.reifyStringMap(new String[] { "a", "b" }, new Object[] { 1, null });
+    assertEquals(map.get("a"), 1);
+    assertTrue(map.containsKey("b"));
+    try {
+      map.put("c", 3);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // immutable
+    }
+  }
+
+  /* Privates ------------------------------------------------------- */
+
+  private static void assertImmutable(Collection<?> c) {
+    try {
+      c.clear();
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // immutable
+    }
+  }
+
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that concurrent misses deserialize a value only once.
+ *
+ * @author Zoran Rilak
+ */
+@Test
+public class SingleFlightTest {
+
+  private static final int THREADS = 16;
+
+  private static final AtomicInteger deserializations = new AtomicInteger();
+
+  public static class Slow {
+    private final String value;
+
+    private Slow(String value) {
+      this.value = value;
+    }
+
+    public static Slow valueOf(String value)
+            throws InterruptedException {
+      deserializations.incrementAndGet();
+      Thread.sleep(50);
+      return new Slow(value);
+    }
+  }
+
+  public interface SlowConfig {
+    Slow timeout();
+    <T> T state(Class<T> typeHint);
+  }
+
+  private ExecutorService executor;
+
+  @BeforeMethod
+  public void setUp() {
+    deserializations.set(0);
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+    System.clearProperty(Stub.USE_PROXIES_PROPERTY);
+  }
+
+  @Test
+  public void slotIsDeserializedOnce()
+          throws Exception {
+    final SlowConfig cfg = Blueprint.create(SlowConfig.class, new TestTree());
+    for (Object o : concurrently(new Callable<Object>() {
+      public Object call() {
+        return cfg.timeout();
+      }
+    })) {
+      assertSame(o, cfg.timeout());
+    }
+    assertEquals(deserializations.get(), 1);
+  }
+
+  @Test
+  public void slotIsDeserializedOnceThroughProxy()
+          throws Exception {
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    final SlowConfig cfg = Blueprint.create(SlowConfig.class, new TestTree());
+    concurrently(new Callable<Object>() {
+      public Object call() {
+        return cfg.timeout();
+      }
+    });
+    assertEquals(deserializations.get(), 1);
+  }
+
+  @Test
+  public void hintedInvocationIsDeserializedOnce()
+          throws Exception {
+    final SlowConfig cfg = Blueprint.create(SlowConfig.class, new TestTree());
+    for (Object o : concurrently(new Callable<Object>() {
+      public Object call() {
+        return cfg.state(Slow.class);
+      }
+    })) {
+      assertSame(o, cfg.state(Slow.class));
+    }
+    assertEquals(deserializations.get(), 1);
+  }
+
+  @Test
+  public void failuresAreNotCached() {
+    final SlowConfig cfg = Blueprint.create(SlowConfig.class, new TestTree());
+    for (int i = 0; i < 2; i++) {
+      try {
+        cfg.state(Integer.class);
+        fail();
+      } catch (BlueprintException e) {
+        // "TRUE" is not an integer
+      }
+    }
+  }
+
+  /* Privates ------------------------------------------------------- */
+
+  private List<Object> concurrently(final Callable<Object> task)
+          throws Exception {
+    final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+    final List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    for (int i = 0; i < THREADS; i++) {
+      futures.add(executor.submit(new Callable<Object>() {
+        public Object call() throws Exception {
+          barrier.await();
+          return task.call();
+        }
+      }));
+    }
+    final List<Object> results = new ArrayList<Object>();
+    for (Future<Object> f : futures) {
+      results.add(f.get());
+    }
+    return results;
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.codemined.util.Path;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class SlotCacheTest {
+
+  @Test
+  public void resolvesValuesOnce() {
+    final SlotCache slots = new SlotCache(new Path<String>(), new String[] { "a", "b" });
+    final Counter counter = new Counter();
+    assertNull(slots.get(0));
+    assertEquals(slots.resolve(0, counter), "0:none");
+    assertEquals(slots.resolve(0, counter), "0:none");
+    assertEquals(slots.get(0), "0:none");
+    assertEquals(counter.calls.get(), 1);
+  }
+
+  @Test
+  public void keepsHintedValuesByHint() {
+    final SlotCache slots = new SlotCache(new Path<String>(), new String[] { "a", "b" });
+    final Counter counter = new Counter();
+    assertNull(slots.get(1, String.class));
+    slots.resolve(1, String.class, new Object[] { String.class }, counter);
+    slots.resolve(1, Integer.class, new Object[] { Integer.class }, counter);
+    slots.resolve(1, String.class, new Object[] { String.class }, counter);
+    assertEquals(slots.get(1, String.class), "1:String");
+    assertEquals(slots.get(1, Integer.class), "1:Integer");
+    assertEquals(counter.calls.get(), 2);
+  }
+
+  @Test
+  public void forgetsFailures() {
+    final SlotCache slots = new SlotCache(new Path<String>(), new String[] { "a" });
+    try {
+      slots.resolve(0, new SlotCache.Resolver() {
+        @Override
+        public Object resolve(int slot, Object hint, Object[] args) {
+          throw new BlueprintException("failed");
+        }
+      });
+      fail();
+    } catch (BlueprintException e) {
+      assertNull(slots.get(0));
+    }
+    assertEquals(slots.resolve(0, new Counter()), "0:none");
+  }
+
+  @Test
+  public void cachesPaths() {
+    final SlotCache slots = new SlotCache(new Path<String>("root"), new String[] { "a" });
+    assertEquals(slots.pathOf(0), Arrays.asList("root", "a"));
+    assertSame(slots.pathOf(0), slots.pathOf(0));
+  }
+
+
+  /* Privates ------------------------------------------------------- */
+
+  private static class Counter implements SlotCache.Resolver {
+
+    final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public Object resolve(int slot, Object hint, Object[] args) {
+      calls.incrementAndGet();
+      return slot + ":" + (hint == MethodInvocation.NO_HINT ? "none" : ((Class<?>) hint).getSimpleName());
+    }
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class SnapshotTest {
+
+  public interface Broken {
+    int timeout();
+    int missing();
+    Nested nested();
+
+    interface Nested {
+      String serviceName();
+      boolean alsoMissing();
+    }
+  }
+
+  public interface WithOptional {
+    Optional<Nested> nested();
+    Optional<Nested> absent();
+
+    interface Nested {
+      String serviceName();
+    }
+  }
+
+  @AfterMethod
+  public void clearProperty() {
+    System.clearProperty(Stub.USE_PROXIES_PROPERTY);
+  }
+
+  @Test
+  public void eagerBuilderReturnsSnapshot() {
+    TestInterface cfg = Blueprint.of(TestInterface.class).from(new TestTree()).eager().build();
+    assertTrue(cfg.getClass().isHidden());
+    assertTrue(cfg.getClass().getName().contains("$$Snapshot"));
+    assertEquals(cfg.serviceName(), "DummyService");
+    assertEquals(cfg.timeout(), 15);
+    assertEquals(cfg.isActive(), true);
+    assertEquals(cfg.keyTwo(), true);
+    assertEquals(cfg.backupHours(), Arrays.asList(3, 8, 18));
+    assertEquals(cfg.toString(), "[" + TestInterface.class.getName() + " blueprint snapshot]");
+  }
+
+  @Test
+  public void nestedInterfacesAreSnapshotted() {
+    TestInterface cfg = Blueprint.snapshot(Blueprint.create(TestInterface.class, new TestTree()));
+    assertTrue(cfg.db().getClass().getName().contains("$$Snapshot"));
+    assertSame(cfg.db(), cfg.db());
+    assertEquals(cfg.db().production().name(), "Production");
+    assertEquals(cfg.db().impl(), java.util.Random.class);
+    TestInterface._Protocol dns = cfg.protocols().get("dns");
+    assertTrue(dns.getClass().getName().contains("$$Snapshot"));
+    assertEquals(dns.port(), 53);
+  }
+
+  @Test
+  public void optionalInterfacesAreSnapshotted() {
+    TestNode node = new TestNode();
+    node.put("nested", null).put("serviceName", "DummyService");
+    WithOptional cfg = Blueprint.snapshot(Blueprint.create(WithOptional.class, node));
+    WithOptional.Nested nested = cfg.nested().get();
+    assertTrue(nested.getClass().getName().contains("$$Snapshot"));
+    assertSame(cfg.nested().get(), nested);
+    assertEquals(nested.serviceName(), "DummyService");
+    assertFalse(cfg.absent().isPresent());
+  }
+
+  @Test
+  public void collectionsAreUnmodifiable() {
+    TestInterface cfg = Blueprint.snapshot(Blueprint.create(TestInterface.class, new TestTree()));
+    List<Integer> hours = cfg.backupHours();
+    Map<String, TestInterface._Protocol> protocols = cfg.protocols();
+    try {
+      hours.add(1);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      protocols.clear();
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void typeHintsArePassedOn() {
+    TestInterface cfg = Blueprint.snapshot(Blueprint.create(TestInterface.class, new TestTree()));
+    assertEquals(cfg.state(TestInterface._State.class), TestInterface._State.TRUE);
+    assertEquals(cfg.backupHours(String.class), Arrays.asList("3", "8", "18"));
+    assertEquals(cfg.typeHintDemo2(A2.class).toString(), "2:A2:A1:A");
+  }
+
+  @Test
+  public void fallsBackToProxy() {
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    TestInterface cfg = Blueprint.snapshot(Blueprint.create(TestInterface.class, new TestTree()));
+    assertTrue(Proxy.isProxyClass(cfg.getClass()));
+    assertEquals(cfg.db().development().name(), "devel");
+    assertEquals(cfg.state(String.class), "TRUE");
+    assertEquals(cfg, cfg);
+  }
+
+  @Test
+  public void failuresAreAggregated() {
+    try {
+      Blueprint.of(Broken.class).from(new TestTree()).eager().build();
+      fail();
+    } catch (BlueprintException e) {
+      assertTrue(e.getMessage().contains("missing()"), e.getMessage());
+      assertTrue(e.getMessage().contains("nested()"), e.getMessage());
+      assertFalse(e.getMessage().contains("timeout()"), e.getMessage());
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void rejectsOtherObjects() {
+    Blueprint.snapshot("not a blueprint");
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.blueprint;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Zoran Rilak
+ */
+@Test
+public class StubGeneratorTest {
+
+  @SuppressWarnings("unused")
+  private interface ChildIface {
+    int childMethod();
+  }
+
+  @SuppressWarnings("unused")
+  private interface BlueprintIface extends ChildIface {
+    int childMethod();
+    String toString();
+    static int staticMethod() { return 0; }
+  }
+
+  public interface Primitives {
+    int i();
+    long l();
+    double d();
+    boolean z();
+    short s();
+    float f();
+    byte b();
+  }
+
+  @AfterMethod
+  public void clearProperty() {
+    System.clearProperty(Stub.USE_PROXIES_PROPERTY);
+  }
+
+  @Test
+  public void generatesHiddenClass() {
+    TestInterface cfg = Blueprint.create(TestInterface.class, new TestTree());
+    assertTrue(cfg.getClass().isHidden());
+    assertTrue(cfg instanceof BlueprintProxy);
+    assertTrue(cfg.db().getClass().isHidden());
+  }
+
+  @Test
+  public void fallsBackToProxy() {
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    TestInterface cfg = Blueprint.create(TestInterface.class, new TestTree());
+    assertTrue(Proxy.isProxyClass(cfg.getClass()));
+    assertEquals(cfg.timeout(), 15);
+  }
+
+  @Test
+  public void generatedClassMatchesProxySemantics()
+          throws Exception {
+    TestInterface generated = Blueprint.create(TestInterface.class, new TestTree());
+    System.setProperty(Stub.USE_PROXIES_PROPERTY, "true");
+    TestInterface proxied = Blueprint.create(TestInterface.class, new TestTree());
+
+    assertEquals(generated.serviceName(), proxied.serviceName());
+    assertEquals(generated.isActive(), proxied.isActive());
+    assertEquals(generated.timeout(), proxied.timeout());
+    assertEquals(generated.deployUrl(), new URL("http://www.codemined.org/blueprint"));
+    assertEquals(generated.backupHours(), proxied.backupHours());
+    assertEquals(generated.backupHours(Integer.class), proxied.backupHours(Integer.class));
+    assertEquals(generated.activeBackupDays(), proxied.activeBackupDays());
+    assertEquals(generated.http(), proxied.http());
+    assertEquals(generated.keyTwo(), proxied.keyTwo());
+    assertEquals(generated.state(TestInterface._State.class), proxied.state(TestInterface._State.class));
+    assertEquals(generated.typeHintDemo2(A2.class).toString(), proxied.typeHintDemo2(A2.class).toString());
+    assertEquals(generated.db().production().name(), proxied.db().production().name());
+    assertEquals(generated.protocols().get("dns").port(), proxied.protocols().get("dns").port());
+  }
+
+  @Test
+  public void cachesValuesInFields() {
+    TestInterface cfg = Blueprint.create(TestInterface.class, new TestTree());
+    assertSame(cfg.db(), cfg.db());
+    assertSame(cfg.backupHours(), cfg.backupHours());
+  }
+
+  @Test
+  public void keepsPrimitivesInPrimitiveFields()
+          throws Exception {
+    TestNode t = new TestNode();
+    t.put("i", "-7");
+    t.put("l", "9223372036854775807");
+    t.put("d", "0.5");
+    t.put("z", "TRUE");
+    t.put("s", "12");
+    t.put("f", "1.5");
+    t.put("b", "-1");
+    Primitives cfg = Blueprint.create(Primitives.class, t);
+    for (int round = 0; round < 2; round++) {
+      assertEquals(cfg.i(), -7);
+      assertEquals(cfg.l(), Long.MAX_VALUE);
+      assertEquals(cfg.d(), 0.5);
+      assertEquals(cfg.z(), true);
+      assertEquals(cfg.s(), (short) 12);
+      assertEquals(cfg.f(), 1.5f);
+      assertEquals(cfg.b(), (byte) -1);
+    }
+
+    BlueprintMethod[] slots = MethodTable.forInterface(Primitives.class).methods;
+    for (int i = 0; i < slots.length; i++) {
+      assertEquals(cfg.getClass().getDeclaredField("v" + i).getType(), slots[i].method.getReturnType());
+      assertEquals(Blueprint.snapshot(cfg).getClass().getDeclaredField("v" + i).getType(),
+              slots[i].method.getReturnType());
+    }
+  }
+
+  @Test
+  public void primitiveConversionFailuresAreNotCached() {
+    TestNode t = new TestNode();
+    t.put("i", "seven");
+    Primitives cfg = Blueprint.create(Primitives.class, t);
+    for (int round = 0; round < 2; round++) {
+      try {
+        cfg.i();
+        fail();
+      } catch (BlueprintException e) {
+        assertTrue(e.getMessage().contains("using method valueOf(String)"), e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void skipsStaticAndObjectMethods()
+          throws NoSuchMethodException {
+    BlueprintMethod[] slots = MethodTable.forInterface(BlueprintIface.class).methods;
+    assertEquals(slots.length, 1);
+    assertEquals(slots[0].method.getName(), "childMethod");
+  }
+
+}
@@ -48,7 +48,8 @@ public class StubTest {
           throws Throwable {
     new Expectations() {{
       mockNode.getChildNode("childMethod"); result = mockNode;
-      mockDeserializer.deserialize(Integer.class, null, "childMethod", mockNode); result = 42;
+      mockDeserializer.deserialize((DeserializationPlan) any, "childMethod", mockNode, new Path<String>("childMethod"), false);
+      result = 42;
     }};
     Stub<BlueprintIface> stub = new Stub<BlueprintIface>(BlueprintIface.class,
             mockNode, new Path<String>(), mockDeserializer, new IdentityKeyResolver());
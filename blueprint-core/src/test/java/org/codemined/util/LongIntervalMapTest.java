@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class LongIntervalMapTest {
+
+  public void testLookup() {
+    LongIntervalMap<String> map = LongIntervalMap.<String>builder(3)
+            .put(8080, 8080, "proxy")
+            .put(0, 1023, "system")
+            .put(49152, 65535, "ephemeral")
+            .build();
+    assertEquals(map.size(), 3);
+    assertEquals(map.get(0), "system");
+    assertEquals(map.get(1023), "system");
+    assertNull(map.get(1024));
+    assertEquals(map.get(8080), "proxy");
+    assertNull(map.get(8081));
+    assertEquals(map.get(65535), "ephemeral");
+    assertNull(map.get(-1));
+    assertTrue(map.contains(50000));
+    assertFalse(map.contains(70000));
+  }
+
+  public void testParsesIntervals() {
+    assertEquals(LongIntervalMap.parseInterval("42"), new long[] { 42, 42 });
+    assertEquals(LongIntervalMap.parseInterval("1024-65535"), new long[] { 1024, 65535 });
+    assertEquals(LongIntervalMap.parseInterval("-10--1"), new long[] { -10, -1 });
+    assertEquals(LongIntervalMap.parseInterval("10.0.0.1"), new long[] { 0x0a000001L, 0x0a000001L });
+    assertEquals(LongIntervalMap.parseInterval("10.1.2.3/8"), new long[] { 0x0a000000L, 0x0affffffL });
+    assertEquals(LongIntervalMap.parseInterval("0.0.0.0/0"), new long[] { 0, 0xffffffffL });
+    assertEquals(LongIntervalMap.parseInterval("192.168.0.10-192.168.0.20"),
+            new long[] { 0xc0a8000aL, 0xc0a80014L });
+  }
+
+  public void testRejectsMalformedIntervals() {
+    for (String s : new String[] { "", "x", "5-1", "10.0.0/8", "10.0.0.256", "10.0.0.0/33", "1.2.3.4.5" }) {
+      try {
+        LongIntervalMap.parseInterval(s);
+        fail(s);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRejectsOverlaps() {
+    LongIntervalMap.<String>builder(2).put("10-20", "a").put("0-10", "b").build();
+  }
+
+  public void testGrowsPastExpectedSize() {
+    LongIntervalMap.Builder<Integer> builder = LongIntervalMap.builder(1);
+    for (int i = 99; i >= 0; i--) {
+      builder.put(i * 10, i * 10 + 4, i);
+    }
+    LongIntervalMap<Integer> map = builder.build();
+    assertEquals(map.size(), 100);
+    assertEquals(map.get(734), Integer.valueOf(73));
+    assertNull(map.get(735));
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ParsersTest {
+
+  public void testInts() {
+    assertEquals(Parsers.parseInt("15"), 15);
+    assertEquals(Parsers.parseInt("+15"), 15);
+    assertEquals(Parsers.parseInt("-2147483648"), Integer.MIN_VALUE);
+    assertEquals(Parsers.parseInt(new StringBuilder("42")), 42);
+  }
+
+  public void testLongs() {
+    assertEquals(Parsers.parseLong("9223372036854775807"), Long.MAX_VALUE);
+    assertEquals(Parsers.parseLong("-1"), -1L);
+  }
+
+  public void testDoubles() {
+    assertEquals(Parsers.parseDouble("1.5e3"), 1500.0);
+    assertEquals(Parsers.parseDouble(" 0.25 "), 0.25);
+  }
+
+  public void testBooleans() {
+    assertTrue(Parsers.parseBoolean("true"));
+    assertTrue(Parsers.parseBoolean("TrUe"));
+    assertFalse(Parsers.parseBoolean("yes"));
+    assertFalse(Parsers.parseBoolean(""));
+    assertFalse(Parsers.parseBoolean(null));
+  }
+
+  public void testRejectsWhatValueOfRejects() {
+    for (String s : new String[] { "", " 1", "1 ", "0x10", "2147483648", null }) {
+      try {
+        Parsers.parseInt(s);
+        fail(s);
+      } catch (NumberFormatException e) {
+        // as Integer.valueOf()
+      }
+    }
+    try {
+      Parsers.parseLong("1L");
+      fail();
+    } catch (NumberFormatException e) {
+      // as Long.valueOf()
+    }
+  }
+
+}
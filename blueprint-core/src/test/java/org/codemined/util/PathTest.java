@@ -18,10 +18,16 @@ package org.codemined.util;
 
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
-import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.*;
 
 /**
  * @author Zoran Rilak
@@ -72,4 +78,78 @@ public class PathTest {
     assertEquals(p.via(1, 2, 3).toString(), "1/2/3");
   }
 
+  @Test
+  public void sharesPrefixes() {
+    Path<String> p = new Path<String>("a", "b");
+    Path<String> c = p.to("c");
+    Path<String> d = p.to("d");
+    assertSame(c.getParent(), p);
+    assertSame(d.getParent(), p);
+    assertEquals(c.getLast(), "c");
+    assertEquals(c.getFirst(), "a");
+    assertEquals(new Path<String>().to("x").getFirst(), "x");
+    assertNull(new Path<String>().getFirst());
+    assertNull(new Path<String>().getParent());
+    assertNull(new Path<String>().getLast());
+  }
+
+  @Test
+  public void isAList() {
+    Path<String> p = new Path<String>().to("a").to("b").to("c");
+    List<String> l = new ArrayList<String>(Arrays.asList("a", "b", "c"));
+    assertEquals(p.get(0), "a");
+    assertEquals(p.get(2), "c");
+    assertEquals(new ArrayList<String>(p), l);
+    assertTrue(p.equals(l));
+    assertTrue(l.equals(p));
+    assertEquals(p.hashCode(), l.hashCode());
+    assertEquals(new Path<String>().hashCode(), new ArrayList<String>().hashCode());
+  }
+
+  @Test(expectedExceptions = IndexOutOfBoundsException.class)
+  public void rejectsBadIndices() {
+    new Path<String>("a").get(1);
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void isImmutable() {
+    new Path<String>("a").add("b");
+  }
+
+  @Test
+  public void comparesPaths() {
+    Path<String> p = new Path<String>("a", "b");
+    assertEquals(p.to("c"), new Path<String>("a", "b", "c"));
+    assertEquals(p.to("c"), p.to("c"));
+    assertNotEquals(p.to("c"), p.to("d"));
+    assertNotEquals(p, p.to("c"));
+    assertEquals(new Path<String>(), new Path<String>());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void serializesAsKeys() throws Exception {
+    Path<String> p = new Path<String>("a", "b").to("c");
+    p.toString();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(p);
+    out.close();
+    Path<String> q = (Path<String>) new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(q, p);
+    assertEquals(q.hashCode(), p.hashCode());
+    assertEquals(q.getParent(), new Path<String>("a", "b"));
+    assertEquals(q.getFirst(), "a");
+    assertEquals(q.toString(), "a/b/c");
+  }
+
+  @Test
+  public void cachesStringForm() {
+    Path<String> p = new Path<String>("", "a", "b");
+    assertEquals(p.toString(), "/a/b");
+    assertSame(p.toString(), p.toString());
+    assertEquals(new Path<String>().toString(), "");
+  }
+
 }
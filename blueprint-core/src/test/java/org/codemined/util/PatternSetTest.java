@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import org.testng.annotations.Test;
+
+import java.util.regex.PatternSyntaxException;
+
+import static org.testng.Assert.*;
+
+@Test
+public class PatternSetTest {
+
+  private static final String[] RULES = {
+          "/api/v(\\d+)/users/.*",
+          "/api/.*",
+          "(?i)/static/.*\\.css",
+          "(?<any>.*)\\.php"
+  };
+
+  public void testMatchReportsTheFirstMatchingRule() {
+    PatternSet set = PatternSet.compile(RULES);
+    assertEquals(set.size(), 4);
+    assertEquals(set.match("/api/v2/users/42"), 0);
+    assertEquals(set.match("/api/orders"), 1);
+    assertEquals(set.match("/STATIC/site.CSS"), 2);
+    assertEquals(set.match("/index.php"), 3);
+    assertEquals(set.match("/index.html"), -1);
+    assertTrue(set.matches("/api/"));
+    assertFalse(set.matches("/apix"));
+  }
+
+  public void testFindReportsTheEarliestRule() {
+    PatternSet set = PatternSet.compile("b+", "a", "ab");
+    assertEquals(set.find("xxabb"), 1);
+    assertEquals(set.find("xxbba"), 0);
+    assertEquals(set.find("xyz"), -1);
+  }
+
+  public void testUncombinablePatternsMatchTheSame() {
+    String[] rules = { "(a)\\1", "\\Q*\\E+", "(?x) c # comment", "(?<n>d)" , "(?<n>e)" };
+    PatternSet set = PatternSet.compile(rules);
+    assertEquals(set.match("aa"), 0);
+    assertEquals(set.match("ab"), -1);
+    assertEquals(set.match("***"), 1);
+    assertEquals(set.match("c"), 2);
+    assertEquals(set.match("e"), 4);
+    assertEquals(set.find("xx**c"), 1);
+  }
+
+  public void testCombinedAndSeparateMatchingAgree() {
+    PatternSet combined = PatternSet.compile(RULES);
+    String[] inputs = { "/api/v1/users/", "/api/v/users/x", "/static/a.css", "x.php", "", "/api" };
+    for (String input : inputs) {
+      int expected = -1;
+      for (int i = 0; i < RULES.length && expected < 0; i++) {
+        if (PatternSet.compile(RULES[i]).matches(input)) {
+          expected = i;
+        }
+      }
+      assertEquals(combined.match(input), expected, input);
+    }
+  }
+
+  @Test(expectedExceptions = PatternSyntaxException.class)
+  public void testRejectsInvalidPatterns() {
+    PatternSet.compile("a", "(b");
+  }
+
+  public void testEquality() {
+    assertEquals(PatternSet.compile("a", "b"), PatternSet.compile("a", "b"));
+    assertEquals(PatternSet.compile("a", "b").hashCode(), PatternSet.compile("a", "b").hashCode());
+    assertNotEquals(PatternSet.compile("a", "b"), PatternSet.compile("b", "a"));
+  }
+
+}
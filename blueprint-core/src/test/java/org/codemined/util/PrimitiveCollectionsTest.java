@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+@Test
+public class PrimitiveCollectionsTest {
+
+  public void testIntList() {
+    int[] values = { 5, -1, 5, 42 };
+    IntList list = IntList.of(values);
+    values[0] = 0;
+    assertEquals(list.size(), 4);
+    assertEquals(list.get(0), 5);
+    assertEquals(list.indexOf(5), 0);
+    assertEquals(list.indexOf(7), -1);
+    assertTrue(list.contains(42));
+    assertEquals(list.toArray(), new int[] { 5, -1, 5, 42 });
+    assertEquals(list, IntList.of(5, -1, 5, 42));
+    assertTrue(IntList.of().isEmpty());
+  }
+
+  public void testLongSet() {
+    LongSet set = LongSet.of(3, 0, -7, 3, Long.MIN_VALUE, 0);
+    assertEquals(set.size(), 4);
+    assertTrue(set.contains(0));
+    assertTrue(set.contains(-7));
+    assertTrue(set.contains(Long.MIN_VALUE));
+    assertFalse(set.contains(4));
+    assertEquals(set.toArray(), new long[] { Long.MIN_VALUE, -7, 0, 3 });
+    assertEquals(set, LongSet.of(Long.MIN_VALUE, -7, 0, 3));
+    assertEquals(set.hashCode(), LongSet.of(3, -7, Long.MIN_VALUE, 0).hashCode());
+    assertNotEquals(set, LongSet.of(-7, 0, 3));
+    assertFalse(LongSet.of().contains(0));
+  }
+
+  public void testLargeLongSet() {
+    long[] values = new long[10000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i * 1024L;
+    }
+    LongSet set = LongSet.of(values);
+    assertEquals(set.size(), values.length);
+    for (long v : values) {
+      assertTrue(set.contains(v));
+      assertFalse(set.contains(v + 1));
+    }
+  }
+
+  public void testStringIntMap() {
+    StringIntMap map = StringIntMap.builder(2)
+            .put("free", 10)
+            .put("pro", 1000)
+            .put("team", 5000)
+            .put("free", 20)
+            .build();
+    assertEquals(map.size(), 3);
+    assertEquals(map.getOrDefault("free", -1), 20);
+    assertEquals(map.getOrDefault("team", -1), 5000);
+    assertEquals(map.getOrDefault("enterprise", -1), -1);
+    assertEquals(map.getOrDefault(null, -1), -1);
+    assertTrue(map.containsKey("pro"));
+    assertEquals(map.keySet(), StringSet.of("free", "pro", "team"));
+    assertEquals(map, StringIntMap.builder(3).put("team", 5000).put("pro", 1000).put("free", 20).build());
+    assertEquals(map.toString(), "{free=20, pro=1000, team=5000}");
+  }
+
+  public void testStringLongMap() {
+    StringLongMap.Builder builder = StringLongMap.builder(0);
+    for (int i = 0; i < 1000; i++) {
+      builder.put("k" + i, i * 10000000000L);
+    }
+    StringLongMap map = builder.build();
+    assertEquals(map.size(), 1000);
+    assertEquals(map.getOrDefault("k999", 0), 9990000000000L);
+    assertFalse(map.containsKey("k1000"));
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012. Zoran Rilak
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codemined.util;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+@Test
+public class StringSetTest {
+
+  public void testContains() {
+    StringSet set = StringSet.of("example.org", "ads.example.com", "tracker.net", "example.org");
+    assertEquals(set.size(), 3);
+    assertTrue(set.contains("tracker.net"));
+    assertTrue(set.contains(new StringBuilder("example.org")));
+    assertFalse(set.contains("example.com"));
+    assertFalse(set.contains("tracker.ne"));
+    assertFalse(set.contains(null));
+  }
+
+  public void testContainsPrefixOf() {
+    StringSet set = StringSet.of("/admin", "/api/internal", "/z");
+    assertTrue(set.containsPrefixOf("/admin/users"));
+    assertTrue(set.containsPrefixOf("/api/internal"));
+    assertFalse(set.containsPrefixOf("/api/public"));
+    assertFalse(set.containsPrefixOf("/"));
+    assertFalse(StringSet.of().containsPrefixOf("/admin"));
+    assertTrue(StringSet.of("").containsPrefixOf("anything"));
+  }
+
+  public void testIterationIsSorted() {
+    List<String> elements = new ArrayList<String>();
+    for (String s : StringSet.of("b", "c", "a", "b")) {
+      elements.add(s);
+    }
+    assertEquals(elements, Arrays.asList("a", "b", "c"));
+  }
+
+  public void testEquality() {
+    assertEquals(StringSet.of("a", "b"), StringSet.of("b", "a", "a"));
+    assertEquals(StringSet.of("a", "b").hashCode(), StringSet.of("b", "a").hashCode());
+    assertNotEquals(StringSet.of("a"), StringSet.of("a", "b"));
+  }
+
+  public void testDoesNotShareTheInput() {
+    String[] values = { "b", "a" };
+    StringSet set = StringSet.of(values);
+    values[0] = "c";
+    assertTrue(set.contains("b"));
+    assertEquals(values[1], "a");
+  }
+
+}
@@ -75,6 +75,19 @@ public class JsonNode implements ConfigNode<JsonNode> {
     return listElements;
   }
 
+  @Override
+  public String[] getArrayValues() {
+    if (! this.hasArrayNodes()) {
+      return null;
+    }
+    String[] values = new String[jsonNode.size()];
+    int i = 0;
+    for (org.codehaus.jackson.JsonNode node : jsonNode) {
+      values[i++] = node.isValueNode() ? node.asText() : null;
+    }
+    return values;
+  }
+
   @Override
   public boolean containsKey(String key) {
     return jsonNode.has(key);
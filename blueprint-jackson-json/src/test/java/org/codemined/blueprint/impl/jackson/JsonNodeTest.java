@@ -20,6 +20,7 @@ import org.testng.annotations.Test;
 import java.io.IOException;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 
 /**
  * @author Zoran Rilak
@@ -56,6 +57,9 @@ public class JsonNodeTest {
     assertEquals(t.getChildNode("family").getChildNode("nephews").getArrayNodes().get(1).getValue(), "Dewey");
     assertEquals(t.getChildNode("family").getChildNode("nephews").getArrayNodes().get(2).getValue(), "Louie");
     assertEquals(t.getChildNode("family").getChildNode("married").getValue(), "false");
+    assertEquals(t.getChildNode("family").getChildNode("nephews").getArrayValues(),
+            new String[] { "Huey", "Dewey", "Louie" });
+    assertNull(t.getChildNode("family").getArrayValues());
   }
 
 }